@@ -0,0 +1,73 @@
+/*Copyright (C) 2010-2013 Institute for Software Integrated Systems (ISIS)
+This software was developed by the Institute for Software Integrated
+Systems (ISIS) at Vanderbilt University, Tennessee, USA for the 
+Transformative Apps program under DARPA, Contract # HR011-10-C-0175.
+The United States Government has unlimited rights to this software. 
+The US government has the right to use, modify, reproduce, release, 
+perform, display, or disclose computer software or computer software 
+documentation in whole or in part, in any manner and for any 
+purpose whatsoever, and to have or authorize others to do so.
+ */
+
+package edu.vu.isis.crossweave.benchmarks;
+
+import edu.vu.isis.crossweave.Analysis;
+import edu.vu.isis.crossweave.CorpusGenerator;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A generated source tree of annotated classes. Corpora are written once below
+ * the directory given by the crossweave.corpus system property (default
+ * target/corpus) and reused by later runs.
+ * <p>
+ * Benchmarks that work on files take one file per operation, cycling through
+ * the corpus, so their scores are per file and the corpus size only changes
+ * how the file system and caches see the input.
+ *
+ * @author nick
+ */
+@State(Scope.Benchmark)
+public class Corpus {
+
+    @Param({ "1000", "100000", "1000000" })
+    public int classes;
+
+    private List<File> mFiles;
+    private AtomicInteger mNext = new AtomicInteger();
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        File dir = new File(System.getProperty("crossweave.corpus", "target/corpus"),
+                String.valueOf(classes));
+        new CorpusGenerator().setClasses(classes).setPackages(Math.max(1, classes / 500))
+                .ensureSources(dir);
+        mFiles = new ArrayList<File>(classes);
+        Analysis.collectSourceFiles(dir, mFiles);
+    }
+
+    /**
+     * @return all source files of the corpus
+     */
+    public List<File> getFiles() {
+        return mFiles;
+    }
+
+    /**
+     * @return the next source file, starting over after the last one
+     */
+    public File next() {
+        return mFiles.get((mNext.getAndIncrement() & Integer.MAX_VALUE) % mFiles.size());
+    }
+
+}
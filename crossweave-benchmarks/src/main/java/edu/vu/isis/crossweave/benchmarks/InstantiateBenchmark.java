@@ -0,0 +1,59 @@
+/*Copyright (C) 2010-2013 Institute for Software Integrated Systems (ISIS)
+This software was developed by the Institute for Software Integrated
+Systems (ISIS) at Vanderbilt University, Tennessee, USA for the 
+Transformative Apps program under DARPA, Contract # HR011-10-C-0175.
+The United States Government has unlimited rights to this software. 
+The US government has the right to use, modify, reproduce, release, 
+perform, display, or disclose computer software or computer software 
+documentation in whole or in part, in any manner and for any 
+purpose whatsoever, and to have or authorize others to do so.
+ */
+
+package edu.vu.isis.crossweave.benchmarks;
+
+import edu.vu.isis.crossweave.PatternInstance;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Creating the pattern instances of a corpus with Pattern.instantiate, with and
+ * without adding the implementers of their roles.
+ *
+ * @author nick
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class InstantiateBenchmark {
+
+    @Param({ "1000", "100000", "1000000" })
+    public int classes;
+
+    private Model mModel;
+
+    @Setup
+    public void setUp() {
+        mModel = new Model(classes);
+    }
+
+    @Benchmark
+    public List<PatternInstance> instantiate() {
+        return mModel.instantiate();
+    }
+
+    @Benchmark
+    public List<PatternInstance> instantiateAndBind() {
+        return mModel.instantiateAndBind();
+    }
+
+}
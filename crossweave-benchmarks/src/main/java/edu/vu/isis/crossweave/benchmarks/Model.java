@@ -0,0 +1,100 @@
+/*Copyright (C) 2010-2013 Institute for Software Integrated Systems (ISIS)
+This software was developed by the Institute for Software Integrated
+Systems (ISIS) at Vanderbilt University, Tennessee, USA for the 
+Transformative Apps program under DARPA, Contract # HR011-10-C-0175.
+The United States Government has unlimited rights to this software. 
+The US government has the right to use, modify, reproduce, release, 
+perform, display, or disclose computer software or computer software 
+documentation in whole or in part, in any manner and for any 
+purpose whatsoever, and to have or authorize others to do so.
+ */
+
+package edu.vu.isis.crossweave.benchmarks;
+
+import edu.vu.isis.crossweave.Pattern;
+import edu.vu.isis.crossweave.PatternInstance;
+import edu.vu.isis.crossweave.Role;
+import edu.vu.isis.crossweave.SymbolTable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The in-memory model of a corpus of a given size, matching what the analysis
+ * builds from the sources written by CorpusGenerator: every tenth class
+ * specifies an adapter instance, and the others play one of its roles.
+ *
+ * @author nick
+ */
+public class Model {
+
+    static final int SPEC_EVERY = 10;
+
+    private static final String[] ROLES = { "client", "adapter", "adaptee" };
+
+    private Pattern mPattern;
+    private String[] mInstanceNames;
+    private int[] mBindingInstances;
+    private String[] mBindingRoles;
+    private String[] mBindingImplementers;
+
+    /**
+     * @param classes the number of annotated classes
+     */
+    public Model(int classes) {
+        SymbolTable symbols = new SymbolTable();
+        mPattern = new Pattern(symbols, "gof", "adapter", "foo");
+        for (String role : ROLES) {
+            mPattern.addRole(new Role(symbols, role));
+        }
+
+        int instances = (classes + SPEC_EVERY - 1) / SPEC_EVERY;
+        int bindings = classes - instances;
+        mInstanceNames = new String[instances];
+        mBindingInstances = new int[bindings];
+        mBindingRoles = new String[bindings];
+        mBindingImplementers = new String[bindings];
+        int binding = 0;
+        for (int i = 0; i < classes; i++) {
+            if (i % SPEC_EVERY == 0) {
+                mInstanceNames[i / SPEC_EVERY] = "i" + i;
+            } else {
+                mBindingInstances[binding] = i / SPEC_EVERY;
+                mBindingRoles[binding] = ROLES[i % ROLES.length];
+                mBindingImplementers[binding] = "gen.p" + i % 20 + ".Class" + i;
+                binding++;
+            }
+        }
+    }
+
+    /**
+     * @return the pattern all instances are created from
+     */
+    public Pattern getPattern() {
+        return mPattern;
+    }
+
+    /**
+     * Creates the pattern instances without implementers.
+     */
+    public List<PatternInstance> instantiate() {
+        List<PatternInstance> instances = new ArrayList<PatternInstance>(mInstanceNames.length);
+        for (String name : mInstanceNames) {
+            instances.add(mPattern.instantiate(name));
+        }
+        return instances;
+    }
+
+    /**
+     * Creates the pattern instances and adds the implementers of their roles.
+     */
+    public List<PatternInstance> instantiateAndBind() {
+        List<PatternInstance> instances = instantiate();
+        for (int i = 0; i < mBindingInstances.length; i++) {
+            instances.get(mBindingInstances[i]).addImplementerToRole(mBindingImplementers[i],
+                    mBindingRoles[i]);
+        }
+        return instances;
+    }
+
+}
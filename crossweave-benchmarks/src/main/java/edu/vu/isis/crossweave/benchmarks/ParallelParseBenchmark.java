@@ -0,0 +1,68 @@
+/*Copyright (C) 2010-2013 Institute for Software Integrated Systems (ISIS)
+This software was developed by the Institute for Software Integrated
+Systems (ISIS) at Vanderbilt University, Tennessee, USA for the 
+Transformative Apps program under DARPA, Contract # HR011-10-C-0175.
+The United States Government has unlimited rights to this software. 
+The US government has the right to use, modify, reproduce, release, 
+perform, display, or disclose computer software or computer software 
+documentation in whole or in part, in any manner and for any 
+purpose whatsoever, and to have or authorize others to do so.
+ */
+
+package edu.vu.isis.crossweave.benchmarks;
+
+import edu.vu.isis.crossweave.ParallelSourceParser;
+import edu.vu.isis.crossweave.QDoxSourceScanner;
+import edu.vu.isis.crossweave.SourceFacts;
+
+import com.thoughtworks.qdox.JavaDocBuilder;
+import com.thoughtworks.qdox.model.JavaSource;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing the whole corpus with a single QDox builder, like the analyze goal
+ * did before ParallelSourceParser, against the parallel parser with one thread
+ * per processor. Each operation parses every file, so run it on the small
+ * corpus: -p classes=1000.
+ *
+ * @author nick
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ParallelParseBenchmark {
+
+    private int mThreads = Runtime.getRuntime().availableProcessors();
+
+    @Benchmark
+    public List<SourceFacts> serialParse(Corpus corpus) throws IOException {
+        JavaDocBuilder builder = new JavaDocBuilder();
+        for (File file : corpus.getFiles()) {
+            builder.addSource(file);
+        }
+        List<SourceFacts> facts = new ArrayList<SourceFacts>();
+        for (JavaSource source : builder.getSources()) {
+            facts.add(QDoxSourceScanner.extractFacts(source));
+        }
+        return facts;
+    }
+
+    @Benchmark
+    public List<SourceFacts> parallelParse(Corpus corpus) throws IOException {
+        return new ParallelSourceParser(new QDoxSourceScanner(), mThreads).parse(corpus
+                .getFiles());
+    }
+
+}
@@ -0,0 +1,75 @@
+/*Copyright (C) 2010-2013 Institute for Software Integrated Systems (ISIS)
+This software was developed by the Institute for Software Integrated
+Systems (ISIS) at Vanderbilt University, Tennessee, USA for the 
+Transformative Apps program under DARPA, Contract # HR011-10-C-0175.
+The United States Government has unlimited rights to this software. 
+The US government has the right to use, modify, reproduce, release, 
+perform, display, or disclose computer software or computer software 
+documentation in whole or in part, in any manner and for any 
+purpose whatsoever, and to have or authorize others to do so.
+ */
+
+package edu.vu.isis.crossweave.benchmarks;
+
+import edu.vu.isis.crossweave.Pattern;
+import edu.vu.isis.crossweave.PatternDefHandler;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayInputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+
+/**
+ * SAX parsing of a pattern definition with PatternDefHandler. A definition file
+ * holds a single pattern, so the definition grows with the corpus through its
+ * implementations: one per instance the corpus specifies.
+ *
+ * @author nick
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PatternDefBenchmark {
+
+    @Param({ "1000", "100000", "1000000" })
+    public int classes;
+
+    private byte[] mPatternDef;
+    private SAXParser mParser;
+
+    @Setup
+    public void setUp() throws Exception {
+        StringBuilder sb = new StringBuilder();
+        sb.append("<pattern name=\"adapter\" namespace=\"gof\">\n");
+        for (int i = 0; i < classes; i += Model.SPEC_EVERY) {
+            sb.append("  <impl name=\"impl").append(i).append("\" />\n");
+        }
+        sb.append("  <role name=\"client\" />\n");
+        sb.append("  <role name=\"adapter\" />\n");
+        sb.append("  <role name=\"adaptee\" />\n");
+        sb.append("</pattern>\n");
+        mPatternDef = sb.toString().getBytes("UTF-8");
+        mParser = SAXParserFactory.newInstance().newSAXParser();
+    }
+
+    @Benchmark
+    public Map<String, Pattern> parse() throws Exception {
+        Map<String, Pattern> patternMap = new HashMap<String, Pattern>();
+        mParser.reset();
+        mParser.parse(new ByteArrayInputStream(mPatternDef), new PatternDefHandler(patternMap));
+        return patternMap;
+    }
+
+}
@@ -0,0 +1,91 @@
+/*Copyright (C) 2010-2013 Institute for Software Integrated Systems (ISIS)
+This software was developed by the Institute for Software Integrated
+Systems (ISIS) at Vanderbilt University, Tennessee, USA for the 
+Transformative Apps program under DARPA, Contract # HR011-10-C-0175.
+The United States Government has unlimited rights to this software. 
+The US government has the right to use, modify, reproduce, release, 
+perform, display, or disclose computer software or computer software 
+documentation in whole or in part, in any manner and for any 
+purpose whatsoever, and to have or authorize others to do so.
+ */
+
+package edu.vu.isis.crossweave.benchmarks;
+
+import edu.vu.isis.crossweave.PatternInstance;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.stringtemplate.v4.AutoIndentWriter;
+import org.stringtemplate.v4.ST;
+import org.stringtemplate.v4.STGroup;
+import org.stringtemplate.v4.STGroupFile;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rendering the report of a corpus with the example HTML template. The output
+ * is counted and dropped, so the score is template evaluation only.
+ *
+ * @author nick
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class RenderBenchmark {
+
+    private static final String TEMPLATE = "edu/vu/isis/crossweave/benchmarks/html_template.stg";
+
+    @Param({ "1000", "100000", "1000000" })
+    public int classes;
+
+    private List<PatternInstance> mInstances;
+    private STGroup mGroup;
+
+    @Setup
+    public void setUp() {
+        mInstances = new Model(classes).instantiateAndBind();
+        mGroup = new STGroupFile(TEMPLATE);
+    }
+
+    @Benchmark
+    public long render() throws IOException {
+        ST st = mGroup.getInstanceOf("reportPatternDescriptions");
+        st.add("patterns", mInstances);
+        CountingWriter out = new CountingWriter();
+        st.write(new AutoIndentWriter(out));
+        return out.mCount;
+    }
+
+    private static class CountingWriter extends Writer {
+
+        long mCount;
+
+        @Override
+        public void write(char[] cbuf, int off, int len) {
+            mCount += len;
+        }
+
+        @Override
+        public void write(String str, int off, int len) {
+            mCount += len;
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+}
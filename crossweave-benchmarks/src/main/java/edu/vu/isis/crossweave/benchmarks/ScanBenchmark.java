@@ -0,0 +1,96 @@
+/*Copyright (C) 2010-2013 Institute for Software Integrated Systems (ISIS)
+This software was developed by the Institute for Software Integrated
+Systems (ISIS) at Vanderbilt University, Tennessee, USA for the 
+Transformative Apps program under DARPA, Contract # HR011-10-C-0175.
+The United States Government has unlimited rights to this software. 
+The US government has the right to use, modify, reproduce, release, 
+perform, display, or disclose computer software or computer software 
+documentation in whole or in part, in any manner and for any 
+purpose whatsoever, and to have or authorize others to do so.
+ */
+
+package edu.vu.isis.crossweave.benchmarks;
+
+import edu.vu.isis.crossweave.LightweightSourceScanner;
+import edu.vu.isis.crossweave.QDoxSourceScanner;
+import edu.vu.isis.crossweave.SourceFacts;
+import edu.vu.isis.crossweave.SourceScanner;
+
+import com.thoughtworks.qdox.JavaDocBuilder;
+import com.thoughtworks.qdox.model.JavaSource;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Extracting the DesignPattern specs and roles of one source file. The spec
+ * and role scans are a single pass over each source, so extract measures that
+ * pass over an already loaded QDox model, and the scanner benchmarks measure
+ * loading plus extraction for each SourceScanner.
+ *
+ * @author nick
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ScanBenchmark {
+
+    /** Loaded sources are kept in memory, so only a sample of the corpus is */
+    private static final int SAMPLE = 1000;
+
+    /**
+     * QDox models of the first files of the corpus.
+     */
+    @State(Scope.Thread)
+    public static class LoadedSources {
+
+        private JavaSource[] mSources;
+        private int mNext;
+
+        @Setup
+        public void setUp(Corpus corpus) throws IOException {
+            List<File> files = corpus.getFiles();
+            mSources = new JavaSource[Math.min(SAMPLE, files.size())];
+            JavaDocBuilder builder = new JavaDocBuilder();
+            for (int i = 0; i < mSources.length; i++) {
+                mSources[i] = builder.addSource(files.get(i));
+            }
+        }
+
+        JavaSource next() {
+            JavaSource source = mSources[mNext];
+            mNext = (mNext + 1) % mSources.length;
+            return source;
+        }
+    }
+
+    private SourceScanner mQDox = new QDoxSourceScanner(true);
+    private SourceScanner mLightweight = new LightweightSourceScanner();
+
+    @Benchmark
+    public SourceFacts extract(LoadedSources sources) {
+        return QDoxSourceScanner.extractFacts(sources.next());
+    }
+
+    @Benchmark
+    public List<SourceFacts> qdoxScan(Corpus corpus) throws IOException {
+        return mQDox.scan(Collections.singletonList(corpus.next()));
+    }
+
+    @Benchmark
+    public List<SourceFacts> lightweightScan(Corpus corpus) throws IOException {
+        return mLightweight.scan(Collections.singletonList(corpus.next()));
+    }
+
+}
@@ -0,0 +1,68 @@
+#!/bin/bash
+# Compares the wall time of the command line runner, with and without an
+# AppCDS archive, with the analyze goal run by Maven, over the examples.
+# Every run does the full analysis; the up-to-date check is off. Build and
+# install from the repository root first, then:
+#
+#   crossweave-cli/measure-startup.sh [runs]
+#
+# JAVA picks the JVM of the runner (JDK 13 or later for the archive), MVN the
+# Maven command, e.g. MVN="mvn -o".
+set -e
+cd "$(dirname "$0")/.."
+
+RUNS=${1:-10}
+JAVA=${JAVA:-java}
+MVN=${MVN:-mvn}
+VERSION=0.1.0-SNAPSHOT
+JAR=crossweave-cli/target/crossweave.jar
+ARCHIVE=crossweave-cli/target/crossweave.jsa
+OUT=$PWD/crossweave-cli/target/startup
+EXAMPLES=$PWD/crossweave-examples
+ARGS="--source $EXAMPLES/src --patternDef $EXAMPLES/patterndef.xml --template html
+    --outputDir $OUT/cli --upToDateCheck=false --quiet"
+
+# The classes a run loads, dumped when it exits
+"$JAVA" -XX:ArchiveClassesAtExit=$ARCHIVE -jar $JAR $ARGS
+
+# A project without dependencies, so that only the plugin is resolved
+mkdir -p $OUT/mvn
+cat > $OUT/mvn/pom.xml <<EOF
+<project>
+  <modelVersion>4.0.0</modelVersion>
+  <groupId>edu.vu.isis.crossweave</groupId>
+  <artifactId>crossweave-startup</artifactId>
+  <version>$VERSION</version>
+  <build>
+    <plugins>
+      <plugin>
+        <groupId>edu.vu.isis.crossweave</groupId>
+        <artifactId>crossweave</artifactId>
+        <version>$VERSION</version>
+        <configuration>
+          <source>$EXAMPLES/src</source>
+          <patternDef>$EXAMPLES/patterndef.xml</patternDef>
+          <template>html</template>
+          <outputDir>$OUT/mvn/out</outputDir>
+        </configuration>
+      </plugin>
+    </plugins>
+  </build>
+</project>
+EOF
+
+measure() {
+    local label=$1
+    shift
+    local start=$(date +%s%N)
+    for ((i = 0; i < RUNS; i++)); do
+        "$@" > /dev/null
+    done
+    local end=$(date +%s%N)
+    echo "$label: $(((end - start) / RUNS / 1000000)) ms per run"
+}
+
+measure "cli" "$JAVA" -jar $JAR $ARGS
+measure "cli, AppCDS" "$JAVA" -XX:SharedArchiveFile=$ARCHIVE -jar $JAR $ARGS
+measure "mvn analyze" $MVN -q -f $OUT/mvn/pom.xml \
+    edu.vu.isis.crossweave:crossweave:$VERSION:analyze -Dcrossweave.upToDateCheck=false
@@ -0,0 +1,168 @@
+/*Copyright (C) 2010-2013 Institute for Software Integrated Systems (ISIS)
+This software was developed by the Institute for Software Integrated
+Systems (ISIS) at Vanderbilt University, Tennessee, USA for the 
+Transformative Apps program under DARPA, Contract # HR011-10-C-0175.
+The United States Government has unlimited rights to this software. 
+The US government has the right to use, modify, reproduce, release, 
+perform, display, or disclose computer software or computer software 
+documentation in whole or in part, in any manner and for any 
+purpose whatsoever, and to have or authorize others to do so.
+ */
+
+package edu.vu.isis.crossweave.cli;
+
+import org.slf4j.helpers.FormattingTuple;
+import org.slf4j.helpers.MarkerIgnoringBase;
+import org.slf4j.helpers.MessageFormatter;
+
+import java.io.PrintStream;
+
+/**
+ * Prints the messages of the analysis to the console the way Maven prints
+ * them, with the level in brackets. Debug and info messages go to standard
+ * output, warnings and errors to standard error. Trace messages are dropped.
+ * 
+ * @author nick
+ */
+class ConsoleLogger extends MarkerIgnoringBase {
+
+    private static final long serialVersionUID = 1L;
+
+    ConsoleLogger(String name) {
+        this.name = name;
+    }
+
+    public boolean isTraceEnabled() {
+        return false;
+    }
+
+    public void trace(String msg) {
+    }
+
+    public void trace(String format, Object arg) {
+    }
+
+    public void trace(String format, Object arg1, Object arg2) {
+    }
+
+    public void trace(String format, Object... arguments) {
+    }
+
+    public void trace(String msg, Throwable t) {
+    }
+
+    public boolean isDebugEnabled() {
+        return ConsoleLoggerFactory.getLevel() <= ConsoleLoggerFactory.DEBUG;
+    }
+
+    public void debug(String msg) {
+        log(ConsoleLoggerFactory.DEBUG, msg, null);
+    }
+
+    public void debug(String format, Object arg) {
+        log(ConsoleLoggerFactory.DEBUG, MessageFormatter.format(format, arg));
+    }
+
+    public void debug(String format, Object arg1, Object arg2) {
+        log(ConsoleLoggerFactory.DEBUG, MessageFormatter.format(format, arg1, arg2));
+    }
+
+    public void debug(String format, Object... arguments) {
+        log(ConsoleLoggerFactory.DEBUG, MessageFormatter.arrayFormat(format, arguments));
+    }
+
+    public void debug(String msg, Throwable t) {
+        log(ConsoleLoggerFactory.DEBUG, msg, t);
+    }
+
+    public boolean isInfoEnabled() {
+        return ConsoleLoggerFactory.getLevel() <= ConsoleLoggerFactory.INFO;
+    }
+
+    public void info(String msg) {
+        log(ConsoleLoggerFactory.INFO, msg, null);
+    }
+
+    public void info(String format, Object arg) {
+        log(ConsoleLoggerFactory.INFO, MessageFormatter.format(format, arg));
+    }
+
+    public void info(String format, Object arg1, Object arg2) {
+        log(ConsoleLoggerFactory.INFO, MessageFormatter.format(format, arg1, arg2));
+    }
+
+    public void info(String format, Object... arguments) {
+        log(ConsoleLoggerFactory.INFO, MessageFormatter.arrayFormat(format, arguments));
+    }
+
+    public void info(String msg, Throwable t) {
+        log(ConsoleLoggerFactory.INFO, msg, t);
+    }
+
+    public boolean isWarnEnabled() {
+        return ConsoleLoggerFactory.getLevel() <= ConsoleLoggerFactory.WARN;
+    }
+
+    public void warn(String msg) {
+        log(ConsoleLoggerFactory.WARN, msg, null);
+    }
+
+    public void warn(String format, Object arg) {
+        log(ConsoleLoggerFactory.WARN, MessageFormatter.format(format, arg));
+    }
+
+    public void warn(String format, Object arg1, Object arg2) {
+        log(ConsoleLoggerFactory.WARN, MessageFormatter.format(format, arg1, arg2));
+    }
+
+    public void warn(String format, Object... arguments) {
+        log(ConsoleLoggerFactory.WARN, MessageFormatter.arrayFormat(format, arguments));
+    }
+
+    public void warn(String msg, Throwable t) {
+        log(ConsoleLoggerFactory.WARN, msg, t);
+    }
+
+    public boolean isErrorEnabled() {
+        return true;
+    }
+
+    public void error(String msg) {
+        log(ConsoleLoggerFactory.ERROR, msg, null);
+    }
+
+    public void error(String format, Object arg) {
+        log(ConsoleLoggerFactory.ERROR, MessageFormatter.format(format, arg));
+    }
+
+    public void error(String format, Object arg1, Object arg2) {
+        log(ConsoleLoggerFactory.ERROR, MessageFormatter.format(format, arg1, arg2));
+    }
+
+    public void error(String format, Object... arguments) {
+        log(ConsoleLoggerFactory.ERROR, MessageFormatter.arrayFormat(format, arguments));
+    }
+
+    public void error(String msg, Throwable t) {
+        log(ConsoleLoggerFactory.ERROR, msg, t);
+    }
+
+    private void log(int level, FormattingTuple tuple) {
+        log(level, tuple.getMessage(), tuple.getThrowable());
+    }
+
+    private void log(int level, String msg, Throwable t) {
+        if (level < ConsoleLoggerFactory.getLevel()) {
+            return;
+        }
+        PrintStream out = level >= ConsoleLoggerFactory.WARN ? System.err : System.out;
+        out.println(ConsoleLoggerFactory.getLabel(level) + msg);
+        if (t != null) {
+            if (isDebugEnabled()) {
+                t.printStackTrace(out);
+            } else {
+                out.println(ConsoleLoggerFactory.getLabel(level) + t);
+            }
+        }
+    }
+}
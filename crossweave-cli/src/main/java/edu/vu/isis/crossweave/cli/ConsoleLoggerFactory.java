@@ -0,0 +1,74 @@
+/*Copyright (C) 2010-2013 Institute for Software Integrated Systems (ISIS)
+This software was developed by the Institute for Software Integrated
+Systems (ISIS) at Vanderbilt University, Tennessee, USA for the 
+Transformative Apps program under DARPA, Contract # HR011-10-C-0175.
+The United States Government has unlimited rights to this software. 
+The US government has the right to use, modify, reproduce, release, 
+perform, display, or disclose computer software or computer software 
+documentation in whole or in part, in any manner and for any 
+purpose whatsoever, and to have or authorize others to do so.
+ */
+
+package edu.vu.isis.crossweave.cli;
+
+import org.slf4j.ILoggerFactory;
+import org.slf4j.Logger;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Creates the {@link ConsoleLogger}s of the command line runner and holds the
+ * level they all log at. The level can be changed after the loggers were
+ * created, which happens when the classes of the analysis are loaded.
+ * 
+ * @author nick
+ */
+public class ConsoleLoggerFactory implements ILoggerFactory {
+
+    static final int DEBUG = 0;
+
+    static final int INFO = 1;
+
+    static final int WARN = 2;
+
+    static final int ERROR = 3;
+
+    private static final String[] LABELS = {
+            "[DEBUG] ", "[INFO] ", "[WARNING] ", "[ERROR] "
+    };
+
+    private static volatile int sLevel = INFO;
+
+    private final ConcurrentMap<String, Logger> mLoggers = new ConcurrentHashMap<String, Logger>();
+
+    /**
+     * @return the lowest level that is printed
+     */
+    static int getLevel() {
+        return sLevel;
+    }
+
+    /**
+     * @param level the lowest level to print
+     */
+    static void setLevel(int level) {
+        sLevel = level;
+    }
+
+    static String getLabel(int level) {
+        return LABELS[level];
+    }
+
+    public Logger getLogger(String name) {
+        Logger logger = mLoggers.get(name);
+        if (logger == null) {
+            Logger created = new ConsoleLogger(name);
+            logger = mLoggers.putIfAbsent(name, created);
+            if (logger == null) {
+                logger = created;
+            }
+        }
+        return logger;
+    }
+}
@@ -0,0 +1,241 @@
+/*Copyright (C) 2010-2013 Institute for Software Integrated Systems (ISIS)
+This software was developed by the Institute for Software Integrated
+Systems (ISIS) at Vanderbilt University, Tennessee, USA for the 
+Transformative Apps program under DARPA, Contract # HR011-10-C-0175.
+The United States Government has unlimited rights to this software. 
+The US government has the right to use, modify, reproduce, release, 
+perform, display, or disclose computer software or computer software 
+documentation in whole or in part, in any manner and for any 
+purpose whatsoever, and to have or authorize others to do so.
+ */
+
+package edu.vu.isis.crossweave.cli;
+
+import edu.vu.isis.crossweave.Analysis;
+import edu.vu.isis.crossweave.AnalysisException;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs the analysis of the analyze goal without Maven. The options are named
+ * after the parameters of the goal:
+ * <pre>
+ * java -jar crossweave.jar --source src/main/java --patternDef patterndef.xml \
+ *     --template html --outputDir target/crossweave
+ * </pre>
+ * Starting Maven and resolving the plugin takes several times longer than
+ * the analysis of a small project, so editors and pre-commit hooks should run
+ * this instead. Files that are not configured go into the output directory.
+ * Exits with 0 on success, 1 if the analysis failed and 2 on bad options.
+ * 
+ * @author nick
+ */
+public class CrossWeaveCli {
+
+    static final int EXIT_OK = 0;
+
+    static final int EXIT_FAILED = 1;
+
+    static final int EXIT_USAGE = 2;
+
+    private static final String USAGE =
+            "Usage: java -jar crossweave.jar --patternDef FILE [options]\n"
+            + "\n"
+            + "  --source DIR            Java sources to parse (src/main/java)\n"
+            + "  --patternDef FILE       design pattern definitions (required)\n"
+            + "  --template NAME|FILE    plaintext, html or a template group file\n"
+            + "  --outputDir DIR         directory of the report (target)\n"
+            + "  --outputFile NAME       name of the report (PatternStructure)\n"
+            + "  --outputEncoding NAME   encoding of the report (UTF-8)\n"
+            + "  --sharded               one file per pattern instance\n"
+            + "  --site                  a static HTML site with a search index\n"
+            + "  --pageSize N            instances per page of the site (100)\n"
+            + "  --siteTemplate NAME     site or a template group file\n"
+            + "  --scanner NAME          qdox or lightweight (qdox)\n"
+            + "  --threads N             threads that parse sources (1)\n"
+            + "  --prefilter=false       parse files without DesignPattern too\n"
+            + "  --lowMemory             parse one file at a time with qdox\n"
+            + "  --incremental           only reparse changed files\n"
+            + "  --cacheFile FILE        scan cache of incremental runs\n"
+            + "  --sourceJar FILE        a source jar to scan as well, repeatable\n"
+            + "  --sourceJarCache FILE   cached facts of the source jars\n"
+            + "  --processorFacts FILE   facts of the annotation processor\n"
+            + "  --indexFile FILE        binary pattern index\n"
+            + "  --metricsFile FILE      phase times and counters as JSON\n"
+            + "  --diagnosticsFile FILE  problems found in the annotations as JSON\n"
+            + "  --flightRecording FILE  record the run with Java Flight Recorder\n"
+            + "  --upToDateCheck=false   analyze even if nothing changed\n"
+            + "  --manifestFile FILE     fingerprint of the last run\n"
+            + "  --debug, --quiet        print debug messages, or warnings only\n"
+            + "  --version, --help\n"
+            + "\n"
+            + "Values follow the option or an equals sign: --threads 4, --threads=4";
+
+    public static void main(String[] args) {
+        System.exit(run(args));
+    }
+
+    /**
+     * Runs the analysis the arguments describe.
+     * 
+     * @param args the command line
+     * @return the exit code
+     */
+    static int run(String[] args) {
+        Analysis analysis;
+        try {
+            analysis = parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            return EXIT_USAGE;
+        }
+        if (analysis == null) {
+            return EXIT_OK;
+        }
+        try {
+            analysis.run();
+        } catch (AnalysisException e) {
+            System.err.println("[ERROR] " + e.getMessage());
+            for (Throwable cause = e.getCause(); cause != null; cause = cause.getCause()) {
+                System.err.println("[ERROR] Caused by: " + cause);
+            }
+            return EXIT_FAILED;
+        }
+        return EXIT_OK;
+    }
+
+    /**
+     * Configures an analysis from the command line.
+     * 
+     * @param args the command line
+     * @return the analysis, or null if only the usage or version was asked for
+     * @throws IllegalArgumentException if an option is unknown or lacks its
+     *             value
+     */
+    static Analysis parse(String[] args) {
+        Analysis analysis = new Analysis().setVersion(getVersion());
+        File source = new File("src/main/java");
+        File outputDir = new File("target");
+        File patternDef = null;
+        List<File> sourceJars = new ArrayList<File>();
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (!arg.startsWith("--")) {
+                throw new IllegalArgumentException("Unexpected argument " + arg);
+            }
+            String name = arg.substring(2);
+            String value = null;
+            int equals = name.indexOf('=');
+            if (equals >= 0) {
+                value = name.substring(equals + 1);
+                name = name.substring(0, equals);
+            }
+
+            if (name.equals("help")) {
+                System.out.println(USAGE);
+                return null;
+            } else if (name.equals("version")) {
+                System.out.println("crossweave " + getVersion());
+                return null;
+            } else if (name.equals("debug")) {
+                ConsoleLoggerFactory.setLevel(ConsoleLoggerFactory.DEBUG);
+            } else if (name.equals("quiet")) {
+                ConsoleLoggerFactory.setLevel(ConsoleLoggerFactory.WARN);
+            } else if (name.equals("sharded")) {
+                analysis.setSharded(toBoolean(name, value));
+            } else if (name.equals("site")) {
+                analysis.setSite(toBoolean(name, value));
+            } else if (name.equals("prefilter")) {
+                analysis.setPrefilter(toBoolean(name, value));
+            } else if (name.equals("lowMemory")) {
+                analysis.setLowMemory(toBoolean(name, value));
+            } else if (name.equals("incremental")) {
+                analysis.setIncremental(toBoolean(name, value));
+            } else if (name.equals("upToDateCheck")) {
+                analysis.setUpToDateCheck(toBoolean(name, value));
+            } else {
+                if (value == null) {
+                    if (i + 1 == args.length) {
+                        throw new IllegalArgumentException("Missing value of " + arg);
+                    }
+                    value = args[++i];
+                }
+                if (name.equals("source")) {
+                    source = new File(value);
+                } else if (name.equals("patternDef")) {
+                    patternDef = new File(value);
+                } else if (name.equals("template")) {
+                    analysis.setTemplate(value);
+                } else if (name.equals("outputDir")) {
+                    outputDir = new File(value);
+                } else if (name.equals("outputFile")) {
+                    analysis.setOutputFile(value);
+                } else if (name.equals("outputEncoding")) {
+                    analysis.setOutputEncoding(value);
+                } else if (name.equals("pageSize")) {
+                    analysis.setPageSize(toInt(name, value));
+                } else if (name.equals("siteTemplate")) {
+                    analysis.setSiteTemplate(value);
+                } else if (name.equals("scanner")) {
+                    analysis.setScanner(value);
+                } else if (name.equals("threads")) {
+                    analysis.setThreads(toInt(name, value));
+                } else if (name.equals("cacheFile")) {
+                    analysis.setCacheFile(new File(value));
+                } else if (name.equals("sourceJar")) {
+                    sourceJars.add(new File(value));
+                } else if (name.equals("sourceJarCache")) {
+                    analysis.setSourceJarCache(new File(value));
+                } else if (name.equals("processorFacts")) {
+                    analysis.setProcessorFacts(new File(value));
+                } else if (name.equals("indexFile")) {
+                    analysis.setIndexFile(new File(value));
+                } else if (name.equals("metricsFile")) {
+                    analysis.setMetricsFile(new File(value));
+                } else if (name.equals("diagnosticsFile")) {
+                    analysis.setDiagnosticsFile(new File(value));
+                } else if (name.equals("flightRecording")) {
+                    analysis.setFlightRecording(new File(value));
+                } else if (name.equals("manifestFile")) {
+                    analysis.setManifestFile(new File(value));
+                } else {
+                    throw new IllegalArgumentException("Unknown option " + arg);
+                }
+            }
+        }
+        if (patternDef == null) {
+            throw new IllegalArgumentException("Missing --patternDef");
+        }
+        return analysis.setSource(source).setPatternDef(patternDef).setOutputDir(outputDir)
+                .setSourceJars(sourceJars);
+    }
+
+    private static boolean toBoolean(String name, String value) {
+        if (value == null || value.equals("true")) {
+            return true;
+        } else if (value.equals("false")) {
+            return false;
+        }
+        throw new IllegalArgumentException("--" + name + " takes true or false, not " + value);
+    }
+
+    private static int toInt(String name, String value) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("--" + name + " takes a number, not " + value);
+        }
+    }
+
+    /**
+     * @return the version in the manifest of the runner jar, or "dev" when the
+     *         classes are not run from the jar
+     */
+    private static String getVersion() {
+        String version = CrossWeaveCli.class.getPackage().getImplementationVersion();
+        return version == null ? "dev" : version;
+    }
+}
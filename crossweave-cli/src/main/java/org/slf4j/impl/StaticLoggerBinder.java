@@ -0,0 +1,49 @@
+/*Copyright (C) 2010-2013 Institute for Software Integrated Systems (ISIS)
+This software was developed by the Institute for Software Integrated
+Systems (ISIS) at Vanderbilt University, Tennessee, USA for the 
+Transformative Apps program under DARPA, Contract # HR011-10-C-0175.
+The United States Government has unlimited rights to this software. 
+The US government has the right to use, modify, reproduce, release, 
+perform, display, or disclose computer software or computer software 
+documentation in whole or in part, in any manner and for any 
+purpose whatsoever, and to have or authorize others to do so.
+ */
+
+package org.slf4j.impl;
+
+import edu.vu.isis.crossweave.cli.ConsoleLoggerFactory;
+
+import org.slf4j.ILoggerFactory;
+import org.slf4j.spi.LoggerFactoryBinder;
+
+/**
+ * Binds slf4j to the console loggers of the command line runner. The runner
+ * ships without a logging framework, which would only add to its start-up
+ * time.
+ * 
+ * @author nick
+ */
+public class StaticLoggerBinder implements LoggerFactoryBinder {
+
+    /** The slf4j API version this binding is compiled against */
+    public static String REQUESTED_API_VERSION = "1.6.99";
+
+    private static final StaticLoggerBinder SINGLETON = new StaticLoggerBinder();
+
+    private final ILoggerFactory mLoggerFactory = new ConsoleLoggerFactory();
+
+    private StaticLoggerBinder() {
+    }
+
+    public static StaticLoggerBinder getSingleton() {
+        return SINGLETON;
+    }
+
+    public ILoggerFactory getLoggerFactory() {
+        return mLoggerFactory;
+    }
+
+    public String getLoggerFactoryClassStr() {
+        return ConsoleLoggerFactory.class.getName();
+    }
+}
@@ -0,0 +1,70 @@
+package edu.vu.isis.crossweave.cli;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+
+public class CrossWeaveCliTest extends TestCase {
+
+    private File mExamples = new File("../crossweave-examples");
+
+    private File mDir = new File("target/test-cli");
+
+    @Override
+    protected void setUp() throws Exception {
+        delete(mDir);
+    }
+
+    public void testAnalyzeExamples() throws Exception {
+        String[] args = {
+                "--source", new File(mExamples, "src/main/java").getPath(),
+                "--patternDef=" + new File(mExamples, "patterndef.xml").getPath(),
+                "--template", "html",
+                "--outputDir", mDir.getPath(),
+                "--outputFile", "report.html",
+                "--scanner=lightweight",
+                "--metricsFile", new File(mDir, "metrics.json").getPath(),
+                "--quiet"
+        };
+        assertEquals(CrossWeaveCli.EXIT_OK, CrossWeaveCli.run(args));
+        File report = new File(mDir, "report.html");
+        assertTrue(report.isFile());
+        assertTrue(new File(mDir, "crossweave-pattern-index").isFile());
+        assertTrue(new File(mDir, "crossweave-diagnostics.json").isFile());
+        assertTrue(new File(mDir, "metrics.json").isFile());
+
+        // Nothing changed, so the second run skips the analysis
+        new File(mDir, "metrics.json").delete();
+        assertEquals(CrossWeaveCli.EXIT_OK, CrossWeaveCli.run(args));
+        assertFalse(new File(mDir, "metrics.json").exists());
+    }
+
+    public void testBadOptions() {
+        assertEquals(CrossWeaveCli.EXIT_USAGE, CrossWeaveCli.run(new String[] { "--source" }));
+        assertEquals(CrossWeaveCli.EXIT_USAGE, CrossWeaveCli.run(new String[] { "--nope", "x" }));
+        assertEquals(CrossWeaveCli.EXIT_USAGE, CrossWeaveCli.run(new String[] { "--site=yes" }));
+        assertEquals(CrossWeaveCli.EXIT_USAGE, CrossWeaveCli.run(new String[] { "--threads=x" }));
+        assertEquals(CrossWeaveCli.EXIT_USAGE,
+                CrossWeaveCli.run(new String[] { "--source", "src" }));
+        assertEquals(CrossWeaveCli.EXIT_OK, CrossWeaveCli.run(new String[] { "--help" }));
+    }
+
+    public void testFailedAnalysis() {
+        String[] args = {
+                "--patternDef", new File(mDir, "missing.xml").getPath(),
+                "--outputDir", mDir.getPath(),
+                "--quiet"
+        };
+        assertEquals(CrossWeaveCli.EXIT_FAILED, CrossWeaveCli.run(args));
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
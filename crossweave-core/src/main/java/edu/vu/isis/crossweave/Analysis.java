@@ -0,0 +1,1125 @@
+/*Copyright (C) 2010-2013 Institute for Software Integrated Systems (ISIS)
+This software was developed by the Institute for Software Integrated
+Systems (ISIS) at Vanderbilt University, Tennessee, USA for the 
+Transformative Apps program under DARPA, Contract # HR011-10-C-0175.
+The United States Government has unlimited rights to this software. 
+The US government has the right to use, modify, reproduce, release, 
+perform, display, or disclose computer software or computer software 
+documentation in whole or in part, in any manner and for any 
+purpose whatsoever, and to have or authorize others to do so.
+ */
+package edu.vu.isis.crossweave;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.stringtemplate.v4.AutoIndentWriter;
+import org.stringtemplate.v4.ST;
+import org.stringtemplate.v4.STGroup;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+
+/**
+ * Analyzes project source code and writes a pattern description file for the
+ * patterns present in the code, plus the binary pattern index. The settings
+ * are those of the analyze goal, which configures an Analysis from its
+ * parameters; the command line runner configures one from its arguments.
+ * Nothing here depends on Maven.
+ * <p>
+ * Files that are not configured go into the output directory. An analysis is
+ * configured once and run once.
+ * 
+ * @author nick
+ */
+public class Analysis {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(Analysis.class);
+
+    /**
+     * Fully qualified name of the design pattern specification annotation
+     * (multiple version)
+     */
+    public static final String PATTERN_SPECS_ANN_FQN = "edu.vu.isis.crossweave.annotation.DesignPattern$Specifications";
+
+    /**
+     * Fully qualified name of the design pattern specification annotation
+     * (single version)
+     */
+    public static final String PATTERN_SPEC_ANN_FQN = "edu.vu.isis.crossweave.annotation.DesignPattern$Specification";
+
+    /**
+     * Fully qualified name of the design pattern role annotation (multiple
+     * version)
+     */
+    public static final String PATTERN_ROLES_ANN_FQN = "edu.vu.isis.crossweave.annotation.DesignPattern$Roles";
+
+    /**
+     * Fully qualified name of the design pattern role annotation (single
+     * version)
+     */
+    public static final String PATTERN_ROLE_ANN_FQN = "edu.vu.isis.crossweave.annotation.DesignPattern$Role";
+
+    /** Name of the report if none is configured */
+    public static final String DEFAULT_OUTPUT_FILE = "PatternStructure";
+
+    /** Encoding of the report if none is configured */
+    public static final String DEFAULT_OUTPUT_ENCODING = "UTF-8";
+
+    /** Size of the buffer between the template writer and the report file */
+    private static final int OUTPUT_BUFFER_SIZE = 64 * 1024;
+
+    private File mSource;
+    private File mPatternDef;
+    private String mTemplate = TemplateRegistry.DEFAULT_TEMPLATE;
+    private File mOutputDir;
+    private String mOutputFile;
+    private String mOutputEncoding;
+    private boolean mSharded;
+    private boolean mSite;
+    private int mPageSize = 100;
+    private String mSiteTemplate = SiteWriter.DEFAULT_TEMPLATE;
+    private boolean mIncremental;
+    private File mCacheFile;
+    private int mThreads = 1;
+    private boolean mPrefilter = true;
+    private String mScanner = "qdox";
+    private boolean mLowMemory;
+    private File mIndexFile;
+    private File mProcessorFacts;
+    private File mMetricsFile;
+    private File mDiagnosticsFile;
+    private File mFlightRecording;
+    private boolean mUpToDateCheck = true;
+    private File mManifestFile;
+    private String mVersion;
+    private List<File> mSourceJars = Collections.emptyList();
+    private File mSourceJarCache;
+    private SourceJarResolver mSourceJarResolver;
+
+    private Set<File> mWritten = new LinkedHashSet<File>();
+
+    /**
+     * @param source the Java sources to parse
+     * @return this analysis
+     */
+    public Analysis setSource(File source) {
+        mSource = source;
+        return this;
+    }
+
+    /**
+     * @param patternDef the file containing the design pattern definitions
+     * @return this analysis
+     */
+    public Analysis setPatternDef(File patternDef) {
+        mPatternDef = patternDef;
+        return this;
+    }
+
+    /**
+     * @param template the StringTemplate group file to render the report
+     *            with, or the name of a built-in template
+     * @return this analysis
+     */
+    public Analysis setTemplate(String template) {
+        mTemplate = template;
+        return this;
+    }
+
+    /**
+     * @param outputDir the directory for the report and the files that are
+     *            not configured
+     * @return this analysis
+     */
+    public Analysis setOutputDir(File outputDir) {
+        mOutputDir = outputDir;
+        return this;
+    }
+
+    /**
+     * @param outputFile the name of the report in the output directory
+     * @return this analysis
+     */
+    public Analysis setOutputFile(String outputFile) {
+        mOutputFile = outputFile;
+        return this;
+    }
+
+    /**
+     * @param outputEncoding the character encoding of the report
+     * @return this analysis
+     */
+    public Analysis setOutputEncoding(String outputEncoding) {
+        mOutputEncoding = outputEncoding;
+        return this;
+    }
+
+    /**
+     * @param sharded write one file per pattern instance, see
+     *            {@link ShardedReportWriter}
+     * @return this analysis
+     */
+    public Analysis setSharded(boolean sharded) {
+        mSharded = sharded;
+        return this;
+    }
+
+    /**
+     * @param site write the report as a static HTML site, see
+     *            {@link SiteWriter}; takes precedence over sharded
+     * @return this analysis
+     */
+    public Analysis setSite(boolean site) {
+        mSite = site;
+        return this;
+    }
+
+    /**
+     * @param pageSize the largest number of pattern instances on a page of
+     *            the site
+     * @return this analysis
+     */
+    public Analysis setPageSize(int pageSize) {
+        mPageSize = pageSize;
+        return this;
+    }
+
+    /**
+     * @param siteTemplate the StringTemplate group file or built-in template
+     *            to render the site with
+     * @return this analysis
+     */
+    public Analysis setSiteTemplate(String siteTemplate) {
+        mSiteTemplate = siteTemplate;
+        return this;
+    }
+
+    /**
+     * @param incremental only reparse the sources that changed since the last
+     *            run
+     * @return this analysis
+     */
+    public Analysis setIncremental(boolean incremental) {
+        mIncremental = incremental;
+        return this;
+    }
+
+    /**
+     * @param cacheFile the file in which the incremental scan cache is kept
+     * @return this analysis
+     */
+    public Analysis setCacheFile(File cacheFile) {
+        mCacheFile = cacheFile;
+        return this;
+    }
+
+    /**
+     * @param threads the number of threads used to parse sources
+     * @return this analysis
+     */
+    public Analysis setThreads(int threads) {
+        mThreads = threads;
+        return this;
+    }
+
+    /**
+     * @param prefilter skip source files that do not mention DesignPattern
+     * @return this analysis
+     */
+    public Analysis setPrefilter(boolean prefilter) {
+        mPrefilter = prefilter;
+        return this;
+    }
+
+    /**
+     * @param scanner the scanner that extracts the annotations, qdox or
+     *            lightweight
+     * @return this analysis
+     */
+    public Analysis setScanner(String scanner) {
+        mScanner = scanner;
+        return this;
+    }
+
+    /**
+     * @param lowMemory parse the sources one file at a time with qdox
+     * @return this analysis
+     */
+    public Analysis setLowMemory(boolean lowMemory) {
+        mLowMemory = lowMemory;
+        return this;
+    }
+
+    /**
+     * @param indexFile the binary pattern index to write
+     * @return this analysis
+     */
+    public Analysis setIndexFile(File indexFile) {
+        mIndexFile = indexFile;
+        return this;
+    }
+
+    /**
+     * @param processorFacts the pattern facts written by the annotation
+     *            processor, to read instead of parsing sources
+     * @return this analysis
+     */
+    public Analysis setProcessorFacts(File processorFacts) {
+        mProcessorFacts = processorFacts;
+        return this;
+    }
+
+    /**
+     * @param metricsFile the file to write the metrics of the analysis to as
+     *            JSON, or null
+     * @return this analysis
+     */
+    public Analysis setMetricsFile(File metricsFile) {
+        mMetricsFile = metricsFile;
+        return this;
+    }
+
+    /**
+     * @param diagnosticsFile the file to write the problems found while
+     *            building the pattern instances to as JSON
+     * @return this analysis
+     */
+    public Analysis setDiagnosticsFile(File diagnosticsFile) {
+        mDiagnosticsFile = diagnosticsFile;
+        return this;
+    }
+
+    /**
+     * @param flightRecording the file to record the analysis into with Java
+     *            Flight Recorder, or null
+     * @return this analysis
+     */
+    public Analysis setFlightRecording(File flightRecording) {
+        mFlightRecording = flightRecording;
+        return this;
+    }
+
+    /**
+     * @param upToDateCheck skip the analysis if its inputs and outputs did not
+     *            change since the last run
+     * @return this analysis
+     */
+    public Analysis setUpToDateCheck(boolean upToDateCheck) {
+        mUpToDateCheck = upToDateCheck;
+        return this;
+    }
+
+    /**
+     * @param manifestFile the file in which the fingerprint of the last run is
+     *            kept
+     * @return this analysis
+     */
+    public Analysis setManifestFile(File manifestFile) {
+        mManifestFile = manifestFile;
+        return this;
+    }
+
+    /**
+     * @param version the version of the tool running the analysis, part of
+     *            the fingerprint of the inputs
+     * @return this analysis
+     */
+    public Analysis setVersion(String version) {
+        mVersion = version;
+        return this;
+    }
+
+    /**
+     * @param sourceJars further source jars to scan after the sources
+     * @return this analysis
+     */
+    public Analysis setSourceJars(List<File> sourceJars) {
+        mSourceJars = sourceJars;
+        return this;
+    }
+
+    /**
+     * @param sourceJarResolver looks up more source jars to scan, only if the
+     *            analysis runs
+     * @return this analysis
+     */
+    public Analysis setSourceJarResolver(SourceJarResolver sourceJarResolver) {
+        mSourceJarResolver = sourceJarResolver;
+        return this;
+    }
+
+    /**
+     * @param sourceJarCache the file in which the facts of each source jar are
+     *            cached
+     * @return this analysis
+     */
+    public Analysis setSourceJarCache(File sourceJarCache) {
+        mSourceJarCache = sourceJarCache;
+        return this;
+    }
+
+    /**
+     * @return the root of the sources to parse
+     */
+    public File getSource() {
+        return mSource;
+    }
+
+    /**
+     * @return the file containing the design pattern definitions
+     */
+    public File getPatternDef() {
+        return mPatternDef;
+    }
+
+    /**
+     * @return true if files without DesignPattern annotations are skipped
+     */
+    public boolean isPrefilter() {
+        return mPrefilter;
+    }
+
+    /**
+     * @return the files and directories the analysis wrote to so far
+     */
+    public Collection<File> getWrittenFiles() {
+        return Collections.unmodifiableSet(mWritten);
+    }
+
+    /**
+     * Runs the analysis, in a flight recording if one is configured.
+     * 
+     * @throws AnalysisException if the analysis failed
+     */
+    public void run() throws AnalysisException {
+        AnalysisEvents.FlightRecording recording = startRecording();
+        try {
+            analyze();
+        } finally {
+            stopRecording(recording);
+        }
+    }
+
+    /**
+     * Starts the configured flight recording.
+     * 
+     * @return the recording, or null if none is configured or it could not
+     *         be started
+     */
+    public AnalysisEvents.FlightRecording startRecording() {
+        if (mFlightRecording == null) {
+            return null;
+        }
+        try {
+            return AnalysisEvents.get().startRecording(mFlightRecording);
+        } catch (IOException e) {
+            LOGGER.warn("Could not start flight recording: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Stops a recording and writes it to its file.
+     * 
+     * @param recording the recording started by {@link #startRecording()}, or
+     *            null
+     */
+    public void stopRecording(AnalysisEvents.FlightRecording recording) {
+        if (recording != null) {
+            try {
+                recording.stop();
+                LOGGER.info("Wrote flight recording " + mFlightRecording);
+            } catch (IOException e) {
+                LOGGER.warn("Could not write flight recording " + mFlightRecording, e);
+            }
+        }
+    }
+
+    /**
+     * Runs the analysis without flight recording, unless the up-to-date check
+     * finds that nothing changed since the last run.
+     * 
+     * @throws AnalysisException if the analysis failed
+     */
+    public void analyze() throws AnalysisException {
+        List<File> jars = getSourceJars();
+        InputManifest inputs = null;
+        if (mUpToDateCheck) {
+            inputs = fingerprintInputs(jars);
+            InputManifest current = new InputManifest(inputs);
+            fingerprintOutputs(current);
+            String change = current.describeChange(InputManifest.load(getManifestFile()));
+            if (change == null) {
+                LOGGER.info("Skipping analysis, the " + current.size()
+                        + " inputs and outputs are unchanged since the last run");
+                return;
+            }
+            LOGGER.info("Analyzing because " + change);
+        }
+        if (mSourceJarResolver != null && mProcessorFacts == null) {
+            jars.addAll(mSourceJarResolver.resolve());
+        }
+
+        AnalysisMetrics metrics = new AnalysisMetrics();
+        metrics.startPhase("patternDef");
+        Map<String, Pattern> patternMap = loadPatternDef();
+
+        Map<String, PatternInstance> instanceMap = new HashMap<String, PatternInstance>();
+        Diagnostics diagnostics = new Diagnostics();
+        if (mProcessorFacts != null) {
+            List<SourceFacts> facts = readProcessorFacts(metrics);
+            metrics.startPhase("model");
+            applyFacts(facts, patternMap, instanceMap, metrics, diagnostics);
+        } else {
+            scanSources(patternMap, instanceMap, jars, metrics, diagnostics);
+        }
+
+        LOGGER.info("Built " + instanceMap.size() + " pattern instances");
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Keys in instanceMap: " + instanceMap.keySet());
+        }
+
+        writeOutput(instanceMap.values(), metrics);
+        writeDiagnostics(diagnostics);
+
+        metrics.finish();
+        LOGGER.info(metrics.getSummary());
+        writeMetrics(metrics);
+
+        if (inputs != null) {
+            fingerprintOutputs(inputs);
+            try {
+                inputs.save(getManifestFile());
+            } catch (IOException e) {
+                LOGGER.warn("Could not write input manifest " + mManifestFile, e);
+            }
+        }
+    }
+
+    /**
+     * @return the configured source jars that exist
+     */
+    private List<File> getSourceJars() {
+        List<File> jars = new ArrayList<File>();
+        for (File jar : mSourceJars) {
+            if (jar.isFile()) {
+                jars.add(jar);
+            } else {
+                LOGGER.warn("Source jar " + jar + " does not exist");
+            }
+        }
+        return jars;
+    }
+
+    /**
+     * Records the settings and input files of a run. Source files are only
+     * listed and stat'ed, not read.
+     */
+    private InputManifest fingerprintInputs(List<File> jars) throws AnalysisException {
+        applyOutputDefaults();
+        InputManifest manifest = new InputManifest();
+        manifest.addValue("pluginVersion", mVersion);
+        manifest.addValue("template", mTemplate);
+        manifest.addValue("outputFile", mOutputFile);
+        manifest.addValue("outputEncoding", mOutputEncoding);
+        manifest.addValue("sharded", String.valueOf(mSharded));
+        manifest.addValue("site", String.valueOf(mSite));
+        manifest.addValue("pageSize", String.valueOf(mPageSize));
+        manifest.addValue("siteTemplate", mSiteTemplate);
+        manifest.addValue("scanner", mScanner);
+        manifest.addValue("prefilter", String.valueOf(mPrefilter));
+        manifest.addValue("lowMemory", String.valueOf(mLowMemory));
+        manifest.addValue("metricsFile", String.valueOf(mMetricsFile));
+        manifest.addValue("diagnosticsFile", String.valueOf(mDiagnosticsFile));
+        manifest.addValue("flightRecording", String.valueOf(mFlightRecording));
+        try {
+            manifest.addContent("patternDef", mPatternDef);
+            File templateFile = mTemplate == null ? null : new File(mTemplate);
+            if (templateFile != null && templateFile.isFile()) {
+                manifest.addContent("template", templateFile);
+            }
+            File siteTemplateFile = mSiteTemplate == null ? null : new File(mSiteTemplate);
+            if (mSite && siteTemplateFile != null && siteTemplateFile.isFile()) {
+                manifest.addContent("siteTemplate", siteTemplateFile);
+            }
+        } catch (IOException e) {
+            throw new AnalysisException("Could not read pattern definitions or template", e);
+        }
+        if (mProcessorFacts != null) {
+            manifest.addFile("processorFacts", mProcessorFacts);
+        } else {
+            List<File> files = new ArrayList<File>();
+            collectSourceFiles(mSource, files);
+            for (File file : files) {
+                manifest.addFile("source", file);
+            }
+            for (File jar : jars) {
+                manifest.addFile("sourceJar", jar);
+            }
+            if (mSourceJarResolver != null) {
+                for (File input : mSourceJarResolver.getInputs()) {
+                    manifest.addFile("sourceJarInput", input);
+                }
+            }
+        }
+        return manifest;
+    }
+
+    /**
+     * Records the pattern index, the report and the diagnostics file. The
+     * shards of a sharded report and the pages of a site are covered by the
+     * index, which changes with them. The metrics describe a run, so a skipped
+     * run does not write them again.
+     */
+    private void fingerprintOutputs(InputManifest manifest) {
+        manifest.addFile("output", mIndexFile);
+        if (!mSharded && !mSite) {
+            manifest.addFile("output", new File(mOutputDir, mOutputFile));
+        }
+        manifest.addFile("output", mDiagnosticsFile);
+    }
+
+    private File getManifestFile() {
+        if (mManifestFile == null) {
+            mManifestFile = new File(mOutputDir, "crossweave-input-manifest");
+        }
+        return mManifestFile;
+    }
+
+    /**
+     * Writes the metrics file, if one is configured.
+     * 
+     * @param metrics the finished metrics
+     */
+    public void writeMetrics(AnalysisMetrics metrics) {
+        if (mMetricsFile != null) {
+            try {
+                metrics.writeJson(mMetricsFile);
+                mWritten.add(mMetricsFile);
+            } catch (IOException e) {
+                LOGGER.warn("Could not write metrics file " + mMetricsFile, e);
+            }
+        }
+    }
+
+    /**
+     * Logs the number of problems of each kind, and each problem at debug
+     * level, and writes them all to the diagnostics file.
+     * 
+     * @param diagnostics the problems found while building the instances
+     */
+    public void writeDiagnostics(Diagnostics diagnostics) {
+        applyOutputDefaults();
+        if (diagnostics.isEmpty()) {
+            LOGGER.info(diagnostics.getSummary());
+        } else {
+            LOGGER.warn(diagnostics.getSummary() + ", listed in " + mDiagnosticsFile);
+            if (LOGGER.isDebugEnabled()) {
+                for (String detail : diagnostics.getDetails()) {
+                    LOGGER.debug(detail);
+                }
+            }
+        }
+        try {
+            diagnostics.writeJson(mDiagnosticsFile);
+            mWritten.add(mDiagnosticsFile);
+        } catch (IOException e) {
+            LOGGER.warn("Could not write diagnostics file " + mDiagnosticsFile, e);
+        }
+    }
+
+    /**
+     * Parses the pattern definition file. The patterns, and the instances
+     * created from them, intern their names in a new symbol table that is
+     * dropped with them.
+     * 
+     * @return the patterns by fully qualified name
+     * @throws AnalysisException if the file could not be parsed
+     */
+    public Map<String, Pattern> loadPatternDef() throws AnalysisException {
+        Map<String, Pattern> patternMap = new HashMap<String, Pattern>();
+        AnalysisEvents.Span patternDefEvent = AnalysisEvents.get().patternDef(mPatternDef);
+        try {
+            SAXParser parser = SAXParserFactory.newInstance().newSAXParser();
+            parser.parse(mPatternDef, new PatternDefHandler(patternMap, new SymbolTable()));
+        } catch (Exception e) {
+            throw new AnalysisException("Could not parse pattern definition file", e);
+        }
+        patternDefEvent.commit();
+
+        LOGGER.info("Read " + patternMap.size() + " pattern definitions");
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Keys in patternMap: " + patternMap.keySet());
+        }
+        return patternMap;
+    }
+
+    /**
+     * Writes the pattern index and the report, or its shards or site, of the
+     * given instances.
+     * 
+     * @param patterns the pattern instances
+     * @param metrics the metrics to time the phases in
+     * @throws AnalysisException if the output could not be written
+     */
+    public void writeOutput(Collection<PatternInstance> patterns, AnalysisMetrics metrics)
+            throws AnalysisException {
+        applyOutputDefaults();
+        metrics.startPhase("index");
+        writeIndex(patterns);
+
+        if (!mOutputDir.exists()) {
+            mOutputDir.mkdirs();
+        }
+
+        metrics.startPhase("render");
+        try {
+            if (mSite) {
+                metrics.add(AnalysisMetrics.OUTPUT_BYTES, writeSite(patterns));
+            } else if (mSharded) {
+                metrics.add(AnalysisMetrics.OUTPUT_BYTES, writeShards(patterns));
+            } else {
+                File report = new File(mOutputDir, mOutputFile);
+                writeReport(mTemplate, patterns, report, mOutputEncoding);
+                metrics.add(AnalysisMetrics.OUTPUT_BYTES, report.length());
+                mWritten.add(report);
+            }
+        } catch (IOException e) {
+            throw new AnalysisException("Failed to write output", e);
+        }
+        metrics.endPhase();
+    }
+
+    /**
+     * Fills in the output settings that were not configured.
+     */
+    private void applyOutputDefaults() {
+        if (mIndexFile == null) {
+            mIndexFile = new File(mOutputDir, "crossweave-pattern-index");
+        }
+        if (mOutputFile == null) {
+            mOutputFile = DEFAULT_OUTPUT_FILE;
+        }
+        if (mOutputEncoding == null) {
+            mOutputEncoding = DEFAULT_OUTPUT_ENCODING;
+        }
+        if (mDiagnosticsFile == null) {
+            mDiagnosticsFile = new File(mOutputDir, "crossweave-diagnostics.json");
+        }
+    }
+
+    private void writeIndex(Collection<PatternInstance> patterns) throws AnalysisException {
+        try {
+            if (PatternIndex.write(mIndexFile, patterns)) {
+                LOGGER.info("Wrote pattern index " + mIndexFile);
+                mWritten.add(mIndexFile);
+            }
+        } catch (IOException e) {
+            throw new AnalysisException("Could not write pattern index " + mIndexFile, e);
+        }
+    }
+
+    /**
+     * @return the number of bytes written
+     */
+    private long writeSite(Collection<PatternInstance> patterns) throws IOException {
+        SiteWriter writer = new SiteWriter(mSiteTemplate, mOutputDir, mPageSize,
+                mOutputEncoding);
+        writer.write(patterns);
+        LOGGER.info("Site: " + writer.getPageCount() + " pages, wrote " + writer.getWritten()
+                + " files, kept " + writer.getUnchanged() + " unchanged, deleted "
+                + writer.getDeleted() + " in " + mOutputDir);
+        mWritten.add(mOutputDir);
+        return writer.getBytesWritten();
+    }
+
+    /**
+     * @return the number of bytes written
+     */
+    private long writeShards(Collection<PatternInstance> patterns) throws IOException {
+        int dot = mOutputFile.lastIndexOf('.');
+        String extension = dot < 0 ? "" : mOutputFile.substring(dot);
+        ShardedReportWriter writer = new ShardedReportWriter(mTemplate, mOutputDir, extension,
+                mOutputEncoding);
+        writer.write(patterns);
+        LOGGER.info("Sharded report: wrote " + writer.getWritten() + ", kept "
+                + writer.getUnchanged() + " unchanged, deleted " + writer.getDeleted()
+                + " pattern files in " + mOutputDir);
+        mWritten.add(mOutputDir);
+        return writer.getBytesWritten();
+    }
+
+    /**
+     * Renders the reportPatternDescriptions template of a template group
+     * straight into a file. The output is streamed through the writer while the
+     * template is evaluated, so the report is never held in memory as a whole.
+     * The bytes written are the same as those of ST.render() in the given
+     * encoding.
+     * 
+     * @param template the StringTemplate group file or built-in template, see
+     *            {@link TemplateRegistry}
+     * @param patterns the pattern instances to report
+     * @param file the file to write
+     * @param encoding the character encoding of the file
+     * @throws IOException if the file could not be written
+     */
+    public static void writeReport(String template, Collection<PatternInstance> patterns,
+            File file, String encoding) throws IOException {
+        STGroup stg = TemplateRegistry.getGroup(template);
+        AnalysisEvents.Span event = AnalysisEvents.get().render(template, file);
+        Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file),
+                encoding), OUTPUT_BUFFER_SIZE);
+        try {
+            synchronized (stg) {
+                ST st = stg.getInstanceOf("reportPatternDescriptions");
+                st.add("patterns", patterns);
+                st.write(new AutoIndentWriter(out));
+            }
+        } finally {
+            out.close();
+        }
+        event.commit();
+    }
+
+    private void scanSources(Map<String, Pattern> patternMap,
+            Map<String, PatternInstance> instanceMap, List<File> jars, AnalysisMetrics metrics,
+            Diagnostics diagnostics) throws AnalysisException {
+        List<File> files = collectCandidates(metrics);
+        metrics.startPhase("parse");
+        List<SourceFacts> facts;
+        if (mIncremental) {
+            facts = scanIncrementally(files, metrics);
+        } else {
+            facts = parseSources(files, metrics);
+        }
+        if (!jars.isEmpty()) {
+            // The sources of the project come first, so its specs win
+            facts = new ArrayList<SourceFacts>(facts);
+            facts.addAll(scanSourceJars(jars));
+        }
+        metrics.startPhase("model");
+        applyFacts(facts, patternMap, instanceMap, metrics, diagnostics);
+    }
+
+    /**
+     * Collects the source files and drops those the pre-filter rules out.
+     * 
+     * @param metrics the metrics to time the phases in and count skipped files
+     * @return the files to parse, in source order
+     * @throws AnalysisException if a file could not be read
+     */
+    public List<File> collectCandidates(AnalysisMetrics metrics) throws AnalysisException {
+        return collectCandidates(mSource, metrics);
+    }
+
+    /**
+     * Collects the source files below a root and drops those the pre-filter
+     * rules out.
+     * 
+     * @param root the source root
+     * @param metrics the metrics to time the phases in and count skipped files
+     * @return the files to parse, in source order
+     * @throws AnalysisException if a file could not be read
+     */
+    public List<File> collectCandidates(File root, AnalysisMetrics metrics)
+            throws AnalysisException {
+        metrics.startPhase("collect");
+        List<File> files = new ArrayList<File>();
+        collectSourceFiles(root, files);
+        if (mPrefilter) {
+            metrics.startPhase("prefilter");
+            files = prefilterSourceFiles(files, metrics);
+        }
+        return files;
+    }
+
+    /**
+     * Parses source files with the configured scanner and threads.
+     * 
+     * @param files the files to parse
+     * @param metrics the metrics to count the files read in
+     * @return the facts of each file, in the same order as files
+     * @throws AnalysisException if a file could not be read
+     */
+    public List<SourceFacts> parseSources(List<File> files, AnalysisMetrics metrics)
+            throws AnalysisException {
+        List<SourceFacts> facts;
+        try {
+            facts = new ParallelSourceParser(createScanner(), mThreads).parse(files);
+        } catch (IOException e) {
+            throw new AnalysisException("Could not read sources", e);
+        }
+        countRead(files, metrics);
+        return facts;
+    }
+
+    /**
+     * Counts the given files and their size as read.
+     * 
+     * @param files the files read
+     * @param metrics the metrics to count them in
+     */
+    public static void countRead(List<File> files, AnalysisMetrics metrics) {
+        long bytes = 0;
+        for (File file : files) {
+            bytes += file.length();
+        }
+        metrics.add(AnalysisMetrics.FILES_READ, files.size());
+        metrics.add(AnalysisMetrics.BYTES_READ, bytes);
+    }
+
+    /**
+     * @return a new instance of the configured scanner
+     * @throws AnalysisException if there is no such scanner
+     */
+    public SourceScanner createScanner() throws AnalysisException {
+        if (mScanner == null || mScanner.equals("qdox")) {
+            return new QDoxSourceScanner(mLowMemory);
+        } else if (mScanner.equals("lightweight")) {
+            return new LightweightSourceScanner();
+        }
+        throw new AnalysisException("Unknown scanner " + mScanner
+                + ", expected qdox or lightweight");
+    }
+
+    /**
+     * Scans the source jars, reusing the facts of jars that did not change.
+     * 
+     * @return the facts of the sources in all jars, in the order of the jars
+     */
+    private List<SourceFacts> scanSourceJars(List<File> jars) throws AnalysisException {
+        if (mSourceJarCache == null) {
+            mSourceJarCache = new File(mOutputDir, "crossweave-source-jar-cache");
+        }
+        SourceJarCache cache = SourceJarCache.load(mSourceJarCache);
+        SourceScanner jarScanner = createScanner();
+        List<SourceFacts> facts = new ArrayList<SourceFacts>();
+        for (File jar : jars) {
+            try {
+                facts.addAll(cache.scan(jar, jarScanner, mPrefilter));
+            } catch (IOException e) {
+                throw new AnalysisException("Could not read source jar " + jar, e);
+            }
+        }
+        LOGGER.info("Source jars: scanned " + cache.getScanned() + ", reused the cached facts of "
+                + cache.getReused() + " unchanged jars");
+        try {
+            cache.save(mSourceJarCache);
+        } catch (IOException e) {
+            LOGGER.warn("Could not write source jar cache " + mSourceJarCache, e);
+        }
+        return facts;
+    }
+
+    private List<SourceFacts> readProcessorFacts(AnalysisMetrics metrics)
+            throws AnalysisException {
+        metrics.startPhase("parse");
+        if (!mProcessorFacts.isFile()) {
+            throw new AnalysisException("Pattern facts file " + mProcessorFacts
+                    + " does not exist. Was the DesignPattern annotation processor run?");
+        }
+        try {
+            List<SourceFacts> facts = ProcessorFacts.read(mProcessorFacts);
+            metrics.add(AnalysisMetrics.FILES_READ, 1);
+            metrics.add(AnalysisMetrics.BYTES_READ, mProcessorFacts.length());
+            LOGGER.info("Read pattern facts of " + facts.size() + " types from "
+                    + mProcessorFacts);
+            return facts;
+        } catch (IOException e) {
+            throw new AnalysisException("Could not read pattern facts " + mProcessorFacts, e);
+        }
+    }
+
+    /**
+     * Reuses the cached facts of unchanged files and parses only new or
+     * changed files. Files that no longer exist are dropped from the cache.
+     */
+    private List<SourceFacts> scanIncrementally(List<File> files, AnalysisMetrics metrics)
+            throws AnalysisException {
+        if (mCacheFile == null) {
+            mCacheFile = new File(mOutputDir, "crossweave-scan-cache");
+        }
+        ScanCache cache = ScanCache.load(mCacheFile);
+        SourceFacts[] result = new SourceFacts[files.size()];
+        List<File> changed = new ArrayList<File>();
+        List<Integer> changedIndexes = new ArrayList<Integer>();
+        try {
+            for (int i = 0; i < files.size(); i++) {
+                result[i] = cache.get(files.get(i));
+                if (result[i] == null) {
+                    changed.add(files.get(i));
+                    changedIndexes.add(i);
+                }
+            }
+            List<SourceFacts> parsed = new ParallelSourceParser(createScanner(), mThreads)
+                    .parse(changed);
+            for (int i = 0; i < changed.size(); i++) {
+                cache.put(changed.get(i), parsed.get(i));
+                result[changedIndexes.get(i)] = parsed.get(i);
+            }
+        } catch (IOException e) {
+            throw new AnalysisException("Could not read sources", e);
+        }
+        countRead(changed, metrics);
+        metrics.add(AnalysisMetrics.FILES_SKIPPED, files.size() - changed.size());
+        int dropped = cache.retainAll(files);
+        LOGGER.info("Incremental scan: reparsed " + changed.size() + " of " + files.size()
+                + " files, dropped " + dropped + " deleted files");
+
+        try {
+            cache.save(mCacheFile);
+        } catch (IOException e) {
+            LOGGER.warn("Could not write scan cache " + mCacheFile, e);
+        }
+        return Arrays.asList(result);
+    }
+
+    private List<File> prefilterSourceFiles(List<File> files, AnalysisMetrics metrics)
+            throws AnalysisException {
+        SourcePreFilter filter = new SourcePreFilter();
+        List<File> candidates;
+        try {
+            candidates = filter.filter(files);
+        } catch (IOException e) {
+            throw new AnalysisException("Could not read sources", e);
+        }
+        metrics.add(AnalysisMetrics.FILES_SKIPPED, filter.getSkipped());
+        LOGGER.info("Pre-filter skipped " + filter.getSkipped() + " of " + files.size()
+                + " source files without DesignPattern annotations");
+        return candidates;
+    }
+
+    /**
+     * Collects the Java source files below the given file in a stable order.
+     * 
+     * @param file a .java file or a directory to search
+     * @param files the list to add the source files to
+     */
+    public static void collectSourceFiles(File file, List<File> files) {
+        if (file.isDirectory()) {
+            File[] children = file.listFiles();
+            if (children == null) {
+                return;
+            }
+            Arrays.sort(children);
+            for (File child : children) {
+                collectSourceFiles(child, files);
+            }
+        } else if (file.getName().endsWith(".java")) {
+            files.add(file);
+        }
+    }
+
+    /**
+     * Turns the facts of all sources into pattern instances in one pass. Roles
+     * whose alias has not been specified yet are held back and bound once all
+     * specs have been seen. Problems are logged as warnings.
+     * 
+     * @param facts the facts of each source file
+     * @param patternMap the pattern definitions
+     * @param instanceMap the map of aliases to pattern instances to fill
+     */
+    public static void applyFacts(Collection<SourceFacts> facts, Map<String, Pattern> patternMap,
+            Map<String, PatternInstance> instanceMap) {
+        Diagnostics diagnostics = new Diagnostics();
+        applyFacts(facts, patternMap, instanceMap, new AnalysisMetrics(), diagnostics);
+        for (String detail : diagnostics.getDetails()) {
+            LOGGER.warn(detail);
+        }
+    }
+
+    /**
+     * Like {@link #applyFacts(Collection, Map, Map)}, and counts the classes,
+     * annotations, instances and role bindings in the given metrics. Problems
+     * are recorded in the given diagnostics instead of being logged.
+     */
+    public static void applyFacts(Collection<SourceFacts> facts, Map<String, Pattern> patternMap,
+            Map<String, PatternInstance> instanceMap, AnalysisMetrics metrics,
+            Diagnostics diagnostics) {
+        List<RoleFact> deferred = new ArrayList<RoleFact>();
+        int classes = 0;
+        int annotations = 0;
+        int instances = 0;
+        int bound = 0;
+        for (SourceFacts f : facts) {
+            classes += f.getClassCount();
+            annotations += f.getAnnotationCount();
+            for (SpecFact spec : f.getSpecs()) {
+                if (processSpec(spec, patternMap, instanceMap, diagnostics)) {
+                    instances++;
+                }
+            }
+            for (RoleFact role : f.getRoles()) {
+                if (!instanceMap.containsKey(role.getAlias())) {
+                    deferred.add(role);
+                } else if (processRole(role, instanceMap, diagnostics)) {
+                    bound++;
+                }
+            }
+        }
+        for (RoleFact role : deferred) {
+            if (processRole(role, instanceMap, diagnostics)) {
+                bound++;
+            }
+        }
+        metrics.add(AnalysisMetrics.CLASSES_VISITED, classes);
+        metrics.add(AnalysisMetrics.ANNOTATIONS_MATCHED, annotations);
+        metrics.add(AnalysisMetrics.INSTANCES_CREATED, instances);
+        metrics.add(AnalysisMetrics.ROLES_BOUND, bound);
+    }
+
+    private static final boolean processSpec(
+            SpecFact spec,
+            Map<String, Pattern> patternMap,
+            Map<String, PatternInstance> instanceMap,
+            Diagnostics diagnostics) {
+        String alias = spec.getAlias();
+        if (instanceMap.containsKey(alias)) {
+            diagnostics.duplicateSpec(spec);
+            return false;
+        }
+
+        Pattern pattern = patternMap.get(spec.getPatternFullyQualifiedName());
+        if (pattern == null) {
+            diagnostics.unknownPattern(spec);
+            return false;
+        }
+
+        instanceMap.put(alias, pattern.instantiate(spec.getInstanceName()));
+        return true;
+    }
+
+    private static final boolean processRole(
+            RoleFact fact,
+            Map<String, PatternInstance> instanceMap,
+            Diagnostics diagnostics) {
+        PatternInstance pat = instanceMap.get(fact.getAlias());
+        if (pat == null) {
+            diagnostics.unknownAlias(fact);
+            return false;
+        }
+
+        if (pat.addImplementerToRole(fact.getImplementer(), fact.getRole())) {
+            return true;
+        }
+        diagnostics.unknownRole(fact);
+        return false;
+    }
+
+}
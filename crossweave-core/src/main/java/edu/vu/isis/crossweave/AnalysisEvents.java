@@ -0,0 +1,154 @@
+/*Copyright (C) 2010-2013 Institute for Software Integrated Systems (ISIS)
+This software was developed by the Institute for Software Integrated
+Systems (ISIS) at Vanderbilt University, Tennessee, USA for the 
+Transformative Apps program under DARPA, Contract # HR011-10-C-0175.
+The United States Government has unlimited rights to this software. 
+The US government has the right to use, modify, reproduce, release, 
+perform, display, or disclose computer software or computer software 
+documentation in whole or in part, in any manner and for any 
+purpose whatsoever, and to have or authorize others to do so.
+ */
+
+package edu.vu.isis.crossweave;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Emits Java Flight Recorder events for the phases of an analysis, each parsed
+ * source file, each template rendering and the loading of the pattern
+ * definitions, so that slow files and templates show up in JDK Mission Control
+ * next to GC and allocation data.
+ * <p>
+ * The events are named crossweave.Phase, crossweave.SourceFile,
+ * crossweave.TemplateRender and crossweave.PatternDefLoad and are disabled
+ * unless a recording enables them, for instance on JDK 17 and later with the
+ * settings in src/jfr/crossweave.jfc:
+ * 
+ * <pre>
+ * -XX:StartFlightRecording=settings=default,settings=crossweave.jfc,filename=crossweave.jfr
+ * </pre>
+ * 
+ * An analysis can also record itself, see
+ * {@link #startRecording(File)}. A disabled event costs a check of its enabled
+ * flag. On JVMs without the jdk.jfr API nothing is emitted at all.
+ * 
+ * @author nick
+ */
+public abstract class AnalysisEvents {
+
+    /**
+     * An event that has begun. Committing it records its duration, if it is
+     * enabled.
+     */
+    public interface Span {
+
+        void commit();
+    }
+
+    /**
+     * A flight recording started by {@link AnalysisEvents#startRecording(File)}.
+     */
+    public interface FlightRecording {
+
+        /**
+         * Stops the recording and writes it to its file.
+         * 
+         * @throws IOException if the recording could not be written
+         */
+        void stop() throws IOException;
+    }
+
+    /** The span of events that are not recorded */
+    public static final Span NONE = new Span() {
+
+        @Override
+        public void commit() {
+        }
+    };
+
+    private static final String JFR_EVENTS = "edu.vu.isis.crossweave.JfrAnalysisEvents";
+
+    private static final AnalysisEvents INSTANCE = load();
+
+    /**
+     * @return the events of this JVM
+     */
+    public static AnalysisEvents get() {
+        return INSTANCE;
+    }
+
+    /**
+     * @param phase the name of the analysis phase
+     * @return the span of the phase
+     */
+    public abstract Span phase(String phase);
+
+    /**
+     * @param file the source file about to be parsed
+     * @return the span of parsing the file
+     */
+    public abstract Span sourceFile(File file);
+
+    /**
+     * @param template the StringTemplate group file
+     * @param output the file the template is rendered to
+     * @return the span of the rendering
+     */
+    public abstract Span render(String template, File output);
+
+    /**
+     * @param file the pattern definition file about to be loaded
+     * @return the span of loading the file
+     */
+    public abstract Span patternDef(File file);
+
+    /**
+     * Starts a recording with the default settings of the JVM, which include
+     * GC and allocation events, and with the CrossWeave events enabled.
+     * 
+     * @param file the file to write the recording to when it stops
+     * @return the recording
+     * @throws IOException if the JVM has no flight recorder or the recording
+     *             could not be started
+     */
+    public abstract FlightRecording startRecording(File file) throws IOException;
+
+    private static AnalysisEvents load() {
+        try {
+            Class.forName("jdk.jfr.Event");
+            return (AnalysisEvents) Class.forName(JFR_EVENTS).newInstance();
+        } catch (Throwable e) {
+            // No flight recorder in this JVM
+            return new Disabled();
+        }
+    }
+
+    private static class Disabled extends AnalysisEvents {
+
+        @Override
+        public Span phase(String phase) {
+            return NONE;
+        }
+
+        @Override
+        public Span sourceFile(File file) {
+            return NONE;
+        }
+
+        @Override
+        public Span render(String template, File output) {
+            return NONE;
+        }
+
+        @Override
+        public Span patternDef(File file) {
+            return NONE;
+        }
+
+        @Override
+        public FlightRecording startRecording(File file) throws IOException {
+            throw new IOException("This JVM has no flight recorder");
+        }
+    }
+}
@@ -0,0 +1,37 @@
+/*Copyright (C) 2010-2013 Institute for Software Integrated Systems (ISIS)
+This software was developed by the Institute for Software Integrated
+Systems (ISIS) at Vanderbilt University, Tennessee, USA for the 
+Transformative Apps program under DARPA, Contract # HR011-10-C-0175.
+The United States Government has unlimited rights to this software. 
+The US government has the right to use, modify, reproduce, release, 
+perform, display, or disclose computer software or computer software 
+documentation in whole or in part, in any manner and for any 
+purpose whatsoever, and to have or authorize others to do so.
+ */
+package edu.vu.isis.crossweave;
+
+/**
+ * Thrown when an analysis cannot complete, for instance because the pattern
+ * definitions cannot be parsed or a source file cannot be read.
+ * 
+ * @author nick
+ */
+public class AnalysisException extends Exception {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * @param message what went wrong
+     */
+    public AnalysisException(String message) {
+        super(message);
+    }
+
+    /**
+     * @param message what went wrong
+     * @param cause the exception that caused it
+     */
+    public AnalysisException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,220 @@
+/*Copyright (C) 2010-2013 Institute for Software Integrated Systems (ISIS)
+This software was developed by the Institute for Software Integrated
+Systems (ISIS) at Vanderbilt University, Tennessee, USA for the 
+Transformative Apps program under DARPA, Contract # HR011-10-C-0175.
+The United States Government has unlimited rights to this software. 
+The US government has the right to use, modify, reproduce, release, 
+perform, display, or disclose computer software or computer software 
+documentation in whole or in part, in any manner and for any 
+purpose whatsoever, and to have or authorize others to do so.
+ */
+
+package edu.vu.isis.crossweave;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Times the phases of an analysis and counts the work done in them. Phases are
+ * timed one after the other; starting a phase ends the current one. Phases and
+ * counters are reported in the order they were first recorded. Each phase is
+ * also emitted as a crossweave.Phase flight recorder event.
+ * 
+ * @author nick
+ */
+public class AnalysisMetrics {
+
+    /** Source files handed to a scanner, or the processor facts file */
+    public static final String FILES_READ = "filesRead";
+
+    /** Size of the files read */
+    public static final String BYTES_READ = "bytesRead";
+
+    /** Source files not parsed, because of the pre-filter or the scan cache */
+    public static final String FILES_SKIPPED = "filesSkipped";
+
+    /** Types visited by the scanner, including those of cached files */
+    public static final String CLASSES_VISITED = "classesVisited";
+
+    /** DesignPattern specs and roles found */
+    public static final String ANNOTATIONS_MATCHED = "annotationsMatched";
+
+    /** Pattern instances created from specs */
+    public static final String INSTANCES_CREATED = "instancesCreated";
+
+    /** Implementers bound to a role of an instance */
+    public static final String ROLES_BOUND = "rolesBound";
+
+    /** Bytes of report output written */
+    public static final String OUTPUT_BYTES = "outputBytes";
+
+    private Map<String, Long> mPhaseNanos = new LinkedHashMap<String, Long>();
+
+    private Map<String, Long> mCounters = new LinkedHashMap<String, Long>();
+
+    private long mStart = System.nanoTime();
+
+    private long mEnd = -1;
+
+    private String mPhase;
+
+    private long mPhaseStart;
+
+    private AnalysisEvents.Span mPhaseEvent = AnalysisEvents.NONE;
+
+    public AnalysisMetrics() {
+        for (String counter : new String[] { FILES_READ, BYTES_READ, FILES_SKIPPED,
+                CLASSES_VISITED, ANNOTATIONS_MATCHED, INSTANCES_CREATED, ROLES_BOUND,
+                OUTPUT_BYTES }) {
+            mCounters.put(counter, Long.valueOf(0));
+        }
+    }
+
+    /**
+     * Ends the current phase, if any, and starts timing another one. Time spent
+     * in a phase that is started more than once adds up.
+     * 
+     * @param phase the name of the phase
+     */
+    public void startPhase(String phase) {
+        endPhase();
+        mPhase = phase;
+        mPhaseEvent = AnalysisEvents.get().phase(phase);
+        mPhaseStart = System.nanoTime();
+    }
+
+    /**
+     * Ends the current phase, if any.
+     */
+    public void endPhase() {
+        if (mPhase != null) {
+            Long nanos = mPhaseNanos.get(mPhase);
+            long elapsed = System.nanoTime() - mPhaseStart;
+            mPhaseNanos.put(mPhase, Long.valueOf(nanos == null ? elapsed : nanos + elapsed));
+            mPhaseEvent.commit();
+            mPhaseEvent = AnalysisEvents.NONE;
+            mPhase = null;
+        }
+    }
+
+    /**
+     * Ends the current phase and stops the total time.
+     */
+    public void finish() {
+        endPhase();
+        mEnd = System.nanoTime();
+    }
+
+    /**
+     * @param counter the name of the counter
+     * @param amount the amount to add to the counter
+     */
+    public void add(String counter, long amount) {
+        Long value = mCounters.get(counter);
+        mCounters.put(counter, Long.valueOf(value == null ? amount : value + amount));
+    }
+
+    /**
+     * @param counter the name of the counter
+     * @return the value of the counter, 0 if nothing was counted
+     */
+    public long get(String counter) {
+        Long value = mCounters.get(counter);
+        return value == null ? 0 : value;
+    }
+
+    /**
+     * @param phase the name of the phase
+     * @return the time spent in the phase in nanoseconds, 0 if it never ran
+     */
+    public long getPhaseNanos(String phase) {
+        Long nanos = mPhaseNanos.get(phase);
+        return nanos == null ? 0 : nanos;
+    }
+
+    /**
+     * @return the time from the creation of these metrics until finish, or
+     *         until now if they are not finished, in nanoseconds
+     */
+    public long getTotalNanos() {
+        return (mEnd < 0 ? System.nanoTime() : mEnd) - mStart;
+    }
+
+    /**
+     * @return a one line summary of the counters and phase times
+     */
+    public String getSummary() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Read ").append(get(FILES_READ)).append(" files (")
+                .append(get(BYTES_READ)).append(" bytes), skipped ")
+                .append(get(FILES_SKIPPED)).append(", visited ")
+                .append(get(CLASSES_VISITED)).append(" classes, matched ")
+                .append(get(ANNOTATIONS_MATCHED)).append(" annotations, created ")
+                .append(get(INSTANCES_CREATED)).append(" instances, bound ")
+                .append(get(ROLES_BOUND)).append(" roles, wrote ")
+                .append(get(OUTPUT_BYTES)).append(" bytes in ")
+                .append(toMillis(getTotalNanos())).append(" ms (");
+        String separator = "";
+        for (Map.Entry<String, Long> phase : mPhaseNanos.entrySet()) {
+            sb.append(separator).append(phase.getKey()).append(' ')
+                    .append(toMillis(phase.getValue())).append(" ms");
+            separator = ", ";
+        }
+        return sb.append(')').toString();
+    }
+
+    /**
+     * Writes the metrics as a JSON object with the total and phase times in
+     * milliseconds and the counters:
+     * 
+     * <pre>
+     * {"timestamp": 1381000000000, "totalMillis": 1234.567,
+     *  "phaseMillis": {"patternDef": 1.234, ...},
+     *  "counters": {"filesRead": 12, ...}}
+     * </pre>
+     * 
+     * @param file the file to write
+     * @throws IOException if the file could not be written
+     */
+    public void writeJson(File file) throws IOException {
+        File dir = file.getAbsoluteFile().getParentFile();
+        if (dir != null && !dir.exists()) {
+            dir.mkdirs();
+        }
+        Writer out = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        try {
+            out.write("{\n  \"timestamp\": " + System.currentTimeMillis() + ",\n");
+            out.write("  \"totalMillis\": " + formatMillis(getTotalNanos()) + ",\n");
+            out.write("  \"phaseMillis\": {");
+            String separator = "\n";
+            for (Map.Entry<String, Long> phase : mPhaseNanos.entrySet()) {
+                out.write(separator + "    \"" + phase.getKey() + "\": "
+                        + formatMillis(phase.getValue()));
+                separator = ",\n";
+            }
+            out.write("\n  },\n  \"counters\": {");
+            separator = "\n";
+            for (Map.Entry<String, Long> counter : mCounters.entrySet()) {
+                out.write(separator + "    \"" + counter.getKey() + "\": " + counter.getValue());
+                separator = ",\n";
+            }
+            out.write("\n  }\n}\n");
+        } finally {
+            out.close();
+        }
+    }
+
+    private static long toMillis(long nanos) {
+        return nanos / 1000000;
+    }
+
+    private static String formatMillis(long nanos) {
+        return String.format(Locale.ROOT, "%.3f", nanos / 1e6);
+    }
+}
@@ -0,0 +1,60 @@
+/*Copyright (C) 2010-2013 Institute for Software Integrated Systems (ISIS)
+This software was developed by the Institute for Software Integrated
+Systems (ISIS) at Vanderbilt University, Tennessee, USA for the 
+Transformative Apps program under DARPA, Contract # HR011-10-C-0175.
+The United States Government has unlimited rights to this software. 
+The US government has the right to use, modify, reproduce, release, 
+perform, display, or disclose computer software or computer software 
+documentation in whole or in part, in any manner and for any 
+purpose whatsoever, and to have or authorize others to do so.
+ */
+
+package edu.vu.isis.crossweave;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The DesignPattern annotations the source scanners dispatch on.
+ *
+ * @author nick
+ */
+enum AnnotationKind {
+
+    SPECIFICATIONS, SPECIFICATION, ROLES, ROLE;
+
+    private static final Map<String, AnnotationKind> KINDS = new HashMap<String, AnnotationKind>();
+
+    static {
+        KINDS.put(Analysis.PATTERN_SPECS_ANN_FQN, SPECIFICATIONS);
+        KINDS.put(Analysis.PATTERN_SPEC_ANN_FQN, SPECIFICATION);
+        KINDS.put(Analysis.PATTERN_ROLES_ANN_FQN, ROLES);
+        KINDS.put(Analysis.PATTERN_ROLE_ANN_FQN, ROLE);
+    }
+
+    /**
+     * @param fullyQualifiedName the resolved name of an annotation type
+     * @return the kind of the annotation, or null if it is not a DesignPattern
+     *         annotation
+     */
+    static AnnotationKind forType(String fullyQualifiedName) {
+        return KINDS.get(fullyQualifiedName);
+    }
+
+    /**
+     * Removes the quotes around an annotation value that is a string literal.
+     * Surrounding whitespace is dropped first, since QDox keeps it for the first
+     * value of a nested annotation written without array braces.
+     *
+     * @param s the annotation value as written in the source
+     * @return the value without quotes
+     */
+    static String trimQuotes(String s) {
+        s = s.trim();
+        if (s.startsWith("\"") && s.endsWith("\"")) {
+            s = s.substring(1, s.length() - 1);
+        }
+        return s;
+    }
+
+}
@@ -0,0 +1,255 @@
+/*Copyright (C) 2010-2013 Institute for Software Integrated Systems (ISIS)
+This software was developed by the Institute for Software Integrated
+Systems (ISIS) at Vanderbilt University, Tennessee, USA for the 
+Transformative Apps program under DARPA, Contract # HR011-10-C-0175.
+The United States Government has unlimited rights to this software. 
+The US government has the right to use, modify, reproduce, release, 
+perform, display, or disclose computer software or computer software 
+documentation in whole or in part, in any manner and for any 
+purpose whatsoever, and to have or authorize others to do so.
+ */
+package edu.vu.isis.crossweave;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Collects the problems found while the facts of the sources are turned into
+ * pattern instances. Recording a problem only keeps a reference to the fact
+ * that caused it; messages are built when the diagnostics are reported, so a
+ * large tree with many problems does not pay for a log line per annotation.
+ * 
+ * @author nick
+ */
+public class Diagnostics {
+
+    /**
+     * The kinds of problems, each with the name it has in the JSON file
+     */
+    public enum Kind {
+
+        /** A spec names a pattern that is not in the pattern definitions */
+        UNKNOWN_PATTERN("unknownPattern"),
+
+        /** A spec uses an alias that an earlier spec already uses */
+        DUPLICATE_SPEC("duplicateSpec"),
+
+        /** A role names an alias that no spec uses */
+        UNKNOWN_ALIAS("unknownAlias"),
+
+        /** A role names a role that the pattern of its instance does not have */
+        UNKNOWN_ROLE("unknownRole");
+
+        private final String mKey;
+
+        private Kind(String key) {
+            mKey = key;
+        }
+
+        /**
+         * @return the name of the kind in the JSON file
+         */
+        public String getKey() {
+            return mKey;
+        }
+    }
+
+    private List<Kind> mKinds = new ArrayList<Kind>();
+
+    /** The SpecFact or RoleFact of each problem */
+    private List<Object> mFacts = new ArrayList<Object>();
+
+    private int[] mCounts = new int[Kind.values().length];
+
+    /**
+     * @param spec a spec whose pattern is not defined
+     */
+    public void unknownPattern(SpecFact spec) {
+        add(Kind.UNKNOWN_PATTERN, spec);
+    }
+
+    /**
+     * @param spec a spec whose alias is already taken
+     */
+    public void duplicateSpec(SpecFact spec) {
+        add(Kind.DUPLICATE_SPEC, spec);
+    }
+
+    /**
+     * @param role a role whose alias no spec uses
+     */
+    public void unknownAlias(RoleFact role) {
+        add(Kind.UNKNOWN_ALIAS, role);
+    }
+
+    /**
+     * @param role a role that the pattern of its instance does not have
+     */
+    public void unknownRole(RoleFact role) {
+        add(Kind.UNKNOWN_ROLE, role);
+    }
+
+    /**
+     * @param other diagnostics whose problems are appended to these
+     */
+    public void addAll(Diagnostics other) {
+        for (int i = 0; i < other.size(); i++) {
+            add(other.mKinds.get(i), other.mFacts.get(i));
+        }
+    }
+
+    private void add(Kind kind, Object fact) {
+        mKinds.add(kind);
+        mFacts.add(fact);
+        mCounts[kind.ordinal()]++;
+    }
+
+    /**
+     * @param kind a kind of problem
+     * @return the number of problems of that kind
+     */
+    public int getCount(Kind kind) {
+        return mCounts[kind.ordinal()];
+    }
+
+    /**
+     * @return the number of problems of all kinds
+     */
+    public int size() {
+        return mKinds.size();
+    }
+
+    /**
+     * @return true if no problems were found
+     */
+    public boolean isEmpty() {
+        return mKinds.isEmpty();
+    }
+
+    /**
+     * @return a one line summary of the number of problems of each kind
+     */
+    public String getSummary() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(size()).append(" pattern diagnostics (");
+        String separator = "";
+        for (Kind kind : Kind.values()) {
+            sb.append(separator).append(kind.getKey()).append(' ').append(getCount(kind));
+            separator = ", ";
+        }
+        return sb.append(')').toString();
+    }
+
+    /**
+     * @return a message for each problem, in the order they were found
+     */
+    public List<String> getDetails() {
+        List<String> details = new ArrayList<String>(size());
+        for (int i = 0; i < size(); i++) {
+            details.add(getDetail(i));
+        }
+        return details;
+    }
+
+    private String getDetail(int i) {
+        Kind kind = mKinds.get(i);
+        if (kind == Kind.UNKNOWN_PATTERN || kind == Kind.DUPLICATE_SPEC) {
+            SpecFact spec = (SpecFact) mFacts.get(i);
+            if (kind == Kind.DUPLICATE_SPEC) {
+                return "Found multiple specs for pattern with alias " + spec.getAlias();
+            }
+            return "Pattern with FQN " + spec.getPatternFullyQualifiedName()
+                    + " not found for alias " + spec.getAlias();
+        }
+        RoleFact role = (RoleFact) mFacts.get(i);
+        if (kind == Kind.UNKNOWN_ALIAS) {
+            return "No pattern to match alias " + role.getAlias() + " on role "
+                    + role.getRole() + " in class " + role.getImplementer();
+        }
+        return "Pattern instance alias " + role.getAlias() + " does not have a role called "
+                + role.getRole() + ", implemented by " + role.getImplementer();
+    }
+
+    /**
+     * Writes the counts and every problem as a JSON object:
+     * 
+     * <pre>
+     * {"counts": {"unknownPattern": 1, ...},
+     *  "diagnostics": [
+     *   {"kind": "unknownPattern", "alias": "a", "pattern": "gof.adapter.", "instance": "i"},
+     *   {"kind": "unknownRole", "alias": "a", "role": "r", "implementer": "pkg.C"}, ...]}
+     * </pre>
+     * 
+     * Specs are described by their alias, pattern and instance name, roles by
+     * their alias, role and implementer.
+     * 
+     * @param file the file to write
+     * @throws IOException if the file could not be written
+     */
+    public void writeJson(File file) throws IOException {
+        File dir = file.getAbsoluteFile().getParentFile();
+        if (dir != null && !dir.exists()) {
+            dir.mkdirs();
+        }
+        Writer out = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        try {
+            out.write("{\n  \"counts\": {");
+            String separator = "\n";
+            for (Kind kind : Kind.values()) {
+                out.write(separator + "    \"" + kind.getKey() + "\": " + getCount(kind));
+                separator = ",\n";
+            }
+            out.write("\n  },\n  \"diagnostics\": [");
+            separator = "\n";
+            for (int i = 0; i < size(); i++) {
+                out.write(separator + "    {\"kind\": \"" + mKinds.get(i).getKey() + "\"");
+                Object fact = mFacts.get(i);
+                if (fact instanceof SpecFact) {
+                    SpecFact spec = (SpecFact) fact;
+                    writeField(out, "alias", spec.getAlias());
+                    writeField(out, "pattern", spec.getPatternFullyQualifiedName());
+                    writeField(out, "instance", spec.getInstanceName());
+                } else {
+                    RoleFact role = (RoleFact) fact;
+                    writeField(out, "alias", role.getAlias());
+                    writeField(out, "role", role.getRole());
+                    writeField(out, "implementer", role.getImplementer());
+                }
+                out.write('}');
+                separator = ",\n";
+            }
+            out.write("\n  ]\n}\n");
+        } finally {
+            out.close();
+        }
+    }
+
+    private static void writeField(Writer out, String name, String value) throws IOException {
+        out.write(", \"" + name + "\": ");
+        writeString(out, value);
+    }
+
+    /**
+     * Writes a string as a quoted JSON string.
+     */
+    static void writeString(Writer out, String value) throws IOException {
+        out.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                out.write('\\');
+                out.write(c);
+            } else if (c < 0x20) {
+                out.write(String.format("\\u%04x", (int) c));
+            } else {
+                out.write(c);
+            }
+        }
+        out.write('"');
+    }
+}
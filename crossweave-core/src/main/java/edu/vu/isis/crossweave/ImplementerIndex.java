@@ -0,0 +1,85 @@
+/*Copyright (C) 2010-2013 Institute for Software Integrated Systems (ISIS)
+This software was developed by the Institute for Software Integrated
+Systems (ISIS) at Vanderbilt University, Tennessee, USA for the 
+Transformative Apps program under DARPA, Contract # HR011-10-C-0175.
+The United States Government has unlimited rights to this software. 
+The US government has the right to use, modify, reproduce, release, 
+perform, display, or disclose computer software or computer software 
+documentation in whole or in part, in any manner and for any 
+purpose whatsoever, and to have or authorize others to do so.
+ */
+package edu.vu.isis.crossweave;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Reverse index from implementer names to the roles they play in a set of
+ * pattern instances. The model only links roles to implementers, so answering
+ * "which patterns is this class part of" would otherwise mean walking every
+ * role of every instance.
+ * 
+ * @author nick
+ */
+public class ImplementerIndex {
+
+    private Map<String, List<RoleBinding>> mBindings = new HashMap<String, List<RoleBinding>>();
+
+    public ImplementerIndex() {
+    }
+
+    /**
+     * Indexes the implementers of the given pattern instances.
+     * 
+     * @param instances the pattern instances to index
+     */
+    public ImplementerIndex(Collection<PatternInstance> instances) {
+        for (PatternInstance instance : instances) {
+            add(instance);
+        }
+    }
+
+    /**
+     * Adds the current implementers of a pattern instance to the index.
+     * 
+     * @param instance the pattern instance to index
+     */
+    public void add(PatternInstance instance) {
+        for (Role role : instance.getRoles()) {
+            for (String implementer : role.getImplementers()) {
+                List<RoleBinding> bindings = mBindings.get(implementer);
+                if (bindings == null) {
+                    bindings = new ArrayList<RoleBinding>(1);
+                    mBindings.put(implementer, bindings);
+                }
+                bindings.add(new RoleBinding(instance, role));
+            }
+        }
+    }
+
+    /**
+     * @param implementer the fully qualified name of an implementer
+     * @return a read-only list of the roles the implementer plays, empty if it
+     *         plays none
+     */
+    public List<RoleBinding> getBindings(String implementer) {
+        List<RoleBinding> bindings = mBindings.get(implementer);
+        if (bindings == null) {
+            return Collections.emptyList();
+        }
+        return Collections.unmodifiableList(bindings);
+    }
+
+    /**
+     * @return a read-only view of the indexed implementer names
+     */
+    public Set<String> getImplementers() {
+        return Collections.unmodifiableSet(mBindings.keySet());
+    }
+
+}
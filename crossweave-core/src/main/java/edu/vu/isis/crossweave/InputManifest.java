@@ -0,0 +1,197 @@
+/*Copyright (C) 2010-2013 Institute for Software Integrated Systems (ISIS)
+This software was developed by the Institute for Software Integrated
+Systems (ISIS) at Vanderbilt University, Tennessee, USA for the 
+Transformative Apps program under DARPA, Contract # HR011-10-C-0175.
+The United States Government has unlimited rights to this software. 
+The US government has the right to use, modify, reproduce, release, 
+perform, display, or disclose computer software or computer software 
+documentation in whole or in part, in any manner and for any 
+purpose whatsoever, and to have or authorize others to do so.
+ */
+
+package edu.vu.isis.crossweave;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Fingerprint of everything an analysis reads and writes. Files
+ * are recorded by size and last modified time, which takes no more than a
+ * stat per file, and small configuration files by a hash of their content.
+ * Comparing the manifest of the current inputs with the one saved after the
+ * last run tells whether the run can be skipped, and if not, why.
+ *
+ * @author nick
+ */
+public class InputManifest {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(InputManifest.class);
+
+    /** Identifies a manifest file */
+    private static final int MAGIC = 0x4357494D;
+
+    /** Bump whenever the file format or the recorded inputs change */
+    private static final int VERSION = 1;
+
+    private static final String MISSING = "missing";
+
+    private Map<String, String> mEntries;
+
+    public InputManifest() {
+        mEntries = new LinkedHashMap<String, String>();
+    }
+
+    /**
+     * Creates a copy of a manifest.
+     *
+     * @param other the manifest to copy
+     */
+    public InputManifest(InputManifest other) {
+        mEntries = new LinkedHashMap<String, String>(other.mEntries);
+    }
+
+    /**
+     * Records a file by its size and last modified time.
+     *
+     * @param kind what the file is used for, e.g. source or output
+     * @param file the file, which need not exist
+     */
+    public void addFile(String kind, File file) {
+        String stamp = file.isFile() ? file.length() + "@" + file.lastModified() : MISSING;
+        mEntries.put(kind + " " + file.getPath(), stamp);
+    }
+
+    /**
+     * Records a file by a hash of its content, so that touching it without
+     * changing it does not count as a change.
+     *
+     * @param kind what the file is used for, e.g. patternDef
+     * @param file the file, which need not exist
+     * @throws IOException if the file could not be read
+     */
+    public void addContent(String kind, File file) throws IOException {
+        String stamp = file.isFile() ? ScanCache.hashHex(file) : MISSING;
+        mEntries.put(kind + " " + file.getPath(), stamp);
+    }
+
+    /**
+     * Records a setting or version.
+     *
+     * @param key the name of the value
+     * @param value the value, may be null
+     */
+    public void addValue(String key, String value) {
+        mEntries.put(key, String.valueOf(value));
+    }
+
+    /**
+     * @return the number of recorded files and values
+     */
+    public int size() {
+        return mEntries.size();
+    }
+
+    /**
+     * Compares this manifest with that of an earlier run.
+     *
+     * @param previous the manifest of the earlier run, or null if there is none
+     * @return null if nothing changed, else a description of the first change
+     *         found and the number of changes
+     */
+    public String describeChange(InputManifest previous) {
+        if (previous == null) {
+            return "there is no manifest of a previous run";
+        }
+        String first = null;
+        int changes = 0;
+        for (Map.Entry<String, String> entry : mEntries.entrySet()) {
+            String before = previous.mEntries.get(entry.getKey());
+            if (before == null) {
+                changes++;
+                first = first != null ? first : entry.getKey() + " was added";
+            } else if (!before.equals(entry.getValue())) {
+                changes++;
+                first = first != null ? first : entry.getKey() + " changed";
+            }
+        }
+        for (String key : previous.mEntries.keySet()) {
+            if (!mEntries.containsKey(key)) {
+                changes++;
+                first = first != null ? first : key + " was removed";
+            }
+        }
+        if (changes > 1) {
+            first += " (" + changes + " changes)";
+        }
+        return first;
+    }
+
+    /**
+     * Loads a manifest from disk.
+     *
+     * @param file the manifest file
+     * @return the manifest, or null if the file is missing, unreadable or
+     *         outdated
+     */
+    public static InputManifest load(File file) {
+        if (!file.isFile()) {
+            return null;
+        }
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                LOGGER.info("Ignoring outdated input manifest {}", file);
+                return null;
+            }
+            InputManifest manifest = new InputManifest();
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                manifest.mEntries.put(in.readUTF(), in.readUTF());
+            }
+            return manifest;
+        } catch (IOException e) {
+            LOGGER.warn("Could not read input manifest " + file, e);
+            return null;
+        } finally {
+            ScanCache.closeQuietly(in);
+        }
+    }
+
+    /**
+     * Writes this manifest to disk.
+     *
+     * @param file the manifest file
+     * @throws IOException if the manifest could not be written
+     */
+    public void save(File file) throws IOException {
+        File dir = file.getAbsoluteFile().getParentFile();
+        if (dir != null && !dir.exists()) {
+            dir.mkdirs();
+        }
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(file)));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(mEntries.size());
+            for (Map.Entry<String, String> entry : mEntries.entrySet()) {
+                out.writeUTF(entry.getKey());
+                out.writeUTF(entry.getValue());
+            }
+        } finally {
+            out.close();
+        }
+    }
+}
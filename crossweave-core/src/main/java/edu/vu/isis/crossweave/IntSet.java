@@ -0,0 +1,116 @@
+/*Copyright (C) 2010-2013 Institute for Software Integrated Systems (ISIS)
+This software was developed by the Institute for Software Integrated
+Systems (ISIS) at Vanderbilt University, Tennessee, USA for the 
+Transformative Apps program under DARPA, Contract # HR011-10-C-0175.
+The United States Government has unlimited rights to this software. 
+The US government has the right to use, modify, reproduce, release, 
+perform, display, or disclose computer software or computer software 
+documentation in whole or in part, in any manner and for any 
+purpose whatsoever, and to have or authorize others to do so.
+ */
+
+package edu.vu.isis.crossweave;
+
+/**
+ * A set of non-negative ints in an open addressing hash table, for
+ * membership checks on ids without boxing them. Removal shifts the entries
+ * that follow back, so lookups never have to skip deleted slots.
+ * 
+ * @author nick
+ */
+final class IntSet {
+
+    private static final int[] EMPTY = new int[0];
+
+    /** Linear probing table of value + 1, 0 marks a free slot */
+    private int[] mSlots = EMPTY;
+
+    private int mSize;
+
+    /**
+     * @param value a non-negative int
+     * @return true if the value was not in the set yet
+     */
+    boolean add(int value) {
+        if ((mSize + 1) * 2 > mSlots.length) {
+            rehash(Math.max(4, mSlots.length * 2));
+        }
+        int slot = find(value);
+        if (mSlots[slot] != 0) {
+            return false;
+        }
+        mSlots[slot] = value + 1;
+        mSize++;
+        return true;
+    }
+
+    /**
+     * @param value a non-negative int
+     * @return true if the value is in the set
+     */
+    boolean contains(int value) {
+        return mSize > 0 && mSlots[find(value)] != 0;
+    }
+
+    /**
+     * @param value a non-negative int
+     * @return true if the value was in the set
+     */
+    boolean remove(int value) {
+        if (mSize == 0) {
+            return false;
+        }
+        int mask = mSlots.length - 1;
+        int free = find(value);
+        if (mSlots[free] == 0) {
+            return false;
+        }
+        mSlots[free] = 0;
+        mSize--;
+        // Move back the entries that would no longer be found past the gap
+        for (int slot = (free + 1) & mask; mSlots[slot] != 0; slot = (slot + 1) & mask) {
+            int home = mix(mSlots[slot] - 1) & mask;
+            if (((slot - home) & mask) >= ((slot - free) & mask)) {
+                mSlots[free] = mSlots[slot];
+                mSlots[slot] = 0;
+                free = slot;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the number of values in the set
+     */
+    int size() {
+        return mSize;
+    }
+
+    /**
+     * @return the slot that holds the value, or the free slot it would go in
+     */
+    private int find(int value) {
+        int mask = mSlots.length - 1;
+        int slot = mix(value) & mask;
+        while (mSlots[slot] != 0 && mSlots[slot] != value + 1) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void rehash(int capacity) {
+        int[] old = mSlots;
+        mSlots = new int[capacity];
+        for (int entry : old) {
+            if (entry != 0) {
+                mSlots[find(entry - 1)] = entry;
+            }
+        }
+    }
+
+    /** Ids are dense, so spread them over the table */
+    private static int mix(int value) {
+        int hash = value * 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -0,0 +1,185 @@
+/*Copyright (C) 2010-2013 Institute for Software Integrated Systems (ISIS)
+This software was developed by the Institute for Software Integrated
+Systems (ISIS) at Vanderbilt University, Tennessee, USA for the 
+Transformative Apps program under DARPA, Contract # HR011-10-C-0175.
+The United States Government has unlimited rights to this software. 
+The US government has the right to use, modify, reproduce, release, 
+perform, display, or disclose computer software or computer software 
+documentation in whole or in part, in any manner and for any 
+purpose whatsoever, and to have or authorize others to do so.
+ */
+
+package edu.vu.isis.crossweave;
+
+import jdk.jfr.Category;
+import jdk.jfr.Configuration;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Recording;
+import jdk.jfr.StackTrace;
+
+import java.io.File;
+import java.io.IOException;
+import java.text.ParseException;
+
+/**
+ * The flight recorder events of an analysis. This class is only loaded by
+ * {@link AnalysisEvents} if the JVM has the jdk.jfr API. No event is created
+ * until the flight recorder runs, because the first one registers the event
+ * classes with the recorder, which costs more than a short analysis takes.
+ * 
+ * @author nick
+ */
+class JfrAnalysisEvents extends AnalysisEvents {
+
+    @SuppressWarnings("unchecked")
+    private static final Class<? extends Event>[] EVENTS = new Class[] { PhaseEvent.class,
+            SourceFileEvent.class, TemplateRenderEvent.class, PatternDefLoadEvent.class };
+
+    @Override
+    public Span phase(String phase) {
+        if (!FlightRecorder.isInitialized()) {
+            return NONE;
+        }
+        PhaseEvent event = new PhaseEvent();
+        if (!event.isEnabled()) {
+            return NONE;
+        }
+        event.phase = phase;
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public Span sourceFile(File file) {
+        if (!FlightRecorder.isInitialized()) {
+            return NONE;
+        }
+        SourceFileEvent event = new SourceFileEvent();
+        if (!event.isEnabled()) {
+            return NONE;
+        }
+        event.path = file.getPath();
+        event.size = file.length();
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public Span render(String template, File output) {
+        if (!FlightRecorder.isInitialized()) {
+            return NONE;
+        }
+        TemplateRenderEvent event = new TemplateRenderEvent();
+        if (!event.isEnabled()) {
+            return NONE;
+        }
+        event.template = template;
+        event.output = output.getPath();
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public Span patternDef(File file) {
+        if (!FlightRecorder.isInitialized()) {
+            return NONE;
+        }
+        PatternDefLoadEvent event = new PatternDefLoadEvent();
+        if (!event.isEnabled()) {
+            return NONE;
+        }
+        event.path = file.getPath();
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public FlightRecording startRecording(final File file) throws IOException {
+        Configuration configuration;
+        try {
+            configuration = Configuration.getConfiguration("default");
+        } catch (ParseException e) {
+            throw new IOException("Could not read the default recording settings", e);
+        }
+        final Recording recording = new Recording(configuration);
+        recording.setName("crossweave");
+        for (Class<? extends Event> event : EVENTS) {
+            recording.enable(event);
+        }
+        recording.start();
+        return new FlightRecording() {
+
+            @Override
+            public void stop() throws IOException {
+                try {
+                    recording.stop();
+                    File dir = file.getAbsoluteFile().getParentFile();
+                    if (dir != null && !dir.exists()) {
+                        dir.mkdirs();
+                    }
+                    recording.dump(file.toPath());
+                } finally {
+                    recording.close();
+                }
+            }
+        };
+    }
+
+    @Name("crossweave.Phase")
+    @Label("Analysis Phase")
+    @Category("CrossWeave")
+    @Enabled(false)
+    @StackTrace(false)
+    static class PhaseEvent extends Event implements Span {
+
+        @Label("Phase")
+        String phase;
+    }
+
+    @Name("crossweave.SourceFile")
+    @Label("Source File Parsed")
+    @Category("CrossWeave")
+    @Enabled(false)
+    @StackTrace(false)
+    static class SourceFileEvent extends Event implements Span {
+
+        @Label("Path")
+        String path;
+
+        @Label("Size")
+        @DataAmount
+        long size;
+    }
+
+    @Name("crossweave.TemplateRender")
+    @Label("Template Rendered")
+    @Category("CrossWeave")
+    @Enabled(false)
+    @StackTrace(false)
+    static class TemplateRenderEvent extends Event implements Span {
+
+        @Label("Template")
+        String template;
+
+        @Label("Output")
+        @Description("The file the template was rendered to")
+        String output;
+    }
+
+    @Name("crossweave.PatternDefLoad")
+    @Label("Pattern Definitions Loaded")
+    @Category("CrossWeave")
+    @Enabled(false)
+    @StackTrace(false)
+    static class PatternDefLoadEvent extends Event implements Span {
+
+        @Label("Path")
+        String path;
+    }
+}
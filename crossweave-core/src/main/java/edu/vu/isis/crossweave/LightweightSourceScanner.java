@@ -0,0 +1,778 @@
+/*Copyright (C) 2010-2013 Institute for Software Integrated Systems (ISIS)
+This software was developed by the Institute for Software Integrated
+Systems (ISIS) at Vanderbilt University, Tennessee, USA for the 
+Transformative Apps program under DARPA, Contract # HR011-10-C-0175.
+The United States Government has unlimited rights to this software. 
+The US government has the right to use, modify, reproduce, release, 
+perform, display, or disclose computer software or computer software 
+documentation in whole or in part, in any manner and for any 
+purpose whatsoever, and to have or authorize others to do so.
+ */
+
+package edu.vu.isis.crossweave;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * SourceScanner that only tokenizes what it needs: the package and import
+ * declarations, the names of types, fields, methods and constructors, the
+ * parameter types of methods and the annotations in front of all of them.
+ * Method bodies and field initializers are skipped by matching braces and
+ * parentheses, and nothing else of the source is modeled.
+ * <p>
+ * Like QDox, the scanner treats enum constants as fields and binds the
+ * annotations of a field declaration with several declarators to the first
+ * one only. The facts of a class come in the order QDox lists its members:
+ * the class itself, its fields, its methods and constructors, then its
+ * nested classes.
+ * <p>
+ * Annotation names are resolved the way QDox resolves them, so both scanners
+ * report the same facts: the first segment of the name is looked up in the
+ * single type imports, and the remaining segments are treated as nested types.
+ * Values that are not string literals are kept as the source text of the
+ * expression, which may be formatted differently than QDox formats them.
+ *
+ * @author nick
+ */
+public class LightweightSourceScanner implements SourceScanner {
+
+    @Override
+    public List<SourceFacts> scan(List<File> files) throws IOException {
+        Lexer lexer = new Lexer();
+        AnalysisEvents events = AnalysisEvents.get();
+        List<SourceFacts> facts = new ArrayList<SourceFacts>(files.size());
+        for (File file : files) {
+            AnalysisEvents.Span span = events.sourceFile(file);
+            lexer.read(file);
+            facts.add(new Parser(lexer).parse());
+            span.commit();
+        }
+        return facts;
+    }
+
+    @Override
+    public SourceFacts scan(Reader reader) throws IOException {
+        Lexer lexer = new Lexer();
+        lexer.read(reader);
+        return new Parser(lexer).parse();
+    }
+
+    /**
+     * An annotation as written in the source: its unresolved name and its
+     * values, which are Strings, Annotations or Lists of values.
+     */
+    private static class Annotation {
+        String mName;
+        Map<String, Object> mValues = Collections.emptyMap();
+
+        Annotation(String name) {
+            mName = name;
+        }
+
+        void put(String key, Object value) {
+            if (mValues.isEmpty()) {
+                mValues = new HashMap<String, Object>();
+            }
+            mValues.put(key, value);
+        }
+
+        String getString(String key) {
+            Object value = mValues.get(key);
+            return value instanceof String ? AnnotationKind.trimQuotes((String) value) : "";
+        }
+
+        List<Annotation> getAnnotations(String key) {
+            Object value = mValues.get(key);
+            List<Annotation> annotations = new ArrayList<Annotation>();
+            if (value instanceof Annotation) {
+                annotations.add((Annotation) value);
+            } else if (value instanceof List) {
+                for (Object o : (List<?>) value) {
+                    if (o instanceof Annotation) {
+                        annotations.add((Annotation) o);
+                    }
+                }
+            }
+            return annotations;
+        }
+    }
+
+    /**
+     * Splits Java source into identifiers, literals and single character
+     * punctuation, skipping whitespace and comments.
+     */
+    private static class Lexer {
+
+        static final int EOF = 0;
+        static final int IDENT = 1;
+        static final int LITERAL = 2;
+        static final int PUNCT = 3;
+
+        char[] mBuf = new char[8192];
+        int mLen;
+        int mPos;
+
+        int mType;
+        int mStart;
+        int mEnd;
+
+        private int mMarkPos;
+        private int mMarkType;
+        private int mMarkStart;
+        private int mMarkEnd;
+
+        /**
+         * Reads a file with the platform encoding, like QDox does by default.
+         */
+        void read(File file) throws IOException {
+            read(new InputStreamReader(new FileInputStream(file)));
+        }
+
+        /**
+         * Reads all of a source and closes it.
+         */
+        void read(Reader reader) throws IOException {
+            try {
+                mLen = 0;
+                int n;
+                while ((n = reader.read(mBuf, mLen, mBuf.length - mLen)) >= 0) {
+                    mLen += n;
+                    if (mLen == mBuf.length) {
+                        char[] buf = new char[mBuf.length * 2];
+                        System.arraycopy(mBuf, 0, buf, 0, mLen);
+                        mBuf = buf;
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+            mPos = 0;
+            mType = EOF;
+        }
+
+        void next() {
+            skipWhitespaceAndComments();
+            mStart = mPos;
+            if (mPos >= mLen) {
+                mType = EOF;
+                mEnd = mPos;
+                return;
+            }
+            char c = mBuf[mPos];
+            if (Character.isJavaIdentifierStart(c)) {
+                mPos++;
+                while (mPos < mLen && Character.isJavaIdentifierPart(mBuf[mPos])) {
+                    mPos++;
+                }
+                mType = IDENT;
+            } else if (c >= '0' && c <= '9') {
+                mPos++;
+                while (mPos < mLen
+                        && (Character.isLetterOrDigit(mBuf[mPos]) || mBuf[mPos] == '.'
+                                || mBuf[mPos] == '_')) {
+                    mPos++;
+                }
+                mType = LITERAL;
+            } else if (c == '"' || c == '\'') {
+                mPos++;
+                while (mPos < mLen && mBuf[mPos] != c && mBuf[mPos] != '\n') {
+                    mPos += mBuf[mPos] == '\\' ? 2 : 1;
+                }
+                mPos = Math.min(mPos + 1, mLen);
+                mType = LITERAL;
+            } else {
+                mPos++;
+                mType = PUNCT;
+            }
+            mEnd = mPos;
+        }
+
+        private void skipWhitespaceAndComments() {
+            while (mPos < mLen) {
+                char c = mBuf[mPos];
+                if (Character.isWhitespace(c)) {
+                    mPos++;
+                } else if (c == '/' && mPos + 1 < mLen && mBuf[mPos + 1] == '/') {
+                    while (mPos < mLen && mBuf[mPos] != '\n') {
+                        mPos++;
+                    }
+                } else if (c == '/' && mPos + 1 < mLen && mBuf[mPos + 1] == '*') {
+                    mPos += 2;
+                    while (mPos < mLen && !(mBuf[mPos] == '*' && mPos + 1 < mLen
+                            && mBuf[mPos + 1] == '/')) {
+                        mPos++;
+                    }
+                    mPos = Math.min(mPos + 2, mLen);
+                } else {
+                    return;
+                }
+            }
+        }
+
+        void mark() {
+            mMarkPos = mPos;
+            mMarkType = mType;
+            mMarkStart = mStart;
+            mMarkEnd = mEnd;
+        }
+
+        void reset() {
+            mPos = mMarkPos;
+            mType = mMarkType;
+            mStart = mMarkStart;
+            mEnd = mMarkEnd;
+        }
+
+        boolean isPunct(char c) {
+            return mType == PUNCT && mBuf[mStart] == c;
+        }
+
+        boolean isIdent(String s) {
+            if (mType != IDENT || mEnd - mStart != s.length()) {
+                return false;
+            }
+            for (int i = 0; i < s.length(); i++) {
+                if (mBuf[mStart + i] != s.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        String text() {
+            return new String(mBuf, mStart, mEnd - mStart);
+        }
+
+        String text(int start, int end) {
+            return new String(mBuf, start, end - start);
+        }
+    }
+
+    /**
+     * Walks the declarations of one file and collects its facts.
+     */
+    private static class Parser {
+
+        private Lexer mLexer;
+        private String mPackage;
+        private Map<String, String> mImports = new HashMap<String, String>();
+        private List<Annotation> mPending = new ArrayList<Annotation>();
+        private SourceFacts mFacts = new SourceFacts();
+
+        Parser(Lexer lexer) {
+            mLexer = lexer;
+        }
+
+        SourceFacts parse() {
+            Lexer lx = mLexer;
+            lx.next();
+            while (lx.mType != Lexer.EOF) {
+                if (lx.isPunct('@')) {
+                    lx.next();
+                    if (lx.isIdent("interface")) {
+                        declaration(null, mFacts);
+                    } else if (lx.mType == Lexer.IDENT) {
+                        mPending.add(annotation());
+                    }
+                } else if (lx.isIdent("package")) {
+                    lx.next();
+                    mPackage = qualifiedName();
+                    mPending.clear();
+                } else if (lx.isIdent("import")) {
+                    lx.next();
+                    importDeclaration();
+                    mPending.clear();
+                } else if (isTypeKeyword()) {
+                    declaration(null, mFacts);
+                } else if (lx.isPunct('{')) {
+                    skipBlock();
+                } else {
+                    lx.next();
+                }
+            }
+            return mFacts;
+        }
+
+        private boolean isTypeKeyword() {
+            Lexer lx = mLexer;
+            return lx.isIdent("class") || lx.isIdent("interface") || lx.isIdent("enum");
+        }
+
+        private void importDeclaration() {
+            Lexer lx = mLexer;
+            boolean isStatic = lx.isIdent("static");
+            if (isStatic) {
+                lx.next();
+            }
+            String name = qualifiedName();
+            if (lx.isPunct('*')) {
+                return;
+            }
+            if (!isStatic && name.length() > 0) {
+                mImports.put(name.substring(name.lastIndexOf('.') + 1), name);
+            }
+        }
+
+        /**
+         * Handles a type declaration whose keyword is the current token and
+         * walks its body.
+         *
+         * @param outer the binary name of the enclosing class, null for a top
+         *            level type
+         * @param facts the facts to add those of the type to
+         */
+        private void declaration(String outer, SourceFacts facts) {
+            Lexer lx = mLexer;
+            boolean isEnum = lx.isIdent("enum");
+            lx.next();
+            String className = null;
+            if (lx.mType == Lexer.IDENT) {
+                facts.addClass();
+                String name = lx.text();
+                if (outer != null) {
+                    className = outer + "$" + name;
+                } else {
+                    className = mPackage == null ? name : mPackage + "." + name;
+                }
+                bind(className, facts);
+            }
+            mPending.clear();
+            while (lx.mType != Lexer.EOF && !lx.isPunct('{')) {
+                lx.next();
+            }
+            if (className == null) {
+                skipBlock();
+            } else {
+                body(className, isEnum, facts);
+            }
+        }
+
+        /**
+         * Walks the members of a type body, whose opening brace is the current
+         * token.
+         */
+        private void body(String className, boolean isEnum, SourceFacts facts) {
+            Lexer lx = mLexer;
+            SourceFacts fields = new SourceFacts();
+            SourceFacts methods = new SourceFacts();
+            SourceFacts nested = new SourceFacts();
+            lx.next();
+            if (isEnum) {
+                enumConstants(className, fields);
+            }
+            while (lx.mType != Lexer.EOF && !lx.isPunct('}')) {
+                if (lx.isPunct('@')) {
+                    lx.next();
+                    if (lx.isIdent("interface")) {
+                        declaration(className, nested);
+                    } else if (lx.mType == Lexer.IDENT) {
+                        mPending.add(annotation());
+                    }
+                } else if (isTypeKeyword()) {
+                    declaration(className, nested);
+                } else if (lx.isPunct('{')) {
+                    skipBlock();
+                    mPending.clear();
+                } else if (lx.isPunct(';')) {
+                    lx.next();
+                    mPending.clear();
+                } else {
+                    member(className, fields, methods, nested);
+                }
+            }
+            lx.next();
+            append(facts, fields);
+            append(facts, methods);
+            append(facts, nested);
+        }
+
+        /**
+         * Reads the constants at the start of an enum body up to the
+         * semicolon or closing brace that ends them.
+         */
+        private void enumConstants(String className, SourceFacts fields) {
+            Lexer lx = mLexer;
+            while (lx.mType != Lexer.EOF && !lx.isPunct(';') && !lx.isPunct('}')) {
+                if (lx.isPunct('@')) {
+                    lx.next();
+                    if (lx.mType == Lexer.IDENT) {
+                        mPending.add(annotation());
+                    }
+                } else if (lx.mType == Lexer.IDENT) {
+                    bind(className + "#" + lx.text(), fields);
+                    mPending.clear();
+                    lx.next();
+                    if (lx.isPunct('(')) {
+                        skipParentheses();
+                    }
+                    if (lx.isPunct('{')) {
+                        skipBlock();
+                    }
+                } else {
+                    lx.next();
+                }
+            }
+            if (lx.isPunct(';')) {
+                lx.next();
+            }
+        }
+
+        /**
+         * Reads a field, method or constructor declaration from its first
+         * modifier or type token to its end. The name of the member is the
+         * last identifier before the parameter list or the end of the first
+         * declarator. Nested types whose keyword follows modifiers are handed
+         * to declaration.
+         */
+        private void member(String className, SourceFacts fields, SourceFacts methods,
+                SourceFacts nested) {
+            Lexer lx = mLexer;
+            String name = null;
+            while (lx.mType != Lexer.EOF) {
+                if (lx.isPunct('(')) {
+                    String params = parameters();
+                    if (name != null) {
+                        bind(className + "#" + name + "(" + params + ")", methods);
+                    }
+                    mPending.clear();
+                    while (lx.mType != Lexer.EOF && !lx.isPunct('{') && !lx.isPunct(';')
+                            && !lx.isPunct('}')) {
+                        lx.next();
+                    }
+                    if (lx.isPunct('{')) {
+                        skipBlock();
+                    } else if (lx.isPunct(';')) {
+                        lx.next();
+                    }
+                    return;
+                } else if (lx.isPunct('=') || lx.isPunct(',') || lx.isPunct(';')) {
+                    if (name != null) {
+                        bind(className + "#" + name, fields);
+                    }
+                    mPending.clear();
+                    skipToSemicolon();
+                    return;
+                } else if (lx.isPunct('{') || lx.isPunct('}')) {
+                    // An initializer after its static modifier, or stray text
+                    mPending.clear();
+                    return;
+                } else if (lx.isPunct('@')) {
+                    lx.next();
+                    if (lx.isIdent("interface")) {
+                        declaration(className, nested);
+                        return;
+                    } else if (lx.mType == Lexer.IDENT) {
+                        mPending.add(annotation());
+                    }
+                } else if (lx.isPunct('<')) {
+                    skipTypeArguments();
+                } else if (isTypeKeyword()) {
+                    declaration(className, nested);
+                    return;
+                } else {
+                    if (lx.mType == Lexer.IDENT) {
+                        name = lx.text();
+                    }
+                    lx.next();
+                }
+            }
+        }
+
+        /**
+         * Reads a parameter list whose opening parenthesis is the current token.
+         *
+         * @return the simple names of the parameter types, separated by commas
+         */
+        private String parameters() {
+            Lexer lx = mLexer;
+            StringBuilder sb = new StringBuilder();
+            int count = 0;
+            lx.next();
+            while (lx.mType != Lexer.EOF && !lx.isPunct(')')) {
+                String type = null;
+                String last = null;
+                int dims = 0;
+                int dots = 0;
+                while (lx.mType != Lexer.EOF && !lx.isPunct(',') && !lx.isPunct(')')) {
+                    if (lx.isPunct('@')) {
+                        lx.next();
+                        annotation();
+                        dots = 0;
+                        continue;
+                    }
+                    if (lx.isPunct('<')) {
+                        skipTypeArguments();
+                        dots = 0;
+                        continue;
+                    }
+                    if (lx.isPunct('.')) {
+                        // A varargs parameter is an array parameter
+                        if (++dots == 3) {
+                            dims++;
+                        }
+                    } else {
+                        dots = 0;
+                        if (lx.isPunct('[')) {
+                            dims++;
+                        } else if (lx.mType == Lexer.IDENT && !lx.isIdent("final")) {
+                            type = last;
+                            last = lx.text();
+                        }
+                    }
+                    lx.next();
+                }
+                if (count++ > 0) {
+                    sb.append(',');
+                }
+                sb.append(type != null ? type : "");
+                for (int i = 0; i < dims; i++) {
+                    sb.append("[]");
+                }
+                if (lx.isPunct(',')) {
+                    lx.next();
+                }
+            }
+            lx.next();
+            return sb.toString();
+        }
+
+        /**
+         * Skips type arguments or parameters whose opening angle bracket is the
+         * current token.
+         */
+        private void skipTypeArguments() {
+            Lexer lx = mLexer;
+            int depth = 0;
+            do {
+                if (lx.isPunct('<')) {
+                    depth++;
+                } else if (lx.isPunct('>')) {
+                    depth--;
+                }
+                lx.next();
+            } while (depth > 0 && lx.mType != Lexer.EOF);
+        }
+
+        private void skipParentheses() {
+            Lexer lx = mLexer;
+            int depth = 0;
+            do {
+                if (lx.isPunct('(')) {
+                    depth++;
+                } else if (lx.isPunct(')')) {
+                    depth--;
+                }
+                lx.next();
+            } while (depth > 0 && lx.mType != Lexer.EOF);
+        }
+
+        /**
+         * Skips the rest of a field declaration including its semicolon. Array
+         * initializers and anonymous class bodies are skipped as a whole.
+         */
+        private void skipToSemicolon() {
+            Lexer lx = mLexer;
+            while (lx.mType != Lexer.EOF && !lx.isPunct(';') && !lx.isPunct('}')) {
+                if (lx.isPunct('{')) {
+                    skipBlock();
+                } else if (lx.isPunct('(')) {
+                    skipParentheses();
+                } else {
+                    lx.next();
+                }
+            }
+            if (lx.isPunct(';')) {
+                lx.next();
+            }
+        }
+
+        private static void append(SourceFacts to, SourceFacts from) {
+            for (SpecFact spec : from.getSpecs()) {
+                to.addSpec(spec);
+            }
+            for (RoleFact role : from.getRoles()) {
+                to.addRole(role);
+            }
+            to.setClassCount(to.getClassCount() + from.getClassCount());
+        }
+
+        private void skipBlock() {
+            Lexer lx = mLexer;
+            int depth = 0;
+            do {
+                if (lx.isPunct('{')) {
+                    depth++;
+                } else if (lx.isPunct('}')) {
+                    depth--;
+                }
+                lx.next();
+            } while (depth > 0 && lx.mType != Lexer.EOF);
+        }
+
+        /**
+         * Reads a dotted name starting at the current token. Stops in front of
+         * a '*' of a wildcard import.
+         */
+        private String qualifiedName() {
+            Lexer lx = mLexer;
+            if (lx.mType != Lexer.IDENT) {
+                return "";
+            }
+            String name = lx.text();
+            lx.next();
+            while (lx.isPunct('.')) {
+                lx.next();
+                if (lx.mType != Lexer.IDENT) {
+                    break;
+                }
+                name = name + "." + lx.text();
+                lx.next();
+            }
+            return name;
+        }
+
+        /**
+         * Reads an annotation whose name is the current token.
+         */
+        private Annotation annotation() {
+            Lexer lx = mLexer;
+            Annotation ann = new Annotation(qualifiedName());
+            if (!lx.isPunct('(')) {
+                return ann;
+            }
+            lx.next();
+            if (lx.mType == Lexer.IDENT) {
+                lx.mark();
+                String key = lx.text();
+                lx.next();
+                if (lx.isPunct('=')) {
+                    lx.next();
+                    ann.put(key, value());
+                    while (lx.isPunct(',')) {
+                        lx.next();
+                        key = lx.text();
+                        lx.next();
+                        if (lx.isPunct('=')) {
+                            lx.next();
+                        }
+                        ann.put(key, value());
+                    }
+                } else {
+                    lx.reset();
+                    ann.put("value", value());
+                }
+            } else if (!lx.isPunct(')')) {
+                ann.put("value", value());
+            }
+            while (lx.mType != Lexer.EOF && !lx.isPunct(')')) {
+                lx.next();
+            }
+            lx.next();
+            return ann;
+        }
+
+        private Object value() {
+            Lexer lx = mLexer;
+            if (lx.isPunct('@')) {
+                lx.next();
+                return annotation();
+            }
+            if (lx.isPunct('{')) {
+                lx.next();
+                List<Object> values = new ArrayList<Object>();
+                while (lx.mType != Lexer.EOF && !lx.isPunct('}')) {
+                    values.add(value());
+                    if (lx.isPunct(',')) {
+                        lx.next();
+                    } else if (!lx.isPunct('}')) {
+                        lx.next();
+                    }
+                }
+                lx.next();
+                return values;
+            }
+            int start = lx.mStart;
+            int end = lx.mStart;
+            int depth = 0;
+            while (lx.mType != Lexer.EOF) {
+                if (depth == 0 && (lx.isPunct(',') || lx.isPunct(')') || lx.isPunct('}'))) {
+                    break;
+                }
+                if (lx.isPunct('(')) {
+                    depth++;
+                } else if (lx.isPunct(')')) {
+                    depth--;
+                }
+                end = lx.mEnd;
+                lx.next();
+            }
+            return lx.text(start, end);
+        }
+
+        /**
+         * Resolves an annotation name like QDox does: only names whose first
+         * segment is a single type import are qualified.
+         */
+        private String resolve(String name) {
+            int dot = name.indexOf('.');
+            String imported = mImports.get(dot < 0 ? name : name.substring(0, dot));
+            if (imported == null) {
+                return name;
+            }
+            return dot < 0 ? imported : imported + name.substring(dot).replace('.', '$');
+        }
+
+        /**
+         * Adds the facts of the pending annotations, which are those of the
+         * given class or member.
+         */
+        private void bind(String implementer, SourceFacts facts) {
+            for (Annotation ann : mPending) {
+                AnnotationKind kind = AnnotationKind.forType(resolve(ann.mName));
+                if (kind == null) {
+                    continue;
+                }
+                switch (kind) {
+                    case SPECIFICATIONS:
+                        for (Annotation a : ann.getAnnotations("specs")) {
+                            facts.addSpec(toSpecFact(a));
+                        }
+                        break;
+                    case SPECIFICATION:
+                        facts.addSpec(toSpecFact(ann));
+                        break;
+                    case ROLES:
+                        for (Annotation a : ann.getAnnotations("roles")) {
+                            facts.addRole(toRoleFact(a, implementer));
+                        }
+                        break;
+                    case ROLE:
+                        facts.addRole(toRoleFact(ann, implementer));
+                        break;
+                }
+            }
+        }
+
+        private static SpecFact toSpecFact(Annotation ann) {
+            return new SpecFact(ann.getString("alias"),
+                    ann.getString("namespace"),
+                    ann.getString("patternName"),
+                    ann.getString("impl"),
+                    ann.getString("instanceName"));
+        }
+
+        private static RoleFact toRoleFact(Annotation ann, String implementer) {
+            return new RoleFact(ann.getString("alias"), ann.getString("role"), implementer);
+        }
+    }
+
+}
@@ -0,0 +1,270 @@
+/*Copyright (C) 2010-2013 Institute for Software Integrated Systems (ISIS)
+This software was developed by the Institute for Software Integrated
+Systems (ISIS) at Vanderbilt University, Tennessee, USA for the 
+Transformative Apps program under DARPA, Contract # HR011-10-C-0175.
+The United States Government has unlimited rights to this software. 
+The US government has the right to use, modify, reproduce, release, 
+perform, display, or disclose computer software or computer software 
+documentation in whole or in part, in any manner and for any 
+purpose whatsoever, and to have or authorize others to do so.
+ */
+
+package edu.vu.isis.crossweave;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Keeps the facts of every source file and the pattern instances built from
+ * them, so that a changed file only rebuilds the instances whose aliases it
+ * mentions, now or before the change. An instance is rebuilt from the facts of
+ * all files that mention its alias, which also drops the implementers of roles
+ * that were removed from a file.
+ * <p>
+ * The instances come out exactly as
+ * {@link Analysis#applyFacts(java.util.Collection, Map, Map)} builds them
+ * from the same files in {@link #SOURCE_ORDER}: the first spec of an alias
+ * with a known pattern wins, and roles in files before that spec are bound
+ * after all others. Problems are kept per alias, as the same
+ * {@link Diagnostics} a full analysis records for the same files.
+ * 
+ * @author nick
+ */
+public class LiveModel {
+
+    /**
+     * The order in which {@link Analysis#collectSourceFiles(File, List)}
+     * lists files: path components are compared one by one.
+     */
+    public static final Comparator<File> SOURCE_ORDER = new Comparator<File>() {
+
+        @Override
+        public int compare(File a, File b) {
+            String p = a.getPath();
+            String q = b.getPath();
+            int i = 0;
+            int j = 0;
+            while (i < p.length() && j < q.length()) {
+                int pEnd = p.indexOf(File.separatorChar, i);
+                int qEnd = q.indexOf(File.separatorChar, j);
+                if (pEnd < 0) {
+                    pEnd = p.length();
+                }
+                if (qEnd < 0) {
+                    qEnd = q.length();
+                }
+                int c = p.substring(i, pEnd).compareTo(q.substring(j, qEnd));
+                if (c != 0) {
+                    return c;
+                }
+                i = pEnd + 1;
+                j = qEnd + 1;
+            }
+            return (p.length() - i) - (q.length() - j);
+        }
+    };
+
+    private Map<String, Pattern> mPatterns;
+
+    private TreeMap<File, SourceFacts> mFacts = new TreeMap<File, SourceFacts>(SOURCE_ORDER);
+
+    /** The files that mention each alias */
+    private Map<String, Set<File>> mAliasFiles = new HashMap<String, Set<File>>();
+
+    private Map<String, PatternInstance> mInstances = new HashMap<String, PatternInstance>();
+
+    /** The file of the spec each instance was created from */
+    private Map<String, File> mSpecFiles = new HashMap<String, File>();
+
+    /** The problems of the aliases that have any, in alias order */
+    private Map<String, Diagnostics> mDiagnostics = new TreeMap<String, Diagnostics>();
+
+    /**
+     * @param patterns the pattern definitions
+     */
+    public LiveModel(Map<String, Pattern> patterns) {
+        mPatterns = patterns;
+    }
+
+    /**
+     * Replaces the pattern definitions and rebuilds all instances.
+     * 
+     * @param patterns the pattern definitions
+     */
+    public void setPatterns(Map<String, Pattern> patterns) {
+        mPatterns = patterns;
+        for (String alias : new ArrayList<String>(mAliasFiles.keySet())) {
+            rebuild(alias);
+        }
+    }
+
+    /**
+     * Sets the facts of a file and rebuilds the instances they affect.
+     * 
+     * @param file the source file
+     * @param facts the facts of the file, or null if the file was deleted
+     * @return the aliases whose instances were rebuilt
+     */
+    public Set<String> update(File file, SourceFacts facts) {
+        SourceFacts old = facts == null ? mFacts.remove(file) : mFacts.put(file, facts);
+        Set<String> aliases = new HashSet<String>();
+        if (old != null) {
+            for (String alias : getAliases(old)) {
+                Set<File> files = mAliasFiles.get(alias);
+                files.remove(file);
+                if (files.isEmpty()) {
+                    mAliasFiles.remove(alias);
+                }
+                aliases.add(alias);
+            }
+        }
+        if (facts != null) {
+            for (String alias : getAliases(facts)) {
+                Set<File> files = mAliasFiles.get(alias);
+                if (files == null) {
+                    files = new TreeSet<File>(SOURCE_ORDER);
+                    mAliasFiles.put(alias, files);
+                }
+                files.add(file);
+                aliases.add(alias);
+            }
+        }
+        for (String alias : aliases) {
+            rebuild(alias);
+        }
+        return aliases;
+    }
+
+    /**
+     * @return the files in the model, in source order
+     */
+    public Set<File> getFiles() {
+        return Collections.unmodifiableSet(mFacts.keySet());
+    }
+
+    /**
+     * Returns the map of aliases to instances. The map is filled in the order
+     * in which a full analysis creates the instances, so that it iterates in
+     * the same order as the map of a full analysis.
+     * 
+     * @return a new map of aliases to pattern instances
+     */
+    public Map<String, PatternInstance> getInstanceMap() {
+        Map<String, PatternInstance> map = new HashMap<String, PatternInstance>();
+        for (Map.Entry<File, SourceFacts> entry : mFacts.entrySet()) {
+            for (SpecFact spec : entry.getValue().getSpecs()) {
+                String alias = spec.getAlias();
+                if (entry.getKey().equals(mSpecFiles.get(alias)) && !map.containsKey(alias)) {
+                    map.put(alias, mInstances.get(alias));
+                }
+            }
+        }
+        return map;
+    }
+
+    /**
+     * @return a new collection of the problems of all instances, grouped by
+     *         alias
+     */
+    public Diagnostics getDiagnostics() {
+        Diagnostics diagnostics = new Diagnostics();
+        for (Diagnostics alias : mDiagnostics.values()) {
+            diagnostics.addAll(alias);
+        }
+        return diagnostics;
+    }
+
+    private static Set<String> getAliases(SourceFacts facts) {
+        Set<String> aliases = new HashSet<String>();
+        for (SpecFact spec : facts.getSpecs()) {
+            aliases.add(spec.getAlias());
+        }
+        for (RoleFact role : facts.getRoles()) {
+            aliases.add(role.getAlias());
+        }
+        return aliases;
+    }
+
+    private void rebuild(String alias) {
+        mInstances.remove(alias);
+        mSpecFiles.remove(alias);
+        mDiagnostics.remove(alias);
+        Set<File> files = mAliasFiles.get(alias);
+        if (files == null) {
+            return;
+        }
+
+        Diagnostics diagnostics = new Diagnostics();
+        PatternInstance instance = null;
+        File specFile = null;
+        for (File file : files) {
+            for (SpecFact spec : mFacts.get(file).getSpecs()) {
+                if (!spec.getAlias().equals(alias)) {
+                    continue;
+                }
+                Pattern pattern = mPatterns.get(spec.getPatternFullyQualifiedName());
+                if (instance != null) {
+                    diagnostics.duplicateSpec(spec);
+                } else if (pattern == null) {
+                    diagnostics.unknownPattern(spec);
+                } else {
+                    instance = pattern.instantiate(spec.getInstanceName());
+                    specFile = file;
+                }
+            }
+        }
+        if (instance == null) {
+            for (File file : files) {
+                for (RoleFact role : mFacts.get(file).getRoles()) {
+                    if (role.getAlias().equals(alias)) {
+                        diagnostics.unknownAlias(role);
+                    }
+                }
+            }
+            putDiagnostics(alias, diagnostics);
+            return;
+        }
+
+        List<RoleFact> deferred = new ArrayList<RoleFact>();
+        for (File file : files) {
+            boolean bound = SOURCE_ORDER.compare(file, specFile) >= 0;
+            for (RoleFact role : mFacts.get(file).getRoles()) {
+                if (!role.getAlias().equals(alias)) {
+                    continue;
+                }
+                if (bound) {
+                    bind(instance, role, diagnostics);
+                } else {
+                    deferred.add(role);
+                }
+            }
+        }
+        for (RoleFact role : deferred) {
+            bind(instance, role, diagnostics);
+        }
+        mInstances.put(alias, instance);
+        mSpecFiles.put(alias, specFile);
+        putDiagnostics(alias, diagnostics);
+    }
+
+    private void putDiagnostics(String alias, Diagnostics diagnostics) {
+        if (!diagnostics.isEmpty()) {
+            mDiagnostics.put(alias, diagnostics);
+        }
+    }
+
+    private static void bind(PatternInstance instance, RoleFact role, Diagnostics diagnostics) {
+        if (!instance.addImplementerToRole(role.getImplementer(), role.getRole())) {
+            diagnostics.unknownRole(role);
+        }
+    }
+}
@@ -0,0 +1,118 @@
+/*Copyright (C) 2010-2013 Institute for Software Integrated Systems (ISIS)
+This software was developed by the Institute for Software Integrated
+Systems (ISIS) at Vanderbilt University, Tennessee, USA for the 
+Transformative Apps program under DARPA, Contract # HR011-10-C-0175.
+The United States Government has unlimited rights to this software. 
+The US government has the right to use, modify, reproduce, release, 
+perform, display, or disclose computer software or computer software 
+documentation in whole or in part, in any manner and for any 
+purpose whatsoever, and to have or authorize others to do so.
+ */
+
+package edu.vu.isis.crossweave;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Parses source files on several threads. The files are split into work units
+ * of consecutive files, and each unit is handed to the SourceScanner in one
+ * call. The facts are returned in the order of the input files, so merging them
+ * gives the same result as a serial parse.
+ *
+ * @author nick
+ */
+public class ParallelSourceParser {
+
+    /** Work units per thread, so that uneven units still balance out */
+    private static final int UNITS_PER_THREAD = 4;
+
+    private SourceScanner mScanner;
+    private int mThreads;
+
+    /**
+     * @param scanner the scanner that parses each work unit
+     * @param threads the number of threads to parse with
+     */
+    public ParallelSourceParser(SourceScanner scanner, int threads) {
+        mScanner = scanner;
+        mThreads = Math.max(1, threads);
+    }
+
+    /**
+     * Parses the given files and extracts their facts.
+     *
+     * @param files the source files to parse
+     * @return the facts of each file, in the same order as files
+     * @throws IOException if a file could not be read
+     */
+    public List<SourceFacts> parse(List<File> files) throws IOException {
+        if (mThreads == 1 || files.size() < 2) {
+            return mScanner.scan(files);
+        }
+
+        SourceFacts[] facts = new SourceFacts[files.size()];
+        int unitSize = Math.max(1, files.size() / (mThreads * UNITS_PER_THREAD));
+        ExecutorService executor = Executors.newFixedThreadPool(mThreads);
+        try {
+            List<Future<Void>> units = new ArrayList<Future<Void>>();
+            for (int start = 0; start < files.size(); start += unitSize) {
+                int end = Math.min(start + unitSize, files.size());
+                units.add(executor.submit(new ParseUnit(mScanner, files, start, end, facts)));
+            }
+            for (Future<Void> unit : units) {
+                unit.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while parsing sources");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException(cause);
+        } finally {
+            executor.shutdownNow();
+        }
+        return Arrays.asList(facts);
+    }
+
+    private static class ParseUnit implements Callable<Void> {
+
+        private SourceScanner mScanner;
+        private List<File> mFiles;
+        private int mStart;
+        private int mEnd;
+        private SourceFacts[] mFacts;
+
+        ParseUnit(SourceScanner scanner, List<File> files, int start, int end,
+                SourceFacts[] facts) {
+            mScanner = scanner;
+            mFiles = files;
+            mStart = start;
+            mEnd = end;
+            mFacts = facts;
+        }
+
+        @Override
+        public Void call() throws IOException {
+            List<SourceFacts> unit = mScanner.scan(mFiles.subList(mStart, mEnd));
+            for (int i = 0; i < unit.size(); i++) {
+                mFacts[mStart + i] = unit.get(i);
+            }
+            return null;
+        }
+    }
+
+}
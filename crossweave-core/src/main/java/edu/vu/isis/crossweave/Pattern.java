@@ -10,8 +10,10 @@ purpose whatsoever, and to have or authorize others to do so.
  */
 package edu.vu.isis.crossweave;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.List;
 
 /**
  * Object representation of a design pattern specified by a DesignPattern
@@ -22,48 +24,60 @@ import java.util.HashSet;
  */
 public class Pattern {
 
-    private String mNamespace;
-    private String mName;
-    private String mImplementation;
+    private SymbolTable mSymbols;
+    private int mNamespace;
+    private int mName;
+    private int mImplementation;
+    private String mFullyQualifiedName;
     private Collection<Role> mRoles = new HashSet<Role>();
 
     /**
      * Creates a new Pattern
      * 
+     * @param symbols the table of the model the pattern belongs to
      * @param namespace the namespace of the pattern (e.g. GoF, POSA)
      * @param patternName the name of this pattern (e.g. Flyweight, Adapter)
      * @param implementation the implementation of this pattern (optional)
      */
-    public Pattern(String namespace, String patternName, String implementation) {
-        mNamespace = namespace;
-        mName = patternName;
-
+    public Pattern(SymbolTable symbols, String namespace, String patternName,
+            String implementation) {
         if (implementation == null) {
-            mImplementation = "";
-        } else {
-            mImplementation = implementation;
+            implementation = "";
         }
+        mSymbols = symbols;
+        mNamespace = symbols.intern(namespace);
+        mName = symbols.intern(patternName);
+        mImplementation = symbols.intern(implementation);
+        mFullyQualifiedName = namespace + "." + patternName + "." + implementation;
     }
 
     /**
      * @return the pattern namespace
      */
     public String getNamespace() {
-        return mNamespace;
+        return mSymbols.get(mNamespace);
     }
 
     /**
      * @return the pattern name
      */
     public String getName() {
-        return mName;
+        return mSymbols.get(mName);
     }
 
     /**
      * @return the pattern implementation
      */
     public String getImplementation() {
-        return mImplementation;
+        return mSymbols.get(mImplementation);
+    }
+
+    /**
+     * @return the table the names of this pattern and its instances are
+     *         interned in
+     */
+    SymbolTable getSymbols() {
+        return mSymbols;
     }
 
     /**
@@ -95,27 +109,26 @@ public class Pattern {
     public PatternInstance instantiate(String instanceName) {
         // We need to do a deep copy of the all the roles so that they
         // are unique across pattern instances
-        HashSet<Role> copySet = new HashSet<Role>(mRoles.size());
+        List<Role> copies = new ArrayList<Role>(mRoles.size());
         for (Role role : mRoles) {
-            Role copyRole = new Role(role.getName());
-            copySet.add(copyRole);
+            copies.add(new Role(mSymbols, role.getName()));
         }
-        return new PatternInstance(this, instanceName, copySet);
+        return new PatternInstance(this, instanceName, copies);
     }
 
     /**
      * @return the fully qualified name of this pattern
      */
     public String getFullyQualifiedName() {
-        return mNamespace + "." + mName + "." + mImplementation;
+        return mFullyQualifiedName;
     }
 
     @Override
     public int hashCode() {
         int result = 17;
-        result = result * 31 + mNamespace.hashCode();
-        result = result * 31 + mName.hashCode();
-        result = result * 31 + mImplementation.hashCode();
+        result = result * 31 + mNamespace;
+        result = result * 31 + mName;
+        result = result * 31 + mImplementation;
         return result;
     }
 
@@ -125,6 +138,9 @@ public class Pattern {
             return false;
         }
         Pattern pattern = (Pattern) o;
+        if (pattern.mSymbols != mSymbols) {
+            return pattern.getFullyQualifiedName().equals(mFullyQualifiedName);
+        }
         return pattern.mNamespace == this.mNamespace
                 && pattern.mName == this.mName
                 && pattern.mImplementation == this.mImplementation;
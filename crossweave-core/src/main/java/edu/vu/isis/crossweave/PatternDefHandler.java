@@ -31,6 +31,7 @@ public class PatternDefHandler extends DefaultHandler {
     private static final Logger LOGGER = LoggerFactory.getLogger(PatternDefHandler.class);
 
     private Map<String, Pattern> mPatternMap;
+    private SymbolTable mSymbols;
     // private Pattern mCurPattern = null;
     private boolean mIsPatternChild = false;
     private String mCurPatternName;
@@ -39,11 +40,23 @@ public class PatternDefHandler extends DefaultHandler {
     private List<Role> mCurPatternRoles = new ArrayList<Role>();
 
     /**
+     * Creates a handler whose patterns share a new symbol table.
+     * 
      * @param patternMap The Map that will be filled with Strings of pattern
      *            names mapped to Patterns
      */
     public PatternDefHandler(Map<String, Pattern> patternMap) {
+        this(patternMap, new SymbolTable());
+    }
+
+    /**
+     * @param patternMap The Map that will be filled with Strings of pattern
+     *            names mapped to Patterns
+     * @param symbols The table the names of the patterns are interned in
+     */
+    public PatternDefHandler(Map<String, Pattern> patternMap, SymbolTable symbols) {
         mPatternMap = patternMap;
+        mSymbols = symbols;
     }
 
     @Override
@@ -61,7 +74,7 @@ public class PatternDefHandler extends DefaultHandler {
             if (!mIsPatternChild)
                 throw new SAXException("role element must be a child of pattern element");
             String name = attributes.getValue("name");
-            Role role = new Role(name);
+            Role role = new Role(mSymbols, name);
             mCurPatternRoles.add(role);
             LOGGER.debug("Role element: name={}", name);
         } else if (qName.equals("impl")) {
@@ -107,7 +120,7 @@ public class PatternDefHandler extends DefaultHandler {
     }
 
     private void addPatternToMap(String namespace, String name, String impl) {
-        Pattern pattern = new Pattern(namespace, name, impl);
+        Pattern pattern = new Pattern(mSymbols, namespace, name, impl);
         for (Role role : mCurPatternRoles) {
             pattern.addRole(role);
         }
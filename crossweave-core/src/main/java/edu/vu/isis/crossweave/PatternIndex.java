@@ -0,0 +1,437 @@
+/*Copyright (C) 2010-2013 Institute for Software Integrated Systems (ISIS)
+This software was developed by the Institute for Software Integrated
+Systems (ISIS) at Vanderbilt University, Tennessee, USA for the 
+Transformative Apps program under DARPA, Contract # HR011-10-C-0175.
+The United States Government has unlimited rights to this software. 
+The US government has the right to use, modify, reproduce, release, 
+perform, display, or disclose computer software or computer software 
+documentation in whole or in part, in any manner and for any 
+purpose whatsoever, and to have or authorize others to do so.
+ */
+
+package edu.vu.isis.crossweave;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Binary index of the pattern instances found by an analysis, laid out so that
+ * it can be memory-mapped and queried without reading it as a whole. Lookups
+ * by implementer and by pattern are binary searches over sorted tables of
+ * fixed size records; only the matching instances are turned back into
+ * PatternInstance objects.
+ * <p>
+ * All numbers are big-endian ints. The file starts with a header of
+ * {@value #HEADER_INTS} ints: magic, version and the number of strings,
+ * instances, roles, role implementers, implementers and bindings. The
+ * following tables come in that order:
+ * <ul>
+ * <li>strings: the file offset of each string</li>
+ * <li>instances, sorted by pattern name and instance name: pattern fully
+ * qualified name, namespace, pattern name, implementation, instance name,
+ * first role, role count</li>
+ * <li>roles: instance, name, first role implementer, role implementer
+ * count</li>
+ * <li>role implementers: the implementer name of each role, in order</li>
+ * <li>implementers, sorted by name: name, first binding, binding count</li>
+ * <li>bindings: the role an implementer plays</li>
+ * </ul>
+ * The string data follows the tables, each string as its length and its UTF-8
+ * bytes. Strings are referred to by their index in the string table.
+ *
+ * @author nick
+ */
+public class PatternIndex {
+
+    /** Identifies a pattern index file */
+    public static final int MAGIC = 0x43575049;
+
+    /** Bump whenever the file format changes */
+    public static final int VERSION = 1;
+
+    private static final int HEADER_INTS = 8;
+    private static final int INSTANCE_INTS = 7;
+    private static final int ROLE_INTS = 4;
+    private static final int IMPLEMENTER_INTS = 3;
+
+    private static final String CHARSET = "UTF-8";
+
+    private ByteBuffer mBuffer;
+    private SymbolTable mSymbols = new SymbolTable();
+    private int mStrings;
+    private int mInstances;
+    private int mRoles;
+    private int mRoleImplementers;
+    private int mImplementers;
+
+    private PatternIndex(ByteBuffer buffer) throws IOException {
+        mBuffer = buffer;
+        if (buffer.capacity() < HEADER_INTS * 4 || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a pattern index");
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IOException("Unsupported pattern index version " + buffer.getInt(4));
+        }
+        mStrings = buffer.getInt(8);
+        mInstances = buffer.getInt(12);
+        mRoles = buffer.getInt(16);
+        mRoleImplementers = buffer.getInt(20);
+        mImplementers = buffer.getInt(24);
+    }
+
+    /**
+     * Memory-maps an index file.
+     *
+     * @param file the index file
+     * @return the index
+     * @throws IOException if the file could not be mapped or is not an index
+     */
+    public static PatternIndex open(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            return new PatternIndex(channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                    channel.size()));
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Reads an index from memory, for indexes that are not stored in a file.
+     *
+     * @param content the content of an index file
+     * @return the index
+     * @throws IOException if the content is not an index
+     */
+    public static PatternIndex wrap(byte[] content) throws IOException {
+        return new PatternIndex(ByteBuffer.wrap(content));
+    }
+
+    /**
+     * @return the number of pattern instances in the index
+     */
+    public int getInstanceCount() {
+        return mInstances;
+    }
+
+    /**
+     * Looks up the roles an implementer plays.
+     *
+     * @param implementer the fully qualified name of a class
+     * @return the roles the class plays, in the order of the pattern instances;
+     *         empty if it plays none
+     */
+    public List<RoleBinding> getBindings(String implementer) throws IOException {
+        int lo = 0;
+        int hi = mImplementers - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int record = implementerRecord(mid);
+            int cmp = getString(mBuffer.getInt(record)).compareTo(implementer);
+            if (cmp < 0) {
+                lo = mid + 1;
+            } else if (cmp > 0) {
+                hi = mid - 1;
+            } else {
+                Map<Integer, PatternInstance> instances = new HashMap<Integer, PatternInstance>();
+                List<RoleBinding> bindings = new ArrayList<RoleBinding>();
+                int first = mBuffer.getInt(record + 4);
+                int count = mBuffer.getInt(record + 8);
+                for (int i = 0; i < count; i++) {
+                    int role = roleRecord(mBuffer.getInt(bindingOffset(first + i)));
+                    int index = mBuffer.getInt(role);
+                    PatternInstance instance = instances.get(index);
+                    if (instance == null) {
+                        instance = getInstance(index);
+                        instances.put(index, instance);
+                    }
+                    bindings.add(new RoleBinding(instance,
+                            instance.getRole(getString(mBuffer.getInt(role + 4)))));
+                }
+                return bindings;
+            }
+        }
+        return Collections.emptyList();
+    }
+
+    /**
+     * Looks up the instances of a pattern.
+     *
+     * @param pattern the fully qualified name of a pattern, or its namespace
+     *            and name to match every implementation (e.g. gof.adapter)
+     * @return the instances of the pattern, sorted by pattern and instance name
+     */
+    public List<PatternInstance> getInstances(String pattern) throws IOException {
+        // First instance whose pattern name is not less than the query
+        int lo = 0;
+        int hi = mInstances;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (getString(mBuffer.getInt(instanceRecord(mid))).compareTo(pattern) < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+
+        List<PatternInstance> instances = new ArrayList<PatternInstance>();
+        for (int i = lo; i < mInstances; i++) {
+            int record = instanceRecord(i);
+            String fullyQualifiedName = getString(mBuffer.getInt(record));
+            if (!fullyQualifiedName.startsWith(pattern)) {
+                break;
+            }
+            String name = getString(mBuffer.getInt(record + 4)) + "."
+                    + getString(mBuffer.getInt(record + 8));
+            if (fullyQualifiedName.equals(pattern) || name.equals(pattern)) {
+                instances.add(getInstance(i));
+            }
+        }
+        return instances;
+    }
+
+    /**
+     * Rebuilds a pattern instance with its roles and implementers.
+     */
+    private PatternInstance getInstance(int index) throws IOException {
+        int record = instanceRecord(index);
+        Pattern pattern = new Pattern(mSymbols, getString(mBuffer.getInt(record + 4)),
+                getString(mBuffer.getInt(record + 8)), getString(mBuffer.getInt(record + 12)));
+        int firstRole = mBuffer.getInt(record + 20);
+        int roleCount = mBuffer.getInt(record + 24);
+        String[] roleNames = new String[roleCount];
+        for (int i = 0; i < roleCount; i++) {
+            roleNames[i] = getString(mBuffer.getInt(roleRecord(firstRole + i) + 4));
+            pattern.addRole(new Role(mSymbols, roleNames[i]));
+        }
+
+        PatternInstance instance = pattern.instantiate(getString(mBuffer.getInt(record + 16)));
+        for (int i = 0; i < roleCount; i++) {
+            int role = roleRecord(firstRole + i);
+            int first = mBuffer.getInt(role + 8);
+            int count = mBuffer.getInt(role + 12);
+            for (int j = 0; j < count; j++) {
+                instance.addImplementerToRole(getString(mBuffer.getInt(roleImplementerOffset(
+                        first + j))), roleNames[i]);
+            }
+        }
+        return instance;
+    }
+
+    private String getString(int index) throws IOException {
+        int offset = mBuffer.getInt((HEADER_INTS + index) * 4);
+        int length = mBuffer.getInt(offset);
+        byte[] bytes = new byte[length];
+        ByteBuffer data = mBuffer.duplicate();
+        data.position(offset + 4);
+        data.get(bytes);
+        return new String(bytes, CHARSET);
+    }
+
+    private int instanceRecord(int index) {
+        return (HEADER_INTS + mStrings + index * INSTANCE_INTS) * 4;
+    }
+
+    private int roleRecord(int index) {
+        return (HEADER_INTS + mStrings + mInstances * INSTANCE_INTS + index * ROLE_INTS) * 4;
+    }
+
+    private int roleImplementerOffset(int index) {
+        return (HEADER_INTS + mStrings + mInstances * INSTANCE_INTS + mRoles * ROLE_INTS
+                + index) * 4;
+    }
+
+    private int implementerRecord(int index) {
+        return (HEADER_INTS + mStrings + mInstances * INSTANCE_INTS + mRoles * ROLE_INTS
+                + mRoleImplementers + index * IMPLEMENTER_INTS) * 4;
+    }
+
+    private int bindingOffset(int index) {
+        return (HEADER_INTS + mStrings + mInstances * INSTANCE_INTS + mRoles * ROLE_INTS
+                + mRoleImplementers + mImplementers * IMPLEMENTER_INTS + index) * 4;
+    }
+
+    /**
+     * Writes an index of the given pattern instances. The file is replaced
+     * only if its content changes, and is replaced by renaming a new file over
+     * it so that readers that have it mapped keep a consistent view.
+     *
+     * @param file the index file
+     * @param instances the pattern instances to index
+     * @return true if the file was written
+     * @throws IOException if the file could not be written
+     */
+    public static boolean write(File file, Collection<PatternInstance> instances)
+            throws IOException {
+        byte[] content = toBytes(instances);
+        if (file.isFile() && file.length() == content.length
+                && Arrays.equals(content, ShardedReportWriter.readFile(file))) {
+            return false;
+        }
+        if (file.getParentFile() != null) {
+            file.getParentFile().mkdirs();
+        }
+        File tmp = new File(file.getPath() + ".tmp");
+        OutputStream out = new FileOutputStream(tmp);
+        try {
+            out.write(content);
+        } finally {
+            out.close();
+        }
+        if (!tmp.renameTo(file)) {
+            // Some platforms do not rename over an existing file
+            file.delete();
+            if (!tmp.renameTo(file)) {
+                throw new IOException("Could not replace " + file);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Encodes the given pattern instances as an index.
+     *
+     * @param instances the pattern instances to index
+     * @return the content of the index file
+     */
+    public static byte[] toBytes(Collection<PatternInstance> instances) throws IOException {
+        List<PatternInstance> sorted = new ArrayList<PatternInstance>(instances);
+        Collections.sort(sorted, new Comparator<PatternInstance>() {
+            @Override
+            public int compare(PatternInstance a, PatternInstance b) {
+                int cmp = a.getPattern().getFullyQualifiedName().compareTo(
+                        b.getPattern().getFullyQualifiedName());
+                return cmp != 0 ? cmp : a.getInstanceName().compareTo(b.getInstanceName());
+            }
+        });
+
+        StringTable strings = new StringTable();
+        List<int[]> instanceRecords = new ArrayList<int[]>(sorted.size());
+        List<int[]> roleRecords = new ArrayList<int[]>();
+        List<Integer> roleImplementers = new ArrayList<Integer>();
+        ImplementerIndex implementerIndex = new ImplementerIndex();
+        // Roles of different instances can be equal, so key them by identity
+        Map<Role, Integer> roleIndexes = new IdentityHashMap<Role, Integer>();
+        for (int i = 0; i < sorted.size(); i++) {
+            PatternInstance instance = sorted.get(i);
+            Pattern pattern = instance.getPattern();
+            instanceRecords.add(new int[] {
+                    strings.add(pattern.getFullyQualifiedName()),
+                    strings.add(pattern.getNamespace()),
+                    strings.add(pattern.getName()),
+                    strings.add(pattern.getImplementation()),
+                    strings.add(instance.getInstanceName()),
+                    roleRecords.size(),
+                    instance.getRoles().size() });
+            for (Role role : instance.getRoles()) {
+                roleIndexes.put(role, roleRecords.size());
+                roleRecords.add(new int[] {
+                        i, strings.add(role.getName()),
+                        roleImplementers.size(), role.getImplementers().size() });
+                for (String implementer : role.getImplementers()) {
+                    roleImplementers.add(strings.add(implementer));
+                }
+            }
+            implementerIndex.add(instance);
+        }
+
+        List<String> implementers = new ArrayList<String>(implementerIndex.getImplementers());
+        Collections.sort(implementers);
+        List<int[]> implementerRecords = new ArrayList<int[]>(implementers.size());
+        List<Integer> bindings = new ArrayList<Integer>();
+        for (String implementer : implementers) {
+            List<RoleBinding> roles = implementerIndex.getBindings(implementer);
+            implementerRecords.add(new int[] {
+                    strings.add(implementer), bindings.size(), roles.size() });
+            for (RoleBinding binding : roles) {
+                bindings.add(roleIndexes.get(binding.getRole()));
+            }
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(strings.size());
+        out.writeInt(instanceRecords.size());
+        out.writeInt(roleRecords.size());
+        out.writeInt(roleImplementers.size());
+        out.writeInt(implementerRecords.size());
+        out.writeInt(bindings.size());
+
+        int offset = (HEADER_INTS + strings.size() + instanceRecords.size() * INSTANCE_INTS
+                + roleRecords.size() * ROLE_INTS + roleImplementers.size()
+                + implementerRecords.size() * IMPLEMENTER_INTS + bindings.size()) * 4;
+        for (byte[] s : strings.mEncoded) {
+            out.writeInt(offset);
+            offset += 4 + s.length;
+        }
+        writeRecords(out, instanceRecords);
+        writeRecords(out, roleRecords);
+        writeInts(out, roleImplementers);
+        writeRecords(out, implementerRecords);
+        writeInts(out, bindings);
+        for (byte[] s : strings.mEncoded) {
+            out.writeInt(s.length);
+            out.write(s);
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static void writeRecords(DataOutputStream out, List<int[]> records)
+            throws IOException {
+        for (int[] record : records) {
+            for (int value : record) {
+                out.writeInt(value);
+            }
+        }
+    }
+
+    private static void writeInts(DataOutputStream out, List<Integer> values) throws IOException {
+        for (Integer value : values) {
+            out.writeInt(value);
+        }
+    }
+
+    /**
+     * Assigns each distinct string an index, in order of first use.
+     */
+    private static class StringTable {
+
+        private Map<String, Integer> mIndexes = new HashMap<String, Integer>();
+        private List<byte[]> mEncoded = new ArrayList<byte[]>();
+
+        int add(String s) throws IOException {
+            Integer index = mIndexes.get(s);
+            if (index == null) {
+                index = mEncoded.size();
+                mIndexes.put(s, index);
+                mEncoded.add(s.getBytes(CHARSET));
+            }
+            return index;
+        }
+
+        int size() {
+            return mEncoded.size();
+        }
+    }
+
+}
@@ -12,6 +12,9 @@ package edu.vu.isis.crossweave;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * An instance of a Pattern. Whereas a Pattern is a model for a particular
@@ -25,8 +28,10 @@ import java.util.Collection;
 public class PatternInstance {
     
     private Pattern mPattern;
-    private String mInstanceName;
-    private Collection<Role> mRoles;
+    private int mInstanceName;
+    private String mFullyQualifiedName;
+    private Map<String, Role> mRoles;
+    private Collection<Role> mRolesView;
 
     /**
      * @param pattern The Pattern that we are instantiating
@@ -35,8 +40,15 @@ public class PatternInstance {
      */
     public PatternInstance(Pattern pattern, String instanceName, Collection<Role> roles) {
         mPattern = pattern;
-        mInstanceName = instanceName;
-        mRoles = roles;
+        mInstanceName = pattern.getSymbols().intern(instanceName);
+        mFullyQualifiedName = pattern.getFullyQualifiedName() + "." + instanceName;
+        // Sized like the role set this map replaces, so roles iterate in the
+        // same order as before
+        mRoles = new HashMap<String, Role>(roles.size());
+        for (Role role : roles) {
+            mRoles.put(role.getName(), role);
+        }
+        mRolesView = Collections.unmodifiableCollection(mRoles.values());
     }
 
     /**
@@ -47,10 +59,26 @@ public class PatternInstance {
     }
 
     /**
-     * @return The Roles in this PatternInstance
+     * @return The name of this PatternInstance
+     */
+    public String getInstanceName() {
+        return mPattern.getSymbols().get(mInstanceName);
+    }
+
+    /**
+     * @return A read-only view of the Roles in this PatternInstance
      */
     public Collection<Role> getRoles() {
-        return new ArrayList<Role>(mRoles);
+        return mRolesView;
+    }
+
+    /**
+     * @param roleName The name of a role
+     * @return The role with the given name, or null if this PatternInstance has
+     *         no such role
+     */
+    public Role getRole(String roleName) {
+        return mRoles.get(roleName);
     }
 
     /**
@@ -69,16 +97,15 @@ public class PatternInstance {
      * 
      * @param implementer The name of the entity implementing the role
      * @param roleName The name of the role
-     * @return true if the implementer was added, false if not
+     * @return true if the role exists in this pattern instance, false if not
      */
     public boolean addImplementerToRole(String implementer, String roleName) {
-        for (Role role : mRoles) {
-            if (role.getName().equals(roleName)) {
-                role.addImplementer(implementer);
-                return true;
-            }
+        Role role = mRoles.get(roleName);
+        if (role == null) {
+            return false;
         }
-        return false;
+        role.addImplementer(implementer);
+        return true;
     }
 
     /**
@@ -86,7 +113,7 @@ public class PatternInstance {
      */
     public Collection<Role> getEmptyRoles() {
         Collection<Role> emptyRoles = new ArrayList<Role>();
-        for (Role role : mRoles) {
+        for (Role role : mRoles.values()) {
             if (role.hasNoImplementers())
                 emptyRoles.add(role);
         }
@@ -98,7 +125,7 @@ public class PatternInstance {
      *         false otherwise
      */
     public boolean isUnfilled() {
-        for (Role role : mRoles) {
+        for (Role role : mRoles.values()) {
             if (role.hasNoImplementers())
                 return true;
         }
@@ -109,7 +136,7 @@ public class PatternInstance {
      * @return the fully qualified name of this PatternInstance
      */
     public String getFullyQualifiedName() {
-        return mPattern.getFullyQualifiedName() + "." + mInstanceName;
+        return mFullyQualifiedName;
     }
 
 }
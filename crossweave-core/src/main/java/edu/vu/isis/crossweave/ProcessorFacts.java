@@ -0,0 +1,93 @@
+/*Copyright (C) 2010-2013 Institute for Software Integrated Systems (ISIS)
+This software was developed by the Institute for Software Integrated
+Systems (ISIS) at Vanderbilt University, Tennessee, USA for the 
+Transformative Apps program under DARPA, Contract # HR011-10-C-0175.
+The United States Government has unlimited rights to this software. 
+The US government has the right to use, modify, reproduce, release, 
+perform, display, or disclose computer software or computer software 
+documentation in whole or in part, in any manner and for any 
+purpose whatsoever, and to have or authorize others to do so.
+ */
+
+package edu.vu.isis.crossweave;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads the pattern facts file written by the DesignPatternProcessor of
+ * crossweave-lib during compilation. See that class for the file format; the
+ * facts of each type use the same layout as the ScanCache.
+ *
+ * @author nick
+ */
+public class ProcessorFacts {
+
+    /** Must match DesignPatternProcessor.MAGIC */
+    private static final int MAGIC = 0x43575046;
+
+    /** Must match DesignPatternProcessor.VERSION */
+    private static final int VERSION = 2;
+
+    private ProcessorFacts() {
+    }
+
+    /**
+     * Reads a pattern facts file.
+     *
+     * @param file the file written by the annotation processor
+     * @return the facts of each source file with annotated types, in the
+     *         order Analysis.collectSourceFiles lists the files
+     * @throws IOException if the file could not be read or has the wrong
+     *             format
+     */
+    public static List<SourceFacts> read(File file) throws IOException {
+        List<SourceFacts> facts = new ArrayList<SourceFacts>();
+        DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new FileInputStream(file)));
+        try {
+            if (in.readInt() != MAGIC) {
+                throw new IOException(file + " is not a pattern facts file");
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new IOException(file + " has version " + version + ", expected "
+                        + VERSION);
+            }
+            int types = in.readInt();
+            String previous = null;
+            SourceFacts source = null;
+            for (int i = 0; i < types; i++) {
+                // type name, only needed for diagnostics
+                in.readUTF();
+                String path = in.readUTF();
+                // position in the file, which the types are already sorted by
+                in.readInt();
+                SourceFacts type = ScanCache.readFacts(in);
+                // The types of a file follow each other and are merged, like
+                // a scanner reports them
+                if (!path.equals(previous)) {
+                    source = new SourceFacts();
+                    facts.add(source);
+                    previous = path;
+                }
+                for (SpecFact spec : type.getSpecs()) {
+                    source.addSpec(spec);
+                }
+                for (RoleFact role : type.getRoles()) {
+                    source.addRole(role);
+                }
+                source.addClass();
+            }
+        } finally {
+            in.close();
+        }
+        return facts;
+    }
+
+}
@@ -0,0 +1,205 @@
+/*Copyright (C) 2010-2013 Institute for Software Integrated Systems (ISIS)
+This software was developed by the Institute for Software Integrated
+Systems (ISIS) at Vanderbilt University, Tennessee, USA for the 
+Transformative Apps program under DARPA, Contract # HR011-10-C-0175.
+The United States Government has unlimited rights to this software. 
+The US government has the right to use, modify, reproduce, release, 
+perform, display, or disclose computer software or computer software 
+documentation in whole or in part, in any manner and for any 
+purpose whatsoever, and to have or authorize others to do so.
+ */
+
+package edu.vu.isis.crossweave;
+
+import com.thoughtworks.qdox.JavaDocBuilder;
+import com.thoughtworks.qdox.model.Annotation;
+import com.thoughtworks.qdox.model.JavaClass;
+import com.thoughtworks.qdox.model.JavaField;
+import com.thoughtworks.qdox.model.JavaMethod;
+import com.thoughtworks.qdox.model.JavaParameter;
+import com.thoughtworks.qdox.model.JavaSource;
+import com.thoughtworks.qdox.model.Type;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * SourceScanner that builds a full QDox source model of each file. Every call
+ * to scan uses its own JavaDocBuilder, since QDox is not thread safe.
+ * <p>
+ * A JavaDocBuilder keeps every source added to it, so by default the models of
+ * a whole work unit stay reachable until the unit is done. When sources are
+ * discarded, each file gets a fresh builder and its model can be garbage
+ * collected as soon as the facts have been extracted.
+ *
+ * @author nick
+ */
+public class QDoxSourceScanner implements SourceScanner {
+
+    private boolean mDiscardSources;
+
+    public QDoxSourceScanner() {
+        this(false);
+    }
+
+    /**
+     * @param discardSources parse each file with its own JavaDocBuilder, so
+     *            that at most one source model is held at a time
+     */
+    public QDoxSourceScanner(boolean discardSources) {
+        mDiscardSources = discardSources;
+    }
+
+    @Override
+    public List<SourceFacts> scan(List<File> files) throws IOException {
+        JavaDocBuilder builder = null;
+        AnalysisEvents events = AnalysisEvents.get();
+        List<SourceFacts> facts = new ArrayList<SourceFacts>(files.size());
+        for (File file : files) {
+            AnalysisEvents.Span span = events.sourceFile(file);
+            if (builder == null || mDiscardSources) {
+                builder = new JavaDocBuilder();
+            }
+            facts.add(extractFacts(builder.addSource(file)));
+            span.commit();
+        }
+        return facts;
+    }
+
+    @Override
+    public SourceFacts scan(Reader reader) throws IOException {
+        try {
+            return extractFacts(new JavaDocBuilder().addSource(reader));
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Extracts the DesignPattern specs and roles of a parsed source file in a
+     * single walk over its classes, their members and annotations. Each class
+     * contributes the facts of its own annotations, then those of its fields,
+     * its methods and constructors, and its nested classes.
+     *
+     * @param src the parsed source
+     * @return the facts of the source
+     */
+    public static SourceFacts extractFacts(JavaSource src) {
+        SourceFacts facts = new SourceFacts();
+        for (JavaClass clazz : src.getClasses()) {
+            extractFacts(clazz, facts);
+        }
+        return facts;
+    }
+
+    private static void extractFacts(JavaClass clazz, SourceFacts facts) {
+        facts.addClass();
+        String name = clazz.getFullyQualifiedName();
+        addFacts(clazz.getAnnotations(), name, facts);
+        for (JavaField field : clazz.getFields()) {
+            addFacts(field.getAnnotations(), name + "#" + field.getName(), facts);
+        }
+        for (JavaMethod method : clazz.getMethods()) {
+            addFacts(method.getAnnotations(), getSignature(name, method), facts);
+        }
+        for (JavaClass nested : clazz.getNestedClasses()) {
+            extractFacts(nested, facts);
+        }
+    }
+
+    private static void addFacts(Annotation[] annotations, String implementer,
+            SourceFacts facts) {
+        for (Annotation ann : annotations) {
+            AnnotationKind kind = AnnotationKind.forType(ann.getType().getFullyQualifiedName());
+            if (kind == null) {
+                continue;
+            }
+            switch (kind) {
+                case SPECIFICATIONS:
+                    for (Annotation a : getNestedAnnotations(ann, "specs")) {
+                        facts.addSpec(toSpecFact(a));
+                    }
+                    break;
+                case SPECIFICATION:
+                    facts.addSpec(toSpecFact(ann));
+                    break;
+                case ROLES:
+                    for (Annotation a : getNestedAnnotations(ann, "roles")) {
+                        facts.addRole(toRoleFact(a, implementer));
+                    }
+                    break;
+                case ROLE:
+                    facts.addRole(toRoleFact(ann, implementer));
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Returns the implementer name of a method or constructor: the class name,
+     * '#', the method name and the simple names of the parameter types, like
+     * pkg.Adapter#adapt(Cat,String[]).
+     */
+    private static String getSignature(String className, JavaMethod method) {
+        StringBuilder sb = new StringBuilder(className).append('#').append(method.getName())
+                .append('(');
+        JavaParameter[] params = method.getParameters();
+        for (int i = 0; i < params.length; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            Type type = params[i].getType();
+            String value = type.getValue();
+            sb.append(value.substring(Math.max(value.lastIndexOf('.'), value.lastIndexOf('$')) + 1));
+            for (int d = 0; d < type.getDimensions(); d++) {
+                sb.append("[]");
+            }
+            if (params[i].isVarArgs()) {
+                sb.append("[]");
+            }
+        }
+        return sb.append(')').toString();
+    }
+
+    /**
+     * Returns the annotations of an array valued parameter. A single annotation
+     * may be written without the array braces.
+     */
+    @SuppressWarnings("unchecked")
+    private static List<Annotation> getNestedAnnotations(Annotation ann, String key) {
+        Object value = ann.getNamedParameter(key);
+        if (value instanceof Annotation) {
+            return Collections.singletonList((Annotation) value);
+        } else if (value == null) {
+            return Collections.emptyList();
+        }
+        return (List<Annotation>) value;
+    }
+
+    private static String getParamAndTrimQuotes(Annotation ann, String key) {
+        String param = (String) ann.getNamedParameter(key);
+        if (param == null) {
+            return "";
+        } else {
+            return AnnotationKind.trimQuotes(param);
+        }
+    }
+
+    private static SpecFact toSpecFact(Annotation ann) {
+        return new SpecFact(getParamAndTrimQuotes(ann, "alias"),
+                getParamAndTrimQuotes(ann, "namespace"),
+                getParamAndTrimQuotes(ann, "patternName"),
+                getParamAndTrimQuotes(ann, "impl"),
+                getParamAndTrimQuotes(ann, "instanceName"));
+    }
+
+    private static RoleFact toRoleFact(Annotation ann, String implementer) {
+        return new RoleFact(getParamAndTrimQuotes(ann, "alias"),
+                getParamAndTrimQuotes(ann, "role"), implementer);
+    }
+
+}
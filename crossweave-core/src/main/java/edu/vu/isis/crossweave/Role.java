@@ -0,0 +1,195 @@
+/*Copyright (C) 2010-2013 Institute for Software Integrated Systems (ISIS)
+This software was developed by the Institute for Software Integrated
+Systems (ISIS) at Vanderbilt University, Tennessee, USA for the 
+Transformative Apps program under DARPA, Contract # HR011-10-C-0175.
+The United States Government has unlimited rights to this software. 
+The US government has the right to use, modify, reproduce, release, 
+perform, display, or disclose computer software or computer software 
+documentation in whole or in part, in any manner and for any 
+purpose whatsoever, and to have or authorize others to do so.
+ */
+package edu.vu.isis.crossweave;
+
+import java.util.AbstractList;
+import java.util.Collection;
+
+/**
+ * Keeps track of what is implementing a particular role of a design pattern.
+ * The names of the role and its implementers are kept as ids in the
+ * {@link SymbolTable} of the model, which holds one copy of each name. The
+ * ids are kept in insertion order. Roles with more than a few implementers
+ * also keep a hash set of them for membership checks.
+ * 
+ * @author nick
+ */
+public class Role {
+
+    private static final int[] NO_IMPLEMENTERS = new int[0];
+
+    /** The number of implementers above which a role keeps a hash set */
+    private static final int SET_THRESHOLD = 8;
+
+    private SymbolTable mSymbols;
+    private int mName;
+    private int[] mImplementers = NO_IMPLEMENTERS;
+    private int mImplementerCount;
+    private IntSet mImplementerSet;
+    private Collection<String> mImplementersView;
+
+    /**
+     * @param symbols The table of the model the role belongs to
+     * @param name The name of the role
+     */
+    public Role(SymbolTable symbols, String name) {
+        mSymbols = symbols;
+        mName = symbols.intern(name);
+    }
+
+    /**
+     * @return The name of this role
+     */
+    public String getName() {
+        return mSymbols.get(mName);
+    }
+
+    /**
+     * Adds an implementer to this role. Implementers are kept in the order they
+     * were first added; adding an implementer again has no effect.
+     * 
+     * @param implementer The name of the thing that is implementing this role
+     * @return true if the implementer was not already implementing this role
+     */
+    public boolean addImplementer(String implementer) {
+        int id = mSymbols.intern(implementer);
+        if (contains(id)) {
+            return false;
+        }
+        if (mImplementerCount == mImplementers.length) {
+            int[] implementers = new int[Math.max(1, mImplementerCount * 2)];
+            System.arraycopy(mImplementers, 0, implementers, 0, mImplementerCount);
+            mImplementers = implementers;
+        }
+        mImplementers[mImplementerCount++] = id;
+        if (mImplementerSet != null) {
+            mImplementerSet.add(id);
+        } else if (mImplementerCount > SET_THRESHOLD) {
+            mImplementerSet = new IntSet();
+            for (int i = 0; i < mImplementerCount; i++) {
+                mImplementerSet.add(mImplementers[i]);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Determines whether an implementer of a given name implements this role
+     * 
+     * @param implementer The name of the implementer
+     * @return true if the given implementer implements this role, false
+     *         otherwise
+     */
+    public boolean isImplementer(String implementer) {
+        int id = mSymbols.lookup(implementer);
+        return id >= 0 && contains(id);
+    }
+
+    /**
+     * Removes the implementer from this role
+     * 
+     * @param implementer The name of the implementer to remove
+     */
+    public void removeImplementer(String implementer) {
+        int id = mSymbols.lookup(implementer);
+        int index = id >= 0 ? indexOf(id) : -1;
+        if (index >= 0) {
+            if (mImplementerSet != null) {
+                mImplementerSet.remove(id);
+            }
+            mImplementerCount--;
+            System.arraycopy(mImplementers, index + 1, mImplementers, index,
+                    mImplementerCount - index);
+        }
+    }
+
+    /**
+     * Determines whether this role has no implementers
+     * 
+     * @return true if nothing is implementing this role, false otherwise
+     */
+    public boolean hasNoImplementers() {
+        return mImplementerCount == 0;
+    }
+
+    /**
+     * @return a read-only view of the names of the implementers of this role
+     */
+    public Collection<String> getImplementers() {
+        if (mImplementersView == null) {
+            mImplementersView = new ImplementersView();
+        }
+        return mImplementersView;
+    }
+
+    private boolean contains(int id) {
+        return mImplementerSet != null ? mImplementerSet.contains(id) : indexOf(id) >= 0;
+    }
+
+    /**
+     * @return the position of an implementer in insertion order
+     */
+    private int indexOf(int id) {
+        for (int i = 0; i < mImplementerCount; i++) {
+            if (mImplementers[i] == id) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public int hashCode() {
+        return getName().hashCode();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof Role))
+            return false;
+        Role role = (Role) o;
+        if (role.mSymbols != mSymbols) {
+            return role.getName().equals(getName());
+        }
+        return role.mName == mName;
+    }
+
+    @Override
+    public String toString() {
+        return getName();
+    }
+
+    /**
+     * Resolves the implementer ids of the role as they are read
+     */
+    private class ImplementersView extends AbstractList<String> {
+
+        @Override
+        public String get(int index) {
+            if (index >= mImplementerCount) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: "
+                        + mImplementerCount);
+            }
+            return mSymbols.get(mImplementers[index]);
+        }
+
+        @Override
+        public int size() {
+            return mImplementerCount;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return o instanceof String && isImplementer((String) o);
+        }
+    }
+
+}
@@ -0,0 +1,51 @@
+/*Copyright (C) 2010-2013 Institute for Software Integrated Systems (ISIS)
+This software was developed by the Institute for Software Integrated
+Systems (ISIS) at Vanderbilt University, Tennessee, USA for the 
+Transformative Apps program under DARPA, Contract # HR011-10-C-0175.
+The United States Government has unlimited rights to this software. 
+The US government has the right to use, modify, reproduce, release, 
+perform, display, or disclose computer software or computer software 
+documentation in whole or in part, in any manner and for any 
+purpose whatsoever, and to have or authorize others to do so.
+ */
+package edu.vu.isis.crossweave;
+
+/**
+ * A role of a pattern instance that a particular implementer plays.
+ * 
+ * @author nick
+ */
+public class RoleBinding {
+
+    private PatternInstance mInstance;
+    private Role mRole;
+
+    /**
+     * @param instance the pattern instance
+     * @param role the role within the pattern instance
+     */
+    public RoleBinding(PatternInstance instance, Role role) {
+        mInstance = instance;
+        mRole = role;
+    }
+
+    /**
+     * @return the pattern instance
+     */
+    public PatternInstance getInstance() {
+        return mInstance;
+    }
+
+    /**
+     * @return the role within the pattern instance
+     */
+    public Role getRole() {
+        return mRole;
+    }
+
+    @Override
+    public String toString() {
+        return mInstance.getFullyQualifiedName() + "#" + mRole.getName();
+    }
+
+}
@@ -0,0 +1,83 @@
+/*Copyright (C) 2010-2013 Institute for Software Integrated Systems (ISIS)
+This software was developed by the Institute for Software Integrated
+Systems (ISIS) at Vanderbilt University, Tennessee, USA for the 
+Transformative Apps program under DARPA, Contract # HR011-10-C-0175.
+The United States Government has unlimited rights to this software. 
+The US government has the right to use, modify, reproduce, release, 
+perform, display, or disclose computer software or computer software 
+documentation in whole or in part, in any manner and for any 
+purpose whatsoever, and to have or authorize others to do so.
+ */
+
+package edu.vu.isis.crossweave;
+
+/**
+ * The values of a single DesignPattern.Role annotation found in a source file,
+ * together with the entity that carries the annotation.
+ *
+ * @author nick
+ */
+public class RoleFact {
+
+    private String mAlias;
+    private String mRole;
+    private String mImplementer;
+
+    /**
+     * @param alias the alias of the pattern instance the role belongs to
+     * @param role the name of the role
+     * @param implementer the name of the entity implementing the role
+     */
+    public RoleFact(String alias, String role, String implementer) {
+        mAlias = alias;
+        mRole = role;
+        mImplementer = implementer;
+    }
+
+    /**
+     * @return the alias of the pattern instance the role belongs to
+     */
+    public String getAlias() {
+        return mAlias;
+    }
+
+    /**
+     * @return the name of the role
+     */
+    public String getRole() {
+        return mRole;
+    }
+
+    /**
+     * @return the name of the entity implementing the role
+     */
+    public String getImplementer() {
+        return mImplementer;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = 17;
+        result = result * 31 + mAlias.hashCode();
+        result = result * 31 + mRole.hashCode();
+        result = result * 31 + mImplementer.hashCode();
+        return result;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof RoleFact)) {
+            return false;
+        }
+        RoleFact role = (RoleFact) o;
+        return role.mAlias.equals(mAlias)
+                && role.mRole.equals(mRole)
+                && role.mImplementer.equals(mImplementer);
+    }
+
+    @Override
+    public String toString() {
+        return mImplementer + " plays " + mRole + " in " + mAlias;
+    }
+
+}
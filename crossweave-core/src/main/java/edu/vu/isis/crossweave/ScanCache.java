@@ -0,0 +1,293 @@
+/*Copyright (C) 2010-2013 Institute for Software Integrated Systems (ISIS)
+This software was developed by the Institute for Software Integrated
+Systems (ISIS) at Vanderbilt University, Tennessee, USA for the 
+Transformative Apps program under DARPA, Contract # HR011-10-C-0175.
+The United States Government has unlimited rights to this software. 
+The US government has the right to use, modify, reproduce, release, 
+perform, display, or disclose computer software or computer software 
+documentation in whole or in part, in any manner and for any 
+purpose whatsoever, and to have or authorize others to do so.
+ */
+
+package edu.vu.isis.crossweave;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Persistent cache of the SourceFacts extracted from each source file. Entries
+ * are keyed by the file path and validated against the file size, the last
+ * modified time and a hash of the file content, so that only new or changed
+ * files need to be parsed again.
+ *
+ * @author nick
+ */
+public class ScanCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ScanCache.class);
+
+    /** Identifies a scan cache file */
+    private static final int MAGIC = 0x43575343;
+
+    /** Bump whenever the file format or the extracted facts change */
+    private static final int VERSION = 3;
+
+    private static final String HASH_ALGORITHM = "SHA-1";
+
+    private Map<String, Entry> mEntries = new HashMap<String, Entry>();
+    private boolean mDirty = false;
+
+    /**
+     * A cached file: the stamp it had when it was scanned and its facts.
+     */
+    private static class Entry {
+        long mSize;
+        long mLastModified;
+        byte[] mHash;
+        SourceFacts mFacts;
+    }
+
+    /**
+     * Loads a cache from disk. A missing, unreadable or outdated cache file
+     * results in an empty cache.
+     *
+     * @param file the cache file
+     * @return the loaded cache
+     */
+    public static ScanCache load(File file) {
+        ScanCache cache = new ScanCache();
+        if (!file.isFile()) {
+            return cache;
+        }
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                LOGGER.info("Ignoring outdated scan cache {}", file);
+                return cache;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String path = in.readUTF();
+                Entry entry = new Entry();
+                entry.mSize = in.readLong();
+                entry.mLastModified = in.readLong();
+                entry.mHash = new byte[in.readUnsignedByte()];
+                in.readFully(entry.mHash);
+                entry.mFacts = readFacts(in);
+                entry.mFacts.setClassCount(in.readInt());
+                cache.mEntries.put(path, entry);
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Could not read scan cache " + file + ", rescanning all sources", e);
+            cache.mEntries.clear();
+        } finally {
+            closeQuietly(in);
+        }
+        return cache;
+    }
+
+    /**
+     * Writes this cache to disk if it changed since it was loaded.
+     *
+     * @param file the cache file
+     * @throws IOException if the cache could not be written
+     */
+    public void save(File file) throws IOException {
+        if (!mDirty && file.isFile()) {
+            return;
+        }
+        File dir = file.getAbsoluteFile().getParentFile();
+        if (dir != null && !dir.exists()) {
+            dir.mkdirs();
+        }
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(file)));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(mEntries.size());
+            for (Map.Entry<String, Entry> e : mEntries.entrySet()) {
+                Entry entry = e.getValue();
+                out.writeUTF(e.getKey());
+                out.writeLong(entry.mSize);
+                out.writeLong(entry.mLastModified);
+                out.writeByte(entry.mHash.length);
+                out.write(entry.mHash);
+                writeFacts(out, entry.mFacts);
+                out.writeInt(entry.mFacts.getClassCount());
+            }
+        } finally {
+            out.close();
+        }
+        mDirty = false;
+    }
+
+    /**
+     * Looks up the facts of a file. If the size or modification time changed
+     * but the content hash did not, the entry is refreshed and still used.
+     *
+     * @param file the source file
+     * @return the cached facts, or null if the file has to be scanned again
+     * @throws IOException if the file could not be read
+     */
+    public SourceFacts get(File file) throws IOException {
+        Entry entry = mEntries.get(file.getPath());
+        if (entry == null) {
+            return null;
+        }
+        if (entry.mSize == file.length() && entry.mLastModified == file.lastModified()) {
+            return entry.mFacts;
+        }
+        byte[] hash = hash(file);
+        if (!Arrays.equals(hash, entry.mHash)) {
+            return null;
+        }
+        entry.mSize = file.length();
+        entry.mLastModified = file.lastModified();
+        mDirty = true;
+        return entry.mFacts;
+    }
+
+    /**
+     * Stores the facts of a freshly scanned file.
+     *
+     * @param file the source file
+     * @param facts the facts extracted from the file
+     * @throws IOException if the file could not be read
+     */
+    public void put(File file, SourceFacts facts) throws IOException {
+        Entry entry = new Entry();
+        entry.mSize = file.length();
+        entry.mLastModified = file.lastModified();
+        entry.mHash = hash(file);
+        entry.mFacts = facts;
+        mEntries.put(file.getPath(), entry);
+        mDirty = true;
+    }
+
+    /**
+     * Drops the entries of all files that are not in the given collection, i.e.
+     * files that have been deleted since the last scan.
+     *
+     * @param files the files that currently exist
+     * @return the number of entries dropped
+     */
+    public int retainAll(Collection<File> files) {
+        Set<String> paths = new HashSet<String>(files.size() * 2);
+        for (File file : files) {
+            paths.add(file.getPath());
+        }
+        int dropped = 0;
+        for (Iterator<String> it = mEntries.keySet().iterator(); it.hasNext();) {
+            if (!paths.contains(it.next())) {
+                it.remove();
+                dropped++;
+            }
+        }
+        if (dropped > 0) {
+            mDirty = true;
+        }
+        return dropped;
+    }
+
+    /**
+     * @return the number of files in this cache
+     */
+    public int size() {
+        return mEntries.size();
+    }
+
+    static byte[] hash(File file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance(HASH_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(HASH_ALGORITHM + " is not available", e);
+        }
+        InputStream in = new FileInputStream(file);
+        try {
+            byte[] buf = new byte[8192];
+            int n;
+            while ((n = in.read(buf)) > 0) {
+                digest.update(buf, 0, n);
+            }
+        } finally {
+            in.close();
+        }
+        return digest.digest();
+    }
+
+    /**
+     * @return the content hash of a file as a hex string
+     */
+    static String hashHex(File file) throws IOException {
+        StringBuilder hex = new StringBuilder();
+        for (byte b : hash(file)) {
+            hex.append(Character.forDigit((b >> 4) & 0xf, 16));
+            hex.append(Character.forDigit(b & 0xf, 16));
+        }
+        return hex.toString();
+    }
+
+    static SourceFacts readFacts(DataInputStream in) throws IOException {
+        SourceFacts facts = new SourceFacts();
+        int specs = in.readInt();
+        for (int i = 0; i < specs; i++) {
+            facts.addSpec(new SpecFact(in.readUTF(), in.readUTF(), in.readUTF(), in.readUTF(),
+                    in.readUTF()));
+        }
+        int roles = in.readInt();
+        for (int i = 0; i < roles; i++) {
+            facts.addRole(new RoleFact(in.readUTF(), in.readUTF(), in.readUTF()));
+        }
+        return facts;
+    }
+
+    static void writeFacts(DataOutputStream out, SourceFacts facts) throws IOException {
+        out.writeInt(facts.getSpecs().size());
+        for (SpecFact spec : facts.getSpecs()) {
+            out.writeUTF(spec.getAlias());
+            out.writeUTF(spec.getNamespace());
+            out.writeUTF(spec.getPatternName());
+            out.writeUTF(spec.getImpl());
+            out.writeUTF(spec.getInstanceName());
+        }
+        out.writeInt(facts.getRoles().size());
+        for (RoleFact role : facts.getRoles()) {
+            out.writeUTF(role.getAlias());
+            out.writeUTF(role.getRole());
+            out.writeUTF(role.getImplementer());
+        }
+    }
+
+    static void closeQuietly(InputStream in) {
+        if (in != null) {
+            try {
+                in.close();
+            } catch (IOException e) {
+                // Ignore
+            }
+        }
+    }
+
+}
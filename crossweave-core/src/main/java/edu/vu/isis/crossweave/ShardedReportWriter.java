@@ -0,0 +1,283 @@
+/*Copyright (C) 2010-2013 Institute for Software Integrated Systems (ISIS)
+This software was developed by the Institute for Software Integrated
+Systems (ISIS) at Vanderbilt University, Tennessee, USA for the 
+Transformative Apps program under DARPA, Contract # HR011-10-C-0175.
+The United States Government has unlimited rights to this software. 
+The US government has the right to use, modify, reproduce, release, 
+perform, display, or disclose computer software or computer software 
+documentation in whole or in part, in any manner and for any 
+purpose whatsoever, and to have or authorize others to do so.
+ */
+
+package edu.vu.isis.crossweave;
+
+import org.stringtemplate.v4.AutoIndentWriter;
+import org.stringtemplate.v4.ST;
+import org.stringtemplate.v4.STGroup;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Writes the report as one file per pattern instance plus an index. Each shard
+ * is the reportPatternDescriptions template rendered for the instances with
+ * one fully qualified name, and is only written if its content differs from
+ * the file on disk. Unchanged shards keep their modification time, so
+ * downstream steps that look at mtimes see only the instances that changed.
+ * <p>
+ * The index lists the fully qualified name and file of each shard, one per
+ * line, sorted by name. Shards listed in the previous index that no longer
+ * have an instance are deleted.
+ *
+ * @author nick
+ */
+public class ShardedReportWriter {
+
+    /** Name of the index file in the output directory */
+    public static final String INDEX_FILE = "crossweave-index";
+
+    private String mTemplate;
+    private File mDir;
+    private String mExtension;
+    private String mEncoding;
+
+    private int mWritten;
+    private int mUnchanged;
+    private int mDeleted;
+    private long mBytesWritten;
+
+    /**
+     * @param template the StringTemplate group file or built-in template
+     * @param dir the directory to write the shards and the index to
+     * @param extension the extension of the shard files, including the dot
+     * @param encoding the character encoding of the shard files
+     */
+    public ShardedReportWriter(String template, File dir, String extension, String encoding) {
+        mTemplate = template;
+        mDir = dir;
+        mExtension = extension;
+        mEncoding = encoding;
+    }
+
+    /**
+     * Writes the shards of the given pattern instances and the index.
+     *
+     * @param patterns the pattern instances to report
+     * @throws IOException if a shard or the index could not be written
+     */
+    public void write(Collection<PatternInstance> patterns) throws IOException {
+        mWritten = 0;
+        mUnchanged = 0;
+        mDeleted = 0;
+        mBytesWritten = 0;
+        Map<String, List<PatternInstance>> shards = new TreeMap<String, List<PatternInstance>>();
+        for (PatternInstance pattern : patterns) {
+            List<PatternInstance> shard = shards.get(pattern.getFullyQualifiedName());
+            if (shard == null) {
+                shard = new ArrayList<PatternInstance>();
+                shards.put(pattern.getFullyQualifiedName(), shard);
+            }
+            shard.add(pattern);
+        }
+
+        mDir.mkdirs();
+        File indexFile = new File(mDir, INDEX_FILE);
+        Set<String> stale = readIndex(indexFile);
+
+        AnalysisEvents events = AnalysisEvents.get();
+        STGroup stg = TemplateRegistry.getGroup(mTemplate);
+        StringBuilder index = new StringBuilder();
+        Set<String> used = new HashSet<String>();
+        used.add(INDEX_FILE);
+        for (Map.Entry<String, List<PatternInstance>> shard : shards.entrySet()) {
+            String fileName = getFileName("", shard.getKey(), mExtension, used);
+            stale.remove(fileName);
+            index.append(shard.getKey()).append('\t').append(fileName).append('\n');
+
+            File file = new File(mDir, fileName);
+            AnalysisEvents.Span event = events.render(mTemplate, file);
+            StringWriter out = new StringWriter();
+            synchronized (stg) {
+                ST st = stg.getInstanceOf("reportPatternDescriptions");
+                st.add("patterns", shard.getValue());
+                st.write(new AutoIndentWriter(out));
+            }
+            byte[] content = out.toString().getBytes(mEncoding);
+            if (writeIfChanged(file, content)) {
+                mWritten++;
+                mBytesWritten += content.length;
+            } else {
+                mUnchanged++;
+            }
+            event.commit();
+        }
+
+        for (String fileName : stale) {
+            if (new File(mDir, fileName).delete()) {
+                mDeleted++;
+            }
+        }
+        writeIfChanged(indexFile, index.toString().getBytes("UTF-8"));
+    }
+
+    /**
+     * @return the number of shards written by the last call to write
+     */
+    public int getWritten() {
+        return mWritten;
+    }
+
+    /**
+     * @return the number of bytes in the shards written by the last call to
+     *         write
+     */
+    public long getBytesWritten() {
+        return mBytesWritten;
+    }
+
+    /**
+     * @return the number of shards that were already up to date
+     */
+    public int getUnchanged() {
+        return mUnchanged;
+    }
+
+    /**
+     * @return the number of shards deleted because their instance is gone
+     */
+    public int getDeleted() {
+        return mDeleted;
+    }
+
+    /**
+     * Returns the file name of a shard. Characters that are not safe in file
+     * names are replaced, so the name never leaves the output directory.
+     *
+     * @param fullyQualifiedName the fully qualified name of the instances
+     * @param extension the extension of the file, including the dot
+     * @return the file name
+     */
+    public static String getFileName(String fullyQualifiedName, String extension) {
+        StringBuilder sb = new StringBuilder(fullyQualifiedName.length() + extension.length());
+        for (int i = 0; i < fullyQualifiedName.length(); i++) {
+            char c = fullyQualifiedName.charAt(i);
+            if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+                    || c == '.' || c == '-' || c == '_') {
+                sb.append(c);
+            } else {
+                sb.append('_');
+            }
+        }
+        if (sb.length() == 0 || sb.charAt(0) == '.') {
+            sb.insert(0, '_');
+        }
+        return sb.append(extension).toString();
+    }
+
+    /**
+     * Returns the file name of a shard that is not yet in the given set of
+     * used names, and adds it. Names that only differ in replaced characters,
+     * or only in case on a case-insensitive file system, would otherwise share
+     * a file, so all but the first get a numbered suffix. Callers pass the
+     * names in a stable order so the suffixes do not change between runs.
+     *
+     * @param dir the directory of the file relative to the output directory,
+     *            or an empty string
+     * @param fullyQualifiedName the fully qualified name of the instances
+     * @param extension the extension of the file, including the dot
+     * @param used the names already used, in lower case, prefixed by their
+     *            directory
+     * @return the file name
+     */
+    static String getFileName(String dir, String fullyQualifiedName, String extension,
+            Set<String> used) {
+        String base = getFileName(fullyQualifiedName, "");
+        String fileName = base + extension;
+        for (int i = 2; !used.add((dir + fileName).toLowerCase(Locale.ENGLISH)); i++) {
+            fileName = base + "-" + i + extension;
+        }
+        return fileName;
+    }
+
+    /**
+     * Returns the shard files listed in an index, or an empty set if there is
+     * no index yet.
+     */
+    private static Set<String> readIndex(File indexFile) throws IOException {
+        Set<String> files = new HashSet<String>();
+        if (!indexFile.isFile()) {
+            return files;
+        }
+        BufferedReader in = new BufferedReader(new InputStreamReader(
+                new FileInputStream(indexFile), "UTF-8"));
+        try {
+            String line;
+            while ((line = in.readLine()) != null) {
+                int tab = line.lastIndexOf('\t');
+                String fileName = line.substring(tab + 1);
+                if (tab >= 0 && fileName.indexOf('/') < 0
+                        && fileName.indexOf(File.separatorChar) < 0) {
+                    files.add(fileName);
+                }
+            }
+        } finally {
+            in.close();
+        }
+        return files;
+    }
+
+    /**
+     * Writes content to a file unless the file already has exactly that
+     * content.
+     *
+     * @return true if the file was written
+     */
+    static boolean writeIfChanged(File file, byte[] content) throws IOException {
+        if (file.isFile() && file.length() == content.length
+                && Arrays.equals(content, readFile(file))) {
+            return false;
+        }
+        OutputStream out = new FileOutputStream(file);
+        try {
+            out.write(content);
+        } finally {
+            out.close();
+        }
+        return true;
+    }
+
+    static byte[] readFile(File file) throws IOException {
+        byte[] content = new byte[(int) file.length()];
+        InputStream in = new FileInputStream(file);
+        try {
+            int off = 0;
+            while (off < content.length) {
+                int n = in.read(content, off, content.length - off);
+                if (n < 0) {
+                    break;
+                }
+                off += n;
+            }
+        } finally {
+            in.close();
+        }
+        return content;
+    }
+
+}
@@ -0,0 +1,559 @@
+/*Copyright (C) 2010-2013 Institute for Software Integrated Systems (ISIS)
+This software was developed by the Institute for Software Integrated
+Systems (ISIS) at Vanderbilt University, Tennessee, USA for the 
+Transformative Apps program under DARPA, Contract # HR011-10-C-0175.
+The United States Government has unlimited rights to this software. 
+The US government has the right to use, modify, reproduce, release, 
+perform, display, or disclose computer software or computer software 
+documentation in whole or in part, in any manner and for any 
+purpose whatsoever, and to have or authorize others to do so.
+ */
+package edu.vu.isis.crossweave;
+
+import org.stringtemplate.v4.AutoIndentWriter;
+import org.stringtemplate.v4.ST;
+import org.stringtemplate.v4.STGroup;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Writes the report as a static HTML site: an index page, and the instances of
+ * each pattern on pages of at most pageSize instances, so that no page grows
+ * with the size of the code base. The pages of a pattern go into a directory
+ * named after its namespace:
+ * 
+ * <pre>
+ * index.html
+ * search-index.json
+ * gof/adapter.foo-1.html
+ * gof/adapter.foo-2.html
+ * </pre>
+ * 
+ * The index lists the namespaces and their patterns, and only links the first
+ * page of each pattern. Pages link their neighbours. search-index.json holds
+ * the instances with their roles and implementers, which the pages load the
+ * first time something is typed into their search box to filter by class,
+ * role or instance name. Browsers only load it if the site is served over
+ * HTTP.
+ * <p>
+ * The index page is rendered with the siteIndex(site, encoding) template of
+ * the group, the pages with sitePage(page, encoding); see the built-in site
+ * template. As with the sharded
+ * report, a file is only written if its content changes, and files written
+ * by the previous run that are no longer part of the site are deleted.
+ * 
+ * @author nick
+ */
+public class SiteWriter {
+
+    /** The built-in template the site is rendered with by default */
+    public static final String DEFAULT_TEMPLATE = "site";
+
+    /** Name of the file listing the files of the site, one per line */
+    public static final String FILE_LIST = "crossweave-site";
+
+    /** Name of the search index */
+    public static final String SEARCH_INDEX = "search-index.json";
+
+    private static final Comparator<PatternInstance> BY_NAME = new Comparator<PatternInstance>() {
+
+        @Override
+        public int compare(PatternInstance a, PatternInstance b) {
+            return a.getFullyQualifiedName().compareTo(b.getFullyQualifiedName());
+        }
+    };
+
+    private String mTemplate;
+    private File mDir;
+    private int mPageSize;
+    private String mEncoding;
+
+    private int mPages;
+    private int mWritten;
+    private int mUnchanged;
+    private int mDeleted;
+    private long mBytesWritten;
+
+    /**
+     * @param template the StringTemplate group file or built-in template
+     * @param dir the directory to write the site to
+     * @param pageSize the largest number of instances on a page
+     * @param encoding the character encoding of the pages
+     */
+    public SiteWriter(String template, File dir, int pageSize, String encoding) {
+        mTemplate = template;
+        mDir = dir;
+        mPageSize = Math.max(1, pageSize);
+        mEncoding = encoding;
+    }
+
+    /**
+     * Writes the pages of the given pattern instances, the index page and the
+     * search index.
+     * 
+     * @param patterns the pattern instances to report
+     * @throws IOException if a file could not be written
+     */
+    public void write(Collection<PatternInstance> patterns) throws IOException {
+        mPages = 0;
+        mWritten = 0;
+        mUnchanged = 0;
+        mDeleted = 0;
+        mBytesWritten = 0;
+
+        Map<String, Namespace> namespaces = new TreeMap<String, Namespace>();
+        Map<Pattern, List<PatternInstance>> instances =
+                new HashMap<Pattern, List<PatternInstance>>();
+        for (PatternInstance instance : patterns) {
+            Pattern pattern = instance.getPattern();
+            List<PatternInstance> list = instances.get(pattern);
+            if (list == null) {
+                list = new ArrayList<PatternInstance>();
+                instances.put(pattern, list);
+                Namespace namespace = namespaces.get(pattern.getNamespace());
+                if (namespace == null) {
+                    namespace = new Namespace(pattern.getNamespace());
+                    namespaces.put(pattern.getNamespace(), namespace);
+                }
+                namespace.mGroups.add(new Group(pattern, list));
+            }
+            list.add(instance);
+        }
+
+        List<Page> pages = new ArrayList<Page>();
+        Set<String> used = new HashSet<String>();
+        for (Namespace namespace : namespaces.values()) {
+            Collections.sort(namespace.mGroups, new Comparator<Group>() {
+
+                @Override
+                public int compare(Group a, Group b) {
+                    return a.getName().compareTo(b.getName());
+                }
+            });
+            for (Group group : namespace.mGroups) {
+                Collections.sort(group.mInstances, BY_NAME);
+                paginate(group, used);
+                pages.addAll(group.mPages);
+            }
+        }
+
+        mDir.mkdirs();
+        File fileList = new File(mDir, FILE_LIST);
+        Set<String> stale = readFileList(fileList);
+        Set<String> files = new LinkedHashSet<String>();
+
+        AnalysisEvents events = AnalysisEvents.get();
+        STGroup stg = TemplateRegistry.getGroup(mTemplate);
+        for (Page page : pages) {
+            write(stg, events, "sitePage", "page", page, page.getPath(), files);
+        }
+        Site site = new Site(new ArrayList<Namespace>(namespaces.values()), patterns.size());
+        write(stg, events, "siteIndex", "site", site, "index.html", files);
+        write(SEARCH_INDEX, writeSearchIndex(pages).getBytes("UTF-8"), files);
+        mPages = pages.size();
+
+        stale.removeAll(files);
+        for (String path : stale) {
+            File file = new File(mDir, path);
+            if (file.delete()) {
+                mDeleted++;
+                // Only succeeds once the last page of a namespace is gone
+                file.getParentFile().delete();
+            }
+        }
+        StringBuilder list = new StringBuilder();
+        for (String path : files) {
+            list.append(path).append('\n');
+        }
+        ShardedReportWriter.writeIfChanged(fileList, list.toString().getBytes("UTF-8"));
+    }
+
+    /**
+     * @return the number of pages of instances in the site written last
+     */
+    public int getPageCount() {
+        return mPages;
+    }
+
+    /**
+     * @return the number of files written by the last call to write
+     */
+    public int getWritten() {
+        return mWritten;
+    }
+
+    /**
+     * @return the number of files that were already up to date
+     */
+    public int getUnchanged() {
+        return mUnchanged;
+    }
+
+    /**
+     * @return the number of files deleted because they are no longer part of
+     *         the site
+     */
+    public int getDeleted() {
+        return mDeleted;
+    }
+
+    /**
+     * @return the number of bytes in the files written by the last call to
+     *         write
+     */
+    public long getBytesWritten() {
+        return mBytesWritten;
+    }
+
+    private void paginate(Group group, Set<String> used) {
+        String dir = ShardedReportWriter.getFileName(group.mPattern.getNamespace(), "");
+        String base = ShardedReportWriter.getFileName(dir + "/", group.getLabel(), "", used);
+        int count = (group.mInstances.size() + mPageSize - 1) / mPageSize;
+        for (int i = 0; i < count; i++) {
+            List<PatternInstance> instances = group.mInstances.subList(i * mPageSize,
+                    Math.min((i + 1) * mPageSize, group.mInstances.size()));
+            group.mPages.add(new Page(group, dir, base, i + 1, instances));
+        }
+    }
+
+    private void write(STGroup stg, AnalysisEvents events, String templateName,
+            String attribute, Object value, String path, Set<String> files) throws IOException {
+        AnalysisEvents.Span event = events.render(mTemplate, new File(mDir, path));
+        StringWriter out = new StringWriter();
+        synchronized (stg) {
+            ST st = stg.getInstanceOf(templateName);
+            if (st == null) {
+                throw new IOException("Template " + mTemplate + " has no " + templateName
+                        + " template");
+            }
+            st.add(attribute, value);
+            st.add("encoding", mEncoding);
+            st.write(new AutoIndentWriter(out));
+        }
+        write(path, out.toString().getBytes(mEncoding), files);
+        event.commit();
+    }
+
+    private void write(String path, byte[] content, Set<String> files) throws IOException {
+        File file = new File(mDir, path);
+        file.getParentFile().mkdirs();
+        if (ShardedReportWriter.writeIfChanged(file, content)) {
+            mWritten++;
+            mBytesWritten += content.length;
+        } else {
+            mUnchanged++;
+        }
+        files.add(path);
+    }
+
+    /**
+     * Builds the search index. Role and class names are listed once and
+     * referred to by their position, and each instance is a triple of its
+     * name, the position of its page and pairs of role and class positions,
+     * with -1 as the class of an empty role:
+     * 
+     * <pre>
+     * {"pages": ["gof/adapter.foo-1.html"],
+     *  "roles": ["client", "adaptee"],
+     *  "classes": ["pkg.Main"],
+     *  "instances": [["gof.adapter.foo.snoopy", 0, [0, 0, 1, -1]]]}
+     * </pre>
+     */
+    private static String writeSearchIndex(List<Page> pages) throws IOException {
+        Map<String, Integer> roles = new HashMap<String, Integer>();
+        Map<String, Integer> classes = new HashMap<String, Integer>();
+        StringWriter instances = new StringWriter();
+        String separator = "\n";
+        for (int i = 0; i < pages.size(); i++) {
+            for (PatternInstance instance : pages.get(i).getPatterns()) {
+                instances.write(separator + "    [");
+                Diagnostics.writeString(instances, instance.getFullyQualifiedName());
+                instances.write(", " + i + ", [");
+                String pairSeparator = "";
+                for (Role role : instance.getRoles()) {
+                    Integer roleIndex = getIndex(roles, role.getName());
+                    if (role.hasNoImplementers()) {
+                        instances.write(pairSeparator + roleIndex + ", -1");
+                        pairSeparator = ", ";
+                    }
+                    for (String implementer : role.getImplementers()) {
+                        instances.write(pairSeparator + roleIndex + ", "
+                                + getIndex(classes, implementer));
+                        pairSeparator = ", ";
+                    }
+                }
+                instances.write("]]");
+                separator = ",\n";
+            }
+        }
+
+        StringWriter out = new StringWriter();
+        out.write("{\n  \"pages\": [");
+        separator = "";
+        for (Page page : pages) {
+            out.write(separator);
+            Diagnostics.writeString(out, page.getPath());
+            separator = ", ";
+        }
+        out.write("],\n  \"roles\": ");
+        writeNames(out, roles);
+        out.write(",\n  \"classes\": ");
+        writeNames(out, classes);
+        out.write(",\n  \"instances\": [" + instances + "\n  ]\n}\n");
+        return out.toString();
+    }
+
+    private static Integer getIndex(Map<String, Integer> names, String name) {
+        Integer index = names.get(name);
+        if (index == null) {
+            index = Integer.valueOf(names.size());
+            names.put(name, index);
+        }
+        return index;
+    }
+
+    private static void writeNames(Writer out, Map<String, Integer> names) throws IOException {
+        String[] ordered = new String[names.size()];
+        for (Map.Entry<String, Integer> name : names.entrySet()) {
+            ordered[name.getValue()] = name.getKey();
+        }
+        out.write('[');
+        for (int i = 0; i < ordered.length; i++) {
+            out.write(i == 0 ? "" : ", ");
+            Diagnostics.writeString(out, ordered[i]);
+        }
+        out.write(']');
+    }
+
+    /**
+     * Returns the files listed by the previous run, or an empty set if there
+     * is no list yet. Paths that could leave the site directory are ignored.
+     */
+    private static Set<String> readFileList(File file) throws IOException {
+        Set<String> files = new LinkedHashSet<String>();
+        if (!file.isFile()) {
+            return files;
+        }
+        BufferedReader in = new BufferedReader(new InputStreamReader(
+                new FileInputStream(file), "UTF-8"));
+        try {
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.length() > 0 && !line.startsWith("/") && line.indexOf("..") < 0
+                        && line.indexOf('\\') < 0) {
+                    files.add(line);
+                }
+            }
+        } finally {
+            in.close();
+        }
+        return files;
+    }
+
+    /**
+     * The model of the siteIndex template
+     */
+    public static class Site {
+
+        private List<Namespace> mNamespaces;
+        private int mInstanceCount;
+
+        Site(List<Namespace> namespaces, int instanceCount) {
+            mNamespaces = namespaces;
+            mInstanceCount = instanceCount;
+        }
+
+        /**
+         * @return the namespaces, sorted by name
+         */
+        public List<Namespace> getNamespaces() {
+            return mNamespaces;
+        }
+
+        /**
+         * @return the number of instances in the site
+         */
+        public int getInstanceCount() {
+            return mInstanceCount;
+        }
+    }
+
+    /**
+     * The patterns of a namespace that have instances
+     */
+    public static class Namespace {
+
+        private String mName;
+        private List<Group> mGroups = new ArrayList<Group>();
+
+        Namespace(String name) {
+            mName = name;
+        }
+
+        /**
+         * @return the name of the namespace
+         */
+        public String getName() {
+            return mName;
+        }
+
+        /**
+         * @return the patterns of the namespace, sorted by fully qualified
+         *         name
+         */
+        public List<Group> getGroups() {
+            return mGroups;
+        }
+    }
+
+    /**
+     * The instances of a pattern and the pages they are spread over
+     */
+    public static class Group {
+
+        private Pattern mPattern;
+        private List<PatternInstance> mInstances;
+        private List<Page> mPages = new ArrayList<Page>();
+
+        Group(Pattern pattern, List<PatternInstance> instances) {
+            mPattern = pattern;
+            mInstances = instances;
+        }
+
+        /**
+         * @return the pattern
+         */
+        public Pattern getPattern() {
+            return mPattern;
+        }
+
+        /**
+         * @return the fully qualified name of the pattern
+         */
+        public String getName() {
+            return mPattern.getFullyQualifiedName();
+        }
+
+        /**
+         * @return the name of the pattern within its namespace, with the
+         *         implementation if there is one
+         */
+        public String getLabel() {
+            String implementation = mPattern.getImplementation();
+            return implementation.length() == 0 ? mPattern.getName() : mPattern.getName() + "."
+                    + implementation;
+        }
+
+        /**
+         * @return the number of instances of the pattern
+         */
+        public int getInstanceCount() {
+            return mInstances.size();
+        }
+
+        /**
+         * @return the number of pages the instances are spread over
+         */
+        public int getPageCount() {
+            return mPages.size();
+        }
+
+        /**
+         * @return the path of the first page relative to the site directory
+         */
+        public String getFirstPage() {
+            return mPages.get(0).getPath();
+        }
+    }
+
+    /**
+     * The model of the sitePage template
+     */
+    public static class Page {
+
+        private Group mGroup;
+        private String mDir;
+        private String mBase;
+        private int mNumber;
+        private List<PatternInstance> mPatterns;
+
+        Page(Group group, String dir, String base, int number, List<PatternInstance> patterns) {
+            mGroup = group;
+            mDir = dir;
+            mBase = base;
+            mNumber = number;
+            mPatterns = patterns;
+        }
+
+        /**
+         * @return the pattern the page shows instances of
+         */
+        public Group getGroup() {
+            return mGroup;
+        }
+
+        /**
+         * @return the number of the page, starting at 1
+         */
+        public int getNumber() {
+            return mNumber;
+        }
+
+        /**
+         * @return the instances on the page, sorted by fully qualified name
+         */
+        public List<PatternInstance> getPatterns() {
+            return mPatterns;
+        }
+
+        /**
+         * @return the path of the page relative to the site directory
+         */
+        public String getPath() {
+            return mDir + "/" + getFileName(mNumber);
+        }
+
+        /**
+         * @return the relative link from the page to the site directory
+         */
+        public String getRoot() {
+            return "../";
+        }
+
+        /**
+         * @return the file name of the previous page, or null on the first
+         *         page
+         */
+        public String getPrevious() {
+            return mNumber == 1 ? null : getFileName(mNumber - 1);
+        }
+
+        /**
+         * @return the file name of the next page, or null on the last page
+         */
+        public String getNext() {
+            return mNumber == mGroup.getPageCount() ? null : getFileName(mNumber + 1);
+        }
+
+        private String getFileName(int number) {
+            return mBase + "-" + number + ".html";
+        }
+    }
+}
@@ -0,0 +1,113 @@
+/*Copyright (C) 2010-2013 Institute for Software Integrated Systems (ISIS)
+This software was developed by the Institute for Software Integrated
+Systems (ISIS) at Vanderbilt University, Tennessee, USA for the 
+Transformative Apps program under DARPA, Contract # HR011-10-C-0175.
+The United States Government has unlimited rights to this software. 
+The US government has the right to use, modify, reproduce, release, 
+perform, display, or disclose computer software or computer software 
+documentation in whole or in part, in any manner and for any 
+purpose whatsoever, and to have or authorize others to do so.
+ */
+
+package edu.vu.isis.crossweave;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The DesignPattern annotation facts extracted from one source file. This is
+ * everything the analysis needs to know about a file once it has been parsed.
+ *
+ * @author nick
+ */
+public class SourceFacts {
+
+    private List<SpecFact> mSpecs = new ArrayList<SpecFact>();
+    private List<RoleFact> mRoles = new ArrayList<RoleFact>();
+
+    private int mClasses;
+
+    /**
+     * @param spec the spec to add
+     */
+    public void addSpec(SpecFact spec) {
+        mSpecs.add(spec);
+    }
+
+    /**
+     * @param role the role to add
+     */
+    public void addRole(RoleFact role) {
+        mRoles.add(role);
+    }
+
+    /**
+     * Counts a type declared in the file.
+     */
+    public void addClass() {
+        mClasses++;
+    }
+
+    /**
+     * @param classes the number of types declared in the file
+     */
+    public void setClassCount(int classes) {
+        mClasses = classes;
+    }
+
+    /**
+     * @return the number of types the scanner visited in the file. This is
+     *         only a metric and not part of equals.
+     */
+    public int getClassCount() {
+        return mClasses;
+    }
+
+    /**
+     * @return the number of DesignPattern specs and roles found in the file
+     */
+    public int getAnnotationCount() {
+        return mSpecs.size() + mRoles.size();
+    }
+
+    /**
+     * @return the specs found in the file, in source order
+     */
+    public List<SpecFact> getSpecs() {
+        return mSpecs;
+    }
+
+    /**
+     * @return the roles found in the file, in source order
+     */
+    public List<RoleFact> getRoles() {
+        return mRoles;
+    }
+
+    /**
+     * @return true if the file has no DesignPattern annotations
+     */
+    public boolean isEmpty() {
+        return mSpecs.isEmpty() && mRoles.isEmpty();
+    }
+
+    @Override
+    public int hashCode() {
+        return mSpecs.hashCode() * 31 + mRoles.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof SourceFacts)) {
+            return false;
+        }
+        SourceFacts facts = (SourceFacts) o;
+        return facts.mSpecs.equals(mSpecs) && facts.mRoles.equals(mRoles);
+    }
+
+    @Override
+    public String toString() {
+        return "specs=" + mSpecs + " roles=" + mRoles;
+    }
+
+}
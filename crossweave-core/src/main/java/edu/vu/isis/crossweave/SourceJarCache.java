@@ -0,0 +1,246 @@
+/*Copyright (C) 2010-2013 Institute for Software Integrated Systems (ISIS)
+This software was developed by the Institute for Software Integrated
+Systems (ISIS) at Vanderbilt University, Tennessee, USA for the 
+Transformative Apps program under DARPA, Contract # HR011-10-C-0175.
+The United States Government has unlimited rights to this software. 
+The US government has the right to use, modify, reproduce, release, 
+perform, display, or disclose computer software or computer software 
+documentation in whole or in part, in any manner and for any 
+purpose whatsoever, and to have or authorize others to do so.
+ */
+
+package edu.vu.isis.crossweave;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Scans the Java sources inside source jars, such as the -sources.jar of a
+ * dependency, and caches the facts of each jar by its SHA-1 checksum. The jar
+ * is opened as a zip file system and its entries are read in place, nothing
+ * is extracted to disk. A jar whose checksum is in the cache is not opened at
+ * all; the checksum is taken from the .sha1 file Maven keeps next to a
+ * downloaded artifact if there is one, and computed from the jar otherwise.
+ * <p>
+ * Entries are decoded as UTF-8, the encoding source jars are published in,
+ * whatever the encoding of the build or the platform.
+ *
+ * @author nick
+ */
+public class SourceJarCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SourceJarCache.class);
+
+    /** Identifies a source jar cache file */
+    private static final int MAGIC = 0x4357534A;
+
+    /** Bump whenever the file format or the extracted facts change */
+    private static final int VERSION = 3;
+
+    /** The encoding of the sources in a jar, part of the cache key */
+    private static final String ENCODING = "UTF-8";
+
+    private Map<String, List<SourceFacts>> mEntries = new HashMap<String, List<SourceFacts>>();
+    private Set<String> mUsed = new HashSet<String>();
+    private boolean mDirty = false;
+    private int mScanned;
+    private int mReused;
+
+    /**
+     * Loads a cache from disk. A missing, unreadable or outdated cache file
+     * results in an empty cache.
+     *
+     * @param file the cache file
+     * @return the loaded cache
+     */
+    public static SourceJarCache load(File file) {
+        SourceJarCache cache = new SourceJarCache();
+        if (!file.isFile()) {
+            return cache;
+        }
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                LOGGER.info("Ignoring outdated source jar cache {}", file);
+                return cache;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String key = in.readUTF();
+                int sources = in.readInt();
+                List<SourceFacts> facts = new ArrayList<SourceFacts>(sources);
+                for (int j = 0; j < sources; j++) {
+                    SourceFacts source = ScanCache.readFacts(in);
+                    source.setClassCount(in.readInt());
+                    facts.add(source);
+                }
+                cache.mEntries.put(key, facts);
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Could not read source jar cache " + file + ", rescanning all jars", e);
+            cache.mEntries.clear();
+        } finally {
+            ScanCache.closeQuietly(in);
+        }
+        return cache;
+    }
+
+    /**
+     * Writes this cache to disk, without the jars that were not scanned since
+     * it was loaded, if it changed.
+     *
+     * @param file the cache file
+     * @throws IOException if the cache could not be written
+     */
+    public void save(File file) throws IOException {
+        if (mEntries.keySet().retainAll(mUsed)) {
+            mDirty = true;
+        }
+        if (!mDirty && file.isFile()) {
+            return;
+        }
+        File dir = file.getAbsoluteFile().getParentFile();
+        if (dir != null && !dir.exists()) {
+            dir.mkdirs();
+        }
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(file)));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(mEntries.size());
+            for (Map.Entry<String, List<SourceFacts>> entry : mEntries.entrySet()) {
+                out.writeUTF(entry.getKey());
+                out.writeInt(entry.getValue().size());
+                for (SourceFacts facts : entry.getValue()) {
+                    ScanCache.writeFacts(out, facts);
+                    out.writeInt(facts.getClassCount());
+                }
+            }
+        } finally {
+            out.close();
+        }
+        mDirty = false;
+    }
+
+    /**
+     * Returns the facts of the sources in a jar, scanning the jar unless its
+     * checksum is cached.
+     *
+     * @param jar the source jar
+     * @param scanner the scanner for the sources in the jar
+     * @param prefilter skip sources whose text does not mention DesignPattern
+     * @return the facts of each scanned source, in the order of the entry names
+     * @throws IOException if the jar could not be read
+     */
+    public List<SourceFacts> scan(File jar, SourceScanner scanner, boolean prefilter)
+            throws IOException {
+        String key = checksum(jar) + " " + ENCODING;
+        mUsed.add(key);
+        List<SourceFacts> facts = mEntries.get(key);
+        if (facts != null) {
+            mReused++;
+            return facts;
+        }
+
+        facts = new ArrayList<SourceFacts>();
+        FileSystem zip = FileSystems.newFileSystem(jar.toPath(), (ClassLoader) null);
+        try {
+            // Sorted by entry name, so that the facts come in a stable order
+            final Map<String, Path> sources = new TreeMap<String, Path>();
+            for (Path root : zip.getRootDirectories()) {
+                Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+
+                    @Override
+                    public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                        if (attrs.isRegularFile() && file.toString().endsWith(".java")) {
+                            sources.put(file.toString(), file);
+                        }
+                        return FileVisitResult.CONTINUE;
+                    }
+                });
+            }
+            for (Path source : sources.values()) {
+                byte[] content = Files.readAllBytes(source);
+                if (prefilter && !SourcePreFilter.contains(ByteBuffer.wrap(content))) {
+                    continue;
+                }
+                facts.add(scanner.scan(new InputStreamReader(new ByteArrayInputStream(content),
+                        ENCODING)));
+            }
+        } finally {
+            zip.close();
+        }
+        mEntries.put(key, facts);
+        mDirty = true;
+        mScanned++;
+        return facts;
+    }
+
+    /**
+     * @return the number of jars scanned since this cache was loaded
+     */
+    public int getScanned() {
+        return mScanned;
+    }
+
+    /**
+     * @return the number of jars whose cached facts were used since this cache
+     *         was loaded
+     */
+    public int getReused() {
+        return mReused;
+    }
+
+    /**
+     * Returns the SHA-1 checksum of a jar as a hex string.
+     */
+    static String checksum(File jar) throws IOException {
+        File sha1 = new File(jar.getPath() + ".sha1");
+        if (sha1.isFile() && sha1.lastModified() >= jar.lastModified()) {
+            BufferedReader reader = new BufferedReader(new FileReader(sha1));
+            try {
+                String line = reader.readLine();
+                if (line != null) {
+                    // Some repositories append the file name
+                    String checksum = line.trim().split("\\s+")[0].toLowerCase();
+                    if (checksum.length() == 40) {
+                        return checksum;
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        }
+        return ScanCache.hashHex(jar);
+    }
+}
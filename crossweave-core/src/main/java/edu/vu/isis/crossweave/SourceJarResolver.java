@@ -0,0 +1,41 @@
+/*Copyright (C) 2010-2013 Institute for Software Integrated Systems (ISIS)
+This software was developed by the Institute for Software Integrated
+Systems (ISIS) at Vanderbilt University, Tennessee, USA for the 
+Transformative Apps program under DARPA, Contract # HR011-10-C-0175.
+The United States Government has unlimited rights to this software. 
+The US government has the right to use, modify, reproduce, release, 
+perform, display, or disclose computer software or computer software 
+documentation in whole or in part, in any manner and for any 
+purpose whatsoever, and to have or authorize others to do so.
+ */
+
+package edu.vu.isis.crossweave;
+
+import java.io.File;
+import java.util.List;
+
+/**
+ * Finds source jars that are expensive to look up, such as the sources jars
+ * of the dependencies of a project, which may have to be downloaded. The
+ * analysis only resolves them once the up-to-date check has decided to run;
+ * the check looks at cheaper files that identify the jars instead.
+ *
+ * @author nick
+ */
+public interface SourceJarResolver {
+
+    /**
+     * @return the files the resolved jars follow from, e.g. the dependency
+     *         jars whose sources are looked up. They are recorded in the input
+     *         manifest in place of the source jars.
+     */
+    List<File> getInputs();
+
+    /**
+     * Looks up the source jars.
+     *
+     * @return the source jars that exist
+     */
+    List<File> resolve();
+
+}
@@ -0,0 +1,134 @@
+/*Copyright (C) 2010-2013 Institute for Software Integrated Systems (ISIS)
+This software was developed by the Institute for Software Integrated
+Systems (ISIS) at Vanderbilt University, Tennessee, USA for the 
+Transformative Apps program under DARPA, Contract # HR011-10-C-0175.
+The United States Government has unlimited rights to this software. 
+The US government has the right to use, modify, reproduce, release, 
+perform, display, or disclose computer software or computer software 
+documentation in whole or in part, in any manner and for any 
+purpose whatsoever, and to have or authorize others to do so.
+ */
+
+package edu.vu.isis.crossweave;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Cheap textual check that decides which source files need to be parsed at
+ * all. A file can only use a DesignPattern annotation if its text contains the
+ * word DesignPattern, whether the annotation is imported, imported through the
+ * annotation package or written out fully qualified, so files without it are
+ * skipped before they reach the parser.
+ * <p>
+ * Large files are memory-mapped and searched in place. Small files are read
+ * into a reused buffer instead, since mapping them costs more than reading
+ * them. The search works on raw bytes and therefore assumes an ASCII
+ * compatible source encoding.
+ *
+ * @author nick
+ */
+public class SourcePreFilter {
+
+    /** The text every file using a DesignPattern annotation contains */
+    private static final byte[] MARKER = { 'D', 'e', 's', 'i', 'g', 'n', 'P', 'a', 't', 't',
+            'e', 'r', 'n' };
+
+    /** Files at least this large are memory-mapped */
+    private static final int MAP_THRESHOLD = 64 * 1024;
+
+    /** Horspool shift for each byte value */
+    private static final int[] SHIFT = new int[256];
+
+    static {
+        for (int i = 0; i < SHIFT.length; i++) {
+            SHIFT[i] = MARKER.length;
+        }
+        for (int i = 0; i < MARKER.length - 1; i++) {
+            SHIFT[MARKER[i] & 0xff] = MARKER.length - 1 - i;
+        }
+    }
+
+    private ByteBuffer mBuffer = ByteBuffer.allocate(MAP_THRESHOLD);
+    private int mSkipped;
+
+    /**
+     * Returns the files that may contain DesignPattern annotations.
+     *
+     * @param files the source files
+     * @return the candidate files, in the order of files
+     * @throws IOException if a file could not be read
+     */
+    public List<File> filter(List<File> files) throws IOException {
+        List<File> candidates = new ArrayList<File>();
+        for (File file : files) {
+            if (isCandidate(file)) {
+                candidates.add(file);
+            } else {
+                mSkipped++;
+            }
+        }
+        return candidates;
+    }
+
+    /**
+     * @return the number of files skipped so far
+     */
+    public int getSkipped() {
+        return mSkipped;
+    }
+
+    /**
+     * Determines whether a file may contain DesignPattern annotations.
+     *
+     * @param file the source file
+     * @return true if the file has to be parsed, false if it can be skipped
+     * @throws IOException if the file could not be read
+     */
+    public boolean isCandidate(File file) throws IOException {
+        FileInputStream in = new FileInputStream(file);
+        try {
+            FileChannel channel = in.getChannel();
+            long size = channel.size();
+            if (size >= MAP_THRESHOLD) {
+                return contains(channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+            }
+            mBuffer.clear();
+            while (mBuffer.hasRemaining() && channel.read(mBuffer) >= 0) {
+                // keep reading until the file is exhausted
+            }
+            mBuffer.flip();
+            return contains(mBuffer);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Searches the buffer between its position and limit for the marker.
+     */
+    static boolean contains(ByteBuffer buf) {
+        int last = MARKER.length - 1;
+        int end = buf.limit();
+        int i = buf.position() + last;
+        while (i < end) {
+            int j = last;
+            int k = i;
+            while (buf.get(k) == MARKER[j]) {
+                if (j == 0) {
+                    return true;
+                }
+                j--;
+                k--;
+            }
+            i += SHIFT[buf.get(i) & 0xff];
+        }
+        return false;
+    }
+
+}
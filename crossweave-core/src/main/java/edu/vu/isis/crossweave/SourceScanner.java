@@ -0,0 +1,50 @@
+/*Copyright (C) 2010-2013 Institute for Software Integrated Systems (ISIS)
+This software was developed by the Institute for Software Integrated
+Systems (ISIS) at Vanderbilt University, Tennessee, USA for the 
+Transformative Apps program under DARPA, Contract # HR011-10-C-0175.
+The United States Government has unlimited rights to this software. 
+The US government has the right to use, modify, reproduce, release, 
+perform, display, or disclose computer software or computer software 
+documentation in whole or in part, in any manner and for any 
+purpose whatsoever, and to have or authorize others to do so.
+ */
+
+package edu.vu.isis.crossweave;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.List;
+
+/**
+ * Extracts the DesignPattern facts from source files. Implementations are
+ * selected with the scanner parameter of the analyze goal and must produce the
+ * same facts for the same sources.
+ * <p>
+ * A call to scan is one unit of work. Implementations may keep state for the
+ * duration of a call, but must allow concurrent calls from different threads.
+ *
+ * @author nick
+ */
+public interface SourceScanner {
+
+    /**
+     * Scans the given source files.
+     *
+     * @param files the source files to scan
+     * @return the facts of each file, in the same order as files
+     * @throws IOException if a file could not be read
+     */
+    List<SourceFacts> scan(List<File> files) throws IOException;
+
+    /**
+     * Scans a source that is not a file of its own, such as an entry of a
+     * source jar.
+     *
+     * @param reader the source text, which is closed when it has been read
+     * @return the facts of the source
+     * @throws IOException if the source could not be read
+     */
+    SourceFacts scan(Reader reader) throws IOException;
+
+}
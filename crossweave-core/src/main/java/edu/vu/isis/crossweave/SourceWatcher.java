@@ -0,0 +1,200 @@
+/*Copyright (C) 2010-2013 Institute for Software Integrated Systems (ISIS)
+This software was developed by the Institute for Software Integrated
+Systems (ISIS) at Vanderbilt University, Tennessee, USA for the 
+Transformative Apps program under DARPA, Contract # HR011-10-C-0175.
+The United States Government has unlimited rights to this software. 
+The US government has the right to use, modify, reproduce, release, 
+perform, display, or disclose computer software or computer software 
+documentation in whole or in part, in any manner and for any 
+purpose whatsoever, and to have or authorize others to do so.
+ */
+
+package edu.vu.isis.crossweave;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches a source tree and a few extra files for changes. Directories created
+ * in the tree are watched as they appear. The source may also be a single
+ * file, in which case the directory it is in is watched for changes to that
+ * file only. Changes are returned in batches: a
+ * batch ends once no further change arrived for a quiet period, so that an
+ * editor or a VCS writing several files causes a single refresh.
+ * 
+ * @author nick
+ */
+public class SourceWatcher implements Closeable {
+
+    private WatchService mService;
+
+    private Map<WatchKey, File> mDirs = new HashMap<WatchKey, File>();
+
+    private File mRoot;
+
+    private Set<File> mFiles = new LinkedHashSet<File>();
+
+    private boolean mOverflowed;
+
+    /**
+     * @param root the source tree or source file to watch
+     * @param files other files to watch, such as the pattern definitions
+     * @throws IOException if the tree could not be registered
+     */
+    public SourceWatcher(File root, File... files) throws IOException {
+        mService = FileSystems.getDefault().newWatchService();
+        mRoot = root;
+        if (root.isFile()) {
+            register(root.getAbsoluteFile().getParentFile());
+        } else {
+            registerTree(root, null);
+        }
+        for (File file : files) {
+            File absolute = file.getAbsoluteFile();
+            mFiles.add(absolute);
+            if (absolute.getParentFile() != null) {
+                register(absolute.getParentFile());
+            }
+        }
+    }
+
+    /**
+     * Waits for changes. The files returned are changed, created or deleted
+     * .java files below the root, deleted directories below the root, the
+     * root itself if it is a file, and changed extra files. Files below the
+     * root are named relative to the root as it was given, extra files are
+     * absolute.
+     * 
+     * @param quietMillis how long no change has to arrive to end the batch
+     * @return the changed files, never empty
+     * @throws InterruptedException if the thread was interrupted while waiting
+     * @throws java.nio.file.ClosedWatchServiceException if the watcher was
+     *             closed
+     */
+    public Set<File> take(long quietMillis) throws InterruptedException {
+        Set<File> changed = new LinkedHashSet<File>();
+        WatchKey key = mService.take();
+        while (key != null) {
+            poll(key, changed);
+            key = mService.poll(quietMillis, TimeUnit.MILLISECONDS);
+            if (key == null && changed.isEmpty()) {
+                key = mService.take();
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Returns whether events were lost since the last call, because the
+     * platform could not keep up. The whole tree has to be rescanned then.
+     * 
+     * @return true if events were lost
+     */
+    public boolean checkOverflowed() {
+        boolean overflowed = mOverflowed;
+        mOverflowed = false;
+        return overflowed;
+    }
+
+    @Override
+    public void close() throws IOException {
+        mService.close();
+    }
+
+    private void poll(WatchKey key, Set<File> changed) {
+        File dir = mDirs.get(key);
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                mOverflowed = true;
+                continue;
+            }
+            if (dir == null) {
+                continue;
+            }
+            File file = new File(dir, ((Path) event.context()).toString());
+            if (mFiles.contains(file.getAbsoluteFile())) {
+                changed.add(file.getAbsoluteFile());
+            }
+            if (file.getAbsoluteFile().equals(mRoot.getAbsoluteFile())) {
+                changed.add(mRoot);
+                continue;
+            }
+            if (!isBelowRoot(file)) {
+                continue;
+            }
+            if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && file.isDirectory()) {
+                // Files may have been created before the directory was registered
+                List<File> created = new ArrayList<File>();
+                registerTree(file, created);
+                changed.addAll(created);
+            } else if (file.getName().endsWith(".java")) {
+                changed.add(file);
+            } else if (event.kind() == StandardWatchEventKinds.ENTRY_DELETE) {
+                changed.add(file);
+            }
+        }
+        if (!key.reset()) {
+            mDirs.remove(key);
+        }
+    }
+
+    private boolean isBelowRoot(File file) {
+        for (File f = file; f != null; f = f.getParentFile()) {
+            if (f.equals(mRoot)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Registers a directory and all directories below it.
+     * 
+     * @param found if not null, the .java files found are added to it
+     */
+    private void registerTree(File dir, List<File> found) {
+        if (!dir.isDirectory()) {
+            return;
+        }
+        try {
+            register(dir);
+        } catch (IOException e) {
+            // The directory disappeared again; its deletion is reported
+            return;
+        }
+        File[] children = dir.listFiles();
+        if (children == null) {
+            return;
+        }
+        for (File child : children) {
+            if (child.isDirectory()) {
+                registerTree(child, found);
+            } else if (found != null && child.getName().endsWith(".java")) {
+                found.add(child);
+            }
+        }
+    }
+
+    private void register(File dir) throws IOException {
+        WatchKey key = dir.toPath().register(mService, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+        // A directory registered twice keeps its key and the first name it had
+        if (!mDirs.containsKey(key)) {
+            mDirs.put(key, dir);
+        }
+    }
+}
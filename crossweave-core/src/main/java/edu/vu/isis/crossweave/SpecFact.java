@@ -0,0 +1,120 @@
+/*Copyright (C) 2010-2013 Institute for Software Integrated Systems (ISIS)
+This software was developed by the Institute for Software Integrated
+Systems (ISIS) at Vanderbilt University, Tennessee, USA for the 
+Transformative Apps program under DARPA, Contract # HR011-10-C-0175.
+The United States Government has unlimited rights to this software. 
+The US government has the right to use, modify, reproduce, release, 
+perform, display, or disclose computer software or computer software 
+documentation in whole or in part, in any manner and for any 
+purpose whatsoever, and to have or authorize others to do so.
+ */
+
+package edu.vu.isis.crossweave;
+
+/**
+ * The values of a single DesignPattern.Specification annotation found in a
+ * source file. A SpecFact does not depend on the pattern definitions, so it can
+ * be cached and later turned into a PatternInstance.
+ *
+ * @author nick
+ */
+public class SpecFact {
+
+    private String mAlias;
+    private String mNamespace;
+    private String mPatternName;
+    private String mImpl;
+    private String mInstanceName;
+    private String mPatternFullyQualifiedName;
+
+    /**
+     * @param alias the context specific name of the pattern instance
+     * @param namespace the namespace of the pattern
+     * @param patternName the name of the pattern
+     * @param impl the pattern implementation
+     * @param instanceName the name of the pattern instance
+     */
+    public SpecFact(String alias, String namespace, String patternName, String impl,
+            String instanceName) {
+        mAlias = alias;
+        mNamespace = namespace;
+        mPatternName = patternName;
+        mImpl = impl;
+        mInstanceName = instanceName;
+    }
+
+    /**
+     * @return the alias of the pattern instance
+     */
+    public String getAlias() {
+        return mAlias;
+    }
+
+    /**
+     * @return the namespace of the pattern
+     */
+    public String getNamespace() {
+        return mNamespace;
+    }
+
+    /**
+     * @return the name of the pattern
+     */
+    public String getPatternName() {
+        return mPatternName;
+    }
+
+    /**
+     * @return the pattern implementation
+     */
+    public String getImpl() {
+        return mImpl;
+    }
+
+    /**
+     * @return the name of the pattern instance
+     */
+    public String getInstanceName() {
+        return mInstanceName;
+    }
+
+    /**
+     * @return the fully qualified name of the Pattern this spec instantiates
+     */
+    public String getPatternFullyQualifiedName() {
+        if (mPatternFullyQualifiedName == null) {
+            mPatternFullyQualifiedName = mNamespace + "." + mPatternName + "." + mImpl;
+        }
+        return mPatternFullyQualifiedName;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = 17;
+        result = result * 31 + mAlias.hashCode();
+        result = result * 31 + mNamespace.hashCode();
+        result = result * 31 + mPatternName.hashCode();
+        result = result * 31 + mImpl.hashCode();
+        result = result * 31 + mInstanceName.hashCode();
+        return result;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof SpecFact)) {
+            return false;
+        }
+        SpecFact spec = (SpecFact) o;
+        return spec.mAlias.equals(mAlias)
+                && spec.mNamespace.equals(mNamespace)
+                && spec.mPatternName.equals(mPatternName)
+                && spec.mImpl.equals(mImpl)
+                && spec.mInstanceName.equals(mInstanceName);
+    }
+
+    @Override
+    public String toString() {
+        return getPatternFullyQualifiedName() + "." + mInstanceName + " (alias " + mAlias + ")";
+    }
+
+}
@@ -0,0 +1,126 @@
+/*Copyright (C) 2010-2013 Institute for Software Integrated Systems (ISIS)
+This software was developed by the Institute for Software Integrated
+Systems (ISIS) at Vanderbilt University, Tennessee, USA for the 
+Transformative Apps program under DARPA, Contract # HR011-10-C-0175.
+The United States Government has unlimited rights to this software. 
+The US government has the right to use, modify, reproduce, release, 
+perform, display, or disclose computer software or computer software 
+documentation in whole or in part, in any manner and for any 
+purpose whatsoever, and to have or authorize others to do so.
+ */
+package edu.vu.isis.crossweave;
+
+import java.util.Arrays;
+
+/**
+ * Interns the names that make up the pattern model: namespaces, pattern and
+ * instance names, role names and the fully qualified names of implementers.
+ * Each distinct name is stored once and identified by a dense int id, so the
+ * model can hold ids instead of its own copies of the same strings.
+ * <p>
+ * Each model has its own table, which is created with its pattern definitions
+ * and handed on to the patterns, instances and roles built from them. Names are
+ * never removed, so the table goes away with the model that holds its ids.
+ * Looking up the name of an id does not take a lock, so reports can be rendered
+ * from several threads.
+ * 
+ * @author nick
+ */
+public final class SymbolTable {
+
+    /** The names, indexed by id. Replaced, never shrunk, when it is full */
+    private volatile String[] mSymbols = new String[1024];
+
+    /** Open addressing hash table of id + 1, 0 marks a free slot */
+    private int[] mSlots = new int[2048];
+
+    private int mSize;
+
+    /**
+     * Creates an empty table.
+     */
+    public SymbolTable() {
+    }
+
+    /**
+     * @param symbol a name
+     * @return the id of the name, which is added to the table if necessary
+     */
+    synchronized int intern(String symbol) {
+        int slot = find(symbol);
+        if (mSlots[slot] != 0) {
+            return mSlots[slot] - 1;
+        }
+        String[] symbols = mSymbols;
+        if (mSize == symbols.length) {
+            symbols = Arrays.copyOf(symbols, mSize * 2);
+        }
+        int id = mSize++;
+        symbols[id] = symbol;
+        // The volatile write publishes the name to readers in get()
+        mSymbols = symbols;
+        mSlots[slot] = id + 1;
+        if (mSize * 2 > mSlots.length) {
+            rehash(mSlots.length * 2);
+        }
+        return id;
+    }
+
+    /**
+     * @param symbol a name
+     * @return the id of the name, or -1 if it has not been interned
+     */
+    synchronized int lookup(String symbol) {
+        return mSlots[find(symbol)] - 1;
+    }
+
+    /**
+     * @param id the id of an interned name
+     * @return the name
+     */
+    String get(int id) {
+        return mSymbols[id];
+    }
+
+    /**
+     * @return the number of names in the table
+     */
+    synchronized int size() {
+        return mSize;
+    }
+
+    /**
+     * @return the slot that holds the given name, or the free slot it would go
+     *         in
+     */
+    private int find(String symbol) {
+        String[] symbols = mSymbols;
+        int mask = mSlots.length - 1;
+        int slot = mix(symbol.hashCode()) & mask;
+        while (mSlots[slot] != 0 && !symbols[mSlots[slot] - 1].equals(symbol)) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void rehash(int capacity) {
+        String[] symbols = mSymbols;
+        int[] slots = new int[capacity];
+        int mask = capacity - 1;
+        for (int id = 0; id < mSize; id++) {
+            int slot = mix(symbols[id].hashCode()) & mask;
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = id + 1;
+        }
+        mSlots = slots;
+    }
+
+    /** Spreads the low entropy of similar class names over the whole hash */
+    private static int mix(int hash) {
+        hash *= 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+}
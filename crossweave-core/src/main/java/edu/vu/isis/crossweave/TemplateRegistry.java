@@ -0,0 +1,123 @@
+/*Copyright (C) 2010-2013 Institute for Software Integrated Systems (ISIS)
+This software was developed by the Institute for Software Integrated
+Systems (ISIS) at Vanderbilt University, Tennessee, USA for the 
+Transformative Apps program under DARPA, Contract # HR011-10-C-0175.
+The United States Government has unlimited rights to this software. 
+The US government has the right to use, modify, reproduce, release, 
+perform, display, or disclose computer software or computer software 
+documentation in whole or in part, in any manner and for any 
+purpose whatsoever, and to have or authorize others to do so.
+ */
+
+package edu.vu.isis.crossweave;
+
+import org.stringtemplate.v4.STGroup;
+import org.stringtemplate.v4.STGroupFile;
+import org.stringtemplate.v4.StringRenderer;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Loads and compiles StringTemplate group files and keeps the compiled groups
+ * for the life of the JVM, so that the modules of a reactor build and the
+ * refreshes of the watch goal reuse them. A group file is compiled again when
+ * its modification time or size changes.
+ * <p>
+ * Besides group files, the plugin comes with built-in templates in the st4
+ * directory of its classpath, which are named without directory and
+ * extension: plaintext, the default, html, and site, which the site output
+ * renders its pages with.
+ * 
+ * @author nick
+ */
+public class TemplateRegistry {
+
+    /** The built-in template used when none is configured */
+    public static final String DEFAULT_TEMPLATE = "plaintext";
+
+    private static final String BUILT_IN_DIR = "st4/";
+
+    private static final String EXTENSION = ".stg";
+
+    private static final String ENCODING = "UTF-8";
+
+    private static final Map<String, Entry> CACHE = new HashMap<String, Entry>();
+
+    private static int sCompiled;
+
+    private TemplateRegistry() {
+    }
+
+    /**
+     * A compiled group and the stamp of the file it was compiled from.
+     */
+    private static class Entry {
+        long mLastModified;
+        long mSize;
+        STGroup mGroup;
+    }
+
+    /**
+     * Returns the compiled group of a template. Rendering with a group that is
+     * shared between threads should synchronize on the group.
+     * 
+     * @param template the path of a group file or the name of a built-in
+     *            template, null for the default template
+     * @return the compiled group
+     * @throws FileNotFoundException if there is no such file or built-in
+     */
+    public static synchronized STGroup getGroup(String template) throws IOException {
+        if (template == null || template.length() == 0) {
+            template = DEFAULT_TEMPLATE;
+        }
+        File file = new File(template);
+        if (file.isFile()) {
+            String key = file.getCanonicalPath();
+            Entry entry = CACHE.get(key);
+            if (entry == null || entry.mLastModified != file.lastModified()
+                    || entry.mSize != file.length()) {
+                entry = new Entry();
+                entry.mLastModified = file.lastModified();
+                entry.mSize = file.length();
+                entry.mGroup = compile(file.toURI().toURL());
+                CACHE.put(key, entry);
+            }
+            return entry.mGroup;
+        }
+
+        String name = BUILT_IN_DIR + template + EXTENSION;
+        Entry entry = CACHE.get(name);
+        if (entry == null) {
+            URL url = TemplateRegistry.class.getClassLoader().getResource(name);
+            if (url == null) {
+                throw new FileNotFoundException("No template file or built-in template "
+                        + template);
+            }
+            entry = new Entry();
+            entry.mGroup = compile(url);
+            CACHE.put(name, entry);
+        }
+        return entry.mGroup;
+    }
+
+    /**
+     * @return the number of groups compiled in this JVM
+     */
+    static synchronized int getCompiledCount() {
+        return sCompiled;
+    }
+
+    private static STGroup compile(URL url) {
+        STGroupFile group = new STGroupFile(url, ENCODING, '<', '>');
+        group.load();
+        // Lets templates escape names with format="xml-encode"
+        group.registerRenderer(String.class, new StringRenderer());
+        sCompiled++;
+        return group;
+    }
+}
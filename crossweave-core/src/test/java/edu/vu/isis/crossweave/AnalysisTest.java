@@ -0,0 +1,50 @@
+package edu.vu.isis.crossweave;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class AnalysisTest extends TestCase {
+
+    private File mDir = new File("target/test-analysis");
+
+    public void testSourceJarsResolvedAfterUpToDateCheck() throws Exception {
+        File outputDir = new File(mDir, "resolver");
+        new File(outputDir, "crossweave-input-manifest").delete();
+        final File dependency = new File(mDir, "dependency.jar");
+        mDir.mkdirs();
+        dependency.createNewFile();
+        final int[] resolved = new int[1];
+        SourceJarResolver resolver = new SourceJarResolver() {
+
+            @Override
+            public List<File> getInputs() {
+                return Arrays.asList(dependency);
+            }
+
+            @Override
+            public List<File> resolve() {
+                resolved[0]++;
+                return Collections.emptyList();
+            }
+        };
+
+        analysis(outputDir, resolver).analyze();
+        assertEquals(1, resolved[0]);
+        analysis(outputDir, resolver).analyze();
+        assertEquals(1, resolved[0]);
+
+        dependency.setLastModified(dependency.lastModified() + 2000);
+        analysis(outputDir, resolver).analyze();
+        assertEquals(2, resolved[0]);
+    }
+
+    private static Analysis analysis(File outputDir, SourceJarResolver resolver) {
+        return new Analysis().setSource(new File("../crossweave-examples/src"))
+                .setPatternDef(new File("../crossweave-examples/patterndef.xml"))
+                .setOutputDir(outputDir).setSourceJarResolver(resolver);
+    }
+}
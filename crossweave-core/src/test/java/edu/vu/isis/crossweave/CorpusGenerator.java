@@ -0,0 +1,231 @@
+package edu.vu.isis.crossweave;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+
+/**
+ * Writes a synthetic source tree with DesignPattern annotations, for tests
+ * that need more input than the examples provide. The tree is a function of
+ * the settings only, so the same settings always give the same files.
+ * <p>
+ * Annotated classes are numbered in order; every n-th of them specifies an
+ * instance of gof.adapter and the following ones play its roles. The pattern
+ * definition written by writePatternDef declares the implementations and roles
+ * the sources use.
+ */
+public class CorpusGenerator {
+
+    private static final String[] ROLES = { "client", "adapter", "adaptee" };
+
+    /** Written last into a generated tree, holding the settings it was written with */
+    private static final String SETTINGS_FILE = ".corpus";
+
+    private int mClasses = 1000;
+    private int mPackages = 20;
+    private int mSpecEvery = 10;
+    private int mPackageDepth = 1;
+    private int mAnnotatedPercent = 100;
+    private int mImpls = 1;
+    private int mRoles = ROLES.length;
+
+    /**
+     * @param classes the number of classes to generate
+     */
+    public CorpusGenerator setClasses(int classes) {
+        mClasses = classes;
+        return this;
+    }
+
+    /**
+     * @param packages the number of packages the classes are spread over
+     */
+    public CorpusGenerator setPackages(int packages) {
+        mPackages = packages;
+        return this;
+    }
+
+    /**
+     * @param specEvery every n-th class carries a spec, the others carry roles
+     *            of the closest spec
+     */
+    public CorpusGenerator setSpecEvery(int specEvery) {
+        mSpecEvery = specEvery;
+        return this;
+    }
+
+    /**
+     * @param packageDepth the number of package name segments below gen
+     */
+    public CorpusGenerator setPackageDepth(int packageDepth) {
+        mPackageDepth = packageDepth;
+        return this;
+    }
+
+    /**
+     * @param annotatedPercent the percentage of classes that carry a
+     *            DesignPattern annotation, spread evenly over the tree
+     */
+    public CorpusGenerator setAnnotatedPercent(int annotatedPercent) {
+        mAnnotatedPercent = annotatedPercent;
+        return this;
+    }
+
+    /**
+     * @param impls the number of implementations of the pattern, which the
+     *            specs use in turn
+     */
+    public CorpusGenerator setImpls(int impls) {
+        mImpls = impls;
+        return this;
+    }
+
+    /**
+     * @param roles the number of roles of the pattern, which the role
+     *            annotations use in turn
+     */
+    public CorpusGenerator setRoles(int roles) {
+        mRoles = roles;
+        return this;
+    }
+
+    /**
+     * Writes the source tree.
+     *
+     * @param dir the directory to write the sources to
+     */
+    public void writeSources(File dir) throws IOException {
+        StringBuilder base = new StringBuilder("gen");
+        for (int level = 1; level < mPackageDepth; level++) {
+            base.append(".level").append(level);
+        }
+        int annotated = 0;
+        for (int i = 0; i < mClasses; i++) {
+            String pkg = base + ".p" + (i % mPackages);
+            File pkgDir = new File(dir, pkg.replace('.', File.separatorChar));
+            pkgDir.mkdirs();
+            String name = "Class" + i;
+            StringBuilder sb = new StringBuilder();
+            sb.append("package ").append(pkg).append(";\n\n");
+            if (isAnnotated(i)) {
+                int a = annotated++;
+                int spec = a - a % mSpecEvery;
+                sb.append("import edu.vu.isis.crossweave.annotation.DesignPattern;\n");
+                sb.append("import java.util.List;\n\n");
+                if (a == spec) {
+                    sb.append("@DesignPattern.Specification(alias = \"a").append(spec)
+                            .append("\", instanceName = \"i").append(spec)
+                            .append("\", namespace = \"gof\", patternName = \"adapter\", impl = \"")
+                            .append(getImpl(spec / mSpecEvery % mImpls)).append("\")\n");
+                } else {
+                    sb.append("@DesignPattern.Role(alias = \"a").append(spec)
+                            .append("\", role = \"").append(getRole(a % mRoles)).append("\")\n");
+                }
+            } else {
+                sb.append("import java.util.List;\n\n");
+            }
+            sb.append("public class ").append(name).append(" {\n\n");
+            sb.append("    private int mCount;\n\n");
+            for (int m = 0; m < 5; m++) {
+                sb.append("    /**\n     * Method ").append(m).append("\n     */\n");
+                sb.append("    public int method").append(m).append("(List<String> values) {\n");
+                sb.append("        for (String v : values) {\n");
+                sb.append("            mCount += v.length() * ").append(m).append(";\n");
+                sb.append("        }\n        return mCount;\n    }\n\n");
+            }
+            sb.append("}\n");
+            write(new File(pkgDir, name + ".java"), sb.toString());
+        }
+    }
+
+    /**
+     * Writes the source tree unless the directory holds one that was written
+     * completely with the same settings. Any other content of the directory is
+     * deleted first.
+     *
+     * @param dir the directory to write the sources to
+     */
+    public void ensureSources(File dir) throws IOException {
+        File settings = new File(dir, SETTINGS_FILE);
+        if (settings.isFile() && read(settings).equals(getSettings())) {
+            return;
+        }
+        delete(dir);
+        writeSources(dir);
+        write(settings, getSettings());
+    }
+
+    private String getSettings() {
+        return "classes=" + mClasses + " packages=" + mPackages + " specEvery=" + mSpecEvery
+                + " packageDepth=" + mPackageDepth + " annotatedPercent=" + mAnnotatedPercent
+                + " impls=" + mImpls + " roles=" + mRoles + "\n";
+    }
+
+    /**
+     * Writes a pattern definition file matching the generated sources.
+     *
+     * @param file the file to write
+     */
+    public void writePatternDef(File file) throws IOException {
+        file.getParentFile().mkdirs();
+        StringBuilder sb = new StringBuilder("<pattern name=\"adapter\" namespace=\"gof\">\n");
+        for (int i = 0; i < mImpls; i++) {
+            sb.append("  <impl name=\"").append(getImpl(i)).append("\" />\n");
+        }
+        for (int i = 0; i < mRoles; i++) {
+            sb.append("  <role name=\"").append(getRole(i)).append("\" />\n");
+        }
+        write(file, sb.append("</pattern>\n").toString());
+    }
+
+    private boolean isAnnotated(int i) {
+        return i * mAnnotatedPercent % 100 < mAnnotatedPercent;
+    }
+
+    private static String getImpl(int i) {
+        return i == 0 ? "foo" : "impl" + i;
+    }
+
+    private static String getRole(int i) {
+        return i < ROLES.length ? ROLES[i] : "role" + i;
+    }
+
+    private static String read(File file) throws IOException {
+        Reader r = new InputStreamReader(new FileInputStream(file), "UTF-8");
+        try {
+            StringBuilder sb = new StringBuilder();
+            char[] buf = new char[256];
+            int n;
+            while ((n = r.read(buf)) >= 0) {
+                sb.append(buf, 0, n);
+            }
+            return sb.toString();
+        } finally {
+            r.close();
+        }
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    private static void write(File file, String content) throws IOException {
+        Writer w = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        try {
+            w.write(content);
+        } finally {
+            w.close();
+        }
+    }
+}
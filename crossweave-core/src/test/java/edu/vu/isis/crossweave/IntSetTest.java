@@ -0,0 +1,40 @@
+package edu.vu.isis.crossweave;
+
+import junit.framework.TestCase;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+public class IntSetTest extends TestCase {
+
+    public void testAddContainsRemove() {
+        IntSet set = new IntSet();
+        assertFalse(set.contains(0));
+        assertFalse(set.remove(0));
+        assertTrue(set.add(0));
+        assertFalse(set.add(0));
+        assertTrue(set.contains(0));
+        assertTrue(set.remove(0));
+        assertFalse(set.contains(0));
+        assertEquals(0, set.size());
+    }
+
+    public void testSameAsHashSet() {
+        IntSet set = new IntSet();
+        Set<Integer> expected = new HashSet<Integer>();
+        Random random = new Random(42);
+        for (int i = 0; i < 100000; i++) {
+            int value = random.nextInt(2000);
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(value), set.remove(value));
+            } else {
+                assertEquals(expected.add(value), set.add(value));
+            }
+        }
+        assertEquals(expected.size(), set.size());
+        for (int value = 0; value < 2000; value++) {
+            assertEquals(expected.contains(value), set.contains(value));
+        }
+    }
+}
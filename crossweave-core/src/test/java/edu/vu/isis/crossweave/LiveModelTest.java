@@ -0,0 +1,140 @@
+package edu.vu.isis.crossweave;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+public class LiveModelTest extends TestCase {
+
+    private static final String[] DIRS = { "src/a", "src/a-b", "src/a/b", "src", "src/b" };
+
+    private static final String[] IMPLS = { "foo", "bar", "missing" };
+
+    private static final String[] ROLES = { "client", "adapter", "unknown" };
+
+    private Map<String, Pattern> mPatterns = new HashMap<String, Pattern>();
+
+    private SymbolTable mSymbols = new SymbolTable();
+
+    @Override
+    protected void setUp() {
+        for (String impl : new String[] { "foo", "bar" }) {
+            Pattern pattern = new Pattern(mSymbols, "gof", "adapter", impl);
+            pattern.addRole(new Role(mSymbols, "client"));
+            pattern.addRole(new Role(mSymbols, "adapter"));
+            mPatterns.put(pattern.getFullyQualifiedName(), pattern);
+        }
+    }
+
+    public void testSourceOrder() {
+        List<File> files = new ArrayList<File>();
+        File root = new File("target/test-live-model");
+        for (String dir : DIRS) {
+            new File(root, dir).mkdirs();
+            for (String name : new String[] { "A.java", "a.java", "B.java" }) {
+                files.add(new File(new File(root, dir), name));
+            }
+        }
+        for (File file : files) {
+            try {
+                file.createNewFile();
+            } catch (Exception e) {
+                fail(e.toString());
+            }
+        }
+        List<File> collected = new ArrayList<File>();
+        Analysis.collectSourceFiles(root, collected);
+        Collections.shuffle(files, new Random(7));
+        Collections.sort(files, LiveModel.SOURCE_ORDER);
+        assertEquals(collected, files);
+    }
+
+    public void testUpdatesMatchFullAnalysis() {
+        Random random = new Random(42);
+        List<File> files = new ArrayList<File>();
+        for (String dir : DIRS) {
+            for (int i = 0; i < 6; i++) {
+                files.add(new File(dir, "C" + i + ".java"));
+            }
+        }
+        TreeMap<File, SourceFacts> current = new TreeMap<File, SourceFacts>(
+                LiveModel.SOURCE_ORDER);
+        LiveModel model = new LiveModel(mPatterns);
+        for (int step = 0; step < 300; step++) {
+            File file = files.get(random.nextInt(files.size()));
+            if (random.nextInt(5) == 0) {
+                current.remove(file);
+                model.update(file, null);
+            } else {
+                SourceFacts facts = randomFacts(random, file);
+                current.put(file, facts);
+                model.update(file, facts);
+            }
+
+            Map<String, PatternInstance> expected = new HashMap<String, PatternInstance>();
+            Diagnostics diagnostics = new Diagnostics();
+            Analysis.applyFacts(current.values(), mPatterns, expected, new AnalysisMetrics(),
+                    diagnostics);
+            assertEquals("step " + step, describe(expected), describe(model.getInstanceMap()));
+            assertEquals("step " + step, sorted(diagnostics.getDetails()),
+                    sorted(model.getDiagnostics().getDetails()));
+        }
+    }
+
+    public void testPatternDefChange() {
+        LiveModel model = new LiveModel(new HashMap<String, Pattern>());
+        SourceFacts facts = new SourceFacts();
+        facts.addSpec(new SpecFact("a", "gof", "adapter", "foo", "inst"));
+        facts.addRole(new RoleFact("a", "client", "pkg.Client"));
+        model.update(new File("src/A.java"), facts);
+        assertTrue(model.getInstanceMap().isEmpty());
+
+        model.setPatterns(mPatterns);
+        assertEquals("[pkg.Client]", model.getInstanceMap().get("a").getRole("client")
+                .getImplementers().toString());
+    }
+
+    private static SourceFacts randomFacts(Random random, File file) {
+        SourceFacts facts = new SourceFacts();
+        int specs = random.nextInt(3);
+        for (int i = 0; i < specs; i++) {
+            facts.addSpec(new SpecFact("a" + random.nextInt(6), "gof", "adapter",
+                    IMPLS[random.nextInt(IMPLS.length)], "i" + random.nextInt(3)));
+        }
+        int roles = random.nextInt(4);
+        for (int i = 0; i < roles; i++) {
+            facts.addRole(new RoleFact("a" + random.nextInt(6),
+                    ROLES[random.nextInt(ROLES.length)],
+                    file.getPath().replace(File.separatorChar, '.') + random.nextInt(2)));
+        }
+        return facts;
+    }
+
+    private static List<String> sorted(List<String> details) {
+        Collections.sort(details);
+        return details;
+    }
+
+    /**
+     * Describes the instances in the iteration order of the map.
+     */
+    private static String describe(Map<String, PatternInstance> instances) {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, PatternInstance> entry : instances.entrySet()) {
+            sb.append(entry.getKey()).append('=')
+                    .append(entry.getValue().getFullyQualifiedName());
+            for (Role role : entry.getValue().getRoles()) {
+                sb.append(' ').append(role.getName()).append(role.getImplementers());
+            }
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,76 @@
+package edu.vu.isis.crossweave;
+
+import com.thoughtworks.qdox.JavaDocBuilder;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Scans a corpus whose source models do not fit in the heap at once. This test
+ * runs in its own surefire execution with a small -Xmx, see the pom.
+ */
+public class LowMemoryScanTest extends TestCase {
+
+    private static final int CLASSES = 12000;
+
+    /** The heap the low-memory execution is expected to run with */
+    private static final long MAX_HEAP = 32L * 1024 * 1024;
+
+    private static final int SAMPLE = 500;
+
+    private File mDir = new File("target/test-corpus/low-memory");
+
+    private SymbolTable mSymbols = new SymbolTable();
+
+    public void testLowMemoryScan() throws Exception {
+        long maxHeap = Runtime.getRuntime().maxMemory();
+        assertTrue("run with a small -Xmx, got " + maxHeap, maxHeap <= MAX_HEAP);
+
+        new CorpusGenerator().setClasses(CLASSES).ensureSources(mDir);
+        List<File> files = new ArrayList<File>();
+        Analysis.collectSourceFiles(mDir, files);
+        assertEquals(CLASSES, files.size());
+
+        // Keeping every source model would not fit
+        long retained = retainedPerFile(files.subList(0, SAMPLE));
+        assertTrue("QDox retains " + retained + " bytes per file",
+                retained * CLASSES > maxHeap);
+
+        List<SourceFacts> facts = new QDoxSourceScanner(true).scan(files);
+        assertEquals(CLASSES, facts.size());
+
+        Map<String, Pattern> patternMap = new HashMap<String, Pattern>();
+        Pattern adapter = new Pattern(mSymbols, "gof", "adapter", "foo");
+        adapter.addRole(new Role(mSymbols, "client"));
+        adapter.addRole(new Role(mSymbols, "adapter"));
+        adapter.addRole(new Role(mSymbols, "adaptee"));
+        patternMap.put(adapter.getFullyQualifiedName(), adapter);
+        Map<String, PatternInstance> instanceMap = new HashMap<String, PatternInstance>();
+        Analysis.applyFacts(facts, patternMap, instanceMap);
+        assertEquals(CLASSES / 10, instanceMap.size());
+    }
+
+    private static long retainedPerFile(List<File> files) throws Exception {
+        long before = usedHeap();
+        JavaDocBuilder builder = new JavaDocBuilder();
+        for (File file : files) {
+            builder.addSource(file);
+        }
+        long after = usedHeap();
+        assertEquals(files.size(), builder.getSources().length);
+        return (after - before) / files.size();
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
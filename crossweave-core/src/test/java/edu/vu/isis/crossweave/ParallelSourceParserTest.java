@@ -0,0 +1,46 @@
+package edu.vu.isis.crossweave;
+
+import com.thoughtworks.qdox.JavaDocBuilder;
+import com.thoughtworks.qdox.model.JavaSource;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+public class ParallelSourceParserTest extends TestCase {
+
+    private static final int CLASSES = 2000;
+
+    private List<File> mFiles = new ArrayList<File>();
+
+    /** {@inheritDoc} */
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        File dir = new File("target/test-corpus/parallel");
+        new CorpusGenerator().setClasses(CLASSES).ensureSources(dir);
+        Analysis.collectSourceFiles(dir, mFiles);
+        assertEquals(CLASSES, mFiles.size());
+    }
+
+    public void testSameFactsAsSerialParse() throws Exception {
+        List<SourceFacts> serial = parseSerially();
+        List<SourceFacts> parallel = new ParallelSourceParser(new QDoxSourceScanner(), 4)
+                .parse(mFiles);
+        assertEquals(serial, parallel);
+    }
+
+    private List<SourceFacts> parseSerially() throws Exception {
+        JavaDocBuilder builder = new JavaDocBuilder();
+        for (File file : mFiles) {
+            builder.addSource(file);
+        }
+        List<SourceFacts> facts = new ArrayList<SourceFacts>();
+        for (JavaSource src : builder.getSources()) {
+            facts.add(QDoxSourceScanner.extractFacts(src));
+        }
+        return facts;
+    }
+}
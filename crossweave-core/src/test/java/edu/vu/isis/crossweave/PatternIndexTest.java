@@ -0,0 +1,85 @@
+package edu.vu.isis.crossweave;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+public class PatternIndexTest extends TestCase {
+
+    private SymbolTable mSymbols = new SymbolTable();
+
+    private File mFile = new File("target/test-index/pattern-index");
+
+    public void testLookups() throws Exception {
+        List<PatternInstance> instances = new ArrayList<PatternInstance>();
+        Pattern foo = adapter("foo");
+        PatternInstance snoopy = foo.instantiate("snoopy");
+        snoopy.addImplementerToRole("pkg.Main", "client");
+        snoopy.addImplementerToRole("pkg.DogAdapter", "adapter");
+        snoopy.addImplementerToRole("pkg.Dog", "adaptee");
+        instances.add(snoopy);
+        PatternInstance tom = adapter("bar").instantiate("tom");
+        tom.addImplementerToRole("pkg.Main", "client");
+        tom.addImplementerToRole("pkg.Cat", "adaptee");
+        instances.add(tom);
+        Pattern observer = new Pattern(mSymbols, "gof", "observer", "");
+        observer.addRole(new Role(mSymbols, "subject"));
+        instances.add(observer.instantiate("news"));
+        instances.add(new Pattern(mSymbols, "gof", "adapterx", "").instantiate("other"));
+
+        mFile.delete();
+        assertTrue(PatternIndex.write(mFile, instances));
+        assertFalse(PatternIndex.write(mFile, instances));
+
+        PatternIndex index = PatternIndex.open(mFile);
+        assertEquals(4, index.getInstanceCount());
+
+        List<RoleBinding> main = index.getBindings("pkg.Main");
+        assertEquals("[gof.adapter.bar.tom#client, gof.adapter.foo.snoopy#client]",
+                main.toString());
+        assertEquals("[pkg.Cat]", main.get(0).getInstance().getRole("adaptee")
+                .getImplementers().toString());
+        assertEquals("[gof.adapter.foo.snoopy#adaptee]", index.getBindings("pkg.Dog").toString());
+        assertTrue(index.getBindings("pkg.Nobody").isEmpty());
+
+        assertEquals(2, index.getInstances("gof.adapter").size());
+        List<PatternInstance> fooInstances = index.getInstances("gof.adapter.foo");
+        assertEquals(1, fooInstances.size());
+        PatternInstance copy = fooInstances.get(0);
+        assertEquals("gof.adapter.foo.snoopy", copy.getFullyQualifiedName());
+        assertEquals(3, copy.getRoles().size());
+        assertEquals("[pkg.DogAdapter]", copy.getRole("adapter").getImplementers().toString());
+        assertTrue(index.getInstances("gof.observer..").isEmpty());
+        assertTrue(index.getInstances("gof.observer.").get(0).isUnfilled());
+        assertTrue(index.getInstances("posa").isEmpty());
+    }
+
+    public void testLargeIndex() throws Exception {
+        Pattern foo = adapter("foo");
+        List<PatternInstance> instances = new ArrayList<PatternInstance>();
+        for (int i = 0; i < 100000; i++) {
+            PatternInstance instance = foo.instantiate("i" + i);
+            instance.addImplementerToRole("pkg.Client" + i, "client");
+            instance.addImplementerToRole("pkg.Adapter" + i, "adapter");
+            instance.addImplementerToRole("pkg.Shared", "adaptee");
+            instances.add(instance);
+        }
+        File file = new File("target/test-index/large-index");
+        PatternIndex.write(file, instances);
+
+        PatternIndex index = PatternIndex.open(file);
+        List<RoleBinding> bindings = index.getBindings("pkg.Adapter4711");
+        assertEquals("[gof.adapter.foo.i4711#adapter]", bindings.toString());
+        assertEquals(100000, index.getBindings("pkg.Shared").size());
+    }
+
+    private Pattern adapter(String impl) {
+        Pattern pattern = new Pattern(mSymbols, "gof", "adapter", impl);
+        pattern.addRole(new Role(mSymbols, "client"));
+        pattern.addRole(new Role(mSymbols, "adapter"));
+        pattern.addRole(new Role(mSymbols, "adaptee"));
+        return pattern;
+    }
+}
@@ -0,0 +1,117 @@
+package edu.vu.isis.crossweave;
+
+import junit.framework.TestCase;
+
+import java.util.Arrays;
+import java.util.List;
+
+public class PatternInstanceTest extends TestCase {
+
+    private SymbolTable mSymbols = new SymbolTable();
+
+    private Pattern mAdapter;
+
+    @Override
+    protected void setUp() {
+        mAdapter = new Pattern(mSymbols, "gof", "adapter", "foo");
+        mAdapter.addRole(new Role(mSymbols, "client"));
+        mAdapter.addRole(new Role(mSymbols, "adapter"));
+        mAdapter.addRole(new Role(mSymbols, "adaptee"));
+    }
+
+    public void testRoleLookup() {
+        PatternInstance instance = mAdapter.instantiate("snoopy");
+        assertEquals("client", instance.getRole("client").getName());
+        assertNull(instance.getRole("target"));
+        assertTrue(instance.addImplementerToRole("pkg.Client", "client"));
+        assertFalse(instance.addImplementerToRole("pkg.Client", "target"));
+        assertTrue(instance.getRole("client").isImplementer("pkg.Client"));
+    }
+
+    public void testImplementersKeepOrderWithoutDuplicates() {
+        PatternInstance instance = mAdapter.instantiate("snoopy");
+        instance.addImplementerToRole("pkg.B", "client");
+        instance.addImplementerToRole("pkg.A", "client");
+        instance.addImplementerToRole("pkg.B", "client");
+        assertEquals("[pkg.B, pkg.A]", instance.getRole("client").getImplementers().toString());
+    }
+
+    public void testRemoveImplementer() {
+        Role client = mAdapter.instantiate("snoopy").getRole("client");
+        client.addImplementer("pkg.A");
+        client.addImplementer("pkg.B");
+        client.addImplementer("pkg.C");
+        client.removeImplementer("pkg.B");
+        client.removeImplementer("pkg.Nobody");
+        assertEquals("[pkg.A, pkg.C]", client.getImplementers().toString());
+        assertFalse(client.isImplementer("pkg.B"));
+        client.removeImplementer("pkg.A");
+        client.removeImplementer("pkg.C");
+        assertTrue(client.hasNoImplementers());
+    }
+
+    public void testManyImplementers() {
+        Role client = mAdapter.instantiate("snoopy").getRole("client");
+        for (int i = 0; i < 10000; i++) {
+            assertTrue(client.addImplementer("pkg.C" + i));
+        }
+        assertFalse(client.addImplementer("pkg.C4711"));
+        for (int i = 0; i < 10000; i += 2) {
+            client.removeImplementer("pkg.C" + i);
+        }
+        assertEquals(5000, client.getImplementers().size());
+        assertFalse(client.isImplementer("pkg.C4710"));
+        assertTrue(client.isImplementer("pkg.C4711"));
+        assertEquals("pkg.C1", client.getImplementers().iterator().next());
+    }
+
+    public void testNamesAreInterned() {
+        Pattern copy = new Pattern(mSymbols, new String("gof"), new String("adapter"), new String("foo"));
+        assertEquals(mAdapter, copy);
+        assertEquals(mAdapter.hashCode(), copy.hashCode());
+        assertEquals(new Role(mSymbols, "client"), new Role(mSymbols, new String("client")));
+        assertEquals(mAdapter, new Pattern(new SymbolTable(), "gof", "adapter", "foo"));
+        assertEquals(new Role(mSymbols, "client"), new Role(new SymbolTable(), "client"));
+        assertEquals("gof.adapter.foo.snoopy", copy.instantiate("snoopy").getFullyQualifiedName());
+        assertSame(mAdapter.getFullyQualifiedName(), mAdapter.getFullyQualifiedName());
+    }
+
+    public void testViewsAreReadOnly() {
+        PatternInstance instance = mAdapter.instantiate("snoopy");
+        Role client = instance.getRole("client");
+        try {
+            instance.getRoles().clear();
+            fail();
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+        try {
+            client.getImplementers().add("pkg.Client");
+            fail();
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+        // Views follow the model
+        client.addImplementer("pkg.Client");
+        assertTrue(client.getImplementers().contains("pkg.Client"));
+        assertSame(client.getImplementers(), client.getImplementers());
+    }
+
+    public void testImplementerIndex() {
+        PatternInstance snoopy = mAdapter.instantiate("snoopy");
+        snoopy.addImplementerToRole("pkg.Main", "client");
+        snoopy.addImplementerToRole("pkg.Dog", "adaptee");
+        PatternInstance tom = mAdapter.instantiate("tom");
+        tom.addImplementerToRole("pkg.Main", "client");
+
+        ImplementerIndex index = new ImplementerIndex(Arrays.asList(snoopy, tom));
+        List<RoleBinding> main = index.getBindings("pkg.Main");
+        assertEquals(2, main.size());
+        assertSame(snoopy, main.get(0).getInstance());
+        assertSame(tom, main.get(1).getInstance());
+        assertEquals("client", main.get(1).getRole().getName());
+        assertEquals("[gof.adapter.foo.snoopy#adaptee]", index.getBindings("pkg.Dog").toString());
+        assertTrue(index.getBindings("pkg.Cat").isEmpty());
+        assertEquals(2, index.getImplementers().size());
+    }
+}
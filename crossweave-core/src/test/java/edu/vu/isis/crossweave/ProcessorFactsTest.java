@@ -0,0 +1,128 @@
+package edu.vu.isis.crossweave;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.annotation.processing.Processor;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+public class ProcessorFactsTest extends TestCase {
+
+    private static final String IMPORT = "import edu.vu.isis.crossweave.annotation.DesignPattern;\n";
+
+    /**
+     * The classes of crossweave-lib. They are not a dependency, since the
+     * annotations on the class path would change what QDox resolves.
+     */
+    private static final File LIB = new File("../crossweave-lib/target/classes");
+
+    private SymbolTable mSymbols = new SymbolTable();
+
+    private File mDir = new File("target/test-processor-facts");
+
+    public void testSameModelAsScanners() throws Exception {
+        // Type name order differs from file order: Helper is declared in
+        // Main.java after Main, and both specify alias a
+        File src = new File(mDir, "src");
+        write(new File(src, "pkg/Main.java"), "package pkg;\n" + IMPORT
+                + spec("main") + "@DesignPattern.Role(alias = \"a\", role = \"client\")\n"
+                + "public class Main {}\n"
+                + spec("helper") + "@DesignPattern.Role(alias = \"a\", role = \"client\")\n"
+                + "class Helper {}\n");
+        write(new File(src, "pkg/B.java"), "package pkg;\n" + IMPORT
+                + "@DesignPattern.Role(alias = \"a\", role = \"adaptee\")\n"
+                + "public class B {}\n");
+        write(new File(src, "pkg/sub/A.java"), "package pkg.sub;\n" + IMPORT
+                + "@DesignPattern.Role(alias = \"a\", role = \"client\")\n"
+                + "public class A {}\n");
+        List<File> files = new ArrayList<File>();
+        Analysis.collectSourceFiles(src, files);
+
+        File factsFile = new File(mDir, "pattern-facts");
+        compile(new File(mDir, "classes"), factsFile, files);
+        List<SourceFacts> processed = ProcessorFacts.read(factsFile);
+        List<SourceFacts> scanned = new LightweightSourceScanner().scan(files);
+        assertEquals(scanned, processed);
+
+        List<String> fromScan = apply(scanned);
+        assertEquals(Arrays.asList("a gof.adapter.foo.main",
+                "client [pkg.Main, pkg.Helper, pkg.sub.A]", "adaptee [pkg.B]",
+                "Found multiple specs for pattern with alias a"), fromScan);
+        assertEquals(fromScan, apply(processed));
+    }
+
+    private static String spec(String instanceName) {
+        return "@DesignPattern.Specification(alias = \"a\", namespace = \"gof\",\n"
+                + "    patternName = \"adapter\", impl = \"foo\", instanceName = \""
+                + instanceName + "\")\n";
+    }
+
+    /**
+     * Builds the pattern instances from facts and describes them and the
+     * problems found.
+     */
+    private List<String> apply(List<SourceFacts> facts) {
+        Pattern adapter = new Pattern(mSymbols, "gof", "adapter", "foo");
+        adapter.addRole(new Role(mSymbols, "client"));
+        adapter.addRole(new Role(mSymbols, "adaptee"));
+        Map<String, Pattern> patternMap = new HashMap<String, Pattern>();
+        patternMap.put(adapter.getFullyQualifiedName(), adapter);
+        Map<String, PatternInstance> instanceMap = new TreeMap<String, PatternInstance>();
+        Diagnostics diagnostics = new Diagnostics();
+        Analysis.applyFacts(facts, patternMap, instanceMap, new AnalysisMetrics(), diagnostics);
+
+        List<String> lines = new ArrayList<String>();
+        for (Map.Entry<String, PatternInstance> e : instanceMap.entrySet()) {
+            lines.add(e.getKey() + " " + e.getValue().getFullyQualifiedName());
+            for (Role role : e.getValue().getRoles()) {
+                lines.add(role.getName() + " " + role.getImplementers());
+            }
+        }
+        lines.addAll(diagnostics.getDetails());
+        return lines;
+    }
+
+    private static void compile(File classes, File factsFile, List<File> sources)
+            throws Exception {
+        classes.mkdirs();
+        URLClassLoader loader = new URLClassLoader(new URL[] { LIB.toURI().toURL() });
+        Processor processor = (Processor) loader.loadClass(
+                "edu.vu.isis.crossweave.processor.DesignPatternProcessor").newInstance();
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        StandardJavaFileManager fileManager = compiler.getStandardFileManager(null, null, null);
+        Iterable<? extends JavaFileObject> units = fileManager.getJavaFileObjectsFromFiles(sources);
+        List<String> options = Arrays.asList("-d", classes.getPath(), "-classpath",
+                LIB.getPath(), "-Acrossweave.factsFile=" + factsFile.getPath());
+        JavaCompiler.CompilationTask task = compiler.getTask(null, fileManager, null, options,
+                null, units);
+        task.setProcessors(Arrays.asList(processor));
+        assertTrue(task.call());
+        fileManager.close();
+        loader.close();
+    }
+
+    private static void write(File file, String content) throws IOException {
+        file.getParentFile().mkdirs();
+        OutputStream out = new FileOutputStream(file);
+        try {
+            out.write(content.getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+    }
+}
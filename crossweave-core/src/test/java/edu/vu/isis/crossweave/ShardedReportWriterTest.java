@@ -0,0 +1,107 @@
+package edu.vu.isis.crossweave;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+public class ShardedReportWriterTest extends TestCase {
+
+    private static final String TEMPLATE = "../crossweave-examples/html_template.stg";
+
+    private File mDir = new File("target/test-sharded");
+
+    private SymbolTable mSymbols = new SymbolTable();
+
+    @Override
+    protected void setUp() throws Exception {
+        if (mDir.isDirectory()) {
+            for (File file : mDir.listFiles()) {
+                file.delete();
+            }
+        }
+    }
+
+    public void testWriteIfChanged() throws Exception {
+        Pattern adapter = new Pattern(mSymbols, "gof", "adapter", "foo");
+        adapter.addRole(new Role(mSymbols, "client"));
+        List<PatternInstance> patterns = new ArrayList<PatternInstance>();
+        PatternInstance snoopy = adapter.instantiate("snoopy");
+        snoopy.addImplementerToRole("pkg.Client", "client");
+        patterns.add(snoopy);
+        patterns.add(adapter.instantiate("tom"));
+        patterns.add(adapter.instantiate("garfield"));
+
+        ShardedReportWriter writer = new ShardedReportWriter(TEMPLATE, mDir, ".html", "UTF-8");
+        writer.write(patterns);
+        assertEquals(3, writer.getWritten());
+        File snoopyFile = new File(mDir, "gof.adapter.foo.snoopy.html");
+        File tomFile = new File(mDir, "gof.adapter.foo.tom.html");
+        assertTrue(snoopyFile.isFile());
+        assertTrue(tomFile.isFile());
+        assertEquals("gof.adapter.foo.garfield\tgof.adapter.foo.garfield.html\n"
+                + "gof.adapter.foo.snoopy\tgof.adapter.foo.snoopy.html\n"
+                + "gof.adapter.foo.tom\tgof.adapter.foo.tom.html\n",
+                read(new File(mDir, ShardedReportWriter.INDEX_FILE)));
+
+        // Nothing changed, so nothing is written
+        snoopyFile.setLastModified(10000);
+        tomFile.setLastModified(10000);
+        writer.write(patterns);
+        assertEquals(0, writer.getWritten());
+        assertEquals(3, writer.getUnchanged());
+        assertEquals(10000, snoopyFile.lastModified());
+
+        // Only the changed instance is written, and removed instances are deleted
+        patterns.get(1).addImplementerToRole("pkg.Tom", "client");
+        patterns.remove(2);
+        writer.write(patterns);
+        assertEquals(1, writer.getWritten());
+        assertEquals(1, writer.getUnchanged());
+        assertEquals(1, writer.getDeleted());
+        assertEquals(10000, snoopyFile.lastModified());
+        assertTrue(tomFile.lastModified() != 10000);
+        assertFalse(new File(mDir, "gof.adapter.foo.garfield.html").exists());
+        assertTrue(read(tomFile).contains("pkg.Tom"));
+    }
+
+    public void testFileNameCollisions() throws Exception {
+        Pattern adapter = new Pattern(mSymbols, "gof", "adapter", "foo");
+        List<PatternInstance> patterns = new ArrayList<PatternInstance>();
+        patterns.add(adapter.instantiate("a/b"));
+        patterns.add(adapter.instantiate("a:b"));
+        patterns.add(adapter.instantiate("A_B"));
+
+        ShardedReportWriter writer = new ShardedReportWriter(TEMPLATE, mDir, ".html", "UTF-8");
+        writer.write(patterns);
+        assertEquals(3, writer.getWritten());
+        assertEquals("gof.adapter.foo.A_B\tgof.adapter.foo.A_B.html\n"
+                + "gof.adapter.foo.a/b\tgof.adapter.foo.a_b-2.html\n"
+                + "gof.adapter.foo.a:b\tgof.adapter.foo.a_b-3.html\n",
+                read(new File(mDir, ShardedReportWriter.INDEX_FILE)));
+        assertTrue(read(new File(mDir, "gof.adapter.foo.a_b-3.html")).contains("a:b"));
+    }
+
+    public void testFileName() {
+        assertEquals("gof.adapter..i.html", ShardedReportWriter.getFileName("gof.adapter..i", ".html"));
+        assertEquals("a_b_c", ShardedReportWriter.getFileName("a/b\\c", ""));
+        assertEquals("_..x", ShardedReportWriter.getFileName("..x", ""));
+    }
+
+    private static String read(File file) throws Exception {
+        InputStream in = new FileInputStream(file);
+        try {
+            byte[] content = new byte[(int) file.length()];
+            int off = 0;
+            while (off < content.length) {
+                off += in.read(content, off, content.length - off);
+            }
+            return new String(content, "UTF-8");
+        } finally {
+            in.close();
+        }
+    }
+}
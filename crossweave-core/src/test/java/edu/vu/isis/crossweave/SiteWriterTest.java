@@ -0,0 +1,110 @@
+package edu.vu.isis.crossweave;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+public class SiteWriterTest extends TestCase {
+
+    private SymbolTable mSymbols = new SymbolTable();
+
+    private File mDir = new File("target/test-site");
+
+    @Override
+    protected void setUp() throws Exception {
+        delete(mDir);
+    }
+
+    public void testPages() throws Exception {
+        Pattern adapter = new Pattern(mSymbols, "gof", "adapter", "foo");
+        adapter.addRole(new Role(mSymbols, "client"));
+        adapter.addRole(new Role(mSymbols, "adaptee"));
+        Pattern observer = new Pattern(mSymbols, "gof", "observer", "");
+        observer.addRole(new Role(mSymbols, "subject"));
+        List<PatternInstance> patterns = new ArrayList<PatternInstance>();
+        for (String name : new String[] { "e", "d", "c", "b", "a" }) {
+            PatternInstance instance = adapter.instantiate(name);
+            instance.addImplementerToRole("pkg.Client", "client");
+            instance.addImplementerToRole("pkg.<" + name + ">", "adaptee");
+            patterns.add(instance);
+        }
+        patterns.add(observer.instantiate("news"));
+
+        SiteWriter writer = new SiteWriter(SiteWriter.DEFAULT_TEMPLATE, mDir, 2, "UTF-8");
+        writer.write(patterns);
+        assertEquals(4, writer.getPageCount());
+        assertEquals(6, writer.getWritten());
+        assertEquals("gof/adapter.foo-1.html\ngof/adapter.foo-2.html\ngof/adapter.foo-3.html\n"
+                + "gof/observer-1.html\nindex.html\nsearch-index.json\n",
+                read(new File(mDir, SiteWriter.FILE_LIST)));
+
+        String index = read(new File(mDir, "index.html"));
+        assertTrue(index, index.contains("<a href=\"gof/adapter.foo-1.html\">adapter.foo</a>: "
+                + "5 instances on 3 pages"));
+        assertTrue(index, index.contains("<a href=\"gof/observer-1.html\">observer</a>"));
+
+        String first = read(new File(mDir, "gof/adapter.foo-1.html"));
+        assertTrue(first, first.contains("id=\"gof.adapter.foo.a\""));
+        assertTrue(first, first.contains("id=\"gof.adapter.foo.b\""));
+        assertFalse(first, first.contains("id=\"gof.adapter.foo.c\""));
+        assertTrue(first, first.contains("pkg.&lt;a&gt;"));
+        assertTrue(first, first.contains("<a href=\"adapter.foo-2.html\">Next</a>"));
+        assertFalse(first, first.contains("Previous"));
+        String last = read(new File(mDir, "gof/adapter.foo-3.html"));
+        assertTrue(last, last.contains("<a href=\"adapter.foo-2.html\">Previous</a>"));
+        assertFalse(last, last.contains("Next"));
+        assertTrue(read(new File(mDir, "gof/observer-1.html")).contains("no implementers"));
+
+        String search = read(new File(mDir, SiteWriter.SEARCH_INDEX));
+        assertTrue(search, search.contains("\"pages\": [\"gof/adapter.foo-1.html\", "
+                + "\"gof/adapter.foo-2.html\", \"gof/adapter.foo-3.html\", "
+                + "\"gof/observer-1.html\"]"));
+        assertTrue(search, search.contains("\"classes\": [\"pkg.Client\", \"pkg.<a>\""));
+        assertTrue(search, search.contains("[\"gof.observer..news\", 3, [2, -1]]"));
+
+        // Nothing changed, so nothing is written
+        writer.write(patterns);
+        assertEquals(0, writer.getWritten());
+        assertEquals(6, writer.getUnchanged());
+
+        // Pages that are no longer needed are deleted
+        patterns.remove(patterns.size() - 1);
+        writer.write(patterns.subList(0, 2));
+        assertEquals(1, writer.getPageCount());
+        assertEquals(3, writer.getDeleted());
+        assertFalse(new File(mDir, "gof/adapter.foo-2.html").exists());
+        assertFalse(new File(mDir, "gof/observer-1.html").exists());
+        assertTrue(read(new File(mDir, "gof/adapter.foo-1.html")).contains("id=\"gof.adapter.foo.e\""));
+    }
+
+    public void testPageNameCollisions() throws Exception {
+        List<PatternInstance> patterns = new ArrayList<PatternInstance>();
+        patterns.add(new Pattern(mSymbols, "gof", "adapter", "a/b").instantiate("x"));
+        patterns.add(new Pattern(mSymbols, "gof", "adapter", "a:b").instantiate("y"));
+        patterns.add(new Pattern(mSymbols, "GoF", "adapter", "A_B").instantiate("z"));
+
+        SiteWriter writer = new SiteWriter(SiteWriter.DEFAULT_TEMPLATE, mDir, 2, "UTF-8");
+        writer.write(patterns);
+        assertEquals(3, writer.getPageCount());
+        assertEquals("GoF/adapter.A_B-1.html\ngof/adapter.a_b-2-1.html\n"
+                + "gof/adapter.a_b-3-1.html\nindex.html\nsearch-index.json\n",
+                read(new File(mDir, SiteWriter.FILE_LIST)));
+        assertTrue(read(new File(mDir, "gof/adapter.a_b-3-1.html")).contains("id=\"gof.adapter.a:b.y\""));
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    private static String read(File file) throws Exception {
+        return new String(ShardedReportWriter.readFile(file), "UTF-8");
+    }
+}
@@ -0,0 +1,119 @@
+package edu.vu.isis.crossweave;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+public class SourceJarCacheTest extends TestCase {
+
+    private static final String CLIENT = "package pkg;\n"
+            + "import edu.vu.isis.crossweave.annotation.DesignPattern;\n"
+            + "@DesignPattern.Role(alias = \"a\", role = \"client\")\n"
+            + "public class Client {}\n";
+
+    private static final String PLAIN = "package pkg;\npublic class Plain {}\n";
+
+    private File mDir = new File("target/test-source-jars");
+
+    /** {@inheritDoc} */
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mDir.mkdirs();
+    }
+
+    public void testScansEntriesInPlace() throws Exception {
+        File jar = new File(mDir, "lib-sources.jar");
+        writeJar(jar, "pkg/Plain.java", PLAIN, "pkg/Client.java", CLIENT);
+
+        for (SourceScanner scanner : new SourceScanner[] { new QDoxSourceScanner(),
+                new LightweightSourceScanner() }) {
+            SourceJarCache cache = new SourceJarCache();
+            List<SourceFacts> facts = cache.scan(jar, scanner, false);
+            assertEquals(2, facts.size());
+            assertEquals(Arrays.asList(new RoleFact("a", "client", "pkg.Client")),
+                    facts.get(0).getRoles());
+            assertTrue(facts.get(1).isEmpty());
+            assertEquals(1, new SourceJarCache().scan(jar, scanner, true).size());
+        }
+    }
+
+    public void testDecodesEntriesAsUtf8() throws Exception {
+        File jar = new File(mDir, "utf8-sources.jar");
+        writeJar(jar, "pkg/Caf\u00e9.java", CLIENT.replace("Client", "Caf\u00e9"));
+
+        List<SourceFacts> facts = new SourceJarCache().scan(jar, new LightweightSourceScanner(),
+                true);
+        assertEquals(Arrays.asList(new RoleFact("a", "client", "pkg.Caf\u00e9")),
+                facts.get(0).getRoles());
+    }
+
+    public void testReusesFactsOfUnchangedJars() throws Exception {
+        File jar = new File(mDir, "cached-sources.jar");
+        File other = new File(mDir, "other-sources.jar");
+        File cacheFile = new File(mDir, "cache");
+        cacheFile.delete();
+        writeJar(jar, "pkg/Client.java", CLIENT);
+        writeJar(other, "pkg/Plain.java", PLAIN);
+        SourceScanner scanner = new LightweightSourceScanner();
+
+        SourceJarCache cache = SourceJarCache.load(cacheFile);
+        List<SourceFacts> facts = cache.scan(jar, scanner, true);
+        cache.scan(other, scanner, true);
+        assertEquals(2, cache.getScanned());
+        cache.save(cacheFile);
+
+        cache = SourceJarCache.load(cacheFile);
+        assertEquals(facts, cache.scan(jar, scanner, true));
+        assertEquals(0, cache.getScanned());
+        assertEquals(1, cache.getReused());
+        // Jars that are no longer scanned are dropped
+        cache.save(cacheFile);
+        cache = SourceJarCache.load(cacheFile);
+        cache.scan(other, scanner, true);
+        assertEquals(1, cache.getScanned());
+
+        // A Maven checksum file saves hashing the jar
+        assertEquals(SourceJarCache.checksum(jar), ScanCache.hashHex(jar));
+        File sha1 = new File(jar.getPath() + ".sha1");
+        write(sha1, "0123456789abcdef0123456789abcdef01234567  cached-sources.jar\n");
+        try {
+            assertEquals("0123456789abcdef0123456789abcdef01234567",
+                    SourceJarCache.checksum(jar));
+        } finally {
+            sha1.delete();
+        }
+    }
+
+    /**
+     * Writes a jar of alternating entry names and contents.
+     */
+    private static void writeJar(File jar, String... entries) throws IOException {
+        ZipOutputStream out = new ZipOutputStream(new FileOutputStream(jar));
+        try {
+            for (int i = 0; i < entries.length; i += 2) {
+                out.putNextEntry(new ZipEntry(entries[i]));
+                out.write(entries[i + 1].getBytes("UTF-8"));
+                out.closeEntry();
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    private static void write(File file, String content) throws IOException {
+        OutputStream out = new FileOutputStream(file);
+        try {
+            out.write(content.getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+    }
+}
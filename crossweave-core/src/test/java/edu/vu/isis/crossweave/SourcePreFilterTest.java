@@ -0,0 +1,60 @@
+package edu.vu.isis.crossweave;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.List;
+
+public class SourcePreFilterTest extends TestCase {
+
+    private File mDir = new File("target/test-prefilter");
+
+    /** {@inheritDoc} */
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mDir.mkdirs();
+    }
+
+    public void testSkipsFilesWithoutDesignPattern() throws Exception {
+        File annotated = write("Annotated.java",
+                "import edu.vu.isis.crossweave.annotation.DesignPattern;\n"
+                        + "@DesignPattern.Role(alias = \"a\", role = \"client\")\n"
+                        + "public class Annotated {}\n");
+        File plain = write("Plain.java", "public class Plain { Design pattern; }\n");
+        File empty = write("Empty.java", "");
+
+        SourcePreFilter filter = new SourcePreFilter();
+        List<File> candidates = filter.filter(Arrays.asList(annotated, plain, empty));
+
+        assertEquals(Arrays.asList(annotated), candidates);
+        assertEquals(2, filter.getSkipped());
+    }
+
+    public void testMapsLargeFiles() throws Exception {
+        StringBuilder sb = new StringBuilder("public class Large {\n");
+        while (sb.length() < 200 * 1024) {
+            sb.append("    // DesignPatter DesignPatterm esignPattern\n");
+        }
+        File large = write("Large.java", sb.toString() + "}\n");
+        assertFalse(new SourcePreFilter().isCandidate(large));
+
+        File marked = write("Marked.java", sb.toString() + "@DesignPattern.Role\n}\n");
+        assertTrue(new SourcePreFilter().isCandidate(marked));
+    }
+
+    private File write(String name, String content) throws IOException {
+        File file = new File(mDir, name);
+        OutputStream out = new FileOutputStream(file);
+        try {
+            out.write(content.getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+        return file;
+    }
+}
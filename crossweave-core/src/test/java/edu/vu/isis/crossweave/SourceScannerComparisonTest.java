@@ -0,0 +1,151 @@
+package edu.vu.isis.crossweave;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Checks that the lightweight scanner reports the same facts as the QDox
+ * scanner, and measures both on a generated corpus.
+ */
+public class SourceScannerComparisonTest extends TestCase {
+
+    private static final int CLASSES = 2000;
+
+    private static final String IMPORT = "import edu.vu.isis.crossweave.annotation.DesignPattern;\n";
+
+    private File mDir = new File("target/test-scanners");
+
+    public void testExamples() throws Exception {
+        List<File> files = new ArrayList<File>();
+        Analysis.collectSourceFiles(new File("../crossweave-examples"), files);
+        assertSameFacts(files);
+    }
+
+    public void testTrickySources() throws Exception {
+        List<File> files = new ArrayList<File>();
+        files.add(write("p/Comments.java", "package p;\n" + IMPORT
+                + "// @DesignPattern.Role(alias = \"x\", role = \"commented\")\n"
+                + "/* @DesignPattern.Role(alias = \"x\", role = \"block\") class Fake {} */\n"
+                + "@SuppressWarnings(\"unchecked\") @Deprecated\n"
+                + "@DesignPattern.Role(alias = \"x\", role = \"client\")\n"
+                + "public final class Comments<T extends java.util.Map<String, Object>> {\n"
+                + "    String s = \"{ @DesignPattern.Role(alias = \\\"x\\\") class Q {\";\n"
+                + "    char c = '{';\n"
+                + "    @DesignPattern.Role(alias = \"x\", role = \"nested\")\n"
+                + "    static class Nested { Runnable r = new Runnable() { public void run() {} }; }\n"
+                + "}\n"
+                + "@DesignPattern.Roles(roles = @DesignPattern.Role(alias = \"x\", role = \"second\"))\n"
+                + "class Second {}\n"
+                + "@DesignPattern.Role(alias = \"x\", role = \"enum\") enum E { A, B; void f() {} }\n"
+                + "@DesignPattern.Role(alias = \"x\", role = \"iface\") interface I {}\n"
+                + "@DesignPattern.Role(alias = \"x\", role = \"ann\") @interface A {}\n"));
+        files.add(write("p/Specs.java", "package p;\n" + IMPORT
+                + "@DesignPattern.Specifications(specs = {\n"
+                + "    @DesignPattern.Specification(alias = \"x\", instanceName = \"i\",\n"
+                + "        namespace = \"gof\", patternName = \"adapter\"),\n"
+                + "    @DesignPattern.Specification(alias = \"y\" + \"z\", instanceName = \"j\",\n"
+                + "        namespace = \"gof\", patternName = \"adapter\", impl = \"foo\")\n"
+                + "})\n"
+                + "public class Specs {}\n"));
+        files.add(write("p/Unresolved.java", "package p;\n"
+                + "import edu.vu.isis.crossweave.annotation.*;\n"
+                + "import static java.lang.Math.max;\n"
+                + "@DesignPattern.Role(alias = \"x\", role = \"wildcard\")\n"
+                + "@edu.vu.isis.crossweave.annotation.DesignPattern.Role(alias = \"x\", role = \"fq\")\n"
+                + "public class Unresolved {}\n"));
+        files.add(write("p/NestedImport.java", "package p;\n"
+                + "import edu.vu.isis.crossweave.annotation.DesignPattern.Role;\n"
+                + "@Role(alias = \"x\", role = \"nestedImport\")\n"
+                + "public class NestedImport {}\n"));
+        files.add(write("DefaultPackage.java", IMPORT
+                + "@DesignPattern.Role(alias = \"x\", role = \"adaptee\")\n"
+                + "public class DefaultPackage {}\n"));
+
+        List<SourceFacts> facts = assertSameFacts(files);
+        assertEquals(6, facts.get(0).getRoles().size());
+        assertEquals(2, facts.get(1).getSpecs().size());
+        assertTrue(facts.get(2).isEmpty());
+        assertEquals("DefaultPackage", facts.get(4).getRoles().get(0).getImplementer());
+    }
+
+    public void testMembers() throws Exception {
+        String role = "@DesignPattern.Role(alias = \"x\", role = ";
+        List<File> files = new ArrayList<File>();
+        files.add(write("m/Members.java", "package m;\n" + IMPORT
+                + "import java.util.List;\n"
+                + "public class Members<T> {\n"
+                + "    " + role + "\"field\") private final List<String> mList = null;\n"
+                + "    " + role + "\"first\") int a = f(1, 2), b;\n"
+                + "    int[] c = { 1, 2 }; Runnable r = new Runnable() { public void run() {} };\n"
+                + "    static { int skipped = 0; }\n"
+                + "    " + role + "\"ctor\") public Members(final T t, int... rest) {}\n"
+                + "    public " + role + "\"method\")\n"
+                + "    <U extends Comparable<U>> java.util.Map<String, U> map(\n"
+                + "            @Deprecated List<? extends U> list, String[][] grid, int legacy[],\n"
+                + "            java.util.Map.Entry<String, Integer> e) { return null; }\n"
+                + "    @DesignPattern.Specification(alias = \"y\", instanceName = \"i\",\n"
+                + "        namespace = \"gof\", patternName = \"adapter\")\n"
+                + "    static int f(int x, int y) { return x; }\n"
+                + "    " + role + "\"inner\") class Inner {\n"
+                + "        " + role + "\"deep\") void deep(Inner other) {}\n"
+                + "        " + role + "\"deepClass\") private class Deep {}\n"
+                + "    }\n"
+                + "    " + role + "\"enum\") enum E {\n"
+                + "        " + role + "\"constant\") A(1) { void g() {} }, B;\n"
+                + "        E() {} E(int i) {}\n"
+                + "        " + role + "\"enumField\") int k;\n"
+                + "    }\n"
+                + "    @interface Ann { " + role + "\"element\") String v() default \"\"; }\n"
+                + "    interface I { " + role + "\"abstract\") void f(); }\n"
+                + "}\n"));
+
+        List<SourceFacts> facts = assertSameFacts(files);
+        List<String> implementers = new ArrayList<String>();
+        for (RoleFact fact : facts.get(0).getRoles()) {
+            implementers.add(fact.getRole() + "=" + fact.getImplementer());
+        }
+        assertEquals(Arrays.asList("field=m.Members#mList", "first=m.Members#a",
+                "ctor=m.Members#Members(T,int[])",
+                "method=m.Members#map(List,String[][],int[],Entry)",
+                "inner=m.Members$Inner", "deep=m.Members$Inner#deep(Inner)",
+                "deepClass=m.Members$Inner$Deep", "enum=m.Members$E",
+                "constant=m.Members$E#A", "enumField=m.Members$E#k",
+                "element=m.Members$Ann#v()", "abstract=m.Members$I#f()"), implementers);
+        assertEquals(1, facts.get(0).getSpecs().size());
+        assertEquals(6, facts.get(0).getClassCount());
+    }
+
+    public void testCorpus() throws Exception {
+        File dir = new File(mDir, "corpus");
+        new CorpusGenerator().setClasses(CLASSES).ensureSources(dir);
+        List<File> files = new ArrayList<File>();
+        Analysis.collectSourceFiles(dir, files);
+        assertEquals(CLASSES, assertSameFacts(files).size());
+    }
+
+    private static List<SourceFacts> assertSameFacts(List<File> files) throws IOException {
+        List<SourceFacts> expected = new QDoxSourceScanner().scan(files);
+        List<SourceFacts> actual = new LightweightSourceScanner().scan(files);
+        assertEquals(expected, actual);
+        return actual;
+    }
+
+    private File write(String path, String content) throws IOException {
+        File file = new File(mDir, "tricky/" + path);
+        file.getParentFile().mkdirs();
+        OutputStream out = new FileOutputStream(file);
+        try {
+            out.write(content.getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+        return file;
+    }
+}
@@ -0,0 +1,42 @@
+package edu.vu.isis.crossweave;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collections;
+
+public class SourceWatcherTest extends TestCase {
+
+    private File mDir = new File("target/test-watcher");
+
+    @Override
+    protected void setUp() throws Exception {
+        mDir.mkdirs();
+    }
+
+    public void testWatchesSingleSourceFile() throws Exception {
+        File source = new File(mDir, "Client.java");
+        File other = new File(mDir, "Other.java");
+        write(source, "class Client {}\n");
+        SourceWatcher watcher = new SourceWatcher(source);
+        try {
+            write(other, "class Other {}\n");
+            write(source, "class Client { int i; }\n");
+            assertEquals(Collections.singleton(source), watcher.take(200));
+        } finally {
+            watcher.close();
+        }
+    }
+
+    private static void write(File file, String content) throws IOException {
+        OutputStream out = new FileOutputStream(file);
+        try {
+            out.write(content.getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+    }
+}
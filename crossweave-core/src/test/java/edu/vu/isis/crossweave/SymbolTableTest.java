@@ -0,0 +1,20 @@
+package edu.vu.isis.crossweave;
+
+import junit.framework.TestCase;
+
+public class SymbolTableTest extends TestCase {
+
+    public void testIntern() {
+        SymbolTable symbols = new SymbolTable();
+        int id = symbols.intern(new String("pkg.SymbolTableTest"));
+        assertEquals(id, symbols.intern(new String("pkg.SymbolTableTest")));
+        assertEquals("pkg.SymbolTableTest", symbols.get(id));
+        assertEquals(id, symbols.lookup("pkg.SymbolTableTest"));
+        assertEquals(-1, symbols.lookup("pkg.NeverInterned"));
+        for (int i = 0; i < 10000; i++) {
+            assertEquals(symbols.intern("pkg.Sym" + i), symbols.lookup("pkg.Sym" + i));
+        }
+        assertEquals(id, symbols.lookup("pkg.SymbolTableTest"));
+        assertEquals(10001, symbols.size());
+    }
+}
@@ -0,0 +1,91 @@
+package edu.vu.isis.crossweave;
+
+import junit.framework.TestCase;
+import org.stringtemplate.v4.ST;
+import org.stringtemplate.v4.STGroup;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class TemplateRegistryTest extends TestCase {
+
+    private SymbolTable mSymbols = new SymbolTable();
+
+    private List<PatternInstance> mInstances;
+
+    @Override
+    protected void setUp() {
+        Pattern adapter = new Pattern(mSymbols, "gof", "adapter", "foo");
+        adapter.addRole(new Role(mSymbols, "client"));
+        adapter.addRole(new Role(mSymbols, "adaptee"));
+        PatternInstance snoopy = adapter.instantiate("snoopy");
+        snoopy.addImplementerToRole("pkg.Main", "client");
+        snoopy.addImplementerToRole("pkg.Other", "client");
+        mInstances = Arrays.asList(snoopy);
+    }
+
+    public void testBuiltInTemplates() throws Exception {
+        STGroup plaintext = TemplateRegistry.getGroup(null);
+        assertSame(plaintext, TemplateRegistry.getGroup("plaintext"));
+        String report = render(plaintext);
+        assertTrue(report, report.contains("Pattern gof.adapter.foo.snoopy\n"));
+        assertTrue(report, report.contains("Empty roles: adaptee"));
+        assertTrue(report, report.contains("Implementers for role client: pkg.Main, pkg.Other"));
+
+        Map<String, PatternInstance> instanceMap = new HashMap<String, PatternInstance>();
+        instanceMap.put("dog", mInstances.get(0));
+        ST stats = plaintext.getInstanceOf("printStatsTemplate");
+        stats.add("pat", instanceMap);
+        assertTrue(stats.render().contains("Pattern: gof.adapter.foo.snoopy (alias dog)"));
+
+        assertTrue(render(TemplateRegistry.getGroup("html")).contains(
+                "<h1>Report for pattern gof.adapter.foo.snoopy:</h1>"));
+
+        try {
+            TemplateRegistry.getGroup("no-such-template");
+            fail();
+        } catch (FileNotFoundException e) {
+            // expected
+        }
+    }
+
+    public void testFileTemplatesAreRecompiledWhenChanged() throws Exception {
+        File file = new File("target/test-templates/report.stg");
+        file.getParentFile().mkdirs();
+        write(file, "reportPatternDescriptions(patterns) ::= \"one\"\n");
+        file.setLastModified(1000000000000L);
+
+        int compiled = TemplateRegistry.getCompiledCount();
+        STGroup group = TemplateRegistry.getGroup(file.getPath());
+        assertEquals("one", render(group));
+        assertSame(group, TemplateRegistry.getGroup(file.getAbsolutePath()));
+        assertEquals(compiled + 1, TemplateRegistry.getCompiledCount());
+
+        write(file, "reportPatternDescriptions(patterns) ::= \"two\"\n");
+        file.setLastModified(1000000002000L);
+        assertEquals("two", render(TemplateRegistry.getGroup(file.getPath())));
+        assertEquals(compiled + 2, TemplateRegistry.getCompiledCount());
+    }
+
+    private String render(STGroup group) {
+        ST st = group.getInstanceOf("reportPatternDescriptions");
+        st.add("patterns", mInstances);
+        return st.render();
+    }
+
+    private static void write(File file, String text) throws IOException {
+        OutputStream out = new FileOutputStream(file);
+        try {
+            out.write(text.getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+    }
+}
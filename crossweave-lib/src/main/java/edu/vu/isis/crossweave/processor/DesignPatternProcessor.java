@@ -0,0 +1,533 @@
+/*Copyright (C) 2010-2013 Institute for Software Integrated Systems (ISIS)
+This software was developed by the Institute for Software Integrated
+Systems (ISIS) at Vanderbilt University, Tennessee, USA for the 
+Transformative Apps program under DARPA, Contract # HR011-10-C-0175.
+The United States Government has unlimited rights to this software. 
+The US government has the right to use, modify, reproduce, release, 
+perform, display, or disclose computer software or computer software 
+documentation in whole or in part, in any manner and for any 
+purpose whatsoever, and to have or authorize others to do so.
+ */
+
+package edu.vu.isis.crossweave.processor;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.annotation.processing.SupportedOptions;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.type.TypeVariable;
+import javax.lang.model.util.Elements;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardLocation;
+
+/**
+ * Collects the DesignPattern specifications and roles while javac compiles the
+ * annotated sources, so that the crossweave analyze goal can build its report
+ * without parsing the sources a second time.
+ * <p>
+ * The processor is not registered as a service, so having crossweave-lib on
+ * the classpath does not run it. It is turned on by naming it, with
+ * <code>-processor edu.vu.isis.crossweave.processor.DesignPatternProcessor</code>
+ * on the javac command line or in the annotationProcessors of the
+ * maven-compiler-plugin configuration. Note that naming a processor turns off
+ * the discovery of all others, so any other processors the build needs have
+ * to be named as well.
+ * <p>
+ * The facts are written when processing is over, either to the file named by
+ * the crossweave.factsFile option or to META-INF/crossweave/pattern-facts in
+ * the class output directory. Like the source scanners of the analyze goal, the
+ * processor looks at the annotations of types, nested types, fields, enum
+ * constants, methods and constructors, and records them under the top level
+ * type that contains them. Members are named like pkg.Type#field and
+ * pkg.Type#method(String,int[]), with the simple names of the parameter
+ * types. Unlike the scanners, which follow QDox there, an annotation on a
+ * field declaration with several declarators counts for each of its fields.
+ * <p>
+ * Types are written in the order the analyze goal scans their source files:
+ * by the path of the file below the source root, then by their position in
+ * the file. The file is found through the compiler tree API of javac; with
+ * other compilers each type is assumed to be in a file named after it. The
+ * path is relative, made of the package directory and the file name, so the
+ * facts do not depend on where the sources were checked out.
+ * <p>
+ * An incremental compile only hands the processor the types it recompiles.
+ * The facts of the other types are taken over from the previous facts file,
+ * as long as javac can still find the type, so the file keeps describing the
+ * whole module.
+ * <p>
+ * File format, written with a DataOutputStream: the int MAGIC, the int
+ * VERSION, the number of types, and for each type its name, the path of its
+ * source file, its int position in that file, the number of specs followed by
+ * alias, namespace, patternName, impl and instanceName of each spec, and the
+ * number of roles followed by alias, role and implementer of each role.
+ *
+ * @author nick
+ */
+@SupportedAnnotationTypes({
+        DesignPatternProcessor.SPECIFICATIONS,
+        DesignPatternProcessor.SPECIFICATION,
+        DesignPatternProcessor.ROLES,
+        DesignPatternProcessor.ROLE })
+@SupportedOptions(DesignPatternProcessor.FACTS_FILE_OPTION)
+public class DesignPatternProcessor extends AbstractProcessor {
+
+    static final String SPECIFICATIONS = "edu.vu.isis.crossweave.annotation.DesignPattern.Specifications";
+    static final String SPECIFICATION = "edu.vu.isis.crossweave.annotation.DesignPattern.Specification";
+    static final String ROLES = "edu.vu.isis.crossweave.annotation.DesignPattern.Roles";
+    static final String ROLE = "edu.vu.isis.crossweave.annotation.DesignPattern.Role";
+
+    /** Processor option naming the file the facts are written to */
+    public static final String FACTS_FILE_OPTION = "crossweave.factsFile";
+
+    /** Class output resource the facts are written to by default */
+    public static final String FACTS_RESOURCE = "META-INF/crossweave/pattern-facts";
+
+    /** Identifies a pattern facts file */
+    public static final int MAGIC = 0x43575046;
+
+    /** Bump whenever the file format changes */
+    public static final int VERSION = 2;
+
+    /** Orders types like the analyze goal orders the files it scans */
+    private static final Comparator<Map.Entry<String, TypeFacts>> BY_SOURCE =
+            new Comparator<Map.Entry<String, TypeFacts>>() {
+
+        @Override
+        public int compare(Map.Entry<String, TypeFacts> a, Map.Entry<String, TypeFacts> b) {
+            // Directories are walked one level at a time, in name order
+            String[] pa = a.getValue().mSource.split("/");
+            String[] pb = b.getValue().mSource.split("/");
+            for (int i = 0; i < Math.min(pa.length, pb.length); i++) {
+                int c = pa[i].compareTo(pb[i]);
+                if (c != 0) {
+                    return c;
+                }
+            }
+            if (pa.length != pb.length) {
+                return pa.length - pb.length;
+            }
+            if (a.getValue().mPosition != b.getValue().mPosition) {
+                return a.getValue().mPosition < b.getValue().mPosition ? -1 : 1;
+            }
+            return a.getKey().compareTo(b.getKey());
+        }
+    };
+
+    /** Facts of each annotated type, sorted by type name */
+    private Map<String, TypeFacts> mTypes = new TreeMap<String, TypeFacts>();
+
+    /** Names of all top level types compiled in this run, annotated or not */
+    private Set<String> mCompiled = new HashSet<String>();
+
+    /** The Trees of javac and the methods used on it, or null */
+    private Object mTrees;
+    private Method mGetPath;
+    private Method mGetSourcePositions;
+    private Method mGetCompilationUnit;
+    private Method mGetLeaf;
+    private Method mGetSourceFile;
+    private Method mGetStartPosition;
+
+    private static class TypeFacts {
+        String mSource;
+        int mPosition;
+        List<String[]> mSpecs = new ArrayList<String[]>();
+        List<String[]> mRoles = new ArrayList<String[]>();
+    }
+
+    @Override
+    public synchronized void init(ProcessingEnvironment processingEnv) {
+        super.init(processingEnv);
+        // The tree API is not part of javax.lang.model, so it is looked up in
+        // the class loader of the compiler rather than linked against
+        try {
+            ClassLoader loader = processingEnv.getClass().getClassLoader();
+            Class<?> trees = Class.forName("com.sun.source.util.Trees", false, loader);
+            Class<?> treePath = Class.forName("com.sun.source.util.TreePath", false, loader);
+            Class<?> unit = Class.forName("com.sun.source.tree.CompilationUnitTree", false,
+                    loader);
+            Class<?> tree = Class.forName("com.sun.source.tree.Tree", false, loader);
+            Class<?> positions = Class.forName("com.sun.source.util.SourcePositions", false,
+                    loader);
+            mGetPath = trees.getMethod("getPath", Element.class);
+            mGetSourcePositions = trees.getMethod("getSourcePositions");
+            mGetCompilationUnit = treePath.getMethod("getCompilationUnit");
+            mGetLeaf = treePath.getMethod("getLeaf");
+            mGetSourceFile = unit.getMethod("getSourceFile");
+            mGetStartPosition = positions.getMethod("getStartPosition", unit, tree);
+            mTrees = trees.getMethod("instance", ProcessingEnvironment.class).invoke(null,
+                    processingEnv);
+        } catch (Exception e) {
+            // Not javac, or javac behind a wrapped environment
+            mTrees = null;
+        }
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        Elements elements = processingEnv.getElementUtils();
+        for (Element root : roundEnv.getRootElements()) {
+            if (root instanceof TypeElement) {
+                mCompiled.add(elements.getBinaryName((TypeElement) root).toString());
+            }
+        }
+        Set<TypeElement> types = new HashSet<TypeElement>();
+        for (TypeElement annotation : annotations) {
+            for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+                TypeElement type = getTopLevelType(element);
+                if (type != null) {
+                    types.add(type);
+                }
+            }
+        }
+        for (TypeElement type : types) {
+            String name = elements.getBinaryName(type).toString();
+            TypeFacts facts = new TypeFacts();
+            setSource(type, facts);
+            collect(type, facts);
+            mTypes.put(name, facts);
+        }
+
+        if (roundEnv.processingOver()) {
+            try {
+                write();
+            } catch (IOException e) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                        "Could not write crossweave pattern facts: " + e);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the top level type that declares an element, or null for a
+     *         package
+     */
+    private static TypeElement getTopLevelType(Element element) {
+        TypeElement type = null;
+        for (Element e = element; e != null && e.getKind() != ElementKind.PACKAGE; e = e
+                .getEnclosingElement()) {
+            if (e instanceof TypeElement) {
+                type = (TypeElement) e;
+            }
+        }
+        return type != null && type.getNestingKind() == NestingKind.TOP_LEVEL ? type : null;
+    }
+
+    /**
+     * Records the path of the source file of a top level type relative to the
+     * source root, and the position of the type in the file.
+     */
+    private void setSource(TypeElement type, TypeFacts facts) {
+        String fileName = type.getSimpleName() + ".java";
+        int position = 0;
+        if (mTrees != null) {
+            try {
+                Object path = mGetPath.invoke(mTrees, type);
+                if (path != null) {
+                    Object unit = mGetCompilationUnit.invoke(path);
+                    JavaFileObject file = (JavaFileObject) mGetSourceFile.invoke(unit);
+                    String uri = file.toUri().getPath();
+                    if (uri != null) {
+                        fileName = uri.substring(uri.lastIndexOf('/') + 1);
+                    }
+                    Object positions = mGetSourcePositions.invoke(mTrees);
+                    position = ((Long) mGetStartPosition.invoke(positions, unit,
+                            mGetLeaf.invoke(path))).intValue();
+                }
+            } catch (Exception e) {
+                // Keep the name the type would have by convention
+            }
+        }
+        String pkg = processingEnv.getElementUtils().getPackageOf(type).getQualifiedName()
+                .toString();
+        facts.mSource = pkg.length() == 0 ? fileName : pkg.replace('.', '/') + "/" + fileName;
+        facts.mPosition = position;
+    }
+
+    /**
+     * Records the specs and roles of a type in the order the source scanners
+     * report them: those of the type itself, of its fields and enum constants,
+     * of its methods and constructors, then of its nested types.
+     */
+    private void collect(TypeElement type, TypeFacts facts) {
+        String name = processingEnv.getElementUtils().getBinaryName(type).toString();
+        collect(type, name, facts);
+        List<TypeElement> nested = new ArrayList<TypeElement>();
+        for (Element member : type.getEnclosedElements()) {
+            if (member.getKind().isField()) {
+                collect(member, name + "#" + member.getSimpleName(), facts);
+            }
+        }
+        for (Element member : type.getEnclosedElements()) {
+            if (member instanceof ExecutableElement) {
+                collect(member, getSignature(name, (ExecutableElement) member), facts);
+            } else if (member instanceof TypeElement) {
+                nested.add((TypeElement) member);
+            }
+        }
+        for (TypeElement n : nested) {
+            collect(n, facts);
+        }
+    }
+
+    /**
+     * Records the specs and roles of one annotated element.
+     */
+    private void collect(Element element, String name, TypeFacts facts) {
+        for (AnnotationMirror mirror : element.getAnnotationMirrors()) {
+            String annotation = ((TypeElement) mirror.getAnnotationType().asElement())
+                    .getQualifiedName().toString();
+            if (annotation.equals(SPECIFICATIONS)) {
+                for (AnnotationMirror spec : getNested(mirror, "specs")) {
+                    facts.mSpecs.add(toSpec(spec));
+                }
+            } else if (annotation.equals(SPECIFICATION)) {
+                facts.mSpecs.add(toSpec(mirror));
+            } else if (annotation.equals(ROLES)) {
+                for (AnnotationMirror role : getNested(mirror, "roles")) {
+                    facts.mRoles.add(toRole(role, name));
+                }
+            } else if (annotation.equals(ROLE)) {
+                facts.mRoles.add(toRole(mirror, name));
+            }
+        }
+    }
+
+    /**
+     * Returns the implementer name of a method or constructor, like
+     * pkg.Adapter#adapt(Cat,String[]). Constructors are named after their
+     * class.
+     */
+    private static String getSignature(String typeName, ExecutableElement method) {
+        StringBuilder sb = new StringBuilder(typeName).append('#');
+        if (method.getKind() == ElementKind.CONSTRUCTOR) {
+            sb.append(method.getEnclosingElement().getSimpleName());
+        } else {
+            sb.append(method.getSimpleName());
+        }
+        sb.append('(');
+        List<? extends VariableElement> params = method.getParameters();
+        for (int i = 0; i < params.size(); i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            appendSimpleName(sb, params.get(i).asType());
+        }
+        return sb.append(')').toString();
+    }
+
+    private static void appendSimpleName(StringBuilder sb, TypeMirror type) {
+        if (type.getKind() == TypeKind.ARRAY) {
+            appendSimpleName(sb, ((ArrayType) type).getComponentType());
+            sb.append("[]");
+        } else if (type.getKind() == TypeKind.DECLARED) {
+            sb.append(((DeclaredType) type).asElement().getSimpleName());
+        } else if (type.getKind() == TypeKind.TYPEVAR) {
+            sb.append(((TypeVariable) type).asElement().getSimpleName());
+        } else {
+            sb.append(type);
+        }
+    }
+
+    private String[] toSpec(AnnotationMirror mirror) {
+        return new String[] {
+                getString(mirror, "alias"),
+                getString(mirror, "namespace"),
+                getString(mirror, "patternName"),
+                getString(mirror, "impl"),
+                getString(mirror, "instanceName") };
+    }
+
+    private String[] toRole(AnnotationMirror mirror, String implementer) {
+        return new String[] {
+                getString(mirror, "alias"),
+                getString(mirror, "role"),
+                implementer };
+    }
+
+    private AnnotationValue getValue(AnnotationMirror mirror, String key) {
+        Map<? extends ExecutableElement, ? extends AnnotationValue> values = processingEnv
+                .getElementUtils().getElementValuesWithDefaults(mirror);
+        for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> e : values
+                .entrySet()) {
+            if (e.getKey().getSimpleName().contentEquals(key)) {
+                return e.getValue();
+            }
+        }
+        return null;
+    }
+
+    private String getString(AnnotationMirror mirror, String key) {
+        AnnotationValue value = getValue(mirror, key);
+        return value == null ? "" : String.valueOf(value.getValue());
+    }
+
+    private List<AnnotationMirror> getNested(AnnotationMirror mirror, String key) {
+        List<AnnotationMirror> nested = new ArrayList<AnnotationMirror>();
+        AnnotationValue value = getValue(mirror, key);
+        if (value != null) {
+            for (Object o : (List<?>) value.getValue()) {
+                nested.add((AnnotationMirror) ((AnnotationValue) o).getValue());
+            }
+        }
+        return nested;
+    }
+
+    /**
+     * Reads the facts file of the previous compile, if there is one.
+     * 
+     * @return the facts of each type in the file, or an empty map if there is
+     *         no file or it has another format
+     */
+    private Map<String, TypeFacts> readPrevious() {
+        Map<String, TypeFacts> types = new TreeMap<String, TypeFacts>();
+        String factsFile = processingEnv.getOptions().get(FACTS_FILE_OPTION);
+        DataInputStream in = null;
+        try {
+            InputStream is;
+            if (factsFile != null) {
+                is = new FileInputStream(factsFile);
+            } else {
+                is = processingEnv.getFiler()
+                        .getResource(StandardLocation.CLASS_OUTPUT, "", FACTS_RESOURCE)
+                        .openInputStream();
+            }
+            in = new DataInputStream(new BufferedInputStream(is));
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return types;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String name = in.readUTF();
+                TypeFacts facts = new TypeFacts();
+                facts.mSource = in.readUTF();
+                facts.mPosition = in.readInt();
+                readRecords(in, facts.mSpecs, 5);
+                readRecords(in, facts.mRoles, 3);
+                types.put(name, facts);
+            }
+        } catch (IOException e) {
+            // No previous file, or a broken one that is replaced by this one
+            types.clear();
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException e) {
+                    // Ignore
+                }
+            }
+        }
+        return types;
+    }
+
+    private static void readRecords(DataInputStream in, List<String[]> records, int fields)
+            throws IOException {
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            String[] record = new String[fields];
+            for (int j = 0; j < fields; j++) {
+                record[j] = in.readUTF();
+            }
+            records.add(record);
+        }
+    }
+
+    private void write() throws IOException {
+        // Keep the facts of types that were not recompiled and still exist
+        Elements elements = processingEnv.getElementUtils();
+        Map<String, TypeFacts> types = new TreeMap<String, TypeFacts>(mTypes);
+        for (Map.Entry<String, TypeFacts> e : readPrevious().entrySet()) {
+            String name = e.getKey();
+            if (!mCompiled.contains(name) && elements.getTypeElement(name) != null) {
+                types.put(name, e.getValue());
+            }
+        }
+
+        String factsFile = processingEnv.getOptions().get(FACTS_FILE_OPTION);
+        OutputStream os;
+        if (factsFile != null) {
+            File file = new File(factsFile);
+            File dir = file.getAbsoluteFile().getParentFile();
+            if (dir != null && !dir.exists()) {
+                dir.mkdirs();
+            }
+            os = new FileOutputStream(file);
+        } else {
+            os = processingEnv.getFiler()
+                    .createResource(StandardLocation.CLASS_OUTPUT, "", FACTS_RESOURCE)
+                    .openOutputStream();
+        }
+
+        List<Map.Entry<String, TypeFacts>> sorted =
+                new ArrayList<Map.Entry<String, TypeFacts>>(types.entrySet());
+        Collections.sort(sorted, BY_SOURCE);
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(os));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(sorted.size());
+            for (Map.Entry<String, TypeFacts> e : sorted) {
+                out.writeUTF(e.getKey());
+                out.writeUTF(e.getValue().mSource);
+                out.writeInt(e.getValue().mPosition);
+                writeRecords(out, e.getValue().mSpecs);
+                writeRecords(out, e.getValue().mRoles);
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    private static void writeRecords(DataOutputStream out, List<String[]> records)
+            throws IOException {
+        out.writeInt(records.size());
+        for (String[] record : records) {
+            for (String field : record) {
+                out.writeUTF(field);
+            }
+        }
+    }
+
+}
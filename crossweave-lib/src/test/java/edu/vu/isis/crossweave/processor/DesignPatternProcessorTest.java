@@ -0,0 +1,215 @@
+package edu.vu.isis.crossweave.processor;
+
+import junit.framework.TestCase;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+public class DesignPatternProcessorTest extends TestCase {
+
+    private File mDir = new File("target/test-processor");
+
+    public void testCollectsSpecsAndRoles() throws Exception {
+        File src = new File(mDir, "src");
+        File classes = new File(mDir, "classes");
+        File factsFile = new File(mDir, "pattern-facts");
+        classes.mkdirs();
+
+        File client = write(new File(src, "pkg/Client.java"),
+                "package pkg;\n"
+                        + "import edu.vu.isis.crossweave.annotation.DesignPattern;\n"
+                        + "@DesignPattern.Specifications(specs = {\n"
+                        + "    @DesignPattern.Specification(alias = \"a\", instanceName = \"x\",\n"
+                        + "        namespace = \"gof\", patternName = \"adapter\", impl = \"foo\"),\n"
+                        + "    @DesignPattern.Specification(alias = \"b\", instanceName = \"y\",\n"
+                        + "        namespace = \"gof\", patternName = \"adapter\")\n"
+                        + "})\n"
+                        + "@DesignPattern.Role(alias = \"a\", role = \"client\")\n"
+                        + "public class Client<T> {\n"
+                        + "    @DesignPattern.Role(alias = \"a\", role = \"nested\")\n"
+                        + "    class Nested {\n"
+                        + "        @DesignPattern.Role(alias = \"a\", role = \"ctor\")\n"
+                        + "        Nested(java.util.List<String> list, T[] ts, int... rest) {}\n"
+                        + "    }\n"
+                        + "    @DesignPattern.Role(alias = \"b\", role = \"method\")\n"
+                        + "    void adapt(Adaptee adaptee, java.util.Map.Entry<String, T> e) {}\n"
+                        + "    @DesignPattern.Role(alias = \"a\", role = \"field\")\n"
+                        + "    private Adaptee mAdaptee;\n"
+                        + "    enum E { @DesignPattern.Role(alias = \"a\", role = \"constant\") A }\n"
+                        + "}\n");
+        File adaptee = write(new File(src, "pkg/Adaptee.java"),
+                "package pkg;\n"
+                        + "import edu.vu.isis.crossweave.annotation.DesignPattern;\n"
+                        + "@DesignPattern.Roles(roles = {\n"
+                        + "    @DesignPattern.Role(alias = \"a\", role = \"adaptee\"),\n"
+                        + "    @DesignPattern.Role(alias = \"b\", role = \"adaptee\")\n"
+                        + "})\n"
+                        + "public class Adaptee {}\n");
+        File plain = write(new File(src, "pkg/Plain.java"), "package pkg;\npublic class Plain {}\n");
+
+        compile(classes, "-A" + DesignPatternProcessor.FACTS_FILE_OPTION + "="
+                + factsFile.getPath(), client, adaptee, plain);
+
+        assertEquals(Arrays.asList(
+                "type pkg.Adaptee in pkg/Adaptee.java",
+                "role a adaptee pkg.Adaptee",
+                "role b adaptee pkg.Adaptee",
+                "type pkg.Client in pkg/Client.java",
+                "spec a gof adapter foo x",
+                "spec b gof adapter  y",
+                "role a client pkg.Client",
+                "role a field pkg.Client#mAdaptee",
+                "role b method pkg.Client#adapt(Adaptee,Entry)",
+                "role a nested pkg.Client$Nested",
+                "role a ctor pkg.Client$Nested#Nested(List,T[],int[])",
+                "role a constant pkg.Client$E#A"), read(factsFile));
+    }
+
+    public void testOrdersTypesLikeTheirSourceFiles() throws Exception {
+        File src = new File(mDir, "order");
+        File classes = new File(mDir, "order-classes");
+        File factsFile = new File(mDir, "order-facts");
+        classes.mkdirs();
+
+        String role = "import edu.vu.isis.crossweave.annotation.DesignPattern;\n"
+                + "@DesignPattern.Role(alias = \"a\", role = \"client\")\n";
+        File main = write(new File(src, "pkg/Main.java"), "package pkg;\n" + role
+                + "public class Main {}\n@DesignPattern.Role(alias = \"a\", role = \"helper\")\n"
+                + "class Helper {}\n");
+        File sub = write(new File(src, "pkg/sub/A.java"), "package pkg.sub;\n" + role
+                + "public class A {}\n");
+        File b = write(new File(src, "pkg/B.java"), "package pkg;\n" + role
+                + "public class B {}\n");
+        compile(classes, "-A" + DesignPatternProcessor.FACTS_FILE_OPTION + "="
+                + factsFile.getPath(), sub, main, b);
+
+        assertEquals(Arrays.asList(
+                "type pkg.B in pkg/B.java",
+                "role a client pkg.B",
+                "type pkg.Main in pkg/Main.java",
+                "role a client pkg.Main",
+                "type pkg.Helper in pkg/Main.java",
+                "role a helper pkg.Helper",
+                "type pkg.sub.A in pkg/sub/A.java",
+                "role a client pkg.sub.A"), read(factsFile));
+    }
+
+    public void testIncrementalCompileKeepsOtherTypes() throws Exception {
+        File src = new File(mDir, "incremental");
+        File classes = new File(mDir, "incremental-classes");
+        File factsFile = new File(classes, DesignPatternProcessor.FACTS_RESOURCE);
+        factsFile.delete();
+        classes.mkdirs();
+
+        File client = write(new File(src, "pkg/Client.java"),
+                "package pkg;\n"
+                        + "import edu.vu.isis.crossweave.annotation.DesignPattern;\n"
+                        + "@DesignPattern.Role(alias = \"a\", role = \"client\")\n"
+                        + "public class Client {}\n");
+        File adaptee = write(new File(src, "pkg/Adaptee.java"),
+                "package pkg;\n"
+                        + "import edu.vu.isis.crossweave.annotation.DesignPattern;\n"
+                        + "@DesignPattern.Role(alias = \"a\", role = \"adaptee\")\n"
+                        + "public class Adaptee {}\n");
+        File plain = write(new File(src, "pkg/Plain.java"), "package pkg;\npublic class Plain {}\n");
+        compile(classes, null, client, adaptee, plain);
+        assertEquals(Arrays.asList(
+                "type pkg.Adaptee in pkg/Adaptee.java",
+                "role a adaptee pkg.Adaptee",
+                "type pkg.Client in pkg/Client.java",
+                "role a client pkg.Client"), read(factsFile));
+
+        // Only the recompiled types change, the others keep their facts
+        write(plain, "package pkg;\n"
+                + "import edu.vu.isis.crossweave.annotation.DesignPattern;\n"
+                + "@DesignPattern.Role(alias = \"a\", role = \"plain\")\n"
+                + "public class Plain {}\n");
+        write(adaptee, "package pkg;\npublic class Adaptee {}\n");
+        compile(classes, null, adaptee, plain);
+        assertEquals(Arrays.asList(
+                "type pkg.Client in pkg/Client.java",
+                "role a client pkg.Client",
+                "type pkg.Plain in pkg/Plain.java",
+                "role a plain pkg.Plain"), read(factsFile));
+
+        // A type that is gone is dropped
+        assertTrue(new File(classes, "pkg/Client.class").delete());
+        compile(classes, null, plain);
+        assertEquals(Arrays.asList(
+                "type pkg.Plain in pkg/Plain.java",
+                "role a plain pkg.Plain"), read(factsFile));
+    }
+
+    /**
+     * Compiles sources into a class directory with the processor, with the
+     * class directory on the classpath like in a Maven build.
+     */
+    private static void compile(File classes, String option, File... sources)
+            throws IOException {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        StandardJavaFileManager fileManager = compiler.getStandardFileManager(null, null, null);
+        Iterable<? extends JavaFileObject> units = fileManager.getJavaFileObjects(sources);
+        List<String> options = new ArrayList<String>(Arrays.asList("-d", classes.getPath(),
+                "-classpath", new File("target/classes").getPath() + File.pathSeparator
+                        + classes.getPath()));
+        if (option != null) {
+            options.add(option);
+        }
+        JavaCompiler.CompilationTask task = compiler.getTask(null, fileManager, null, options,
+                null, units);
+        task.setProcessors(Arrays.asList(new DesignPatternProcessor()));
+        assertTrue(task.call());
+        fileManager.close();
+    }
+
+    private static List<String> read(File file) throws IOException {
+        List<String> lines = new ArrayList<String>();
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            assertEquals(DesignPatternProcessor.MAGIC, in.readInt());
+            assertEquals(DesignPatternProcessor.VERSION, in.readInt());
+            int types = in.readInt();
+            for (int t = 0; t < types; t++) {
+                lines.add("type " + in.readUTF() + " in " + in.readUTF());
+                assertTrue(in.readInt() >= 0);
+                int specs = in.readInt();
+                for (int i = 0; i < specs; i++) {
+                    lines.add("spec " + in.readUTF() + " " + in.readUTF() + " " + in.readUTF()
+                            + " " + in.readUTF() + " " + in.readUTF());
+                }
+                int roles = in.readInt();
+                for (int i = 0; i < roles; i++) {
+                    lines.add("role " + in.readUTF() + " " + in.readUTF() + " " + in.readUTF());
+                }
+            }
+            assertEquals(-1, in.read());
+        } finally {
+            in.close();
+        }
+        return lines;
+    }
+
+    private static File write(File file, String content) throws IOException {
+        file.getParentFile().mkdirs();
+        OutputStream out = new FileOutputStream(file);
+        try {
+            out.write(content.getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+        return file;
+    }
+}
@@ -0,0 +1,175 @@
+/*Copyright (C) 2010-2013 Institute for Software Integrated Systems (ISIS)
+This software was developed by the Institute for Software Integrated
+Systems (ISIS) at Vanderbilt University, Tennessee, USA for the 
+Transformative Apps program under DARPA, Contract # HR011-10-C-0175.
+The United States Government has unlimited rights to this software. 
+The US government has the right to use, modify, reproduce, release, 
+perform, display, or disclose computer software or computer software 
+documentation in whole or in part, in any manner and for any 
+purpose whatsoever, and to have or authorize others to do so.
+ */
+
+package edu.vu.isis.crossweave;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.project.MavenProject;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Analyzes all modules of a reactor build in one pass and writes one combined
+ * report. The pattern definitions are parsed once, the compile source roots
+ * of all modules are scanned concurrently, and aliases are resolved across
+ * modules, so that a spec in one module sees the roles declared in another.
+ * <pre>
+ * mvn crossweave:aggregate
+ * </pre>
+ * The report, the pattern index and the metrics go to the directories
+ * configured for the project the build was started in. The source parameter
+ * is only used if there is no reactor; incremental and processorFacts do not
+ * apply.
+ * 
+ * @goal aggregate
+ * @aggregator
+ * @author nick
+ */
+public class AggregateMojo extends CrossWeaveMojo {
+
+    /**
+     * The projects of the reactor
+     * 
+     * @parameter default-value="${reactorProjects}"
+     * @readonly
+     */
+    private List<MavenProject> reactorProjects;
+
+    /**
+     * Number of modules scanned at the same time, 0 for one per available
+     * processor
+     * 
+     * @parameter default-value="0" property="crossweave.moduleThreads"
+     */
+    private int moduleThreads;
+
+    @Override
+    void analyze(Analysis analysis) throws MojoExecutionException {
+        try {
+            aggregate(analysis);
+        } catch (AnalysisException e) {
+            throw new MojoExecutionException(e.getMessage(), e);
+        }
+    }
+
+    private void aggregate(Analysis analysis) throws AnalysisException {
+        AnalysisMetrics metrics = new AnalysisMetrics();
+        metrics.startPhase("patternDef");
+        Map<String, Pattern> patternMap = analysis.loadPatternDef();
+
+        List<String> modules = new ArrayList<String>();
+        List<List<File>> moduleFiles = new ArrayList<List<File>>();
+        for (Map.Entry<String, List<File>> root : getSourceRoots(analysis).entrySet()) {
+            List<File> files = new ArrayList<File>();
+            for (File dir : root.getValue()) {
+                files.addAll(analysis.collectCandidates(dir, metrics));
+            }
+            modules.add(root.getKey());
+            moduleFiles.add(files);
+        }
+
+        metrics.startPhase("parse");
+        List<List<SourceFacts>> moduleFacts = scanModules(analysis, moduleFiles);
+        List<SourceFacts> facts = new ArrayList<SourceFacts>();
+        for (int i = 0; i < modules.size(); i++) {
+            getLog().info("Scanned " + moduleFiles.get(i).size() + " files of module "
+                    + modules.get(i));
+            Analysis.countRead(moduleFiles.get(i), metrics);
+            facts.addAll(moduleFacts.get(i));
+        }
+
+        metrics.startPhase("model");
+        Map<String, PatternInstance> instanceMap = new HashMap<String, PatternInstance>();
+        Diagnostics diagnostics = new Diagnostics();
+        Analysis.applyFacts(facts, patternMap, instanceMap, metrics, diagnostics);
+        getLog().info("Resolved " + instanceMap.size() + " pattern instances across "
+                + modules.size() + " modules");
+
+        analysis.writeOutput(instanceMap.values(), metrics);
+        analysis.writeDiagnostics(diagnostics);
+        metrics.finish();
+        getLog().info(metrics.getSummary());
+        analysis.writeMetrics(metrics);
+    }
+
+    /**
+     * Returns the existing compile source roots of each module in reactor
+     * order, or the source parameter if there is no reactor.
+     */
+    private Map<String, List<File>> getSourceRoots(Analysis analysis) {
+        Map<String, List<File>> roots = new LinkedHashMap<String, List<File>>();
+        if (reactorProjects == null || reactorProjects.isEmpty()) {
+            roots.put("(source)", Collections.singletonList(analysis.getSource()));
+            return roots;
+        }
+        for (MavenProject project : reactorProjects) {
+            List<File> dirs = new ArrayList<File>();
+            for (Object root : project.getCompileSourceRoots()) {
+                File dir = new File((String) root);
+                if (dir.isDirectory()) {
+                    dirs.add(dir);
+                }
+            }
+            roots.put(project.getId(), dirs);
+        }
+        return roots;
+    }
+
+    /**
+     * Scans the files of each module in a task of its own.
+     * 
+     * @return the facts of each module, in the order of the modules
+     */
+    private List<List<SourceFacts>> scanModules(Analysis analysis,
+            List<List<File>> moduleFiles) throws AnalysisException {
+        int threads = moduleThreads > 0 ? moduleThreads : Runtime.getRuntime()
+                .availableProcessors();
+        threads = Math.max(1, Math.min(threads, moduleFiles.size()));
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<List<SourceFacts>>> tasks = new ArrayList<Future<List<SourceFacts>>>();
+            for (final List<File> files : moduleFiles) {
+                final SourceScanner scanner = analysis.createScanner();
+                tasks.add(executor.submit(new Callable<List<SourceFacts>>() {
+
+                    @Override
+                    public List<SourceFacts> call() throws IOException {
+                        return scanner.scan(files);
+                    }
+                }));
+            }
+            List<List<SourceFacts>> facts = new ArrayList<List<SourceFacts>>();
+            for (Future<List<SourceFacts>> task : tasks) {
+                facts.add(task.get());
+            }
+            return facts;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AnalysisException("Interrupted while scanning modules");
+        } catch (ExecutionException e) {
+            throw new AnalysisException("Could not read sources", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
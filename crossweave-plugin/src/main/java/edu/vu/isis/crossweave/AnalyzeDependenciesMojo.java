@@ -0,0 +1,35 @@
+/*Copyright (C) 2010-2013 Institute for Software Integrated Systems (ISIS)
+This software was developed by the Institute for Software Integrated
+Systems (ISIS) at Vanderbilt University, Tennessee, USA for the 
+Transformative Apps program under DARPA, Contract # HR011-10-C-0175.
+The United States Government has unlimited rights to this software. 
+The US government has the right to use, modify, reproduce, release, 
+perform, display, or disclose computer software or computer software 
+documentation in whole or in part, in any manner and for any 
+purpose whatsoever, and to have or authorize others to do so.
+ */
+
+package edu.vu.isis.crossweave;
+
+/**
+ * Analyzes the sources like the analyze goal, and also scans the sources jar
+ * of each compile dependency of the project, so that annotations in shared
+ * libraries count. The jars are resolved like any other artifact, only when
+ * the up-to-date check decides to run, and read in place; dependencies without
+ * a sources jar are skipped. Unlike analyze, this goal needs Maven to resolve
+ * the compile dependencies first.
+ * <pre>
+ * mvn crossweave:analyze-dependencies
+ * </pre>
+ * 
+ * @goal analyze-dependencies
+ * @requiresDependencyResolution compile
+ * @author nick
+ */
+public class AnalyzeDependenciesMojo extends CrossWeaveMojo {
+
+    @Override
+    boolean isDependencySources() {
+        return true;
+    }
+}
@@ -11,276 +11,413 @@ purpose whatsoever, and to have or authorize others to do so.
 
 package edu.vu.isis.crossweave;
 
-import com.thoughtworks.qdox.JavaDocBuilder;
-import com.thoughtworks.qdox.model.Annotation;
-import com.thoughtworks.qdox.model.JavaClass;
-import com.thoughtworks.qdox.model.JavaSource;
-
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.repository.ArtifactRepository;
+import org.apache.maven.artifact.resolver.ArtifactResolutionRequest;
 import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
-import org.apache.maven.plugin.logging.Log;
-import org.stringtemplate.v4.ST;
-import org.stringtemplate.v4.STGroup;
-import org.stringtemplate.v4.STGroupFile;
+import org.apache.maven.project.MavenProject;
+import org.apache.maven.repository.RepositorySystem;
+import org.slf4j.impl.StaticLoggerBinder;
+import org.sonatype.plexus.build.incremental.BuildContext;
+import org.sonatype.plexus.build.incremental.DefaultBuildContext;
 
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileWriter;
-import java.io.IOException;
-import java.util.Collection;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
-
-import javax.xml.parsers.SAXParser;
-import javax.xml.parsers.SAXParserFactory;
 
 /**
  * Analyzes project source code and writes a pattern description file for the
- * patterns present in the code.
+ * patterns present in the code. The analysis itself is done by
+ * {@link Analysis}, which this goal configures from its parameters; the goal
+ * adds the incremental build checks. The analyze-dependencies goal also scans
+ * the sources jars of the dependencies.
  * 
  * @goal analyze
  * @author nick
  */
 public class CrossWeaveMojo extends AbstractMojo {
 
-    private static Log logger;
+    /**
+     * The Java sources to parse.
+     * 
+     * @parameter default-value="${projec.build.sourceDirectory}"
+     */
+    private File source;
 
     /**
-     * Fully qualified name of the design pattern specification annotation
-     * (multiple version)
+     * The StringTemplate group file to render the report with, or the name of
+     * a built-in template: plaintext or html
+     * 
+     * @parameter default-value="plaintext" property="crossweave.template"
      */
-    public static final String PATTERN_SPECS_ANN_FQN = "edu.vu.isis.crossweave.annotation.DesignPattern$Specifications";
+    private String template = TemplateRegistry.DEFAULT_TEMPLATE;
 
     /**
-     * Fully qualified name of the design pattern specification annotation
-     * (single version)
+     * The directory for the output file
+     * 
+     * @parameter default-value="${project.build.directory}"
      */
-    public static final String PATTERN_SPEC_ANN_FQN = "edu.vu.isis.crossweave.annotation.DesignPattern$Specification";
+    private File outputDir;
 
     /**
-     * Fully qualified name of the design pattern role annotation (multiple
-     * version)
+     * Name of file to write output to
+     * 
+     * @parameter default-value="PatternStructure"
      */
-    public static final String PATTERN_ROLES_ANN_FQN = "edu.vu.isis.crossweave.annotation.DesignPattern$Roles";
+    private String outputFile;
 
     /**
-     * Fully qualified name of the design pattern role annotation (single
-     * version)
+     * Character encoding of the output file
+     * 
+     * @parameter default-value="${project.reporting.outputEncoding}"
      */
-    public static final String PATTERN_ROLE_ANN_FQN = "edu.vu.isis.crossweave.annotation.DesignPattern$Role";
+    private String outputEncoding;
 
     /**
-     * The Java sources to parse.
+     * Write one file per pattern instance into outputDir instead of a single
+     * report, plus an index named crossweave-index. The files are named after
+     * the fully qualified name of the instance and take the extension of
+     * outputFile. A file is only rewritten when its content changes.
      * 
-     * @parameter default-value="${projec.build.sourceDirectory}"
+     * @parameter default-value="false"
      */
-    private File source;
+    private boolean sharded;
 
     /**
-     * The file containing the StringTemplate template
+     * Write the report as a static HTML site into outputDir instead: an
+     * index.html that lists the patterns by namespace, pages of at most
+     * pageSize instances per pattern, and a search-index.json that the pages
+     * load to filter instances by class, role or instance name. Takes
+     * precedence over sharded; outputFile is not written.
      * 
-     * @required
+     * @parameter default-value="false" property="crossweave.site"
      */
-    private String template;
+    private boolean site;
 
     /**
-     * The directory for the output file
+     * The largest number of pattern instances on a page of the site
      * 
-     * @parameter default-value="${project.build.directory}"
+     * @parameter default-value="100"
      */
-    private File outputDir;
+    private int pageSize = 100;
 
     /**
-     * Name of file to write output to
+     * The StringTemplate group file to render the site with, or the name of a
+     * built-in template. It needs a siteIndex and a sitePage template.
      * 
-     * @parameter default-value="PatternStructure"
+     * @parameter default-value="site"
      */
-    private String outputFile;
+    private String siteTemplate = SiteWriter.DEFAULT_TEMPLATE;
 
     /**
      * The file containing the design pattern definitions
      * 
+     * @parameter property="crossweave.patternDef"
      * @required
      */
     private File patternDef;
 
-    @Override
-    public void execute() throws MojoExecutionException, MojoFailureException {
-        // StaticLoggerBinder.getSingleton().setLog(getLog());
-        // logger = LoggerFactory.getLogger(CrossWeaveMojo.class);
-        logger = getLog();
-        Map<String, Pattern> patternMap = new HashMap<String, Pattern>();
+    /**
+     * Only reparse source files that were added or changed since the last run.
+     * The annotations found in each file are cached in cacheFile.
+     * 
+     * @parameter default-value="false"
+     */
+    private boolean incremental;
 
-        try {
-            SAXParser parser = SAXParserFactory.newInstance().newSAXParser();
-            parser.parse(patternDef, new PatternDefHandler(patternMap));
-        } catch (Exception e) {
-            throw new MojoExecutionException("Could not parse pattern definition file", e);
-        }
+    /**
+     * The file in which the incremental scan cache is kept
+     * 
+     * @parameter default-value="${project.build.directory}/crossweave/scan-cache"
+     */
+    private File cacheFile;
 
-        logger.info("Keys in patternMap: " + patternMap.keySet().toString());
+    /**
+     * Number of threads used to parse sources. With more than one thread the
+     * sources are split into work units that are parsed concurrently.
+     * 
+     * @parameter default-value="1"
+     */
+    private int threads = 1;
 
-        JavaDocBuilder builder = new JavaDocBuilder();
+    /**
+     * Skip source files whose text does not mention DesignPattern before they
+     * are handed to the parser.
+     * 
+     * @parameter default-value="true"
+     */
+    private boolean prefilter = true;
 
-        try {
-            if (source.getName().endsWith(".java")) {
-                builder.addSource(source);
-            } else {
-                builder.addSourceTree(source);
-            }
-        } catch (FileNotFoundException e) {
-            throw new MojoExecutionException("Could not find file: " + source, e);
-        } catch (IOException e) {
-            throw new MojoExecutionException("Could not read sources", e);
-        }
+    /**
+     * The scanner that extracts annotations from the sources: qdox builds a
+     * full QDox source model, lightweight only tokenizes declarations and
+     * annotations.
+     * 
+     * @parameter default-value="qdox"
+     */
+    private String scanner = "qdox";
+
+    /**
+     * Parse the sources one file at a time and keep only their annotation
+     * facts, so that heap usage does not grow with the size of the source tree.
+     * This only affects the qdox scanner; the lightweight scanner never keeps
+     * more than the facts.
+     * 
+     * @parameter default-value="false"
+     */
+    private boolean lowMemory;
+
+    /**
+     * The binary pattern index written after each analysis, which the query
+     * goal reads. Defaults to crossweave-pattern-index in outputDir.
+     * 
+     * @parameter
+     */
+    private File indexFile;
 
-        JavaSource[] sources = builder.getSources();
-        Map<String, PatternInstance> instanceMap = new HashMap<String, PatternInstance>();
-        scanPatternSpecs(sources, patternMap, instanceMap);
+    /**
+     * Pattern facts written by the DesignPattern annotation processor of
+     * crossweave-lib while the sources were compiled. If set, the report is
+     * built from this file and no sources are parsed. The processor only runs
+     * if the compiler is told to, e.g. in the annotationProcessors of the
+     * maven-compiler-plugin.
+     * 
+     * @parameter
+     */
+    private File processorFacts;
 
-        logger.info("Keys in instanceMap: " + instanceMap.keySet().toString());
+    /**
+     * If set, the phase times and counters of the analysis are written to this
+     * file as JSON, for instance ${project.build.directory}/crossweave-metrics.json
+     * 
+     * @parameter property="crossweave.metricsFile"
+     */
+    private File metricsFile;
 
-        scanRoles(sources, instanceMap);
+    /**
+     * The file the problems found while building the pattern instances are
+     * written to as JSON: specs of undefined patterns, duplicate aliases, and
+     * roles with an unknown alias or role name. The log only shows how many
+     * there are of each kind, and lists them at debug level. Defaults to
+     * crossweave-diagnostics.json in outputDir.
+     * 
+     * @parameter property="crossweave.diagnosticsFile"
+     */
+    private File diagnosticsFile;
 
-        if (!outputDir.exists()) {
-            outputDir.mkdirs();
-        }
+    /**
+     * If set, the analysis is recorded with Java Flight Recorder into this
+     * file, with the default settings of the JVM plus the CrossWeave phase,
+     * source file, template and pattern definition events. Requires a JVM with
+     * the jdk.jfr API.
+     * 
+     * @parameter property="crossweave.flightRecording"
+     */
+    private File flightRecording;
 
-        FileWriter fw = null;
+    /**
+     * Skip the goal if the sources, the pattern definitions, the template, the
+     * output settings, the plugin version and the report and pattern index
+     * are the same as after the last run. Sources are compared by size and
+     * last modified time, the pattern definitions and template by content.
+     * 
+     * @parameter default-value="true" property="crossweave.upToDateCheck"
+     */
+    private boolean upToDateCheck = true;
+
+    /**
+     * The file in which the fingerprint of the inputs and outputs of the last
+     * run is kept
+     * 
+     * @parameter default-value="${project.build.directory}/crossweave/input-manifest"
+     */
+    private File manifestFile;
+
+    /**
+     * The version of this plugin, part of the input fingerprint
+     * 
+     * @parameter default-value="${plugin.version}"
+     * @readonly
+     */
+    private String pluginVersion;
+
+    /**
+     * Tells which files changed in incremental IDE builds and is notified of
+     * the files written
+     * 
+     * @component
+     */
+    private BuildContext buildContext = new DefaultBuildContext();
+
+    /**
+     * Further source jars to scan, in addition to source
+     * 
+     * @parameter
+     */
+    private File[] sourceJars;
+
+    /**
+     * The file in which the facts of each source jar are cached by the
+     * checksum of the jar
+     * 
+     * @parameter default-value="${project.build.directory}/crossweave/source-jar-cache"
+     */
+    private File sourceJarCache;
+
+    /**
+     * @parameter default-value="${project}"
+     * @readonly
+     */
+    private MavenProject project;
+
+    /**
+     * @parameter default-value="${localRepository}"
+     * @readonly
+     */
+    private ArtifactRepository localRepository;
+
+    /**
+     * Resolves the sources jars of dependencies
+     * 
+     * @component
+     */
+    private RepositorySystem repositorySystem;
+
+    @Override
+    public void execute() throws MojoExecutionException, MojoFailureException {
+        initLogger();
+        Analysis analysis = createAnalysis();
+        AnalysisEvents.FlightRecording recording = analysis.startRecording();
         try {
-            if (outputFile == null) {
-                outputFile = "PatternStructure";
-            }
-            File file = new File(outputDir, outputFile);
-            fw = new FileWriter(file);
-
-            STGroup stg = new STGroupFile(template);
-            ST st = stg.getInstanceOf("reportPatternDescriptions");
-            st.add("patterns", instanceMap.values());
-            fw.write(st.render());
-            fw.flush();
-        } catch (IOException e) {
-            throw new MojoExecutionException("Failed to write output", e);
+            analyze(analysis);
         } finally {
-            if (fw != null) {
-                try {
-                    fw.close();
-                } catch (IOException e) {
-                    // Ignore
-                }
-            }
+            analysis.stopRecording(recording);
+            refresh(analysis);
         }
     }
 
-    public static void scanPatternSpecs(JavaSource[] sources, Map<String, Pattern> patternMap,
-            Map<String, PatternInstance> instanceMap) {
-        for (JavaSource src : sources) {
-            for (JavaClass clazz : src.getClasses()) {
-                for (Annotation ann : clazz.getAnnotations()) {
-                    if (ann.getType().getFullyQualifiedName().equals(PATTERN_SPECS_ANN_FQN)) {
-                        @SuppressWarnings("unchecked")
-                        List<Annotation> list = (List<Annotation>) ann.getNamedParameter("specs");
-                        for (Annotation a : list) {
-                            processSpecAnnotation(a, patternMap, instanceMap);
-                        }
-                    } else if (ann.getType().getFullyQualifiedName().equals(PATTERN_SPEC_ANN_FQN)) {
-                        processSpecAnnotation(ann, patternMap, instanceMap);
-                    }
-                }
-            }
+    /**
+     * Runs the analysis; execute wraps it in the optional flight recording.
+     * 
+     * @param analysis the analysis configured from the parameters
+     * @throws MojoExecutionException if the analysis failed
+     */
+    void analyze(Analysis analysis) throws MojoExecutionException {
+        if (buildContext.isIncremental() && !hasInputDelta()) {
+            getLog().info("Skipping analysis, the incremental build changed no sources, "
+                    + "pattern definitions or template");
+            return;
         }
-    }
-
-    public static void scanRoles(JavaSource[] sources, Map<String, PatternInstance> instanceMap) {
-        for (JavaSource src : sources) {
-            for (JavaClass clazz : src.getClasses()) {
-                for (Annotation ann : clazz.getAnnotations()) {
-                    if (ann.getType().getFullyQualifiedName().equals(PATTERN_ROLES_ANN_FQN)) {
-                        @SuppressWarnings("unchecked")
-                        List<Annotation> list = (List<Annotation>) ann.getNamedParameter("roles");
-                        for (Annotation a : list) {
-                            processRoleAnnotation(a, instanceMap, clazz);
-                        }
-                    } else if (ann.getType().getFullyQualifiedName().equals(PATTERN_ROLE_ANN_FQN)) {
-                        processRoleAnnotation(ann, instanceMap, clazz);
-                    }
-                }
-            }
+        if (sourceJars != null) {
+            analysis.setSourceJars(Arrays.asList(sourceJars));
         }
-    }
-
-    private static String trimQuotes(String s) {
-        if (s.startsWith("\"") && s.endsWith("\"")) {
-            s = s.substring(1, s.length() - 1);
+        if (isDependencySources() && project != null) {
+            analysis.setSourceJarResolver(new DependencySourceJars());
+        }
+        try {
+            analysis.analyze();
+        } catch (AnalysisException e) {
+            throw new MojoExecutionException(e.getMessage(), e);
         }
-        return s;
     }
 
-    private static String getParamAndTrimQuotes(Annotation ann, String key) {
-        String param = (String) ann.getNamedParameter(key);
-        if (param == null) {
-            return "";
-        } else {
-            return trimQuotes(param);
+    /**
+     * Tells whether the incremental build changed any file the analysis reads.
+     */
+    private boolean hasInputDelta() {
+        if (processorFacts != null) {
+            return buildContext.hasDelta(processorFacts) || buildContext.hasDelta(patternDef);
         }
+        File templateFile = template == null ? null : new File(template);
+        return buildContext.hasDelta(source) || buildContext.hasDelta(patternDef)
+                || (templateFile != null && templateFile.isFile()
+                        && buildContext.hasDelta(templateFile));
     }
 
-    private static final void processSpecAnnotation(
-            Annotation ann,
-            Map<String, Pattern> patternMap,
-            Map<String, PatternInstance> instanceMap) {
-        String alias = getParamAndTrimQuotes(ann, "alias");
-        if (instanceMap.containsKey(alias)) {
-            logger.warn("Found multiple specs for pattern with alias " + alias);
-            return;
-        }
+    /**
+     * Sends the messages of the analysis, which logs through slf4j, to the log
+     * of this mojo.
+     */
+    void initLogger() {
+        StaticLoggerBinder.getSingleton().setLog(getLog());
+    }
 
-        String namespace = getParamAndTrimQuotes(ann, "namespace");
-        String patternName = getParamAndTrimQuotes(ann, "patternName");
-        String impl = getParamAndTrimQuotes(ann, "impl");
-        String instanceName = getParamAndTrimQuotes(ann, "instanceName");
-        String fullyQualifiedName = namespace + "." + patternName + "." + impl;
+    /**
+     * @return an analysis configured from the parameters of this goal
+     */
+    Analysis createAnalysis() {
+        return new Analysis().setSource(source).setPatternDef(patternDef)
+                .setTemplate(template).setOutputDir(outputDir).setOutputFile(outputFile)
+                .setOutputEncoding(outputEncoding).setSharded(sharded).setSite(site)
+                .setPageSize(pageSize).setSiteTemplate(siteTemplate)
+                .setIncremental(incremental).setCacheFile(cacheFile).setThreads(threads)
+                .setPrefilter(prefilter).setScanner(scanner).setLowMemory(lowMemory)
+                .setIndexFile(indexFile).setProcessorFacts(processorFacts)
+                .setMetricsFile(metricsFile).setDiagnosticsFile(diagnosticsFile)
+                .setFlightRecording(flightRecording).setUpToDateCheck(upToDateCheck)
+                .setManifestFile(manifestFile).setVersion(pluginVersion)
+                .setSourceJarCache(sourceJarCache);
+    }
 
-        Pattern pattern = patternMap.get(fullyQualifiedName);
-        if (pattern == null) {
-            logger.error("Pattern with FQN " + fullyQualifiedName
-                    + " not found in patternMap");
-            return;
+    /**
+     * Tells the build context about the files the analysis wrote.
+     * 
+     * @param analysis the analysis that ran
+     */
+    void refresh(Analysis analysis) {
+        for (File file : analysis.getWrittenFiles()) {
+            buildContext.refresh(file);
         }
-
-        instanceMap.put(alias, pattern.instantiate(instanceName));
-        logger.info("Pattern " + pattern.getFullyQualifiedName()
-                + " instantiated to " + instanceName + " with alias " + alias);
     }
 
-    private static final void processRoleAnnotation(
-            Annotation ann,
-            Map<String, PatternInstance> instanceMap,
-            JavaClass clazz) {
-        String alias = getParamAndTrimQuotes(ann, "alias");
-        String role = getParamAndTrimQuotes(ann, "role");
-
-        PatternInstance pat = instanceMap.get(alias);
+    /**
+     * @return true if the goal also scans the sources jars of the compile
+     *         dependencies of the project, which needs them to be resolved
+     */
+    boolean isDependencySources() {
+        return false;
+    }
 
-        if (pat == null) {
-            logger.error("No pattern to match alias " + alias + " on role " + role
-                    + " in class " + clazz.getFullyQualifiedName());
-            return;
+    /**
+     * Looks up the sources jars of the compile dependencies of the project.
+     * The up-to-date check looks at the dependency jars instead, so a build
+     * that changed nothing makes no requests to remote repositories.
+     */
+    private class DependencySourceJars implements SourceJarResolver {
+
+        @Override
+        public List<File> getInputs() {
+            List<File> inputs = new ArrayList<File>();
+            for (Artifact artifact : project.getArtifacts()) {
+                if (artifact.getFile() != null) {
+                    inputs.add(artifact.getFile());
+                }
+            }
+            return inputs;
         }
 
-        if (pat.addImplementerToRole(clazz.getFullyQualifiedName(), role)) {
-            logger.info("Implementer " + clazz.getFullyQualifiedName()
-                    + " added to role " + role + " for pattern "
-                    + pat.getPattern().getName());
-        } else {
-            logger.error("Pattern instance alias " + alias
-                    + " does not have a role called " + role);
-            logger.error("Roles in pattern instance: " + pat.getRoles().toString());
-            logger.error("Could not add role " + role + " to pattern "
-                    + pat.getPattern().getName());
+        @Override
+        public List<File> resolve() {
+            List<File> jars = new ArrayList<File>();
+            for (Artifact artifact : project.getArtifacts()) {
+                Artifact sources = repositorySystem.createArtifactWithClassifier(
+                        artifact.getGroupId(), artifact.getArtifactId(), artifact.getVersion(),
+                        "jar", "sources");
+                ArtifactResolutionRequest request = new ArtifactResolutionRequest();
+                request.setArtifact(sources);
+                request.setLocalRepository(localRepository);
+                request.setRemoteRepositories(project.getRemoteArtifactRepositories());
+                repositorySystem.resolve(request);
+                if (sources.getFile() != null && sources.getFile().isFile()) {
+                    jars.add(sources.getFile());
+                } else {
+                    getLog().debug("No sources jar for " + artifact);
+                }
+            }
+            return jars;
         }
     }
-
 }
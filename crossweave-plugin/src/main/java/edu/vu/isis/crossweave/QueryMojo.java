@@ -0,0 +1,100 @@
+/*Copyright (C) 2010-2013 Institute for Software Integrated Systems (ISIS)
+This software was developed by the Institute for Software Integrated
+Systems (ISIS) at Vanderbilt University, Tennessee, USA for the 
+Transformative Apps program under DARPA, Contract # HR011-10-C-0175.
+The United States Government has unlimited rights to this software. 
+The US government has the right to use, modify, reproduce, release, 
+perform, display, or disclose computer software or computer software 
+documentation in whole or in part, in any manner and for any 
+purpose whatsoever, and to have or authorize others to do so.
+ */
+
+package edu.vu.isis.crossweave;
+
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Answers questions about the patterns of a project from the pattern index of
+ * the last analysis, without parsing any source. For example
+ * <pre>
+ * mvn crossweave:query -Dcrossweave.implementer=com.example.FooAdapter
+ * mvn crossweave:query -Dcrossweave.pattern=gof.adapter
+ * </pre>
+ * 
+ * @goal query
+ * @author nick
+ */
+public class QueryMojo extends AbstractMojo {
+
+    /**
+     * The pattern index written by the analyze goal. The default is where the
+     * analyze goal writes it unless its outputDir or indexFile is configured.
+     * 
+     * @parameter property="crossweave.index"
+     *            default-value="${project.build.directory}/crossweave-pattern-index"
+     */
+    private File indexFile;
+
+    /**
+     * List the roles that the class with this fully qualified name plays
+     * 
+     * @parameter property="crossweave.implementer"
+     */
+    private String implementer;
+
+    /**
+     * List the instances of this pattern, given by its fully qualified name or
+     * by namespace and name to include every implementation
+     * 
+     * @parameter property="crossweave.pattern"
+     */
+    private String pattern;
+
+    @Override
+    public void execute() throws MojoExecutionException, MojoFailureException {
+        if (implementer == null && pattern == null) {
+            throw new MojoFailureException(
+                    "Nothing to query, set crossweave.implementer or crossweave.pattern");
+        }
+        if (indexFile == null || !indexFile.isFile()) {
+            throw new MojoFailureException("Pattern index " + indexFile
+                    + " does not exist. Run the analyze goal first.");
+        }
+
+        Log log = getLog();
+        long start = System.nanoTime();
+        try {
+            PatternIndex index = PatternIndex.open(indexFile);
+            if (implementer != null) {
+                List<RoleBinding> bindings = index.getBindings(implementer);
+                log.info(implementer + " plays " + bindings.size() + " roles");
+                for (RoleBinding binding : bindings) {
+                    log.info("  " + binding.getRole().getName() + " in "
+                            + binding.getInstance().getFullyQualifiedName());
+                }
+            }
+            if (pattern != null) {
+                List<PatternInstance> instances = index.getInstances(pattern);
+                log.info(pattern + " has " + instances.size() + " instances");
+                for (PatternInstance instance : instances) {
+                    log.info("  " + instance.getFullyQualifiedName());
+                    for (Role role : instance.getRoles()) {
+                        log.info("    " + role.getName() + ": " + role.getImplementers());
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new MojoExecutionException("Could not read pattern index " + indexFile, e);
+        }
+        log.info("Answered from " + indexFile + " in "
+                + (System.nanoTime() - start) / 1000000 + " ms");
+    }
+
+}
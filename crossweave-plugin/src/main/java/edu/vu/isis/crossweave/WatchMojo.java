@@ -0,0 +1,201 @@
+/*Copyright (C) 2010-2013 Institute for Software Integrated Systems (ISIS)
+This software was developed by the Institute for Software Integrated
+Systems (ISIS) at Vanderbilt University, Tennessee, USA for the 
+Transformative Apps program under DARPA, Contract # HR011-10-C-0175.
+The United States Government has unlimited rights to this software. 
+The US government has the right to use, modify, reproduce, release, 
+perform, display, or disclose computer software or computer software 
+documentation in whole or in part, in any manner and for any 
+purpose whatsoever, and to have or authorize others to do so.
+ */
+
+package edu.vu.isis.crossweave;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Analyzes the sources like the analyze goal and then keeps running, watching
+ * the source tree and the pattern definitions. When they change, only the
+ * changed files are parsed again, the affected pattern instances are rebuilt
+ * in memory and the report is rewritten. Stop it with Ctrl-C. The parameters
+ * are those of the analyze goal, except that incremental, processorFacts,
+ * metricsFile and flightRecording do not apply.
+ * <pre>
+ * mvn crossweave:watch
+ * </pre>
+ * 
+ * @goal watch
+ * @author nick
+ */
+public class WatchMojo extends CrossWeaveMojo {
+
+    /**
+     * Milliseconds without further changes before the report is refreshed, so
+     * that saving several files at once causes a single refresh
+     * 
+     * @parameter default-value="50" property="crossweave.quietPeriod"
+     */
+    private long quietPeriod = 50;
+
+    private Analysis mAnalysis;
+
+    private volatile SourceWatcher mWatcher;
+
+    private volatile boolean mStopped;
+
+    @Override
+    public void execute() throws MojoExecutionException {
+        initLogger();
+        Log log = getLog();
+        mAnalysis = createAnalysis();
+        AnalysisMetrics metrics = new AnalysisMetrics();
+        LiveModel model;
+        try {
+            metrics.startPhase("patternDef");
+            model = new LiveModel(mAnalysis.loadPatternDef());
+            List<File> files = mAnalysis.collectCandidates(metrics);
+            metrics.startPhase("parse");
+            List<SourceFacts> facts = mAnalysis.parseSources(files, metrics);
+            metrics.startPhase("model");
+            for (int i = 0; i < files.size(); i++) {
+                model.update(files.get(i), facts.get(i));
+            }
+            mAnalysis.writeOutput(model.getInstanceMap().values(), metrics);
+            mAnalysis.writeDiagnostics(model.getDiagnostics());
+        } catch (AnalysisException e) {
+            throw new MojoExecutionException(e.getMessage(), e);
+        }
+        refresh(mAnalysis);
+        metrics.finish();
+        log.info(metrics.getSummary());
+
+        File source = mAnalysis.getSource();
+        SourceWatcher watcher;
+        try {
+            watcher = new SourceWatcher(source, mAnalysis.getPatternDef());
+        } catch (IOException e) {
+            throw new MojoExecutionException("Could not watch " + source, e);
+        }
+        mWatcher = watcher;
+        if (mStopped) {
+            closeWatcher();
+        }
+        log.info("Watching " + source + " and " + mAnalysis.getPatternDef() + " for changes");
+        try {
+            while (true) {
+                Set<File> changed = watcher.take(quietPeriod);
+                refresh(model, changed, watcher.checkOverflowed());
+            }
+        } catch (ClosedWatchServiceException e) {
+            log.info("Stopped watching " + source);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            closeWatcher();
+        }
+    }
+
+    /**
+     * Stops watching. The goal returns once the current refresh is done.
+     */
+    void stop() {
+        mStopped = true;
+        closeWatcher();
+    }
+
+    /**
+     * @return true once the initial analysis is done and changes are picked up
+     */
+    boolean isWatching() {
+        return mWatcher != null && !mStopped;
+    }
+
+    private void closeWatcher() {
+        SourceWatcher watcher = mWatcher;
+        if (watcher != null) {
+            try {
+                watcher.close();
+            } catch (IOException e) {
+                getLog().warn("Could not stop watching " + mAnalysis.getSource(), e);
+            }
+        }
+    }
+
+    private void refresh(LiveModel model, Set<File> changed, boolean overflowed) {
+        AnalysisMetrics metrics = new AnalysisMetrics();
+        int changes = changed.size();
+        try {
+            File patternDef = mAnalysis.getPatternDef().getAbsoluteFile();
+            if (changed.remove(patternDef)) {
+                metrics.startPhase("patternDef");
+                model.setPatterns(mAnalysis.loadPatternDef());
+            }
+            if (overflowed) {
+                getLog().warn("Missed changes, rescanning " + mAnalysis.getSource());
+                changed = new LinkedHashSet<File>(model.getFiles());
+                List<File> all = new ArrayList<File>();
+                Analysis.collectSourceFiles(mAnalysis.getSource(), all);
+                changed.addAll(all);
+            }
+
+            metrics.startPhase("prefilter");
+            SourcePreFilter filter = new SourcePreFilter();
+            List<File> parse = new ArrayList<File>();
+            for (File file : changed) {
+                if (file.isFile()) {
+                    if (!mAnalysis.isPrefilter() || filter.isCandidate(file)) {
+                        parse.add(file);
+                    } else {
+                        model.update(file, null);
+                    }
+                } else if (!file.isDirectory()) {
+                    // A deleted file or directory
+                    for (File gone : new ArrayList<File>(model.getFiles())) {
+                        if (isBelow(gone, file)) {
+                            model.update(gone, null);
+                        }
+                    }
+                }
+            }
+            metrics.startPhase("parse");
+            List<SourceFacts> facts = mAnalysis.parseSources(parse, metrics);
+            metrics.startPhase("model");
+            for (int i = 0; i < parse.size(); i++) {
+                model.update(parse.get(i), facts.get(i));
+            }
+            mAnalysis.writeOutput(model.getInstanceMap().values(), metrics);
+            mAnalysis.writeDiagnostics(model.getDiagnostics());
+        } catch (IOException e) {
+            getLog().error("Refresh failed, could not read sources: " + e.getMessage());
+            return;
+        } catch (AnalysisException e) {
+            getLog().error("Refresh failed: " + e.getMessage());
+            return;
+        }
+        refresh(mAnalysis);
+        metrics.finish();
+        getLog().info("Refreshed after " + changes + " changes in "
+                + metrics.getTotalNanos() / 1000000 + " ms (parsed "
+                + metrics.get(AnalysisMetrics.FILES_READ) + " files in "
+                + metrics.getPhaseNanos("parse") / 1000000 + " ms, rendered in "
+                + metrics.getPhaseNanos("render") / 1000000 + " ms)");
+    }
+
+    private static boolean isBelow(File file, File dir) {
+        for (File f = file; f != null; f = f.getParentFile()) {
+            if (f.equals(dir)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,58 @@
+package edu.vu.isis.crossweave;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.apache.maven.plugin.testing.AbstractMojoTestCase;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+
+public class AnalysisEventsTest extends AbstractMojoTestCase {
+
+    public void testDisabledByDefault() {
+        File file = new File(getBasedir(), "pom.xml");
+        assertSame(AnalysisEvents.NONE, AnalysisEvents.get().sourceFile(file));
+        assertSame(AnalysisEvents.NONE, AnalysisEvents.get().phase("parse"));
+    }
+
+    public void testFlightRecording() throws Exception {
+        File outputDir = new File(getBasedir(), "target/test-jfr");
+        File recordingFile = new File(outputDir, "analyze.jfr");
+        File metricsFile = new File(outputDir, "metrics.json");
+        recordingFile.delete();
+
+        File testPom = new File(getBasedir(), "src/test/resources/test-run/pom.xml");
+        CrossWeaveMojo mojo = (CrossWeaveMojo) lookupMojo("analyze", testPom);
+        setVariableValueToObject(mojo, "outputDir", outputDir);
+        setVariableValueToObject(mojo, "flightRecording", recordingFile);
+        setVariableValueToObject(mojo, "metricsFile", metricsFile);
+        mojo.execute();
+        assertTrue(recordingFile.isFile());
+
+        Map<String, Integer> counts = new HashMap<String, Integer>();
+        long sourceBytes = 0;
+        for (RecordedEvent event : RecordingFile.readAllEvents(recordingFile.toPath())) {
+            String name = event.getEventType().getName();
+            if (name.startsWith("crossweave.")) {
+                Integer count = counts.get(name);
+                counts.put(name, count == null ? 1 : count + 1);
+            }
+            if (name.equals("crossweave.SourceFile")) {
+                sourceBytes += event.getLong("size");
+            }
+        }
+        assertEquals(Integer.valueOf(7), counts.get("crossweave.Phase"));
+        assertEquals(Integer.valueOf(1), counts.get("crossweave.PatternDefLoad"));
+        assertEquals(Integer.valueOf(1), counts.get("crossweave.TemplateRender"));
+        String metrics = new String(Files.readAllBytes(metricsFile.toPath()),
+                "UTF-8");
+        assertTrue(metrics.contains("\"filesRead\": " + counts.get("crossweave.SourceFile")
+                + ","));
+        assertTrue(metrics.contains("\"bytesRead\": " + sourceBytes + ","));
+
+        // The events are off again once the recording stopped
+        assertSame(AnalysisEvents.NONE, AnalysisEvents.get().phase("parse"));
+    }
+}
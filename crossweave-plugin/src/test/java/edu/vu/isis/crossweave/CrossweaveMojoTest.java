@@ -1,13 +1,38 @@
 package edu.vu.isis.crossweave;
 
+import org.apache.maven.plugin.MojoFailureException;
 import org.apache.maven.plugin.testing.AbstractMojoTestCase;
+import org.apache.maven.project.MavenProject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.sonatype.plexus.build.incremental.BuildContext;
+import org.sonatype.plexus.build.incremental.DefaultBuildContext;
+import org.stringtemplate.v4.ST;
+import org.stringtemplate.v4.STGroupFile;
 
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 public class CrossweaveMojoTest extends AbstractMojoTestCase {
 
+    private SymbolTable mSymbols = new SymbolTable();
+
     /** {@inheritDoc} */
     @Override
     protected void setUp() throws Exception {
@@ -36,4 +61,639 @@ public class CrossweaveMojoTest extends AbstractMojoTestCase {
         //assertTrue(outputFile.exists());
         
     }
+
+    public void testIncrementalRun() throws Exception {
+        File work = new File(getBasedir(), "target/test-incremental");
+        File src = new File(work, "src");
+        copyTree(new File(getBasedir(), "../crossweave-examples/src"), src);
+        File outputDir = new File(work, "output");
+
+        CrossWeaveMojo full = lookupTestMojo();
+        setVariableValueToObject(full, "source", src);
+        setVariableValueToObject(full, "outputDir", outputDir);
+        setVariableValueToObject(full, "outputFile", "full.html");
+        full.execute();
+        String expected = read(new File(outputDir, "full.html"));
+
+        File cacheFile = new File(work, "scan-cache");
+        for (int run = 0; run < 2; run++) {
+            CrossWeaveMojo mojo = lookupTestMojo();
+            setVariableValueToObject(mojo, "source", src);
+            setVariableValueToObject(mojo, "outputDir", outputDir);
+            setVariableValueToObject(mojo, "outputFile", "incremental.html");
+            setVariableValueToObject(mojo, "incremental", Boolean.TRUE);
+            setVariableValueToObject(mojo, "cacheFile", cacheFile);
+            mojo.execute();
+            assertTrue(cacheFile.isFile());
+            assertEquals(expected, read(new File(outputDir, "incremental.html")));
+        }
+
+        // Deleting a file must drop its role from the cached facts
+        File cat = new File(src, "main/java/edu/vu/isis/crossweave/example/pet/Cat.java");
+        assertTrue(cat.delete());
+        CrossWeaveMojo mojo = lookupTestMojo();
+        setVariableValueToObject(mojo, "source", src);
+        setVariableValueToObject(mojo, "outputDir", outputDir);
+        setVariableValueToObject(mojo, "outputFile", "incremental.html");
+        setVariableValueToObject(mojo, "incremental", Boolean.TRUE);
+        setVariableValueToObject(mojo, "cacheFile", cacheFile);
+        mojo.execute();
+        String report = read(new File(outputDir, "incremental.html"));
+        assertFalse(report.contains("edu.vu.isis.crossweave.example.pet.Cat<"));
+        assertTrue(report.contains("edu.vu.isis.crossweave.example.pet.Dog"));
+    }
+
+    public void testParallelRun() throws Exception {
+        File outputDir = new File(getBasedir(), "target/test-parallel");
+
+        CrossWeaveMojo serial = lookupTestMojo();
+        setVariableValueToObject(serial, "outputDir", outputDir);
+        setVariableValueToObject(serial, "outputFile", "serial.html");
+        serial.execute();
+
+        CrossWeaveMojo parallel = lookupTestMojo();
+        setVariableValueToObject(parallel, "outputDir", outputDir);
+        setVariableValueToObject(parallel, "outputFile", "parallel.html");
+        setVariableValueToObject(parallel, "threads", Integer.valueOf(4));
+        parallel.execute();
+
+        assertEquals(read(new File(outputDir, "serial.html")),
+                read(new File(outputDir, "parallel.html")));
+    }
+
+    public void testLightweightScanner() throws Exception {
+        File outputDir = new File(getBasedir(), "target/test-scanner");
+
+        CrossWeaveMojo qdox = lookupTestMojo();
+        setVariableValueToObject(qdox, "outputDir", outputDir);
+        setVariableValueToObject(qdox, "outputFile", "qdox.html");
+        qdox.execute();
+
+        CrossWeaveMojo lightweight = lookupTestMojo();
+        setVariableValueToObject(lightweight, "outputDir", outputDir);
+        setVariableValueToObject(lightweight, "outputFile", "lightweight.html");
+        setVariableValueToObject(lightweight, "scanner", "lightweight");
+        lightweight.execute();
+
+        assertEquals(read(new File(outputDir, "qdox.html")),
+                read(new File(outputDir, "lightweight.html")));
+    }
+
+    public void testLowMemoryRun() throws Exception {
+        File outputDir = new File(getBasedir(), "target/test-low-memory");
+
+        CrossWeaveMojo normal = lookupTestMojo();
+        setVariableValueToObject(normal, "outputDir", outputDir);
+        setVariableValueToObject(normal, "outputFile", "normal.html");
+        normal.execute();
+
+        CrossWeaveMojo lowMemory = lookupTestMojo();
+        setVariableValueToObject(lowMemory, "outputDir", outputDir);
+        setVariableValueToObject(lowMemory, "outputFile", "low-memory.html");
+        setVariableValueToObject(lowMemory, "lowMemory", Boolean.TRUE);
+        lowMemory.execute();
+
+        assertEquals(read(new File(outputDir, "normal.html")),
+                read(new File(outputDir, "low-memory.html")));
+    }
+
+    public void testRoleBeforeSpec() throws Exception {
+        Map<String, Pattern> patternMap = new HashMap<String, Pattern>();
+        Pattern adapter = new Pattern(mSymbols, "gof", "adapter", "foo");
+        adapter.addRole(new Role(mSymbols, "client"));
+        patternMap.put(adapter.getFullyQualifiedName(), adapter);
+
+        SourceFacts first = new SourceFacts();
+        first.addRole(new RoleFact("a", "client", "pkg.Client"));
+        SourceFacts second = new SourceFacts();
+        second.addSpec(new SpecFact("a", "gof", "adapter", "foo", "inst"));
+
+        Map<String, PatternInstance> instanceMap = new HashMap<String, PatternInstance>();
+        Analysis.applyFacts(Arrays.asList(first, second), patternMap, instanceMap);
+
+        PatternInstance instance = instanceMap.get("a");
+        assertNotNull(instance);
+        assertFalse(instance.isUnfilled());
+        assertEquals("[pkg.Client]",
+                instance.getRoles().iterator().next().getImplementers().toString());
+    }
+
+    public void testDiagnostics() throws Exception {
+        Map<String, Pattern> patternMap = new HashMap<String, Pattern>();
+        Pattern adapter = new Pattern(mSymbols, "gof", "adapter", "foo");
+        adapter.addRole(new Role(mSymbols, "client"));
+        patternMap.put(adapter.getFullyQualifiedName(), adapter);
+
+        SourceFacts facts = new SourceFacts();
+        facts.addSpec(new SpecFact("a", "gof", "adapter", "foo", "inst"));
+        facts.addSpec(new SpecFact("a", "gof", "adapter", "foo", "again"));
+        facts.addSpec(new SpecFact("b", "gof", "bridge", "", "inst"));
+        facts.addRole(new RoleFact("a", "client", "pkg.Client"));
+        facts.addRole(new RoleFact("a", "target", "pkg.Target"));
+        facts.addRole(new RoleFact("b", "client", "pkg.\"Quoted\""));
+
+        Map<String, PatternInstance> instanceMap = new HashMap<String, PatternInstance>();
+        Diagnostics diagnostics = new Diagnostics();
+        AnalysisMetrics metrics = new AnalysisMetrics();
+        Analysis.applyFacts(Collections.singletonList(facts), patternMap, instanceMap,
+                metrics, diagnostics);
+        assertEquals(1, metrics.get(AnalysisMetrics.ROLES_BOUND));
+        assertEquals(4, diagnostics.size());
+        for (Diagnostics.Kind kind : Diagnostics.Kind.values()) {
+            assertEquals(1, diagnostics.getCount(kind));
+        }
+        assertEquals("Found multiple specs for pattern with alias a",
+                diagnostics.getDetails().get(0));
+
+        File file = new File(getBasedir(), "target/test-diagnostics/diagnostics.json");
+        diagnostics.writeJson(file);
+        String json = read(file);
+        assertTrue(json, json.contains("\"unknownRole\": 1"));
+        assertTrue(json, json.contains("{\"kind\": \"unknownPattern\", \"alias\": \"b\", "
+                + "\"pattern\": \"gof.bridge.\", \"instance\": \"inst\"}"));
+        assertTrue(json, json.contains("\"implementer\": \"pkg.\\\"Quoted\\\"\""));
+    }
+
+    public void testProcessorFacts() throws Exception {
+        File outputDir = new File(getBasedir(), "target/test-processor");
+        CrossWeaveMojo serial = lookupTestMojo();
+        setVariableValueToObject(serial, "outputDir", outputDir);
+        setVariableValueToObject(serial, "outputFile", "serial.html");
+        serial.execute();
+
+        // Facts as the annotation processor writes them for the examples
+        SourceFacts main = new SourceFacts();
+        main.addSpec(new SpecFact("dog", "gof", "adapter", "foo", "snoopy"));
+        main.addSpec(new SpecFact("cat", "gof", "adapter", "bar", "tom"));
+        main.addRole(new RoleFact("cat", "client", "edu.vu.isis.crossweave.example.Main"));
+        main.addRole(new RoleFact("dog", "client", "edu.vu.isis.crossweave.example.Main"));
+        SourceFacts adapter = new SourceFacts();
+        adapter.addRole(new RoleFact("dog", "adapter",
+                "edu.vu.isis.crossweave.example.adapter.DogToCatAdapter"));
+        SourceFacts cat = new SourceFacts();
+        cat.addRole(new RoleFact("cat", "adaptee", "edu.vu.isis.crossweave.example.pet.Cat"));
+        SourceFacts dog = new SourceFacts();
+        dog.addRole(new RoleFact("dog", "adaptee", "edu.vu.isis.crossweave.example.pet.Dog"));
+
+        File factsFile = new File(outputDir, "pattern-facts");
+        DataOutputStream out = new DataOutputStream(new FileOutputStream(factsFile));
+        try {
+            out.writeInt(0x43575046);
+            out.writeInt(2);
+            out.writeInt(4);
+            out.writeUTF("edu.vu.isis.crossweave.example.Main");
+            out.writeUTF("edu/vu/isis/crossweave/example/Main.java");
+            out.writeInt(0);
+            ScanCache.writeFacts(out, main);
+            out.writeUTF("edu.vu.isis.crossweave.example.adapter.DogToCatAdapter");
+            out.writeUTF("edu/vu/isis/crossweave/example/adapter/DogToCatAdapter.java");
+            out.writeInt(0);
+            ScanCache.writeFacts(out, adapter);
+            out.writeUTF("edu.vu.isis.crossweave.example.pet.Cat");
+            out.writeUTF("edu/vu/isis/crossweave/example/pet/Cat.java");
+            out.writeInt(0);
+            ScanCache.writeFacts(out, cat);
+            out.writeUTF("edu.vu.isis.crossweave.example.pet.Dog");
+            out.writeUTF("edu/vu/isis/crossweave/example/pet/Dog.java");
+            out.writeInt(0);
+            ScanCache.writeFacts(out, dog);
+        } finally {
+            out.close();
+        }
+
+        CrossWeaveMojo mojo = lookupTestMojo();
+        setVariableValueToObject(mojo, "source", new File(getBasedir(), "does-not-exist"));
+        setVariableValueToObject(mojo, "outputDir", outputDir);
+        setVariableValueToObject(mojo, "outputFile", "processor.html");
+        setVariableValueToObject(mojo, "processorFacts", factsFile);
+        mojo.execute();
+
+        assertEquals(read(new File(outputDir, "serial.html")),
+                read(new File(outputDir, "processor.html")));
+        assertTrue(read(new File(outputDir, "crossweave-diagnostics.json"))
+                .contains("\"diagnostics\": [\n  ]"));
+    }
+
+    public void testStreamedReport() throws Exception {
+        File dir = new File(getBasedir(), "target/test-corpus/report");
+        new CorpusGenerator().setClasses(2000).ensureSources(dir);
+        List<File> files = new ArrayList<File>();
+        Analysis.collectSourceFiles(dir, files);
+
+        Map<String, Pattern> patternMap = new HashMap<String, Pattern>();
+        Pattern adapter = new Pattern(mSymbols, "gof", "adapter", "foo");
+        adapter.addRole(new Role(mSymbols, "client"));
+        adapter.addRole(new Role(mSymbols, "adapter"));
+        adapter.addRole(new Role(mSymbols, "adaptee"));
+        patternMap.put(adapter.getFullyQualifiedName(), adapter);
+        List<SourceFacts> facts = new ArrayList<SourceFacts>(
+                new LightweightSourceScanner().scan(files));
+        SourceFacts unicode = new SourceFacts();
+        unicode.addRole(new RoleFact("a0", "client", "gen.\u00dcbersetzer"));
+        facts.add(unicode);
+        Map<String, PatternInstance> instanceMap = new HashMap<String, PatternInstance>();
+        Analysis.applyFacts(facts, patternMap, instanceMap);
+
+        File outputDir = new File(getBasedir(), "target/test-report");
+        outputDir.mkdirs();
+        for (String name : new String[] { "html_template.stg", "error_template.stg" }) {
+            String template = new File(getBasedir(), "../crossweave-examples/" + name).getPath();
+            ST st = new STGroupFile(template).getInstanceOf("reportPatternDescriptions");
+            st.add("patterns", instanceMap.values());
+            byte[] expected = st.render().getBytes("UTF-8");
+
+            File file = new File(outputDir, name + ".out");
+            Analysis.writeReport(template, instanceMap.values(), file, "UTF-8");
+            assertTrue(Arrays.equals(expected, readBytes(file)));
+        }
+    }
+
+    public void testQuery() throws Exception {
+        File outputDir = new File(getBasedir(), "target/test-query");
+        File indexFile = new File(outputDir, "pattern-index");
+        CrossWeaveMojo mojo = lookupTestMojo();
+        setVariableValueToObject(mojo, "outputDir", outputDir);
+        setVariableValueToObject(mojo, "indexFile", indexFile);
+        mojo.execute();
+
+        PatternIndex index = PatternIndex.open(indexFile);
+        assertEquals("[gof.adapter.bar.tom#client, gof.adapter.foo.snoopy#client]",
+                index.getBindings("edu.vu.isis.crossweave.example.Main").toString());
+
+        QueryMojo query = new QueryMojo();
+        setVariableValueToObject(query, "indexFile", indexFile);
+        setVariableValueToObject(query, "implementer", "edu.vu.isis.crossweave.example.Main");
+        setVariableValueToObject(query, "pattern", "gof.adapter");
+        query.execute();
+
+        setVariableValueToObject(query, "indexFile", new File(outputDir, "missing"));
+        try {
+            query.execute();
+            fail();
+        } catch (MojoFailureException e) {
+            // expected
+        }
+    }
+
+    public void testMetrics() throws Exception {
+        File outputDir = new File(getBasedir(), "target/test-metrics");
+        File metricsFile = new File(outputDir, "crossweave-metrics.json");
+        File indexFile = new File(outputDir, "pattern-index");
+        metricsFile.delete();
+        CrossWeaveMojo mojo = lookupTestMojo();
+        setVariableValueToObject(mojo, "outputDir", outputDir);
+        setVariableValueToObject(mojo, "outputFile", "report.html");
+        setVariableValueToObject(mojo, "indexFile", indexFile);
+        setVariableValueToObject(mojo, "metricsFile", metricsFile);
+        mojo.execute();
+
+        String json = read(metricsFile);
+        for (String phase : new String[] { "patternDef", "collect", "prefilter", "parse",
+                "model", "index", "render" }) {
+            assertTrue(phase, json.contains("\"" + phase + "\": "));
+        }
+        int instances = PatternIndex.open(indexFile).getInstanceCount();
+        assertTrue(instances > 0);
+        assertTrue(json.contains("\"instancesCreated\": " + instances + ","));
+        assertTrue(json.contains("\"outputBytes\": "
+                + new File(outputDir, "report.html").length() + "\n"));
+        assertFalse(json.contains("\"filesRead\": 0,"));
+        assertFalse(json.contains("\"rolesBound\": 0,"));
+    }
+
+    public void testWatch() throws Exception {
+        File work = new File(getBasedir(), "target/test-watch");
+        deleteTree(work);
+        File src = new File(work, "src");
+        copyTree(new File(getBasedir(), "../crossweave-examples/src"), src);
+        File outputDir = new File(work, "output");
+        File report = new File(outputDir, "watch.html");
+
+        File testPom = new File(getBasedir(), "src/test/resources/test-run/pom.xml");
+        final WatchMojo watch = (WatchMojo) lookupMojo("watch", testPom);
+        setVariableValueToObject(watch, "source", src);
+        setVariableValueToObject(watch, "outputDir", outputDir);
+        setVariableValueToObject(watch, "outputFile", "watch.html");
+        setVariableValueToObject(watch, "indexFile", new File(work, "watch-index"));
+        setVariableValueToObject(watch, "quietPeriod", Long.valueOf(20));
+        final Exception[] failure = new Exception[1];
+        Thread thread = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    watch.execute();
+                } catch (Exception e) {
+                    failure[0] = e;
+                }
+            }
+        };
+        thread.start();
+        try {
+            long deadline = System.currentTimeMillis() + 30000;
+            while (!watch.isWatching() && thread.isAlive()
+                    && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertTrue(watch.isWatching());
+            assertTrue(new File(outputDir, "crossweave-diagnostics.json").isFile());
+            assertEquals(analyze(src, outputDir), read(report));
+
+            // Move the dog client role to another role
+            File main = new File(src, "main/java/edu/vu/isis/crossweave/example/Main.java");
+            String text = read(main);
+            writeFile(main, text.replace("alias = \"dog\", role = \"client\"",
+                    "alias = \"cat\", role = \"adaptee\""));
+            assertRefreshed(report, src, outputDir);
+
+            // Move an adapter into a new package
+            File adapterDir = new File(src, "main/java/edu/vu/isis/crossweave/example/adapter");
+            File adapter = new File(adapterDir, "DogToCatAdapter.java");
+            String adapterText = read(adapter);
+            assertTrue(adapter.delete());
+            File moved = new File(adapterDir, "moved/DogToCatAdapter.java");
+            moved.getParentFile().mkdirs();
+            writeFile(moved, adapterText.replace("example.adapter;", "example.adapter.moved;"));
+            assertRefreshed(report, src, outputDir);
+
+            // Remove a whole package
+            deleteTree(adapterDir);
+            assertRefreshed(report, src, outputDir);
+        } finally {
+            watch.stop();
+            thread.join(10000);
+        }
+        assertFalse(thread.isAlive());
+        assertNull(failure[0]);
+    }
+
+    public void testAggregate() throws Exception {
+        File work = new File(getBasedir(), "target/test-aggregate");
+        deleteTree(work);
+        File examples = new File(getBasedir(), "../crossweave-examples/src/main/java");
+        String mainPath = "edu/vu/isis/crossweave/example/Main.java";
+        // The specs live in one module, the roles they bind in another
+        File specs = new File(work, "specs/src/main/java");
+        new File(specs, mainPath).getParentFile().mkdirs();
+        copyTree(new File(examples, mainPath), new File(specs, mainPath));
+        File roles = new File(work, "roles/src/main/java");
+        copyTree(examples, roles);
+        assertTrue(new File(roles, mainPath).delete());
+
+        List<MavenProject> reactor = new ArrayList<MavenProject>();
+        for (File root : new File[] { roles, specs, new File(work, "empty/src/main/java") }) {
+            MavenProject project = new MavenProject();
+            project.setArtifactId(root.getParentFile().getParentFile().getParentFile()
+                    .getName());
+            project.addCompileSourceRoot(root.getPath());
+            reactor.add(project);
+        }
+
+        File outputDir = new File(work, "output");
+        File testPom = new File(getBasedir(), "src/test/resources/test-run/pom.xml");
+        AggregateMojo aggregate = (AggregateMojo) lookupMojo("aggregate", testPom);
+        setVariableValueToObject(aggregate, "reactorProjects", reactor);
+        setVariableValueToObject(aggregate, "outputDir", outputDir);
+        setVariableValueToObject(aggregate, "outputFile", "aggregate.html");
+        setVariableValueToObject(aggregate, "indexFile", new File(outputDir, "aggregate-index"));
+        aggregate.execute();
+
+        CrossWeaveMojo full = lookupTestMojo();
+        setVariableValueToObject(full, "source", examples);
+        setVariableValueToObject(full, "outputDir", outputDir);
+        setVariableValueToObject(full, "indexFile", new File(outputDir, "full-index"));
+        full.execute();
+
+        PatternIndex expected = PatternIndex.open(new File(outputDir, "full-index"));
+        PatternIndex actual = PatternIndex.open(new File(outputDir, "aggregate-index"));
+        assertEquals(expected.getInstanceCount(), actual.getInstanceCount());
+        for (String type : new String[] { "Main", "adapter.CatToDogAdapter",
+                "adapter.DogToCatAdapter", "pet.Cat", "pet.Dog", "pet.PetCat", "pet.PetDog" }) {
+            String implementer = "edu.vu.isis.crossweave.example." + type;
+            assertEquals(implementer, expected.getBindings(implementer).toString(),
+                    actual.getBindings(implementer).toString());
+        }
+        assertFalse(actual.getBindings("edu.vu.isis.crossweave.example.adapter.DogToCatAdapter")
+                .isEmpty());
+    }
+
+    public void testSourceJars() throws Exception {
+        File work = new File(getBasedir(), "target/test-source-jars");
+        deleteTree(work);
+        File examples = new File(getBasedir(), "../crossweave-examples/src/main/java");
+        String mainPath = "edu/vu/isis/crossweave/example/Main.java";
+        // The specs are in the project, the roles they bind in a library
+        File src = new File(work, "src");
+        new File(src, mainPath).getParentFile().mkdirs();
+        copyTree(new File(examples, mainPath), new File(src, mainPath));
+        File jar = new File(work, "pets-sources.jar");
+        ZipOutputStream out = new ZipOutputStream(new FileOutputStream(jar));
+        try {
+            List<File> files = new ArrayList<File>();
+            Analysis.collectSourceFiles(examples, files);
+            for (File file : files) {
+                String name = file.getPath().substring(examples.getPath().length() + 1)
+                        .replace(File.separatorChar, '/');
+                if (!name.equals(mainPath)) {
+                    out.putNextEntry(new ZipEntry(name));
+                    out.write(read(file).getBytes());
+                    out.closeEntry();
+                }
+            }
+        } finally {
+            out.close();
+        }
+
+        File outputDir = new File(work, "output");
+        for (int run = 0; run < 2; run++) {
+            CrossWeaveMojo mojo = lookupTestMojo();
+            setVariableValueToObject(mojo, "source", src);
+            setVariableValueToObject(mojo, "sourceJars", new File[] { jar });
+            setVariableValueToObject(mojo, "sourceJarCache", new File(work, "jar-cache"));
+            setVariableValueToObject(mojo, "outputDir", outputDir);
+            setVariableValueToObject(mojo, "outputFile", "jars.html");
+            setVariableValueToObject(mojo, "indexFile", new File(outputDir, "jars-index"));
+            mojo.execute();
+            assertTrue(new File(work, "jar-cache").isFile());
+            assertEquals(analyze(examples, outputDir), read(new File(outputDir, "jars.html")));
+        }
+    }
+
+    public void testUpToDateCheck() throws Exception {
+        File work = new File(getBasedir(), "target/test-uptodate");
+        deleteTree(work);
+        File src = new File(work, "src");
+        copyTree(new File(getBasedir(), "../crossweave-examples/src"), src);
+        File patternDef = new File(work, "patterndef.xml");
+        copyTree(new File(getBasedir(), "../crossweave-examples/patterndef.xml"), patternDef);
+        File outputDir = new File(work, "output");
+        File report = new File(outputDir, "report.html");
+        // Only a run that is not skipped writes the metrics file
+        File metrics = new File(work, "metrics.json");
+
+        assertTrue(runUpToDateCheck(src, patternDef, outputDir, metrics, null));
+        assertTrue(report.isFile());
+        assertFalse(runUpToDateCheck(src, patternDef, outputDir, metrics, null));
+
+        File main = new File(src, "main/java/edu/vu/isis/crossweave/example/Main.java");
+        main.setLastModified(main.lastModified() + 2000);
+        assertTrue(runUpToDateCheck(src, patternDef, outputDir, metrics, null));
+        assertFalse(runUpToDateCheck(src, patternDef, outputDir, metrics, null));
+
+        // The pattern definitions count by content, not by time stamp
+        patternDef.setLastModified(patternDef.lastModified() + 2000);
+        assertFalse(runUpToDateCheck(src, patternDef, outputDir, metrics, null));
+        Writer out = new FileWriter(patternDef, true);
+        out.write("\n");
+        out.close();
+        assertTrue(runUpToDateCheck(src, patternDef, outputDir, metrics, null));
+
+        assertTrue(report.delete());
+        assertTrue(runUpToDateCheck(src, patternDef, outputDir, metrics, null));
+        assertTrue(report.isFile());
+
+        // Asking for another metrics file is a change as well
+        File otherMetrics = new File(work, "other-metrics.json");
+        assertTrue(runUpToDateCheck(src, patternDef, outputDir, otherMetrics, null));
+        assertFalse(runUpToDateCheck(src, patternDef, outputDir, otherMetrics, null));
+        assertTrue(runUpToDateCheck(src, patternDef, outputDir, metrics, null));
+
+        // An IDE build that touched nothing the goal reads skips it as well
+        assertTrue(new File(src, "main/java/Unrelated.java").createNewFile());
+        BuildContext unrelatedChange = new DefaultBuildContext() {
+
+            @Override
+            public boolean isIncremental() {
+                return true;
+            }
+
+            @Override
+            public boolean hasDelta(File file) {
+                return false;
+            }
+        };
+        assertFalse(runUpToDateCheck(src, patternDef, outputDir, metrics, unrelatedChange));
+        assertTrue(runUpToDateCheck(src, patternDef, outputDir, metrics, null));
+    }
+
+    /**
+     * Runs the analyze goal with the up-to-date check.
+     *
+     * @return true if the goal ran, false if it was skipped
+     */
+    private boolean runUpToDateCheck(File src, File patternDef, File outputDir, File metrics,
+            BuildContext buildContext) throws Exception {
+        metrics.delete();
+        CrossWeaveMojo mojo = lookupTestMojo();
+        setVariableValueToObject(mojo, "source", src);
+        setVariableValueToObject(mojo, "patternDef", patternDef);
+        setVariableValueToObject(mojo, "outputDir", outputDir);
+        setVariableValueToObject(mojo, "outputFile", "report.html");
+        setVariableValueToObject(mojo, "indexFile", new File(outputDir, "index"));
+        setVariableValueToObject(mojo, "metricsFile", metrics);
+        setVariableValueToObject(mojo, "upToDateCheck", Boolean.TRUE);
+        if (buildContext != null) {
+            setVariableValueToObject(mojo, "buildContext", buildContext);
+        }
+        mojo.execute();
+        return metrics.isFile();
+    }
+
+    /**
+     * Waits until the watch goal rewrote the report and checks that it is the
+     * report a full analysis writes.
+     */
+    private void assertRefreshed(File report, File src, File outputDir) throws Exception {
+        String expected = analyze(src, outputDir);
+        long start = System.currentTimeMillis();
+        while (!expected.equals(read(report)) && System.currentTimeMillis() - start < 10000) {
+            Thread.sleep(5);
+        }
+        assertEquals(expected, read(report));
+    }
+
+    private String analyze(File src, File outputDir) throws Exception {
+        CrossWeaveMojo mojo = lookupTestMojo();
+        setVariableValueToObject(mojo, "source", src);
+        setVariableValueToObject(mojo, "outputDir", outputDir);
+        setVariableValueToObject(mojo, "outputFile", "full.html");
+        setVariableValueToObject(mojo, "indexFile", new File(outputDir, "full-index"));
+        mojo.execute();
+        return read(new File(outputDir, "full.html"));
+    }
+
+    private CrossWeaveMojo lookupTestMojo() throws Exception {
+        File testPom = new File(getBasedir(), "src/test/resources/test-run/pom.xml");
+        return (CrossWeaveMojo) lookupMojo("analyze", testPom);
+    }
+
+    private static void copyTree(File from, File to) throws IOException {
+        if (from.isDirectory()) {
+            to.mkdirs();
+            for (File child : from.listFiles()) {
+                copyTree(child, new File(to, child.getName()));
+            }
+            return;
+        }
+        InputStream in = new FileInputStream(from);
+        OutputStream out = new FileOutputStream(to);
+        try {
+            byte[] buf = new byte[8192];
+            int n;
+            while ((n = in.read(buf)) > 0) {
+                out.write(buf, 0, n);
+            }
+        } finally {
+            in.close();
+            out.close();
+        }
+    }
+
+    private static void writeFile(File file, String text) throws IOException {
+        OutputStream out = new FileOutputStream(file);
+        try {
+            out.write(text.getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+    }
+
+    private static void deleteTree(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteTree(child);
+            }
+        }
+        file.delete();
+    }
+
+    private static byte[] readBytes(File file) throws IOException {
+        InputStream in = new FileInputStream(file);
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buf = new byte[8192];
+            int n;
+            while ((n = in.read(buf)) > 0) {
+                out.write(buf, 0, n);
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+
+    private static String read(File file) throws IOException {
+        InputStream in = new FileInputStream(file);
+        try {
+            StringBuilder sb = new StringBuilder();
+            byte[] buf = new byte[8192];
+            int n;
+            while ((n = in.read(buf)) > 0) {
+                sb.append(new String(buf, 0, n, "UTF-8"));
+            }
+            return sb.toString();
+        } finally {
+            in.close();
+        }
+    }
 }
@@ -0,0 +1,169 @@
+package edu.vu.isis.crossweave;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+import org.apache.maven.plugin.testing.AbstractMojoTestCase;
+
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+import java.io.File;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Runs the analyze goal over large generated source trees and fails if a run
+ * takes longer or needs more heap than its budget. The suite only runs in the
+ * scalability profile, which also fixes the heap size:
+ * <pre>
+ * mvn test -Pscalability
+ * </pre>
+ * The heap budget applies to the largest heap occupancy seen after a garbage
+ * collection, which is what the run retains, rather than to how far the heap
+ * fills up between collections. The time budgets are about three times what
+ * the runs take on a single core build machine. Set crossweave.scalability.slack
+ * to scale all budgets on slower machines.
+ */
+public class ScalabilityTest extends AbstractMojoTestCase {
+
+    private static final long MB = 1024 * 1024;
+
+    /** The heap the scalability profile runs with */
+    private static final long MAX_HEAP = 256 * MB;
+
+    private File mDir = new File(getBasedir(), "target/scalability");
+
+    private double mSlack = Double.parseDouble(
+            System.getProperty("crossweave.scalability.slack", "1.0"));
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        long maxHeap = Runtime.getRuntime().maxMemory();
+        assertTrue("run with -Pscalability, got a heap of " + maxHeap / MB + " MB",
+                maxHeap <= MAX_HEAP);
+    }
+
+    public void testWideTree() throws Exception {
+        CorpusGenerator generator = new CorpusGenerator().setClasses(20000).setPackages(40);
+        run("wide", generator, 2000, "qdox", false, 60000, 240);
+    }
+
+    public void testDeepSparseTree() throws Exception {
+        CorpusGenerator generator = new CorpusGenerator().setClasses(20000).setPackages(400)
+                .setPackageDepth(6).setAnnotatedPercent(20).setSpecEvery(5).setImpls(50)
+                .setRoles(8);
+        run("deep-sparse", generator, 800, "qdox", false, 30000, 100);
+    }
+
+    public void testLightweightSharded() throws Exception {
+        CorpusGenerator generator = new CorpusGenerator().setClasses(50000).setPackages(100)
+                .setAnnotatedPercent(50).setSpecEvery(20).setImpls(10).setRoles(5);
+        run("lightweight-sharded", generator, 1250, "lightweight", true, 15000, 32);
+    }
+
+    /**
+     * Generates a corpus unless it is up to date, analyzes it and checks the
+     * budgets.
+     *
+     * @param instances the number of pattern instances the corpus specifies
+     * @param maxMillis the wall time budget of the analysis
+     * @param maxPeakMb the budget for the peak heap usage of the analysis
+     */
+    private void run(String name, CorpusGenerator generator, int instances, String scanner,
+            boolean sharded, long maxMillis, long maxPeakMb) throws Exception {
+        File dir = new File(mDir, name);
+        File src = new File(dir, "src");
+        File patternDef = new File(dir, "patterndef.xml");
+        generator.ensureSources(src);
+        generator.writePatternDef(patternDef);
+        File outputDir = new File(dir, "output");
+        File indexFile = new File(dir, "pattern-index");
+
+        File testPom = new File(getBasedir(), "src/test/resources/test-run/pom.xml");
+        CrossWeaveMojo mojo = (CrossWeaveMojo) lookupMojo("analyze", testPom);
+        setVariableValueToObject(mojo, "source", src);
+        setVariableValueToObject(mojo, "patternDef", patternDef);
+        setVariableValueToObject(mojo, "outputDir", outputDir);
+        setVariableValueToObject(mojo, "outputFile", "report.html");
+        setVariableValueToObject(mojo, "indexFile", indexFile);
+        setVariableValueToObject(mojo, "scanner", scanner);
+        setVariableValueToObject(mojo, "sharded", Boolean.valueOf(sharded));
+
+        System.gc();
+        RetainedHeap retained = new RetainedHeap();
+        long start = System.nanoTime();
+        try {
+            mojo.execute();
+        } finally {
+            retained.stop();
+        }
+        long millis = (System.nanoTime() - start) / 1000000;
+        long peakMb = retained.getPeak() / MB;
+
+        assertEquals(instances, PatternIndex.open(indexFile).getInstanceCount());
+        assertTrue(name + " took " + millis + " ms", millis <= maxMillis * mSlack);
+        assertTrue(name + " peaked at " + peakMb + " MB", peakMb <= maxPeakMb * mSlack);
+    }
+
+    /**
+     * Tracks the largest heap occupancy left over by the full collections that
+     * run while it listens. Minor collections leave old garbage behind.
+     */
+    private static class RetainedHeap implements NotificationListener {
+
+        private Set<String> mHeapPools = new HashSet<String>();
+
+        private long mPeak;
+
+        RetainedHeap() {
+            for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+                if (pool.getType() == MemoryType.HEAP) {
+                    mHeapPools.add(pool.getName());
+                }
+            }
+            for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+                ((NotificationEmitter) gc).addNotificationListener(this, null, null);
+            }
+        }
+
+        public synchronized void handleNotification(Notification notification, Object handback) {
+            if (!GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(
+                    notification.getType())) {
+                return;
+            }
+            GarbageCollectionNotificationInfo info = GarbageCollectionNotificationInfo.from(
+                    (CompositeData) notification.getUserData());
+            if (!"end of major GC".equals(info.getGcAction())) {
+                return;
+            }
+            long used = 0;
+            for (Map.Entry<String, MemoryUsage> pool
+                    : info.getGcInfo().getMemoryUsageAfterGc().entrySet()) {
+                if (mHeapPools.contains(pool.getKey())) {
+                    used += pool.getValue().getUsed();
+                }
+            }
+            mPeak = Math.max(mPeak, used);
+        }
+
+        void stop() throws Exception {
+            // Whatever is still reachable at the end counts as well
+            System.gc();
+            Thread.sleep(100);
+            for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+                ((NotificationEmitter) gc).removeNotificationListener(this);
+            }
+        }
+
+        synchronized long getPeak() {
+            return mPeak;
+        }
+    }
+}